@@ -0,0 +1,103 @@
+package org.example;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Operaciones sueltas del arbol con catalogos de distintos tamanos. El arbol se
+// arma una vez por trial igual que en main (carga masiva + modelo de nombres) y
+// cada benchmark lo deja del mismo tamano que lo encontro.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BTreeBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    BTree tree;
+    String[] names;
+    String[] isbns;
+    // Libros que no estan en el arbol, para insertar y volver a borrar
+    Book[] extra;
+    Map<String, Object>[] patches;
+    int next;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Book[] books = BenchmarkData.books(size, 0);
+        tree = new BTree();
+        tree.insertAll(Arrays.asList(books));
+        tree.trainNameModel();
+
+        // Orden al azar para no recorrer el arbol de izquierda a derecha
+        List<Book> shuffled = Arrays.asList(books.clone());
+        Collections.shuffle(shuffled, new Random(BenchmarkData.SEED));
+        names = new String[size];
+        isbns = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = shuffled.get(i).name();
+            isbns[i] = shuffled.get(i).isbn();
+        }
+        extra = BenchmarkData.books(Math.min(size, 100_000), size);
+        patches = new Map[] {Map.of("price", "12.34"), Map.of("price", "43.21", "quantity", "7")};
+    }
+
+    private int nextIndex(int bound) {
+        int i = next++;
+        if (next >= bound) {
+            next = 0;
+        }
+        return i;
+    }
+
+    // Book no es publica: el resultado va al Blackhole en vez de devolverse
+    @Benchmark
+    public void searchByName(Blackhole blackhole) {
+        blackhole.consume(tree.searchByName(names[nextIndex(size)]));
+    }
+
+    @Benchmark
+    public void findBookByIsbn(Blackhole blackhole) {
+        blackhole.consume(tree.findBookByIsbn(isbns[nextIndex(size)]));
+    }
+
+    @Benchmark
+    public boolean updateBook() {
+        int i = nextIndex(size);
+        return tree.updateBook(isbns[i], patches[i & 1]);
+    }
+
+    // insert y removeBook van juntos para que el catalogo no crezca entre iteraciones
+    @Benchmark
+    public int insertAndRemove() {
+        Book book = extra[nextIndex(extra.length)];
+        tree.insert(book);
+        tree.removeBook(book.isbn());
+        return tree.size();
+    }
+
+    @Benchmark
+    public int rangeByIsbn() {
+        String from = isbns[nextIndex(size)];
+        return tree.rangeByIsbn(from, Long.toString(Long.parseLong(from) + 100)).size();
+    }
+}
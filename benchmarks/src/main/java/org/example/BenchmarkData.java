@@ -0,0 +1,80 @@
+package org.example;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Datos sinteticos para los benchmarks. Siempre la misma semilla, asi dos
+// versiones del proyecto se miden con exactamente los mismos libros.
+final class BenchmarkData {
+    static final long SEED = 42;
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "night", "house", "war", "love", "secret", "garden", "river",
+            "shadow", "king", "queen", "last", "first", "city", "stars", "silent", "winter", "summer",
+            "dragon", "empire", "memory", "storm", "glass", "fire", "ocean", "lost", "dark", "light",
+            "soledad", "cien", "anos", "principito", "quijote", "mancha", "sombra", "viento", "ciudad", "perros"
+    };
+
+    private BenchmarkData() {
+    }
+
+    // count libros con ISBN distintos; first desplaza los ISBN para armar otro lote
+    static Book[] books(int count, long first) {
+        Random random = new Random(SEED + first);
+        Book[] books = new Book[count];
+        for (int i = 0; i < count; i++) {
+            String isbn = Long.toString(1_000_000_000L + first + i);
+            books[i] = new Book(isbn, title(random) + " " + isbn, "Author " + random.nextInt(5_000),
+                    "Category " + random.nextInt(40), 100 + random.nextInt(10_000), random.nextInt(500));
+        }
+        return books;
+    }
+
+    static String title(Random random) {
+        StringBuilder title = new StringBuilder();
+        int words = 2 + random.nextInt(5);
+        for (int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (i > 0) {
+                title.append(' ');
+            }
+            title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        return title.toString();
+    }
+
+    // Archivo de carga con un INSERT por libro
+    static Path insertFile(Book[] books) throws IOException {
+        Path path = Files.createTempFile("bench-books", ".csv");
+        path.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (Book book : books) {
+                writer.write("INSERT;{\"isbn\":\"" + book.isbn() + "\",\"name\":\"" + book.name()
+                        + "\",\"author\":\"" + book.author() + "\",\"category\":\"" + book.category()
+                        + "\",\"price\":\"" + book.priceText() + "\",\"quantity\":\"" + book.quantityText() + "\"}");
+                writer.newLine();
+            }
+        }
+        return path;
+    }
+
+    // Archivo de busquedas: lookups de libros al azar con una de cada diez que no existe
+    static Path searchFile(Book[] books, int searches) throws IOException {
+        Path path = Files.createTempFile("bench-search", ".csv");
+        path.toFile().deleteOnExit();
+        Random random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < searches; i++) {
+                String name = random.nextInt(10) == 0
+                        ? title(random) + " missing"
+                        : books[random.nextInt(books.length)].name();
+                writer.write("SEARCH;{\"name\":\"" + name + "\"}");
+                writer.newLine();
+            }
+        }
+        return path;
+    }
+}
@@ -0,0 +1,81 @@
+package org.example;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Huffman y aritmetico sobre un nombre de largo fijo, con el modelo armado a
+// partir del mismo nombre como en las estadisticas del reporte
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"16", "64", "256"})
+    public int length;
+
+    String name;
+    Map<Character, Integer> frequency;
+    ArithmeticCompressionInt arithmetic;
+    byte[] compressed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(BenchmarkData.SEED);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(BenchmarkData.title(random)).append(' ');
+        }
+        name = text.substring(0, length);
+
+        frequency = new HashMap<>();
+        for (char c : name.toCharArray()) {
+            frequency.merge(c, 1, Integer::sum);
+        }
+        arithmetic = new ArithmeticCompressionInt(name);
+        compressed = arithmetic.compress(name);
+    }
+
+    @Benchmark
+    public Map<Character, String> huffmanCodes() {
+        HuffmanNode root = Huffman.buildHuffmanTree(frequency);
+        Map<Character, String> codes = new HashMap<>();
+        Huffman.generateCodes(root, "", codes);
+        return codes;
+    }
+
+    @Benchmark
+    public int huffmanSize() {
+        return Main.namesizehuffman(name);
+    }
+
+    @Benchmark
+    public void arithmeticModel(Blackhole blackhole) {
+        blackhole.consume(new ArithmeticCompressionInt(name));
+    }
+
+    @Benchmark
+    public byte[] arithmeticCompress() {
+        return arithmetic.compress(name);
+    }
+
+    @Benchmark
+    public String arithmeticDecompress() {
+        return arithmetic.decompress(compressed, name.length());
+    }
+}
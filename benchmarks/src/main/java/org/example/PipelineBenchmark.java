@@ -0,0 +1,86 @@
+package org.example;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Carga de un archivo de INSERT (ReaderCSV) y reporte de busquedas (lo que hace
+// Exit, escribiendo a un canal nulo para no medir el disco)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PipelineBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int lines;
+
+    Path insertFile;
+    Path searchFile;
+    BTree tree;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Book[] books = BenchmarkData.books(lines, 0);
+        insertFile = BenchmarkData.insertFile(books);
+        searchFile = BenchmarkData.searchFile(books, lines);
+        tree = new BTree();
+        Main.ReaderCSV(insertFile.toString(), tree, true, 1);
+        tree.trainNameModel();
+    }
+
+    @Benchmark
+    public int ingest() {
+        BTree loaded = new BTree();
+        Main.ReaderCSV(insertFile.toString(), loaded, true, 1);
+        return loaded.size();
+    }
+
+    @Benchmark
+    public int ingestParallel() {
+        BTree loaded = new BTree();
+        Main.ReaderCSV(insertFile.toString(), loaded, true, Runtime.getRuntime().availableProcessors());
+        return loaded.size();
+    }
+
+    // Cache de estadisticas vacia en cada corrida, como el primer reporte de main
+    @Benchmark
+    public void reportCold() throws IOException {
+        tree.compressionStats = new CompressionStats();
+        report(1);
+    }
+
+    @Benchmark
+    public void reportParallelCold() throws IOException {
+        tree.compressionStats = new CompressionStats();
+        report(Runtime.getRuntime().availableProcessors());
+    }
+
+    // El reporte escribe al canal nulo; abrir y recorrer el archivo no se puede eliminar
+    private void report(int threads) throws IOException {
+        ResultWriter writer = new ResultWriter(Channels.newChannel(OutputStream.nullOutputStream()), ResultWriter.PLAIN);
+        SearchReport report = new SearchReport(tree, writer);
+        try (OperationFile input = OperationFile.open(searchFile); writer) {
+            if (threads > 1) {
+                report.runParallel(input, threads);
+            } else {
+                report.run(input);
+            }
+            report.writeTotals();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.example;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Busquedas de titulos por prefijo y aproximadas con el indice de titulos del
+// arbol. Las consultas salen de titulos del catalogo: los prefijos cortan el
+// titulo y las aproximadas cambian una letra, como WorkloadGenerator.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TitleIndexBenchmark {
+    private static final int QUERIES = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"1", "2"})
+    public int distance;
+
+    BTree tree;
+    String[] prefixes;
+    String[] typos;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Book[] books = BenchmarkData.books(size, 0);
+        tree = new BTree();
+        tree.insertAll(Arrays.asList(books));
+        tree.trainNameModel();
+        tree.enableTitleIndex();
+
+        List<Book> shuffled = Arrays.asList(books.clone());
+        Collections.shuffle(shuffled, new Random(BenchmarkData.SEED));
+        Random random = new Random(BenchmarkData.SEED);
+        int count = Math.min(size, QUERIES);
+        prefixes = new String[count];
+        typos = new String[count];
+        for (int i = 0; i < count; i++) {
+            String name = shuffled.get(i).name();
+            prefixes[i] = name.substring(0, Math.min(name.length(), 3 + random.nextInt(10)));
+            char[] chars = name.toCharArray();
+            chars[random.nextInt(chars.length)] = (char) ('a' + random.nextInt(26));
+            typos[i] = new String(chars);
+        }
+    }
+
+    private int nextIndex() {
+        int i = next++;
+        if (next >= prefixes.length) {
+            next = 0;
+        }
+        return i;
+    }
+
+    @Benchmark
+    public void searchTitlesByPrefix(Blackhole blackhole) {
+        blackhole.consume(tree.searchTitlesByPrefix(prefixes[nextIndex()], SearchReport.TITLE_RESULTS));
+    }
+
+    @Benchmark
+    public void searchTitlesFuzzy(Blackhole blackhole) {
+        blackhole.consume(tree.searchTitlesFuzzy(typos[nextIndex()], distance, SearchReport.TITLE_RESULTS));
+    }
+}
@@ -0,0 +1,237 @@
+package org.example;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+class ArithmeticCompressionInt {
+    public String source;
+
+    private static final int NUMBER_BITS = 16;
+    private static final int DEFAULT_LOW = 0;
+    private static final int DEFAULT_HIGH = 0xFFFF;
+    private static final int MSD = 0x8000;
+    private static final int SSD = 0x4000;
+    private static final int TOO = 0x3FFF;
+
+    private int scale;
+    // El simbolo symbols[i] ocupa el intervalo [cumulative[i], cumulative[i + 1])
+    private char[] symbols;
+    private int[] cumulative;
+    // Los mismos simbolos ordenados por caracter, para buscar su intervalo al codificar
+    private char[] sortedSymbols;
+    private int[] slotOfSorted;
+
+    public ArithmeticCompressionInt(String source) {
+        this.source = source;
+        calculateProbabilities();
+    }
+
+    public ArithmeticCompressionInt(Map<Character, int[]> probabilities, int scale) {
+        List<Map.Entry<Character, int[]>> entries = new ArrayList<>(probabilities.entrySet());
+        entries.sort((a, b) -> Integer.compare(a.getValue()[0], b.getValue()[0]));
+
+        char[] modelSymbols = new char[entries.size()];
+        int[] modelCumulative = new int[entries.size() + 1];
+        for (int i = 0; i < entries.size(); i++) {
+            modelSymbols[i] = entries.get(i).getKey();
+            modelCumulative[i] = entries.get(i).getValue()[0];
+            modelCumulative[i + 1] = entries.get(i).getValue()[1];
+        }
+        setModel(modelSymbols, modelCumulative);
+        this.scale = scale;
+    }
+
+    ArithmeticCompressionInt(char[] symbols, int[] cumulative) {
+        setModel(symbols, cumulative);
+    }
+
+    private void calculateProbabilities() {
+        // Ordenar una copia agrupa cada caracter con sus repeticiones
+        char[] chars = source.toCharArray();
+        Arrays.sort(chars);
+
+        long[] byFrequency = new long[chars.length];
+        int distinct = 0;
+        for (int i = 0; i < chars.length; ) {
+            int j = i;
+            while (j < chars.length && chars[j] == chars[i]) {
+                j++;
+            }
+            byFrequency[distinct++] = ((long) (j - i) << 16) | chars[i];
+            i = j;
+        }
+        // Mismo orden que antes: frecuencia ascendente y luego caracter
+        Arrays.sort(byFrequency, 0, distinct);
+
+        char[] modelSymbols = new char[distinct];
+        int[] modelCumulative = new int[distinct + 1];
+        for (int i = 0; i < distinct; i++) {
+            modelSymbols[i] = (char) (byFrequency[i] & 0xFFFF);
+            modelCumulative[i + 1] = modelCumulative[i] + (int) (byFrequency[i] >>> 16);
+        }
+        setModel(modelSymbols, modelCumulative);
+    }
+
+    private void setModel(char[] modelSymbols, int[] modelCumulative) {
+        this.symbols = modelSymbols;
+        this.cumulative = modelCumulative;
+        this.scale = modelCumulative[modelSymbols.length];
+
+        long[] byChar = new long[modelSymbols.length];
+        for (int i = 0; i < modelSymbols.length; i++) {
+            byChar[i] = ((long) modelSymbols[i] << 32) | i;
+        }
+        Arrays.sort(byChar);
+        this.sortedSymbols = new char[modelSymbols.length];
+        this.slotOfSorted = new int[modelSymbols.length];
+        for (int i = 0; i < byChar.length; i++) {
+            sortedSymbols[i] = (char) (byChar[i] >>> 32);
+            slotOfSorted[i] = (int) byChar[i];
+        }
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    public char[] symbols() {
+        return symbols.clone();
+    }
+
+    public int[] cumulative() {
+        return cumulative.clone();
+    }
+
+    public boolean canEncode(CharSequence input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (Arrays.binarySearch(sortedSymbols, input.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slotOf(char symbol) {
+        int idx = Arrays.binarySearch(sortedSymbols, symbol);
+        if (idx < 0) {
+            throw new IllegalArgumentException("Simbolo fuera del modelo: " + symbol);
+        }
+        return slotOfSorted[idx];
+    }
+
+    // Ultimo intervalo cuyo inicio es <= value
+    private int findSlot(int value) {
+        int low = 0;
+        int high = symbols.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (cumulative[mid] <= value) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public byte[] compress(String input) {
+        BitOutput output = new BitOutput(input.length() / 2 + 8);
+        compress(input, output);
+        return output.toByteArray();
+    }
+
+    // Escribe los bits del mensaje sin rellenar el ultimo byte
+    public void compress(String input, BitOutput output) {
+        int low = DEFAULT_LOW;
+        int high = DEFAULT_HIGH;
+        long underflowBits = 0;
+
+        for (int i = 0; i < input.length(); i++) {
+            int slot = slotOf(input.charAt(i));
+            long range = (long) (high - low) + 1;
+            high = (int) (low + (range * cumulative[slot + 1]) / scale - 1);
+            low = (int) (low + (range * cumulative[slot]) / scale);
+
+            while (true) {
+                if ((high & MSD) == (low & MSD)) {
+                    int bit = (high & MSD) != 0 ? 1 : 0;
+                    output.writeBit(bit);
+                    output.writeRepeated(bit ^ 1, underflowBits);
+                    underflowBits = 0;
+                } else {
+                    if ((low & SSD) != 0 && (high & SSD) == 0) {
+                        underflowBits++;
+                        low &= TOO;
+                        high |= SSD;
+                    } else {
+                        break;
+                    }
+                }
+                low <<= 1;
+                high <<= 1;
+                high |= 1;
+                low &= 0xFFFF;
+                high &= 0xFFFF;
+            }
+        }
+
+        int finalBit = (low & SSD) != 0 ? 1 : 0;
+        output.writeBit(finalBit);
+        output.writeRepeated(finalBit ^ 1, underflowBits + 1);
+    }
+
+    public String decompress(byte[] input, int size) throws RuntimeException {
+        return decompress(new BitInput(input), size);
+    }
+
+    public String decompress(BitInput input, int size) throws RuntimeException {
+        StringBuilder retval = new StringBuilder(size);
+        int code = 0;
+        int low = DEFAULT_LOW;
+        int high = DEFAULT_HIGH;
+
+        for (int i = 0; i < NUMBER_BITS; i++) {
+            code <<= 1;
+            code |= input.readBit();
+        }
+
+        for (int i = 0; i < size; i++) {
+            long range = (long) (high - low) + 1;
+            int scaledValue = (int) (((long)(code - low + 1) * scale - 1) / range);
+
+            if (scaledValue < 0 || scaledValue >= scale) throw new RuntimeException("Decoding Error");
+            int slot = findSlot(scaledValue);
+
+            retval.append(symbols[slot]);
+
+            high = (int) (low + (range * cumulative[slot + 1]) / scale - 1);
+            low = (int) (low + (range * cumulative[slot]) / scale);
+
+            while (true) {
+                if ((high & MSD) == (low & MSD)) {
+                    // Shift out the most significant bit
+                } else {
+                    if ((low & SSD) == SSD && (high & SSD) == 0) {
+                        code ^= SSD;
+                        low &= TOO;
+                        high |= SSD;
+                    } else {
+                        break;
+                    }
+                }
+                low <<= 1;
+                high <<= 1;
+                high |= 1;
+                code <<= 1;
+                low &= 0xFFFF;
+                high &= 0xFFFF;
+                code &= 0xFFFF;
+                code |= input.readBit();
+            }
+        }
+        return retval.toString();
+    }
+
+
+}
@@ -0,0 +1,823 @@
+package org.example;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+class BTree implements Inventory {
+    static final int DEFAULT_ORDER = 128;
+
+    volatile BTreeNode root;
+    int order;
+    Map<PackedName, Book> bookIndexByName;
+    Map<String, Book> bookIndexByIsbn;
+    // Autor, categoria, precio y cantidad; se mantienen junto con los dos de arriba
+    final SecondaryIndexes secondary = new SecondaryIndexes();
+    // Busqueda de titulos por prefijo y aproximada; null hasta enableTitleIndex
+    volatile TitleIndex titles;
+    final InventoryMetrics metrics;
+    CompressionStats compressionStats;
+    NameModel nameModel;
+    // Bitacora de operaciones aplicadas; null si el arbol no es durable
+    OperationJournal journal;
+    // Modo concurrente: los escritores bajan con latch coupling, las busquedas por
+    // nombre e ISBN van a los indices sin bloqueo y los recorridos por rango leen
+    // las hojas de forma optimista. rootLatch protege los cambios de raiz.
+    final boolean concurrent;
+    private final ReentrantLock rootLatch;
+
+    public BTree() {
+        this(DEFAULT_ORDER);
+    }
+
+    // order = maximo de llaves por nodo
+    public BTree(int order) {
+        this(order, false);
+    }
+
+    public BTree(int order, boolean concurrent) {
+        if (order < 3) {
+            throw new IllegalArgumentException("El orden del arbol debe ser al menos 3: " + order);
+        }
+        this.order = order;
+        this.metrics = new InventoryMetrics(this, order);
+        this.root = null;
+        this.concurrent = concurrent;
+        this.rootLatch = concurrent ? new ReentrantLock() : null;
+        this.bookIndexByName = newIndex();
+        this.bookIndexByIsbn = newIndex();
+        this.compressionStats = new CompressionStats();
+        this.nameModel = NameModel.RAW_ONLY;
+    }
+
+    // Arbol que admite varios escritores y lectores a la vez. La carga masiva,
+    // trainNameModel/useNameModel y los recorridos por firstLeaf siguen pidiendo
+    // que no haya escritores en ese momento.
+    public static BTree concurrent() {
+        return new BTree(DEFAULT_ORDER, true);
+    }
+
+    private <K> Map<K, Book> newIndex() {
+        return concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    private void lockRoot() {
+        if (rootLatch != null) {
+            rootLatch.lock();
+        }
+    }
+
+    private void unlockRoot() {
+        if (rootLatch != null) {
+            rootLatch.unlock();
+        }
+    }
+
+    public int minKeys() {
+        return (order - 1) / 2;
+    }
+
+    // Con bitacora cada cambio entra como escritor, asi un checkpoint nunca ve un
+    // cambio sin su registro (o al reves)
+    private OperationJournal enterWriter() {
+        OperationJournal log = journal;
+        if (log != null) {
+            log.enterWriter();
+        }
+        return log;
+    }
+
+    private static void exitWriter(OperationJournal log) {
+        if (log != null) {
+            log.exitWriter();
+        }
+    }
+
+    public void insert(Book book) {
+        OperationJournal log = enterWriter();
+        try {
+            insertBook(book);
+        } finally {
+            exitWriter(log);
+        }
+    }
+
+    private void insertBook(Book book) {
+        long start = System.nanoTime();
+        if (concurrent) {
+            insertLatched(book);
+        } else {
+            book = register(book);
+            if (book != null) {
+                insertIntoTree(book);
+                if (journal != null) {
+                    journal.logInsert(book);
+                }
+            } else {
+                metrics.rejectedInserts.increment();
+            }
+        }
+        metrics.record(InventoryMetrics.INSERT, start);
+    }
+
+    // Registra el libro en los indices con el nombre codificado por el modelo del
+    // arbol; null si el nombre o el ISBN ya existen
+    private Book register(Book book) {
+        String isbn = book.isbn();
+
+
+        if (bookIndexByIsbn.containsKey(isbn)) {
+            return null;
+        }
+
+        book = book.packedWith(nameModel);
+        PackedName name = book.packedName();
+
+        if (bookIndexByName.containsKey(name)) {
+            return null;
+        }
+
+        bookIndexByName.put(name, book);
+        bookIndexByIsbn.put(isbn, book);
+        secondary.add(book);
+        indexTitle(book);
+        return book;
+    }
+
+    private void insertIntoTree(Book book) {
+        BTreeNode leaf = lockLeafForInsert(book.isbnKey(), book.isbn());
+        leaf.insertAt(leaf.findKey(book.isbnKey(), book.isbn()), book);
+        leaf.unlatch();
+    }
+
+    // En modo concurrente el ISBN repetido se detecta en la hoja, con su cerrojo
+    // tomado; asi el arbol y los indices cambian juntos para cada ISBN
+    private void insertLatched(Book book) {
+        book = book.packedWith(nameModel);
+        long key = book.isbnKey();
+        String isbn = book.isbn();
+        BTreeNode leaf = lockLeafForInsert(key, isbn);
+        try {
+            int i = leaf.findKey(key, isbn);
+            if (leaf.isKeyAt(i, key, isbn) || bookIndexByName.putIfAbsent(book.packedName(), book) != null) {
+                metrics.rejectedInserts.increment();
+                return;
+            }
+            bookIndexByIsbn.put(isbn, book);
+            secondary.add(book);
+            indexTitle(book);
+            leaf.insertAt(i, book);
+            if (journal != null) {
+                journal.logInsert(book);
+            }
+        } finally {
+            leaf.unlatch();
+        }
+    }
+
+    // Parte la raiz si esta llena y baja hasta la hoja; la hoja queda tomada
+    private BTreeNode lockLeafForInsert(long key, String isbn) {
+        BTreeNode node;
+        lockRoot();
+        try {
+            if (root == null) {
+                root = new BTreeNode(true, order, concurrent);
+                metrics.shape(1, 1, 0);
+            }
+            node = root;
+            node.latch();
+            if (node.isFull()) {
+                BTreeNode newNode = new BTreeNode(false, order, concurrent);
+                newNode.latch();
+                newNode.children[0] = node;
+                newNode.splitChild(0, node);
+                metrics.rootSplit(node.isLeaf);
+                root = newNode;
+                node.unlatch();
+                node = newNode;
+            }
+        } finally {
+            unlockRoot();
+        }
+        return node.lockLeafForInsert(key, isbn, metrics);
+    }
+
+    // Baja sin modificar nada hasta la hoja de la llave; la hoja queda tomada
+    private BTreeNode lockLeaf(long key, String isbn) {
+        BTreeNode node;
+        lockRoot();
+        try {
+            node = root;
+            if (node == null) {
+                return null;
+            }
+            node.latch();
+        } finally {
+            unlockRoot();
+        }
+        while (!node.isLeaf) {
+            BTreeNode child = node.children[node.childIndex(key, isbn)];
+            child.latch();
+            node.unlatch();
+            node = child;
+        }
+        return node;
+    }
+
+    // Carga masiva de una racha de INSERT. Los duplicados se descartan en el orden
+    // del archivo (igual que insert); lo aceptado se ordena y, si el arbol esta
+    // vacio o la racha es grande comparada con el, se reconstruye de abajo hacia arriba.
+    public void insertAll(List<Book> run) {
+        OperationJournal log = enterWriter();
+        try {
+            insertRun(run);
+        } finally {
+            exitWriter(log);
+        }
+    }
+
+    private void insertRun(List<Book> run) {
+        if (concurrent) {
+            for (Book book : run) {
+                insertBook(book);
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        int existing = size();
+        List<Book> accepted = new ArrayList<>(run.size());
+        for (Book book : run) {
+            book = register(book);
+            if (book != null) {
+                accepted.add(book);
+            }
+        }
+        metrics.bulkInserted.add(accepted.size());
+        metrics.rejectedInserts.add(run.size() - accepted.size());
+        if (accepted.isEmpty()) {
+            metrics.record(InventoryMetrics.BULK, start);
+            return;
+        }
+
+        if (root != null && accepted.size() < existing / 4) {
+            for (Book book : accepted) {
+                insertIntoTree(book);
+            }
+        } else {
+            Book[] sorted = accepted.toArray(new Book[0]);
+            Arrays.sort(sorted);
+            if (root != null) {
+                sorted = mergeWithLeaves(sorted, existing);
+            }
+            root = buildFromSorted(sorted, order, false);
+            recountShape();
+        }
+
+        if (journal != null) {
+            for (Book book : accepted) {
+                journal.logInsert(book);
+            }
+        }
+        metrics.record(InventoryMetrics.BULK, start);
+    }
+
+    // Recuenta altura y nodos despues de armar el arbol de una vez (sin escritores)
+    private void recountShape() {
+        long height = 0;
+        long inner = 0;
+        List<BTreeNode> level = root == null ? List.of() : List.of(root);
+        while (!level.isEmpty()) {
+            height++;
+            if (level.get(0).isLeaf) {
+                break;
+            }
+            inner += level.size();
+            List<BTreeNode> below = new ArrayList<>();
+            for (BTreeNode node : level) {
+                for (int i = 0; i <= node.size; i++) {
+                    below.add(node.children[i]);
+                }
+            }
+            level = below;
+        }
+        metrics.shape(height, level.size(), inner);
+    }
+
+    // Carga un arbol vacio con libros ya ordenados por ISBN sin descartar nombres
+    // repetidos; nameIndexed dice a cuales apunta el indice por nombre
+    void restore(Book[] sorted, boolean[] nameIndexed) {
+        if (root != null) {
+            throw new IllegalStateException("restore solo se usa con un arbol vacio");
+        }
+        for (int i = 0; i < sorted.length; i++) {
+            Book book = sorted[i].packedWith(nameModel);
+            sorted[i] = book;
+            bookIndexByIsbn.put(book.isbn(), book);
+            secondary.add(book);
+            indexTitle(book);
+            if (nameIndexed[i]) {
+                bookIndexByName.put(book.packedName(), book);
+            }
+        }
+        root = buildFromSorted(sorted, order, concurrent);
+        recountShape();
+    }
+
+    private Book[] mergeWithLeaves(Book[] sorted, int existing) {
+        Book[] merged = new Book[existing + sorted.length];
+        int n = 0;
+        int j = 0;
+        for (BTreeNode leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                while (j < sorted.length && sorted[j].compareTo(leaf.books[i]) < 0) {
+                    merged[n++] = sorted[j++];
+                }
+                merged[n++] = leaf.books[i];
+            }
+        }
+        while (j < sorted.length) {
+            merged[n++] = sorted[j++];
+        }
+        return merged;
+    }
+
+    // Construye el arbol nivel por nivel con nodos llenos, en tiempo lineal
+    static BTreeNode buildFromSorted(Book[] sorted, int order, boolean latched) {
+        if (sorted.length == 0) {
+            return null;
+        }
+        int minKeys = (order - 1) / 2;
+
+        int[] sizes = groupSizes(sorted.length, order, minKeys);
+        BTreeNode[] level = new BTreeNode[sizes.length];
+        long[] firstKeys = new long[sizes.length];
+        String[] firstIsbns = new String[sizes.length];
+        int pos = 0;
+        for (int g = 0; g < sizes.length; g++) {
+            BTreeNode leaf = new BTreeNode(true, order, latched);
+            for (int i = 0; i < sizes[g]; i++) {
+                Book book = sorted[pos++];
+                leaf.keys[i] = book.isbnKey();
+                leaf.books[i] = book;
+            }
+            leaf.size = sizes[g];
+            if (g > 0) {
+                level[g - 1].next = leaf;
+            }
+            level[g] = leaf;
+            firstKeys[g] = leaf.keys[0];
+            firstIsbns[g] = leaf.books[0].isbn();
+        }
+
+        while (level.length > 1) {
+            sizes = groupSizes(level.length, order + 1, minKeys + 1);
+            BTreeNode[] parents = new BTreeNode[sizes.length];
+            long[] parentKeys = new long[sizes.length];
+            String[] parentIsbns = new String[sizes.length];
+            pos = 0;
+            for (int g = 0; g < sizes.length; g++) {
+                BTreeNode parent = new BTreeNode(false, order, latched);
+                parentKeys[g] = firstKeys[pos];
+                parentIsbns[g] = firstIsbns[pos];
+                for (int c = 0; c < sizes[g]; c++, pos++) {
+                    parent.children[c] = level[pos];
+                    if (c > 0) {
+                        parent.keys[c - 1] = firstKeys[pos];
+                        parent.isbns[c - 1] = firstIsbns[pos];
+                    }
+                }
+                parent.size = sizes[g] - 1;
+                parents[g] = parent;
+            }
+            level = parents;
+            firstKeys = parentKeys;
+            firstIsbns = parentIsbns;
+        }
+        return level[0];
+    }
+
+    // Reparte n elementos en grupos de "capacity"; el ultimo se equilibra con el
+    // penultimo para no quedar por debajo del minimo
+    private static int[] groupSizes(int n, int capacity, int minimum) {
+        int groups = (n + capacity - 1) / capacity;
+        int[] sizes = new int[groups];
+        Arrays.fill(sizes, capacity);
+        int last = n - capacity * (groups - 1);
+        sizes[groups - 1] = last;
+        if (groups > 1 && last < minimum) {
+            int total = capacity + last;
+            sizes[groups - 2] = total - total / 2;
+            sizes[groups - 1] = total / 2;
+        }
+        return sizes;
+    }
+
+    // Los libros son inmutables: se reemplaza el registro por su version actualizada
+    public boolean updateBook(String isbn, Map<String, Object> updateData) {
+        long start = System.nanoTime();
+        OperationJournal log = enterWriter();
+        try {
+            boolean updated = update(isbn, updateData);
+            if (!updated) {
+                metrics.patchMisses.increment();
+            }
+            return updated;
+        } finally {
+            exitWriter(log);
+            metrics.record(InventoryMetrics.PATCH, start);
+        }
+    }
+
+    private boolean update(String isbn, Map<String, Object> updateData) {
+        long key = Book.isbnKey(isbn);
+        BTreeNode leaf = lockLeaf(key, isbn);
+        if (leaf == null) {
+            return false;
+        }
+
+        try {
+            int idx = leaf.findKey(key, isbn);
+            if (!leaf.isKeyAt(idx, key, isbn)) {
+                return false;
+            }
+
+            Book originalBook = leaf.books[idx];
+            Book updatedBook = originalBook.withUpdates(updateData);
+            leaf.books[idx] = updatedBook;
+
+            PackedName oldName = originalBook.packedName();
+            PackedName newName = updatedBook.packedName();
+
+            if (!oldName.equals(newName)) {
+                bookIndexByName.remove(oldName);
+                compressionStats.invalidate(originalBook.name());
+                TitleIndex index = titles;
+                if (index != null) {
+                    index.rename(originalBook.name(), updatedBook.name(), isbn);
+                }
+            }
+            bookIndexByName.put(newName, updatedBook);
+            bookIndexByIsbn.put(isbn, updatedBook);
+            secondary.replace(originalBook, updatedBook);
+
+            if (journal != null) {
+                journal.logPatch(isbn, updateData);
+            }
+            return true;
+        } finally {
+            leaf.unlatch();
+        }
+    }
+
+    // Antes de bajar se garantiza que el hijo tenga mas del minimo de llaves, asi
+    // que despues del primer nivel la raiz ya no cambia y se suelta rootLatch
+    public void removeBook(String isbn) {
+        long start = System.nanoTime();
+        OperationJournal log = enterWriter();
+        try {
+            if (!remove(isbn)) {
+                metrics.deleteMisses.increment();
+            }
+        } finally {
+            exitWriter(log);
+        }
+        metrics.record(InventoryMetrics.DELETE, start);
+    }
+
+    private boolean remove(String isbn) {
+        long key = Book.isbnKey(isbn);
+        lockRoot();
+        boolean holdingRoot = true;
+        BTreeNode node = root;
+        if (node == null) {
+            unlockRoot();
+            return false;
+        }
+        node.latch();
+
+        try {
+            while (!node.isLeaf) {
+                int idx = node.childIndex(key, isbn);
+                BTreeNode child = node.children[idx];
+                child.latch();
+
+                if (child.size <= minKeys()) {
+                    idx = node.fill(idx, minKeys(), metrics);
+                    child = node.children[idx];
+                }
+                if (holdingRoot) {
+                    if (node.size == 0) {
+                        root = child;
+                        metrics.rootCollapse();
+                    }
+                    unlockRoot();
+                    holdingRoot = false;
+                }
+                node.unlatch();
+                node = child;
+            }
+
+            int idx = node.findKey(key, isbn);
+            boolean found = node.isKeyAt(idx, key, isbn);
+            if (found) {
+                Book bookToRemove = node.books[idx];
+                node.removeAt(idx);
+                bookIndexByName.remove(bookToRemove.packedName());
+                bookIndexByIsbn.remove(isbn);
+                secondary.remove(bookToRemove);
+                compressionStats.invalidate(bookToRemove.name());
+                TitleIndex index = titles;
+                if (index != null) {
+                    index.remove(bookToRemove.name(), isbn);
+                }
+
+                if (journal != null) {
+                    journal.logDelete(isbn);
+                }
+            }
+            if (holdingRoot && node.size == 0) {
+                root = null;
+                metrics.shape(0, 0, 0);
+            }
+            return found;
+        } finally {
+            node.unlatch();
+            if (holdingRoot) {
+                unlockRoot();
+            }
+        }
+    }
+
+    // Sin cerrojos: los libros son inmutables y en modo concurrente los indices son
+    // ConcurrentHashMap que se actualizan con la hoja del libro tomada
+    public Book searchByName(String name) {
+        long start = System.nanoTime();
+        Book book = bookIndexByName.get(nameModel.probe(name));
+        if (book == null) {
+            metrics.searchMisses.increment();
+        }
+        metrics.record(InventoryMetrics.SEARCH, start);
+        return book;
+    }
+
+    public Book findBookByIsbn(String isbn) {
+        return bookIndexByIsbn.get(isbn);
+    }
+
+    // Consultas por los indices secundarios. Autor y categoria vienen ordenados por
+    // ISBN; los rangos (extremos incluidos) por precio o cantidad y luego ISBN.
+    public List<Book> findByAuthor(String author) {
+        return secondary.byAuthor(author);
+    }
+
+    public List<Book> findByCategory(String category) {
+        return secondary.byCategory(category);
+    }
+
+    public List<Book> rangeByPrice(long fromCents, long toCents) {
+        return secondary.priceRange(fromCents, toCents);
+    }
+
+    public List<Book> rangeByQuantity(int from, int to) {
+        return secondary.quantityRange(from, to);
+    }
+
+    // Arma el indice de titulos con los libros actuales; desde ahi lo mantienen
+    // insert, updateBook y removeBook. Igual que useNameModel, sin escritores activos.
+    public void enableTitleIndex() {
+        if (titles != null) {
+            return;
+        }
+        TitleIndex index = new TitleIndex();
+        for (BTreeNode leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                index.add(leaf.books[i].name(), leaf.books[i].isbn());
+            }
+        }
+        titles = index;
+    }
+
+    private void indexTitle(Book book) {
+        TitleIndex index = titles;
+        if (index != null) {
+            index.add(book.name(), book.isbn());
+        }
+    }
+
+    // Titulos que empiezan con el prefijo, sin distinguir mayusculas, acentos ni
+    // puntuacion; en orden de titulo normalizado
+    public List<Book> searchTitlesByPrefix(String prefix, int limit) {
+        return booksFor(titleIndex().prefix(prefix, limit));
+    }
+
+    // Los limit titulos mas cercanos con distancia de edicion <= maxDistance
+    public List<Book> searchTitlesFuzzy(String query, int maxDistance, int limit) {
+        return booksFor(titleIndex().fuzzy(query, maxDistance, limit));
+    }
+
+    private TitleIndex titleIndex() {
+        TitleIndex index = titles;
+        if (index == null) {
+            throw new IllegalStateException("El indice de titulos no esta activo (enableTitleIndex)");
+        }
+        return index;
+    }
+
+    private List<Book> booksFor(List<String> isbns) {
+        List<Book> books = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            Book book = bookIndexByIsbn.get(isbn);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    public BTreeNode firstLeaf() {
+        BTreeNode current = root;
+        while (current != null && !current.isLeaf) {
+            current = current.children[0];
+        }
+        return current;
+    }
+
+    // Recorrido ordenado por ISBN sobre las hojas enlazadas, ambos extremos incluidos
+    public List<Book> rangeByIsbn(String fromIsbn, String toIsbn) {
+        if (concurrent) {
+            return rangeOptimistic(fromIsbn, toIsbn);
+        }
+        List<Book> result = new ArrayList<>();
+        BTreeNode root = this.root;
+        if (root == null) {
+            return result;
+        }
+
+        long fromKey = Book.isbnKey(fromIsbn);
+        long toKey = Book.isbnKey(toIsbn);
+        BTreeNode leaf = root.findLeaf(fromKey, fromIsbn);
+        int i = leaf.findKey(fromKey, fromIsbn);
+
+        while (leaf != null) {
+            for (; i < leaf.size; i++) {
+                if (leaf.books[i].compareIsbn(toKey, toIsbn) > 0) {
+                    return result;
+                }
+                result.add(leaf.books[i]);
+            }
+            leaf = leaf.next;
+            i = 0;
+        }
+        return result;
+    }
+
+    // Version sin cerrojos del recorrido: cada hoja se copia y luego se valida su
+    // version; si un escritor la toco mientras tanto se vuelve a bajar desde la raiz
+    // a partir del ultimo libro entregado. Una lectura a medias puede fallar con
+    // cualquier excepcion, que se trata igual que una validacion fallida.
+    private List<Book> rangeOptimistic(String fromIsbn, String toIsbn) {
+        List<Book> result = new ArrayList<>();
+        long fromKey = Book.isbnKey(fromIsbn);
+        long toKey = Book.isbnKey(toIsbn);
+        Book[] copy = new Book[order];
+        Book last = null;
+
+        while (true) {
+            long key = last == null ? fromKey : last.isbnKey();
+            String isbn = last == null ? fromIsbn : last.isbn();
+            BTreeNode node = root;
+            if (node == null) {
+                return result;
+            }
+            long stamp = node.latch.tryOptimisticRead();
+            try {
+                // La raiz pudo cambiar antes de leer su version
+                if (node != root) {
+                    stamp = 0;
+                }
+                while (stamp != 0 && !node.isLeaf) {
+                    BTreeNode child = node.children[node.childIndex(key, isbn)];
+                    long childStamp = child.latch.tryOptimisticRead();
+                    if (!node.latch.validate(stamp)) {
+                        stamp = 0;
+                        break;
+                    }
+                    node = child;
+                    stamp = childStamp;
+                }
+            } catch (RuntimeException e) {
+                stamp = 0;
+            }
+
+            while (stamp != 0) {
+                int n = 0;
+                BTreeNode next;
+                long nextStamp = 0;
+                try {
+                    int i = last == null ? node.findKey(fromKey, fromIsbn) : node.childIndex(key, isbn);
+                    for (; i < node.size; i++) {
+                        copy[n++] = node.books[i];
+                    }
+                    next = node.next;
+                    if (next != null) {
+                        nextStamp = next.latch.tryOptimisticRead();
+                    }
+                } catch (RuntimeException e) {
+                    break;
+                }
+                if (!node.latch.validate(stamp)) {
+                    break;
+                }
+
+                for (int j = 0; j < n; j++) {
+                    if (copy[j].compareIsbn(toKey, toIsbn) > 0) {
+                        return result;
+                    }
+                    result.add(copy[j]);
+                    last = copy[j];
+                }
+                if (next == null) {
+                    return result;
+                }
+                if (last != null) {
+                    key = last.isbnKey();
+                    isbn = last.isbn();
+                }
+                node = next;
+                stamp = nextStamp;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public int size() {
+        return bookIndexByIsbn.size();
+    }
+
+    @Override
+    public InventoryMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public CompressionStats compressionStats() {
+        return compressionStats;
+    }
+
+    // Entrena un modelo comun con todos los nombres del arbol y vuelve a codificar
+    // cada libro con el. Si el modelo no se paga (nombres comprimidos + el propio
+    // modelo ocupan mas que los nombres en UTF-8) se dejan los nombres sin comprimir.
+    public void trainNameModel() {
+        List<String> names = new ArrayList<>(size());
+        long rawBytes = 0;
+        for (BTreeNode leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                String name = leaf.books[i].name();
+                names.add(name);
+                rawBytes += NameModel.RAW_ONLY.pack(name).length();
+            }
+        }
+
+        NameModel model = NameModel.train(names);
+        long packedBytes = model.serializedSize();
+        for (String name : names) {
+            packedBytes += model.pack(name).length();
+        }
+        useNameModel(packedBytes < rawBytes ? model : NameModel.RAW_ONLY);
+        metrics.nameModel(rawBytes, Math.min(packedBytes, rawBytes));
+    }
+
+    public void useNameModel(NameModel model) {
+        Map<PackedName, Book> byName = newIndex();
+        secondary.clear();
+        for (BTreeNode leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                Book old = leaf.books[i];
+                Book book = old.packedWith(model);
+                leaf.books[i] = book;
+                // Solo se indexa si el nombre apuntaba a este libro (un PATCH puede repetir nombres)
+                if (bookIndexByName.get(old.packedName()) == old) {
+                    byName.put(book.packedName(), book);
+                }
+                bookIndexByIsbn.put(book.isbn(), book);
+                secondary.add(book);
+            }
+        }
+        nameModel = model;
+        bookIndexByName = byName;
+    }
+
+    // Bytes que ocupan los nombres guardados en el arbol
+    public long packedNameBytes() {
+        long total = 0;
+        for (BTreeNode leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                total += leaf.books[i].packedName().length();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,312 @@
+package org.example;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+// Nodo de un arbol B+: las hojas guardan los libros y estan enlazadas entre si,
+// los nodos internos solo guardan llaves separadoras (ISBN).
+class BTreeNode {
+    boolean isLeaf;
+    int size;
+    long[] keys;
+    String[] isbns;
+    Book[] books;
+    BTreeNode[] children;
+    BTreeNode next;
+    // Cerrojo del nodo en un arbol concurrente (null en el modo normal). Los
+    // escritores lo toman en exclusivo; los lectores solo leen su version.
+    final StampedLock latch;
+
+    public BTreeNode(boolean isLeaf, int maxKeys) {
+        this(isLeaf, maxKeys, false);
+    }
+
+    public BTreeNode(boolean isLeaf, int maxKeys, boolean latched) {
+        this.isLeaf = isLeaf;
+        this.latch = latched ? new StampedLock() : null;
+        this.size = 0;
+        this.keys = new long[maxKeys];
+        if (isLeaf) {
+            this.books = new Book[maxKeys];
+        } else {
+            this.isbns = new String[maxKeys];
+            this.children = new BTreeNode[maxKeys + 1];
+        }
+    }
+
+    public void latch() {
+        if (latch != null) {
+            latch.asWriteLock().lock();
+        }
+    }
+
+    public void unlatch() {
+        if (latch != null) {
+            latch.asWriteLock().unlock();
+        }
+    }
+
+    public boolean isFull() {
+        return size == keys.length;
+    }
+
+    public String isbnAt(int i) {
+        return isLeaf ? books[i].isbn() : isbns[i];
+    }
+
+    int compareAt(int i, long key, String isbn) {
+        return Book.compareIsbn(keys[i], isbnAt(i), key, isbn);
+    }
+
+    // Busqueda binaria: primera posicion cuya llave es >= a la buscada
+    public int findKey(long key, String isbn) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareAt(mid, key, isbn) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Hijo por el que se baja: las llaves iguales al separador estan a la derecha
+    public int childIndex(long key, String isbn) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareAt(mid, key, isbn) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public boolean isKeyAt(int idx, long key, String isbn) {
+        return idx < size && compareAt(idx, key, isbn) == 0;
+    }
+
+    public BTreeNode findLeaf(long key, String isbn) {
+        BTreeNode current = this;
+        while (!current.isLeaf) {
+            current = current.children[current.childIndex(key, isbn)];
+        }
+        return current;
+    }
+
+    // Baja hasta la hoja de la llave partiendo antes los hijos llenos. Con cerrojos
+    // (latch coupling) este nodo llega tomado, se toma el hijo y se suelta el padre:
+    // como el hijo ya no esta lleno, nada de lo que pase abajo sube hasta el padre.
+    // La hoja se devuelve tomada.
+    public BTreeNode lockLeafForInsert(long key, String isbn, InventoryMetrics metrics) {
+        BTreeNode node = this;
+        while (!node.isLeaf) {
+            int i = node.childIndex(key, isbn);
+            BTreeNode child = node.children[i];
+            child.latch();
+
+            if (child.isFull()) {
+                node.splitChild(i, child);
+                metrics.split(child.isLeaf);
+                if (node.compareAt(i, key, isbn) <= 0) {
+                    child.unlatch();
+                    child = node.children[i + 1];
+                    child.latch();
+                }
+            }
+            node.unlatch();
+            node = child;
+        }
+        return node;
+    }
+
+    public void insertAt(int i, Book book) {
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(books, i, books, i + 1, size - i);
+        keys[i] = book.isbnKey();
+        books[i] = book;
+        size++;
+    }
+
+    // Divide el hijo lleno y; en hojas el separador se copia, en internos sube
+    public void splitChild(int i, BTreeNode y) {
+        BTreeNode z = new BTreeNode(y.isLeaf, y.keys.length, y.latch != null);
+        long separatorKey;
+        String separatorIsbn;
+
+        if (y.isLeaf) {
+            int half = y.size / 2;
+            z.size = y.size - half;
+            System.arraycopy(y.keys, half, z.keys, 0, z.size);
+            System.arraycopy(y.books, half, z.books, 0, z.size);
+            Arrays.fill(y.books, half, y.size, null);
+            y.size = half;
+
+            z.next = y.next;
+            y.next = z;
+            separatorKey = z.keys[0];
+            separatorIsbn = z.books[0].isbn();
+        } else {
+            int mid = y.size / 2;
+            separatorKey = y.keys[mid];
+            separatorIsbn = y.isbns[mid];
+            z.size = y.size - mid - 1;
+            System.arraycopy(y.keys, mid + 1, z.keys, 0, z.size);
+            System.arraycopy(y.isbns, mid + 1, z.isbns, 0, z.size);
+            System.arraycopy(y.children, mid + 1, z.children, 0, z.size + 1);
+            Arrays.fill(y.isbns, mid, y.size, null);
+            Arrays.fill(y.children, mid + 1, y.size + 1, null);
+            y.size = mid;
+        }
+
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(isbns, i, isbns, i + 1, size - i);
+        System.arraycopy(children, i + 1, children, i + 2, size - i);
+        keys[i] = separatorKey;
+        isbns[i] = separatorIsbn;
+        children[i + 1] = z;
+        size++;
+    }
+
+
+    void removeAt(int idx) {
+        System.arraycopy(keys, idx + 1, keys, idx, size - idx - 1);
+        if (isLeaf) {
+            System.arraycopy(books, idx + 1, books, idx, size - idx - 1);
+            books[size - 1] = null;
+        } else {
+            System.arraycopy(isbns, idx + 1, isbns, idx, size - idx - 1);
+            isbns[size - 1] = null;
+        }
+        size--;
+    }
+
+    // Devuelve la posicion del hijo que quedo con la llave buscada. Con cerrojos,
+    // este nodo y children[idx] llegan tomados; los hermanos se toman aqui y al
+    // salir solo sigue tomado el hijo devuelto.
+    public int fill(int idx, int minKeys, InventoryMetrics metrics) {
+        BTreeNode child = children[idx];
+        BTreeNode prev = idx != 0 ? children[idx - 1] : null;
+        BTreeNode next = idx != size ? children[idx + 1] : null;
+        if (prev != null) {
+            prev.latch();
+        }
+        if (next != null) {
+            next.latch();
+        }
+
+        int target = idx;
+        if (prev != null && prev.size > minKeys) {
+            borrowFromPrev(idx);
+            metrics.borrows.increment();
+        } else if (next != null && next.size > minKeys) {
+            borrowFromNext(idx);
+            metrics.borrows.increment();
+        } else if (next != null) {
+            merge(idx);
+            metrics.merge(child.isLeaf);
+        } else {
+            merge(idx - 1);
+            metrics.merge(child.isLeaf);
+            target = idx - 1;
+        }
+
+        if (next != null) {
+            next.unlatch();
+        }
+        if (target == idx) {
+            if (prev != null) {
+                prev.unlatch();
+            }
+        } else {
+            child.unlatch();
+        }
+        return target;
+    }
+
+    public void borrowFromPrev(int idx) {
+        BTreeNode child = children[idx];
+        BTreeNode sibling = children[idx - 1];
+        int last = sibling.size - 1;
+
+        System.arraycopy(child.keys, 0, child.keys, 1, child.size);
+        if (child.isLeaf) {
+            System.arraycopy(child.books, 0, child.books, 1, child.size);
+            child.keys[0] = sibling.keys[last];
+            child.books[0] = sibling.books[last];
+            sibling.books[last] = null;
+
+            keys[idx - 1] = child.keys[0];
+            isbns[idx - 1] = child.books[0].isbn();
+        } else {
+            System.arraycopy(child.isbns, 0, child.isbns, 1, child.size);
+            System.arraycopy(child.children, 0, child.children, 1, child.size + 1);
+            child.keys[0] = keys[idx - 1];
+            child.isbns[0] = isbns[idx - 1];
+            child.children[0] = sibling.children[last + 1];
+
+            keys[idx - 1] = sibling.keys[last];
+            isbns[idx - 1] = sibling.isbns[last];
+            sibling.isbns[last] = null;
+            sibling.children[last + 1] = null;
+        }
+
+        child.size++;
+        sibling.size--;
+    }
+
+    public void borrowFromNext(int idx) {
+        BTreeNode child = children[idx];
+        BTreeNode sibling = children[idx + 1];
+
+        if (child.isLeaf) {
+            child.keys[child.size] = sibling.keys[0];
+            child.books[child.size] = sibling.books[0];
+            child.size++;
+            sibling.removeAt(0);
+
+            keys[idx] = sibling.keys[0];
+            isbns[idx] = sibling.books[0].isbn();
+        } else {
+            child.keys[child.size] = keys[idx];
+            child.isbns[child.size] = isbns[idx];
+            child.children[child.size + 1] = sibling.children[0];
+            child.size++;
+
+            keys[idx] = sibling.keys[0];
+            isbns[idx] = sibling.isbns[0];
+            System.arraycopy(sibling.children, 1, sibling.children, 0, sibling.size);
+            sibling.children[sibling.size] = null;
+            sibling.removeAt(0);
+        }
+    }
+
+    public void merge(int idx) {
+        BTreeNode child = children[idx];
+        BTreeNode sibling = children[idx + 1];
+
+        if (child.isLeaf) {
+            System.arraycopy(sibling.keys, 0, child.keys, child.size, sibling.size);
+            System.arraycopy(sibling.books, 0, child.books, child.size, sibling.size);
+            child.size += sibling.size;
+            child.next = sibling.next;
+        } else {
+            child.keys[child.size] = keys[idx];
+            child.isbns[child.size] = isbns[idx];
+            System.arraycopy(sibling.keys, 0, child.keys, child.size + 1, sibling.size);
+            System.arraycopy(sibling.isbns, 0, child.isbns, child.size + 1, sibling.size);
+            System.arraycopy(sibling.children, 0, child.children, child.size + 1, sibling.size + 1);
+            child.size += sibling.size + 1;
+        }
+
+        System.arraycopy(children, idx + 2, children, idx + 1, size - idx - 1);
+        children[size] = null;
+        removeAt(idx);
+    }
+
+}
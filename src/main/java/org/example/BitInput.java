@@ -0,0 +1,43 @@
+package org.example;
+import java.nio.ByteBuffer;
+
+// Lector de bits (MSB primero) sobre un ByteBuffer; al acabarse la entrada
+// devuelve ceros, que es lo que espera el decodificador aritmetico.
+final class BitInput {
+    private final ByteBuffer in;
+    private int current;
+    private int currentBits;
+
+    public BitInput(ByteBuffer in) {
+        this.in = in;
+    }
+
+    public BitInput(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    public int readBit() {
+        if (currentBits == 0) {
+            if (!in.hasRemaining()) {
+                return 0;
+            }
+            current = in.get() & 0xFF;
+            currentBits = 8;
+        }
+        currentBits--;
+        return (current >>> currentBits) & 1;
+    }
+
+    public long readBits(int count) {
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value = (value << 1) | readBit();
+        }
+        return value;
+    }
+
+    // Descarta lo que queda del byte actual
+    public void alignToByte() {
+        currentBits = 0;
+    }
+}
@@ -0,0 +1,87 @@
+package org.example;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Escritor de bits (MSB primero) sobre un byte[] que crece segun se necesite.
+final class BitOutput {
+    private byte[] buffer;
+    private int position;
+    private int current;
+    private int currentBits;
+
+    public BitOutput() {
+        this(64);
+    }
+
+    public BitOutput(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 8)];
+    }
+
+    public void writeBit(int bit) {
+        current = (current << 1) | (bit & 1);
+        if (++currentBits == 8) {
+            putByte(current);
+            current = 0;
+            currentBits = 0;
+        }
+    }
+
+    // Escribe "count" copias del mismo bit (bits pendientes del codificador aritmetico)
+    public void writeRepeated(int bit, long count) {
+        while (count > 0 && currentBits != 0) {
+            writeBit(bit);
+            count--;
+        }
+        int fill = bit == 0 ? 0 : 0xFF;
+        while (count >= 8) {
+            putByte(fill);
+            count -= 8;
+        }
+        while (count > 0) {
+            writeBit(bit);
+            count--;
+        }
+    }
+
+    public void writeBits(long value, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            writeBit((int) (value >>> i));
+        }
+    }
+
+    private void putByte(int value) {
+        if (position == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public long bitLength() {
+        return (long) position * 8 + currentBits;
+    }
+
+    // Completa el ultimo byte con ceros
+    public void flush() {
+        if (currentBits > 0) {
+            putByte(current << (8 - currentBits));
+            current = 0;
+            currentBits = 0;
+        }
+    }
+
+    public void reset() {
+        position = 0;
+        current = 0;
+        currentBits = 0;
+    }
+
+    public byte[] toByteArray() {
+        flush();
+        return Arrays.copyOf(buffer, position);
+    }
+
+    public void writeTo(ByteBuffer out) {
+        flush();
+        out.put(buffer, 0, position);
+    }
+}
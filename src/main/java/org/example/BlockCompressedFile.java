@@ -0,0 +1,317 @@
+package org.example;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Archivo grande (bitacora, CSV de entrada, reporte) comprimido en bloques
+// independientes de blockSize bytes. Cada bloque se empaca por separado con
+// PackedBlock, asi que se comprimen y descomprimen en paralelo y cualquier bloque
+// se puede leer sin tocar los demas:
+//   [magic][version][blockSize][bytes originales][bloque 0][bloque 1]...[indice][posicion del indice][crc32 del indice]
+// El indice tiene por bloque su posicion, largo guardado, codificador y crc32 de
+// lo guardado; el largo original es blockSize salvo en el ultimo bloque.
+final class BlockCompressedFile implements Closeable {
+    static final int BLOCK_SIZE = 1 << 20;
+    static final int BLOCKS_PER_THREAD = 4;
+    private static final int MAGIC = 0x424B435A;
+    private static final int VERSION = 1;
+    private static final int HEADER = 20;
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final long size;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] rawLengths;
+    private final byte[] codecs;
+    private final int[] checksums;
+
+    private BlockCompressedFile(FileChannel channel, int blockSize, long size, int blocks) {
+        this.channel = channel;
+        this.blockSize = blockSize;
+        this.size = size;
+        this.offsets = new long[blocks];
+        this.lengths = new int[blocks];
+        this.rawLengths = new int[blocks];
+        this.codecs = new byte[blocks];
+        this.checksums = new int[blocks];
+    }
+
+    public static long compress(Path in, Path out, int threads) throws IOException {
+        return compress(in, out, PackedBlock.BEST, BLOCK_SIZE, threads);
+    }
+
+    // Lee "in" por bloques, los empaca en "threads" hilos y los escribe en orden.
+    // Como CatalogFile, se escribe en un temporal y se renombra. Devuelve los bytes escritos.
+    public static long compress(Path in, Path out, byte codec, int blockSize, int threads) throws IOException {
+        Path temp = out.resolveSibling(out.getFileName() + ".tmp");
+        ByteBuffer index = ByteBuffer.allocate(64);
+        long position = HEADER;
+        int blocks = 0;
+        try (FileChannel source = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OrderedTasks<PackedBlock> tasks = new OrderedTasks<>(threads, threads * BLOCKS_PER_THREAD)) {
+            long size = source.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putInt(blockSize).putLong(size).flip();
+            writeFully(target, header);
+            int expected = Math.toIntExact((size + blockSize - 1) / blockSize);
+            Varint.putInt(index, expected);
+
+            long read = 0;
+            while (read < size) {
+                byte[] raw = new byte[(int) Math.min(blockSize, size - read)];
+                readFully(source, ByteBuffer.wrap(raw), read);
+                read += raw.length;
+                PackedBlock done = tasks.submit(() -> PackedBlock.pack(raw, codec));
+                if (done != null) {
+                    index = append(target, index, position, done);
+                    position += done.data.length;
+                    blocks++;
+                }
+            }
+            PackedBlock done;
+            while ((done = tasks.next()) != null) {
+                index = append(target, index, position, done);
+                position += done.data.length;
+                blocks++;
+            }
+            if (blocks != expected) {
+                throw new IOException("El archivo cambio mientras se comprimia: " + in);
+            }
+
+            index.flip();
+            CRC32 crc = new CRC32();
+            crc.update(index.duplicate());
+            int indexLength = index.limit();
+            writeFully(target, index);
+            ByteBuffer trailer = ByteBuffer.allocate(12);
+            trailer.putLong(position).putInt((int) crc.getValue()).flip();
+            writeFully(target, trailer);
+            target.force(true);
+            position += indexLength + 12;
+        }
+        Files.move(temp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return position;
+    }
+
+    // Escribe el bloque y agrega su entrada al indice
+    private static ByteBuffer append(FileChannel target, ByteBuffer index, long position,
+                                     PackedBlock block) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(block.data);
+        index = ensure(index, 25);
+        Varint.putLong(index, position);
+        Varint.putInt(index, block.data.length);
+        index.put(block.codec);
+        index.putInt((int) crc.getValue());
+        writeFully(target, ByteBuffer.wrap(block.data));
+        return index;
+    }
+
+    // Descomprime todo "in" en "out" con "threads" hilos
+    public static void decompress(Path in, Path out, int threads) throws IOException {
+        Path temp = out.resolveSibling(out.getFileName() + ".tmp");
+        try (BlockCompressedFile file = open(in);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OrderedTasks<byte[]> tasks = new OrderedTasks<>(threads, threads * BLOCKS_PER_THREAD)) {
+            for (int i = 0; i < file.blocks(); i++) {
+                int block = i;
+                byte[] done = tasks.submit(() -> file.readBlock(block));
+                if (done != null) {
+                    writeFully(target, ByteBuffer.wrap(done));
+                }
+            }
+            byte[] done;
+            while ((done = tasks.next()) != null) {
+                writeFully(target, ByteBuffer.wrap(done));
+            }
+            target.force(true);
+        }
+        Files.move(temp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static BlockCompressedFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            if (length < HEADER + 12 || readFully(channel, header, 0) < HEADER
+                    || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Archivo por bloques invalido: " + file);
+            }
+            int blockSize = header.getInt(8);
+            long size = header.getLong(12);
+            ByteBuffer trailer = ByteBuffer.allocate(12);
+            readFully(channel, trailer, length - 12);
+            long indexStart = trailer.getLong(0);
+            if (blockSize <= 0 || indexStart < HEADER || indexStart > length - 12
+                    || length - 12 - indexStart > Integer.MAX_VALUE) {
+                throw new IOException("Archivo por bloques invalido: " + file);
+            }
+            ByteBuffer index = ByteBuffer.allocate((int) (length - 12 - indexStart));
+            readFully(channel, index, indexStart);
+            index.flip();
+            CRC32 crc = new CRC32();
+            crc.update(index.duplicate());
+            if ((int) crc.getValue() != trailer.getInt(8)) {
+                throw new IOException("Indice danado: " + file);
+            }
+
+            int blocks = Varint.getInt(index);
+            if (blocks != (size + blockSize - 1) / blockSize) {
+                throw new IOException("Archivo por bloques invalido: " + file);
+            }
+            BlockCompressedFile compressed = new BlockCompressedFile(channel, blockSize, size, blocks);
+            for (int i = 0; i < blocks; i++) {
+                compressed.offsets[i] = Varint.getLong(index);
+                compressed.lengths[i] = Varint.getInt(index);
+                compressed.codecs[i] = index.get();
+                compressed.checksums[i] = index.getInt();
+                compressed.rawLengths[i] = (int) Math.min(blockSize, size - (long) i * blockSize);
+            }
+            return compressed;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int blocks() {
+        return offsets.length;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    // Bytes del archivo original
+    public long size() {
+        return size;
+    }
+
+    // Descomprime un solo bloque; se puede llamar desde varios hilos a la vez
+    public byte[] readBlock(int block) throws IOException {
+        byte[] stored = new byte[lengths[block]];
+        readFully(channel, ByteBuffer.wrap(stored), offsets[block]);
+        CRC32 crc = new CRC32();
+        crc.update(stored);
+        if ((int) crc.getValue() != checksums[block]) {
+            throw new IOException("Bloque " + block + " danado");
+        }
+        byte[] raw;
+        try {
+            raw = PackedBlock.unpack(codecs[block], stored);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bloque " + block + " danado", e);
+        }
+        if (raw.length != rawLengths[block]) {
+            throw new IOException("El bloque " + block + " no tiene el largo del indice");
+        }
+        return raw;
+    }
+
+    // Lee "length" bytes del original desde "position", descomprimiendo solo los
+    // bloques que los contienen
+    public byte[] read(long position, int length) throws IOException {
+        if (position < 0 || length < 0 || position + length > size) {
+            throw new IndexOutOfBoundsException("Rango fuera del archivo: " + position + "+" + length);
+        }
+        byte[] out = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long at = position + copied;
+            int block = (int) (at / blockSize);
+            int from = (int) (at - (long) block * blockSize);
+            byte[] raw = readBlock(block);
+            int n = Math.min(raw.length - from, length - copied);
+            System.arraycopy(raw, from, out, copied, n);
+            copied += n;
+        }
+        return out;
+    }
+
+    // Lecturas posicionales: no mueven la posicion del canal, asi que varios hilos
+    // pueden leer bloques distintos a la vez
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + total);
+            if (n < 0) {
+                throw new IOException("Fin de archivo inesperado");
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) {
+            return buffer;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        buffer.flip();
+        return bigger.put(buffer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // java org.example.BlockCompressedFile compress|decompress <entrada> <salida> [--threads=N] [--codec=best|huffman|range|raw] [--block-size=bytes]
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Uso: BlockCompressedFile compress|decompress <entrada> <salida> [--threads=N] [--codec=best] [--block-size=" + BLOCK_SIZE + "]");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        byte codec = PackedBlock.BEST;
+        int blockSize = BLOCK_SIZE;
+        for (int i = 3; i < args.length; i++) {
+            String arg = args[i];
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(value);
+            } else if (arg.startsWith("--codec=")) {
+                codec = PackedBlock.codecNamed(value);
+            } else if (arg.startsWith("--block-size=")) {
+                blockSize = Integer.parseInt(value);
+            } else {
+                System.err.println("Opcion desconocida: " + arg);
+                return;
+            }
+        }
+        Path in = Path.of(args[1]);
+        Path out = Path.of(args[2]);
+        try {
+            long start = System.nanoTime();
+            if (args[0].equals("compress")) {
+                long bytes = compress(in, out, codec, blockSize, threads);
+                System.out.println(Files.size(in) + " -> " + bytes + " bytes en "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } else if (args[0].equals("decompress")) {
+                decompress(in, out, threads);
+                System.out.println(Files.size(out) + " bytes en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } else {
+                System.err.println("Comando desconocido: " + args[0]);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
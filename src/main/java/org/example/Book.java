@@ -0,0 +1,280 @@
+package org.example;
+import org.json.JSONObject;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+// Registro inmutable de un libro. El ISBN se guarda ya convertido a una llave
+// numerica (cuando es posible) para que las comparaciones del arbol no tengan
+// que pasar por un JSONObject ni comparar cadenas. El nombre se guarda codificado
+// con el NameModel del arbol y se decodifica cuando se pide. Precio y cantidad se
+// guardan como numeros (centavos y entero) para los indices y los formatos; si el
+// texto de la entrada no es exactamente el que sale de esos numeros ("41.9",
+// "41.905", "abc", "1e2") tambien se guarda el texto, y es el que se devuelve.
+final class Book implements Comparable<Book> {
+    // ISBNs that are not plain canonical numbers sort after every numeric one.
+    static final long NON_NUMERIC = Long.MAX_VALUE;
+    static final long NO_PRICE = Long.MIN_VALUE;
+    static final int NO_QUANTITY = Integer.MIN_VALUE;
+
+    private final String isbn;
+    private final long isbnKey;
+    private final PackedName name;
+    private final NameModel nameModel;
+    private final String author;
+    private final String category;
+    private final long priceCents;
+    private final int quantity;
+    // Texto original cuando no es el canonico; null si sale de priceCents / quantity
+    private final String priceRaw;
+    private final String quantityRaw;
+
+    Book(String isbn, String name, String author, String category, long priceCents, int quantity) {
+        this(isbn, name, author, category, priceCents, quantity, null, null);
+    }
+
+    Book(String isbn, String name, String author, String category, long priceCents, int quantity,
+         String priceRaw, String quantityRaw) {
+        this(isbn, isbnKey(isbn), NameModel.RAW_ONLY.pack(name), NameModel.RAW_ONLY,
+                author, category, priceCents, quantity, priceRaw, quantityRaw);
+    }
+
+    private Book(String isbn, long isbnKey, PackedName name, NameModel nameModel,
+                 String author, String category, long priceCents, int quantity,
+                 String priceRaw, String quantityRaw) {
+        this.isbn = isbn;
+        this.isbnKey = isbnKey;
+        this.name = name;
+        this.nameModel = nameModel;
+        this.author = author;
+        this.category = category;
+        this.priceCents = priceCents;
+        this.quantity = quantity;
+        this.priceRaw = priceRaw;
+        this.quantityRaw = quantityRaw;
+    }
+
+    // Libro con precio y cantidad tal como vienen en la entrada (null si no vienen)
+    public static Book parse(String isbn, String name, String author, String category,
+                             String price, String quantity) {
+        long cents = parsePrice(price);
+        int units = parseQuantity(quantity);
+        return new Book(isbn, name, author, category, cents, units,
+                rawPrice(price, cents), rawQuantity(quantity, units));
+    }
+
+    public static Book fromJson(JSONObject json) {
+        return parse(
+                json.getString("isbn"),
+                json.getString("name"),
+                json.optString("author", null),
+                json.optString("category", null),
+                json.optString("price", null),
+                json.optString("quantity", null));
+    }
+
+    public String isbn() {
+        return isbn;
+    }
+
+    public long isbnKey() {
+        return isbnKey;
+    }
+
+    public String name() {
+        return nameModel.unpack(name);
+    }
+
+    public PackedName packedName() {
+        return name;
+    }
+
+    public NameModel nameModel() {
+        return nameModel;
+    }
+
+    // Copia con el nombre codificado por otro modelo
+    public Book packedWith(NameModel model) {
+        if (model == nameModel) {
+            return this;
+        }
+        return new Book(isbn, isbnKey, model.pack(name()), model, author, category,
+                priceCents, quantity, priceRaw, quantityRaw);
+    }
+
+    public String author() {
+        return author;
+    }
+
+    public String category() {
+        return category;
+    }
+
+    public long priceCents() {
+        return priceCents;
+    }
+
+    public int quantity() {
+        return quantity;
+    }
+
+    public String priceRaw() {
+        return priceRaw;
+    }
+
+    public String quantityRaw() {
+        return quantityRaw;
+    }
+
+    public String priceText() {
+        return priceRaw != null ? priceRaw : formatPrice(priceCents);
+    }
+
+    public String quantityText() {
+        return quantityRaw != null ? quantityRaw : formatQuantity(quantity);
+    }
+
+    // Devuelve una copia con los campos del PATCH aplicados; el ISBN no cambia.
+    public Book withUpdates(Map<String, Object> updateData) {
+        PackedName newName = name;
+        String newAuthor = author;
+        String newCategory = category;
+        long newPrice = priceCents;
+        int newQuantity = quantity;
+        String newPriceRaw = priceRaw;
+        String newQuantityRaw = quantityRaw;
+
+        for (Map.Entry<String, Object> entry : updateData.entrySet()) {
+            String value = entry.getValue() == null || entry.getValue() == JSONObject.NULL
+                    ? null : entry.getValue().toString();
+            switch (entry.getKey()) {
+                case "name":
+                    if (value != null) {
+                        newName = nameModel.pack(value);
+                    }
+                    break;
+                case "author":
+                    newAuthor = value;
+                    break;
+                case "category":
+                    newCategory = value;
+                    break;
+                case "price":
+                    newPrice = parsePrice(value);
+                    newPriceRaw = rawPrice(value, newPrice);
+                    break;
+                case "quantity":
+                    newQuantity = parseQuantity(value);
+                    newQuantityRaw = rawQuantity(value, newQuantity);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return new Book(isbn, isbnKey, newName, nameModel, newAuthor, newCategory,
+                newPrice, newQuantity, newPriceRaw, newQuantityRaw);
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("isbn", isbn);
+        json.put("name", name());
+        json.put("author", author == null ? JSONObject.NULL : author);
+        json.put("category", category == null ? JSONObject.NULL : category);
+        String price = priceText();
+        String units = quantityText();
+        json.put("price", price == null ? JSONObject.NULL : price);
+        json.put("quantity", units == null ? JSONObject.NULL : units);
+        return json;
+    }
+
+    public int compareTo(Book other) {
+        return compareIsbn(isbnKey, isbn, other.isbnKey, other.isbn);
+    }
+
+    public int compareIsbn(long otherKey, String otherIsbn) {
+        return compareIsbn(isbnKey, isbn, otherKey, otherIsbn);
+    }
+
+    public static int compareIsbn(long key1, String isbn1, long key2, String isbn2) {
+        int cmp = Long.compare(key1, key2);
+        if (cmp != 0 || key1 != NON_NUMERIC) {
+            return cmp;
+        }
+        return isbn1.compareTo(isbn2);
+    }
+
+    // Solo los ISBN "canonicos" (sin ceros a la izquierda, maximo 18 digitos) se
+    // convierten a numero, asi "0123" y "123" siguen siendo llaves distintas.
+    public static long isbnKey(String isbn) {
+        int length = isbn.length();
+        if (length == 0 || length > 18 || (length > 1 && isbn.charAt(0) == '0')) {
+            return NON_NUMERIC;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            char c = isbn.charAt(i);
+            if (c < '0' || c > '9') {
+                return NON_NUMERIC;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    // Centavos redondeados; NO_PRICE si no es un numero o no cabe en un long
+    public static long parsePrice(String price) {
+        if (price == null) {
+            return NO_PRICE;
+        }
+        try {
+            BigDecimal value = new BigDecimal(price.trim());
+            // Sin armar el numero completo: "1e999999999" no cabe y "1e-999999999" es 0.00
+            int digits = value.precision() - value.scale();
+            if (digits > 19) {
+                return NO_PRICE;
+            }
+            if (digits < -2) {
+                return 0;
+            }
+            return value.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return NO_PRICE;
+        }
+    }
+
+    // NO_QUANTITY si no es un entero
+    public static int parseQuantity(String quantity) {
+        if (quantity == null) {
+            return NO_QUANTITY;
+        }
+        try {
+            return Integer.parseInt(quantity.trim());
+        } catch (NumberFormatException e) {
+            return NO_QUANTITY;
+        }
+    }
+
+    // El texto si no se puede volver a armar desde el numero, si no null
+    static String rawPrice(String price, long cents) {
+        return price == null || price.equals(formatPrice(cents)) ? null : price;
+    }
+
+    static String rawQuantity(String quantity, int units) {
+        return quantity == null || quantity.equals(formatQuantity(units)) ? null : quantity;
+    }
+
+    public static String formatQuantity(int quantity) {
+        return quantity == NO_QUANTITY ? null : Integer.toString(quantity);
+    }
+
+    public static String formatPrice(long cents) {
+        if (cents == NO_PRICE) {
+            return null;
+        }
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        return (cents < 0 ? "-" : "") + (abs / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
@@ -0,0 +1,271 @@
+package org.example;
+import java.io.Closeable;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Registros de libros fuera del heap, en bloques (slabs) de SLAB_BYTES reservados
+// con un Arena compartido. Cada libro ocupa un hueco de tamano multiplo de 8 y se
+// identifica por su direccion: (slab << 32) | posicion dentro del slab. Los huecos
+// que se liberan van a una lista por tamano (encadenada dentro de los mismos huecos)
+// y se reusan para el siguiente registro de esa clase. La memoria solo se devuelve
+// al cerrar la arena; para recuperar los huecos sin usar se copian los vivos a
+// una arena nueva (moveTo) y se cierra la vieja.
+//
+// Hueco: [tamano][estado][isbnKey][precio][cantidad][largos de isbn, nombre,
+// autor y categoria (-1 = null)][hash del isbn][hash del nombre][largos de los
+// textos de precio y cantidad (Book.priceRaw, casi siempre -1)][bytes UTF-8].
+// Libre, despues del estado va la direccion del siguiente hueco libre; movido, la
+// direccion nueva.
+final class BookArena implements Closeable {
+    static final int SLAB_BYTES = 1 << 24;
+    static final long NONE = -1;
+    private static final int ALIGN = 8;
+    // Hasta SMALL_LIMIT hay una clase por cada multiplo de 8; arriba, una por potencia de 2
+    private static final int SMALL_LIMIT = 4096;
+    private static final int SMALL_CLASSES = SMALL_LIMIT / ALIGN + 1;
+
+    private static final int LIVE = 1;
+    private static final int FREE = 2;
+    private static final int MOVED = 3;
+
+    private static final long SLOT = 0;
+    private static final long STATE = 4;
+    private static final long NEXT = 8;
+    private static final long ISBN_KEY = 8;
+    private static final long PRICE = 16;
+    private static final long QUANTITY = 24;
+    private static final long ISBN_LENGTH = 28;
+    private static final long NAME_LENGTH = 32;
+    private static final long AUTHOR_LENGTH = 36;
+    private static final long CATEGORY_LENGTH = 40;
+    private static final long ISBN_HASH = 44;
+    private static final long NAME_HASH = 48;
+    private static final long PRICE_RAW_LENGTH = 52;
+    private static final long QUANTITY_RAW_LENGTH = 56;
+    private static final int HEADER = 60;
+
+    private final Arena arena = Arena.ofShared();
+    private MemorySegment[] slabs = new MemorySegment[8];
+    private int slabCount;
+    private long top;
+    private final long[] freeLists = new long[SMALL_CLASSES + 32];
+    private long reservedBytes;
+    private long liveBytes;
+
+    BookArena() {
+        Arrays.fill(freeLists, NONE);
+    }
+
+    public static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes);
+        return h ^ (h >>> 16);
+    }
+
+    // Guarda el libro y devuelve su direccion
+    public long add(Book book) {
+        byte[] isbn = utf8(book.isbn());
+        byte[] name = utf8(book.name());
+        byte[] author = book.author() == null ? null : utf8(book.author());
+        byte[] category = book.category() == null ? null : utf8(book.category());
+        byte[] priceRaw = book.priceRaw() == null ? null : utf8(book.priceRaw());
+        byte[] quantityRaw = book.quantityRaw() == null ? null : utf8(book.quantityRaw());
+        int length = HEADER + isbn.length + name.length
+                + (author == null ? 0 : author.length) + (category == null ? 0 : category.length)
+                + (priceRaw == null ? 0 : priceRaw.length) + (quantityRaw == null ? 0 : quantityRaw.length);
+
+        long address = allocate(slotSize(length));
+        MemorySegment slab = slab(address);
+        long at = offset(address);
+        slab.set(ValueLayout.JAVA_INT, at + STATE, LIVE);
+        slab.set(ValueLayout.JAVA_LONG, at + ISBN_KEY, book.isbnKey());
+        slab.set(ValueLayout.JAVA_LONG, at + PRICE, book.priceCents());
+        slab.set(ValueLayout.JAVA_INT, at + QUANTITY, book.quantity());
+        slab.set(ValueLayout.JAVA_INT, at + ISBN_HASH, hash(isbn));
+        slab.set(ValueLayout.JAVA_INT, at + NAME_HASH, hash(name));
+        long position = at + HEADER;
+        position = putBytes(slab, at + ISBN_LENGTH, position, isbn);
+        position = putBytes(slab, at + NAME_LENGTH, position, name);
+        position = putBytes(slab, at + AUTHOR_LENGTH, position, author);
+        position = putBytes(slab, at + CATEGORY_LENGTH, position, category);
+        position = putBytes(slab, at + PRICE_RAW_LENGTH, position, priceRaw);
+        putBytes(slab, at + QUANTITY_RAW_LENGTH, position, quantityRaw);
+        liveBytes += slab.get(ValueLayout.JAVA_INT, at + SLOT);
+        return address;
+    }
+
+    private static long putBytes(MemorySegment slab, long lengthAt, long position, byte[] bytes) {
+        if (bytes == null) {
+            slab.set(ValueLayout.JAVA_INT, lengthAt, -1);
+            return position;
+        }
+        slab.set(ValueLayout.JAVA_INT, lengthAt, bytes.length);
+        MemorySegment.copy(bytes, 0, slab, ValueLayout.JAVA_BYTE, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    public Book read(long address) {
+        MemorySegment slab = slab(address);
+        long at = offset(address);
+        long position = at + HEADER;
+        String isbn = string(slab, at + ISBN_LENGTH, position);
+        position += length(slab, at + ISBN_LENGTH);
+        String name = string(slab, at + NAME_LENGTH, position);
+        position += length(slab, at + NAME_LENGTH);
+        String author = string(slab, at + AUTHOR_LENGTH, position);
+        position += length(slab, at + AUTHOR_LENGTH);
+        String category = string(slab, at + CATEGORY_LENGTH, position);
+        position += length(slab, at + CATEGORY_LENGTH);
+        String priceRaw = string(slab, at + PRICE_RAW_LENGTH, position);
+        position += length(slab, at + PRICE_RAW_LENGTH);
+        String quantityRaw = string(slab, at + QUANTITY_RAW_LENGTH, position);
+        return new Book(isbn, name, author, category,
+                slab.get(ValueLayout.JAVA_LONG, at + PRICE), slab.get(ValueLayout.JAVA_INT, at + QUANTITY),
+                priceRaw, quantityRaw);
+    }
+
+    private static int length(MemorySegment slab, long lengthAt) {
+        return Math.max(0, slab.get(ValueLayout.JAVA_INT, lengthAt));
+    }
+
+    private static String string(MemorySegment slab, long lengthAt, long position) {
+        int length = slab.get(ValueLayout.JAVA_INT, lengthAt);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        MemorySegment.copy(slab, ValueLayout.JAVA_BYTE, position, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int isbnHash(long address) {
+        return slab(address).get(ValueLayout.JAVA_INT, offset(address) + ISBN_HASH);
+    }
+
+    public int nameHash(long address) {
+        return slab(address).get(ValueLayout.JAVA_INT, offset(address) + NAME_HASH);
+    }
+
+    // Compara sin armar el Book: el ISBN va justo despues de la cabecera y el nombre despues del ISBN
+    public boolean isbnEquals(long address, byte[] isbn) {
+        MemorySegment slab = slab(address);
+        long at = offset(address);
+        return sameBytes(slab, at + ISBN_LENGTH, at + HEADER, isbn);
+    }
+
+    public boolean nameEquals(long address, byte[] name) {
+        MemorySegment slab = slab(address);
+        long at = offset(address);
+        return sameBytes(slab, at + NAME_LENGTH, at + HEADER + slab.get(ValueLayout.JAVA_INT, at + ISBN_LENGTH), name);
+    }
+
+    private static boolean sameBytes(MemorySegment slab, long lengthAt, long position, byte[] bytes) {
+        if (slab.get(ValueLayout.JAVA_INT, lengthAt) != bytes.length) {
+            return false;
+        }
+        MemorySegment other = MemorySegment.ofArray(bytes);
+        return MemorySegment.mismatch(slab, position, position + bytes.length, other, 0, bytes.length) < 0;
+    }
+
+    // Devuelve el hueco a la lista de su clase
+    public void free(long address) {
+        MemorySegment slab = slab(address);
+        long at = offset(address);
+        int slot = slab.get(ValueLayout.JAVA_INT, at + SLOT);
+        int sizeClass = sizeClass(slot);
+        slab.set(ValueLayout.JAVA_INT, at + STATE, FREE);
+        slab.set(ValueLayout.JAVA_LONG, at + NEXT, freeLists[sizeClass]);
+        freeLists[sizeClass] = address;
+        liveBytes -= slot;
+    }
+
+    // Copia el registro a otra arena y deja en el hueco viejo la direccion nueva, para
+    // que quien tenga la vieja la pueda traducir con forwarded
+    public long moveTo(BookArena target, long address) {
+        MemorySegment slab = slab(address);
+        long at = offset(address);
+        if (slab.get(ValueLayout.JAVA_INT, at + STATE) == MOVED) {
+            return slab.get(ValueLayout.JAVA_LONG, at + NEXT);
+        }
+        int slot = slab.get(ValueLayout.JAVA_INT, at + SLOT);
+        long moved = target.allocate(slot);
+        MemorySegment.copy(slab, at + STATE, target.slab(moved), offset(moved) + STATE, slot - STATE);
+        target.liveBytes += slot;
+        slab.set(ValueLayout.JAVA_INT, at + STATE, MOVED);
+        slab.set(ValueLayout.JAVA_LONG, at + NEXT, moved);
+        return moved;
+    }
+
+    public long forwarded(long address) {
+        MemorySegment slab = slab(address);
+        long at = offset(address);
+        return slab.get(ValueLayout.JAVA_INT, at + STATE) == MOVED ? slab.get(ValueLayout.JAVA_LONG, at + NEXT) : address;
+    }
+
+    // Bytes pedidos al sistema y bytes ocupados por registros vivos
+    public long reservedBytes() {
+        return reservedBytes;
+    }
+
+    public long liveBytes() {
+        return liveBytes;
+    }
+
+    private long allocate(int slot) {
+        int sizeClass = sizeClass(slot);
+        long address = freeLists[sizeClass];
+        if (address != NONE) {
+            freeLists[sizeClass] = slab(address).get(ValueLayout.JAVA_LONG, offset(address) + NEXT);
+            return address;
+        }
+        if (slabCount == 0 || top + slot > slabs[slabCount - 1].byteSize()) {
+            // Un registro mas grande que un slab tiene el suyo
+            newSlab(Math.max(SLAB_BYTES, slot));
+        }
+        address = ((long) (slabCount - 1) << 32) | top;
+        slabs[slabCount - 1].set(ValueLayout.JAVA_INT, top + SLOT, slot);
+        top += slot;
+        return address;
+    }
+
+    private void newSlab(long bytes) {
+        if (slabCount == slabs.length) {
+            slabs = Arrays.copyOf(slabs, slabCount * 2);
+        }
+        slabs[slabCount++] = arena.allocate(bytes, ALIGN);
+        reservedBytes += bytes;
+        top = 0;
+    }
+
+    private static int slotSize(int length) {
+        int slot = (length + ALIGN - 1) & -ALIGN;
+        return slot <= SMALL_LIMIT ? slot : Integer.highestOneBit(slot - 1) << 1;
+    }
+
+    private static int sizeClass(int slot) {
+        if (slot <= SMALL_LIMIT) {
+            return slot / ALIGN;
+        }
+        return SMALL_CLASSES + Integer.numberOfTrailingZeros(slot) - Integer.numberOfTrailingZeros(SMALL_LIMIT);
+    }
+
+    private MemorySegment slab(long address) {
+        return slabs[(int) (address >>> 32)];
+    }
+
+    private static long offset(long address) {
+        return address & 0xFFFFFFFFL;
+    }
+
+    // Libera toda la memoria; las direcciones dejan de valer
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Formato binario de un Book para los archivos del inventario (paginas, bitacora,
+// snapshots). Las cadenas van como varint(largo + 1) + UTF-8, con 0 para null;
+// precio y cantidad como varint con signo, seguidos de sus textos originales
+// (null casi siempre, ver Book.priceRaw).
+final class BookCodec {
+    private BookCodec() {
+    }
+
+    public static int size(Book book) {
+        return stringSize(book.isbn())
+                + stringSize(book.name())
+                + stringSize(book.author())
+                + stringSize(book.category())
+                + Varint.sizeOf(zigZag(book.priceCents()))
+                + Varint.sizeOf(zigZag(book.quantity()))
+                + stringSize(book.priceRaw())
+                + stringSize(book.quantityRaw());
+    }
+
+    public static byte[] encode(Book book) {
+        ByteBuffer out = ByteBuffer.allocate(size(book));
+        write(out, book);
+        return out.array();
+    }
+
+    public static void write(ByteBuffer out, Book book) {
+        writeString(out, book.isbn());
+        writeString(out, book.name());
+        writeString(out, book.author());
+        writeString(out, book.category());
+        Varint.putSignedLong(out, book.priceCents());
+        Varint.putSignedLong(out, book.quantity());
+        writeString(out, book.priceRaw());
+        writeString(out, book.quantityRaw());
+    }
+
+    public static Book decode(byte[] data) {
+        return read(ByteBuffer.wrap(data));
+    }
+
+    public static Book read(ByteBuffer in) {
+        String isbn = readString(in);
+        String name = readString(in);
+        String author = readString(in);
+        String category = readString(in);
+        long price = Varint.getSignedLong(in);
+        int quantity = (int) Varint.getSignedLong(in);
+        String priceRaw = readString(in);
+        String quantityRaw = readString(in);
+        return new Book(isbn, name, author, category, price, quantity, priceRaw, quantityRaw);
+    }
+
+    public static int stringSize(String value) {
+        if (value == null) {
+            return 1;
+        }
+        int bytes = utf8Length(value);
+        return Varint.sizeOf(bytes + 1L) + bytes;
+    }
+
+    public static void writeString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.put((byte) 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Varint.putInt(out, bytes.length + 1);
+        out.put(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = Varint.getInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int utf8Length(String value) {
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // getBytes reemplaza los sustitutos sueltos por '?'
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,315 @@
+package org.example;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Un bloque de libros del catalogo exportado, guardado por columnas:
+//   [varint libros][FLAGS][ISBN][NAME][AUTHOR][CATEGORY][PRICE][QUANTITY][RAW]
+// Cada columna es [codificador][varint bytes][datos], con los datos empacados por
+// PackedBlock (crudo, Huffman o rango, lo que ocupe menos), asi se puede saltar una
+// columna sin descomprimirla.
+//   FLAGS:    un bit por libro, 1 si el indice por nombre apunta a el
+//   ISBN:     varint de cuantos son numericos, el primero y las diferencias (van
+//             en orden), y los demas como columna de texto
+//   NAME:     texto
+//   AUTHOR / CATEGORY: diccionario del bloque (texto) + varint(id + 1) por libro
+//   PRICE / QUANTITY:  varint(zigzag + 1) por libro, 0 si no tiene
+//   RAW:      texto, dos por libro: Book.priceRaw y Book.quantityRaw (casi siempre null)
+// Columna de texto: primero todos los varint(largo UTF-8 + 1) (0 para null) y despues
+// los bytes, para que Huffman vea los textos seguidos.
+final class CatalogBlock {
+    private CatalogBlock() {
+    }
+
+    public static byte[] encode(Book[] books, boolean[] nameIndexed, int from, int to) {
+        int count = to - from;
+        ByteBuffer out = ByteBuffer.allocate(64);
+        Varint.putInt(out, count);
+
+        byte[] flags = new byte[(count + 7) / 8];
+        for (int i = 0; i < count; i++) {
+            if (nameIndexed[from + i]) {
+                flags[i >> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        out = putColumn(out, flags);
+        out = putColumn(out, isbnColumn(books, from, to));
+
+        String[] text = new String[count];
+        for (int i = 0; i < count; i++) {
+            text[i] = books[from + i].name();
+        }
+        out = putColumn(out, textColumn(text));
+        for (int i = 0; i < count; i++) {
+            text[i] = books[from + i].author();
+        }
+        out = putColumn(out, dictionaryColumn(text));
+        for (int i = 0; i < count; i++) {
+            text[i] = books[from + i].category();
+        }
+        out = putColumn(out, dictionaryColumn(text));
+
+        ByteBuffer prices = ByteBuffer.allocate(count * 10);
+        ByteBuffer quantities = ByteBuffer.allocate(count * 10);
+        for (int i = from; i < to; i++) {
+            putOptional(prices, books[i].priceCents(), books[i].priceCents() == Book.NO_PRICE);
+            putOptional(quantities, books[i].quantity(), books[i].quantity() == Book.NO_QUANTITY);
+        }
+        out = putColumn(out, Arrays.copyOf(prices.array(), prices.position()));
+        out = putColumn(out, Arrays.copyOf(quantities.array(), quantities.position()));
+        String[] raw = new String[count * 2];
+        for (int i = 0; i < count; i++) {
+            raw[2 * i] = books[from + i].priceRaw();
+            raw[2 * i + 1] = books[from + i].quantityRaw();
+        }
+        out = putColumn(out, textColumn(raw));
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    // Libros del bloque en orden de ISBN; nameIndexed recibe las marcas si no es null
+    public static Book[] decode(ByteBuffer block, boolean[] nameIndexed, int offset) {
+        int count = Varint.getInt(block);
+        byte[] flags = column(block);
+        String[] isbns = readIsbns(ByteBuffer.wrap(column(block)), count);
+        String[] names = readText(ByteBuffer.wrap(column(block)), count);
+        String[] authors = readDictionary(ByteBuffer.wrap(column(block)), count);
+        String[] categories = readDictionary(ByteBuffer.wrap(column(block)), count);
+        ByteBuffer prices = ByteBuffer.wrap(column(block));
+        ByteBuffer quantities = ByteBuffer.wrap(column(block));
+        String[] raw = readText(ByteBuffer.wrap(column(block)), count * 2);
+
+        Book[] books = new Book[count];
+        for (int i = 0; i < count; i++) {
+            long price = getOptional(prices, Book.NO_PRICE);
+            int quantity = (int) getOptional(quantities, Book.NO_QUANTITY);
+            books[i] = new Book(isbns[i], names[i], authors[i], categories[i], price, quantity,
+                    raw[2 * i], raw[2 * i + 1]);
+            if (nameIndexed != null) {
+                nameIndexed[offset + i] = (flags[i >> 3] & (1 << (i & 7))) != 0;
+            }
+        }
+        return books;
+    }
+
+    // El libro con ese ISBN o null. Las columnas se descomprimen igual, pero solo
+    // se arma el texto de su fila.
+    public static Book decodeBook(ByteBuffer block, String isbn) {
+        int count = Varint.getInt(block);
+        skipColumn(block);
+        String[] isbns = readIsbns(ByteBuffer.wrap(column(block)), count);
+        int row = 0;
+        while (row < count && !isbns[row].equals(isbn)) {
+            row++;
+        }
+        if (row == count) {
+            return null;
+        }
+        String name = textAt(ByteBuffer.wrap(column(block)), count, row);
+        String author = dictionaryAt(ByteBuffer.wrap(column(block)), row);
+        String category = dictionaryAt(ByteBuffer.wrap(column(block)), row);
+        long price = optionalAt(ByteBuffer.wrap(column(block)), row, Book.NO_PRICE);
+        int quantity = (int) optionalAt(ByteBuffer.wrap(column(block)), row, Book.NO_QUANTITY);
+        byte[] raw = column(block);
+        return new Book(isbns[row], name, author, category, price, quantity,
+                textAt(ByteBuffer.wrap(raw), count * 2, 2 * row), textAt(ByteBuffer.wrap(raw), count * 2, 2 * row + 1));
+    }
+
+    private static byte[] isbnColumn(Book[] books, int from, int to) {
+        int numeric = 0;
+        while (from + numeric < to && books[from + numeric].isbnKey() != Book.NON_NUMERIC) {
+            numeric++;
+        }
+        ByteBuffer out = ByteBuffer.allocate(10 * (numeric + 2));
+        Varint.putInt(out, numeric);
+        long previous = 0;
+        for (int i = 0; i < numeric; i++) {
+            long key = books[from + i].isbnKey();
+            Varint.putLong(out, key - previous);
+            previous = key;
+        }
+        String[] rest = new String[to - from - numeric];
+        for (int i = 0; i < rest.length; i++) {
+            rest[i] = books[from + numeric + i].isbn();
+        }
+        byte[] text = textColumn(rest);
+        byte[] column = Arrays.copyOf(out.array(), out.position() + text.length);
+        System.arraycopy(text, 0, column, out.position(), text.length);
+        return column;
+    }
+
+    private static String[] readIsbns(ByteBuffer in, int count) {
+        int numeric = Varint.getInt(in);
+        String[] isbns = new String[count];
+        long key = 0;
+        for (int i = 0; i < numeric; i++) {
+            key += Varint.getLong(in);
+            isbns[i] = Long.toString(key);
+        }
+        String[] rest = readText(in, count - numeric);
+        System.arraycopy(rest, 0, isbns, numeric, rest.length);
+        return isbns;
+    }
+
+    private static byte[] textColumn(String[] values) {
+        byte[][] utf8 = new byte[values.length][];
+        int lengthBytes = 0;
+        int dataBytes = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                utf8[i] = values[i].getBytes(StandardCharsets.UTF_8);
+                dataBytes += utf8[i].length;
+                lengthBytes += Varint.sizeOf(utf8[i].length + 1L);
+            } else {
+                lengthBytes++;
+            }
+        }
+        ByteBuffer out = ByteBuffer.allocate(lengthBytes + dataBytes);
+        for (byte[] value : utf8) {
+            Varint.putInt(out, value == null ? 0 : value.length + 1);
+        }
+        for (byte[] value : utf8) {
+            if (value != null) {
+                out.put(value);
+            }
+        }
+        return out.array();
+    }
+
+    private static String[] readText(ByteBuffer in, int count) {
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = Varint.getInt(in);
+        }
+        String[] values = new String[count];
+        byte[] data = in.array();
+        int position = in.arrayOffset() + in.position();
+        for (int i = 0; i < count; i++) {
+            if (lengths[i] > 0) {
+                values[i] = new String(data, position, lengths[i] - 1, StandardCharsets.UTF_8);
+                position += lengths[i] - 1;
+            }
+        }
+        in.position(position - in.arrayOffset());
+        return values;
+    }
+
+    // Solo el valor index de una columna de texto de count valores (null si index < 0);
+    // deja in al final de la columna
+    private static String textAt(ByteBuffer in, int count, int index) {
+        int skip = 0;
+        int length = 0;
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            int stored = Varint.getInt(in);
+            if (i < index && stored > 0) {
+                skip += stored - 1;
+            } else if (i == index) {
+                length = stored;
+            }
+            total += stored > 0 ? stored - 1 : 0;
+        }
+        String value = null;
+        if (length > 0) {
+            value = new String(in.array(), in.arrayOffset() + in.position() + skip, length - 1, StandardCharsets.UTF_8);
+        }
+        in.position(in.position() + total);
+        return value;
+    }
+
+    private static String dictionaryAt(ByteBuffer in, int index) {
+        int size = Varint.getInt(in);
+        ByteBuffer dictionary = in.duplicate();
+        textAt(in, size, -1);
+        int id = 0;
+        for (int i = 0; i <= index; i++) {
+            id = Varint.getInt(in);
+        }
+        return id == 0 ? null : textAt(dictionary, size, id - 1);
+    }
+
+    private static long optionalAt(ByteBuffer in, int index, long missing) {
+        for (int i = 0; i < index; i++) {
+            Varint.getLong(in);
+        }
+        return getOptional(in, missing);
+    }
+
+    private static byte[] dictionaryColumn(String[] values) {
+        Map<String, Integer> ids = new HashMap<>();
+        String[] dictionary = new String[values.length];
+        ByteBuffer refs = ByteBuffer.allocate(5 * values.length);
+        for (String value : values) {
+            if (value == null) {
+                refs.put((byte) 0);
+                continue;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = ids.size();
+                ids.put(value, id);
+                dictionary[id] = value;
+            }
+            Varint.putInt(refs, id + 1);
+        }
+        byte[] text = textColumn(Arrays.copyOf(dictionary, ids.size()));
+        ByteBuffer out = ByteBuffer.allocate(5 + text.length + refs.position());
+        Varint.putInt(out, ids.size());
+        out.put(text).put(refs.array(), 0, refs.position());
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    private static String[] readDictionary(ByteBuffer in, int count) {
+        String[] dictionary = readText(in, Varint.getInt(in));
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            int id = Varint.getInt(in);
+            values[i] = id == 0 ? null : dictionary[id - 1];
+        }
+        return values;
+    }
+
+    private static void putOptional(ByteBuffer out, long value, boolean missing) {
+        Varint.putLong(out, missing ? 0 : ((value << 1) ^ (value >> 63)) + 1);
+    }
+
+    private static long getOptional(ByteBuffer in, long missing) {
+        long raw = Varint.getLong(in);
+        if (raw == 0) {
+            return missing;
+        }
+        raw--;
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    private static ByteBuffer putColumn(ByteBuffer out, byte[] raw) {
+        PackedBlock packed = PackedBlock.pack(raw, PackedBlock.BEST);
+        out = grow(out, 6 + packed.data.length);
+        out.put(packed.codec);
+        Varint.putInt(out, packed.data.length);
+        return out.put(packed.data);
+    }
+
+    private static byte[] column(ByteBuffer in) {
+        byte codec = in.get();
+        byte[] stored = new byte[Varint.getInt(in)];
+        in.get(stored);
+        return PackedBlock.unpack(codec, stored);
+    }
+
+    private static void skipColumn(ByteBuffer in) {
+        in.get();
+        int length = Varint.getInt(in);
+        in.position(in.position() + length);
+    }
+
+    private static ByteBuffer grow(ByteBuffer out, int extra) {
+        if (out.remaining() >= extra) {
+            return out;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + extra));
+        out.flip();
+        return bigger.put(out);
+    }
+}
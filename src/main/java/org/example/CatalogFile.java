@@ -0,0 +1,334 @@
+package org.example;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Catalogo completo del arbol para mandarlo a las sucursales, en bloques de
+// BLOCK_BOOKS libros guardados por columnas (CatalogBlock):
+//   [magic][version][libros][bloque 0][bloque 1]...[indice][posicion del indice][crc32 del indice]
+// El indice tiene por bloque su posicion, largo, cantidad de libros, crc32 y el
+// primer y ultimo ISBN, asi findByIsbn o readBlock leen (con lecturas por posicion,
+// sin mapear el archivo) y descomprimen solo el bloque que necesitan. Importarlo
+// completo arma el arbol de abajo hacia arriba con restore, con el indice por
+// nombre igual que en el arbol exportado. Los bloques no dependen entre si, asi
+// que write y read los codifican y decodifican en varios hilos (OrderedTasks) y
+// los escriben o copian en orden.
+final class CatalogFile implements Closeable {
+    static final int BLOCK_BOOKS = 4096;
+    static final int BLOCKS_PER_THREAD = 4;
+    private static final int MAGIC = 0x424B4354;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int HEADER = 16;
+
+    private final FileChannel channel;
+    private final long books;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] counts;
+    private final int[] checksums;
+    private final String[] firstIsbns;
+    private final String[] lastIsbns;
+
+    private CatalogFile(FileChannel channel, long books, int blocks) {
+        this.channel = channel;
+        this.books = books;
+        this.offsets = new long[blocks];
+        this.lengths = new int[blocks];
+        this.counts = new int[blocks];
+        this.checksums = new int[blocks];
+        this.firstIsbns = new String[blocks];
+        this.lastIsbns = new String[blocks];
+    }
+
+    // Se escribe en un temporal y se renombra, como SnapshotFile. Devuelve los bytes escritos.
+    public static long write(Path file, BTree tree) throws IOException {
+        return write(file, tree, 1);
+    }
+
+    public static long write(Path file, BTree tree, int threads) throws IOException {
+        int total = tree.size();
+        Book[] sorted = new Book[total];
+        boolean[] nameIndexed = new boolean[total];
+        int n = 0;
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                Book book = leaf.books[i];
+                nameIndexed[n] = tree.bookIndexByName.get(book.packedName()) == book;
+                sorted[n++] = book;
+            }
+        }
+        return write(file, sorted, nameIndexed, threads);
+    }
+
+    // Exporta una version congelada de un VersionedInventory; la carga puede seguir
+    // publicando versiones nuevas mientras tanto
+    public static long write(Path file, InventorySnapshot snapshot, int threads) throws IOException {
+        Book[] sorted = new Book[snapshot.size()];
+        boolean[] nameIndexed = new boolean[sorted.length];
+        int[] n = {0};
+        snapshot.forEach(book -> {
+            nameIndexed[n[0]] = snapshot.nameIndexed(book);
+            sorted[n[0]++] = book;
+        });
+        return write(file, sorted, nameIndexed, threads);
+    }
+
+    private static long write(Path file, Book[] sorted, boolean[] nameIndexed, int threads) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int n = sorted.length;
+        int blocks = (n + BLOCK_BOOKS - 1) / BLOCK_BOOKS;
+        ByteBuffer index = ByteBuffer.allocate(64);
+        long position;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OrderedTasks<byte[]> tasks = new OrderedTasks<>(threads, threads * BLOCKS_PER_THREAD)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(n);
+            position = buffer.position();
+            Varint.putInt(index, blocks);
+            // Los bloques vuelven en orden, asi que "written" es el primer libro del siguiente
+            int written = 0;
+            for (int from = 0; from < n; from += BLOCK_BOOKS) {
+                int start = from;
+                int to = Math.min(n, from + BLOCK_BOOKS);
+                byte[] block = tasks.submit(() -> CatalogBlock.encode(sorted, nameIndexed, start, to));
+                if (block != null) {
+                    index = append(out, buffer, index, sorted, written, position, block);
+                    written = Math.min(n, written + BLOCK_BOOKS);
+                    position += block.length;
+                }
+            }
+            byte[] block;
+            while ((block = tasks.next()) != null) {
+                index = append(out, buffer, index, sorted, written, position, block);
+                written = Math.min(n, written + BLOCK_BOOKS);
+                position += block.length;
+            }
+            index.flip();
+            CRC32 crc = new CRC32();
+            crc.update(index.duplicate());
+            drain(out, buffer);
+            writeFully(out, index);
+            buffer.putLong(position).putInt((int) crc.getValue());
+            drain(out, buffer);
+            out.force(true);
+            position += index.limit() + 12;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return position;
+    }
+
+    // Agrega el bloque que empieza en el libro "from" al buffer de salida y su entrada al indice
+    private static ByteBuffer append(FileChannel out, ByteBuffer buffer, ByteBuffer index, Book[] sorted,
+                                     int from, long position, byte[] block) throws IOException {
+        int to = Math.min(sorted.length, from + BLOCK_BOOKS);
+        CRC32 crc = new CRC32();
+        crc.update(block);
+
+        index = ensure(index, 30 + BookCodec.stringSize(sorted[from].isbn())
+                + BookCodec.stringSize(sorted[to - 1].isbn()));
+        Varint.putLong(index, position);
+        Varint.putInt(index, block.length);
+        Varint.putInt(index, to - from);
+        index.putInt((int) crc.getValue());
+        BookCodec.writeString(index, sorted[from].isbn());
+        BookCodec.writeString(index, sorted[to - 1].isbn());
+
+        if (buffer.remaining() < block.length) {
+            drain(out, buffer);
+        }
+        if (block.length > buffer.remaining()) {
+            writeFully(out, ByteBuffer.wrap(block));
+        } else {
+            buffer.put(block);
+        }
+        return index;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) {
+            return buffer;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        buffer.flip();
+        return bigger.put(buffer);
+    }
+
+    public static CatalogFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            if (length < HEADER + 12 || readFully(channel, header, 0) < HEADER || header.getInt(0) != MAGIC) {
+                throw new IOException("Catalogo invalido: " + file);
+            }
+            int version = header.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Version de catalogo no soportada: " + version);
+            }
+            long books = header.getLong(8);
+            long trailer = length - 12;
+            ByteBuffer end = ByteBuffer.allocate(12);
+            readFully(channel, end, trailer);
+            long indexStart = end.getLong(0);
+            if (indexStart < HEADER || indexStart > trailer || trailer - indexStart > Integer.MAX_VALUE) {
+                throw new IOException("Catalogo invalido: " + file);
+            }
+            ByteBuffer index = ByteBuffer.allocate((int) (trailer - indexStart));
+            readFully(channel, index, indexStart);
+            index.flip();
+            CRC32 crc = new CRC32();
+            crc.update(index.duplicate());
+            if ((int) crc.getValue() != end.getInt(8)) {
+                throw new IOException("Indice del catalogo danado: " + file);
+            }
+
+            CatalogFile catalog = new CatalogFile(channel, books, Varint.getInt(index));
+            for (int i = 0; i < catalog.offsets.length; i++) {
+                catalog.offsets[i] = Varint.getLong(index);
+                catalog.lengths[i] = Varint.getInt(index);
+                catalog.counts[i] = Varint.getInt(index);
+                catalog.checksums[i] = index.getInt();
+                catalog.firstIsbns[i] = BookCodec.readString(index);
+                catalog.lastIsbns[i] = BookCodec.readString(index);
+            }
+            return catalog;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Carga el catalogo completo en un arbol vacio
+    public static void read(Path file, BTree tree) throws IOException {
+        read(file, tree, 1);
+    }
+
+    // Cada bloque marca sus libros indexados en su propio tramo de nameIndexed (el
+    // inicio sale de las cantidades del indice), asi que se decodifican en paralelo
+    public static void read(Path file, BTree tree, int threads) throws IOException {
+        try (CatalogFile catalog = open(file);
+             OrderedTasks<Book[]> tasks = new OrderedTasks<>(threads, threads * BLOCKS_PER_THREAD)) {
+            Book[] sorted = new Book[Math.toIntExact(catalog.books)];
+            boolean[] nameIndexed = new boolean[sorted.length];
+            int n = 0;
+            int start = 0;
+            for (int i = 0; i < catalog.blocks(); i++) {
+                int block = i;
+                int from = start;
+                if (from + catalog.counts[i] > sorted.length) {
+                    throw new IOException("El indice del catalogo tiene mas libros que la cabecera");
+                }
+                start += catalog.counts[i];
+                Book[] books = tasks.submit(() -> catalog.decode(block, nameIndexed, from));
+                if (books != null) {
+                    System.arraycopy(books, 0, sorted, n, books.length);
+                    n += books.length;
+                }
+            }
+            Book[] books;
+            while ((books = tasks.next()) != null) {
+                System.arraycopy(books, 0, sorted, n, books.length);
+                n += books.length;
+            }
+            if (n != sorted.length) {
+                throw new IOException("El catalogo tiene " + n + " libros y esperaba " + sorted.length);
+            }
+            tree.restore(sorted, nameIndexed);
+        }
+    }
+
+    public int blocks() {
+        return offsets.length;
+    }
+
+    public long books() {
+        return books;
+    }
+
+    private Book[] decode(int block, boolean[] nameIndexed, int from) throws IOException {
+        Book[] books = CatalogBlock.decode(block(block), nameIndexed, from);
+        if (books.length != counts[block]) {
+            throw new IOException("El bloque " + block + " del catalogo no tiene los libros del indice");
+        }
+        return books;
+    }
+
+    public Book[] readBlock(int block) throws IOException {
+        return CatalogBlock.decode(block(block), null, 0);
+    }
+
+    // Busca en el indice el bloque que puede tenerlo, lo lee una vez y arma solo la
+    // fila del libro
+    public Book findByIsbn(String isbn) throws IOException {
+        long key = Book.isbnKey(isbn);
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            String last = lastIsbns[mid];
+            if (Book.compareIsbn(Book.isbnKey(last), last, key, isbn) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (low == offsets.length) {
+            return null;
+        }
+        String first = firstIsbns[low];
+        if (Book.compareIsbn(Book.isbnKey(first), first, key, isbn) > 0) {
+            return null;
+        }
+        return CatalogBlock.decodeBook(block(low), isbn);
+    }
+
+    // Lectura por posicion: varios hilos pueden leer bloques distintos a la vez
+    private ByteBuffer block(int block) throws IOException {
+        ByteBuffer stored = ByteBuffer.allocate(lengths[block]);
+        readFully(channel, stored, offsets[block]);
+        stored.flip();
+        CRC32 crc = new CRC32();
+        crc.update(stored.duplicate());
+        if ((int) crc.getValue() != checksums[block]) {
+            throw new IOException("Bloque " + block + " del catalogo danado");
+        }
+        return stored;
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + total);
+            if (n < 0) {
+                throw new IOException("Fin de archivo inesperado");
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
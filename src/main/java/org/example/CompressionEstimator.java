@@ -0,0 +1,132 @@
+package org.example;
+import java.util.Arrays;
+
+// Calcula los tamanos exactos que reportan namesizehuffman (bits de Huffman por
+// caracter) y namesizearithmetic (bytes del compresor aritmetico) sin construir
+// arboles, mapas ni cadenas de bits. Usa tablas primitivas que se reutilizan entre
+// llamadas, por eso cada hilo tiene su propia instancia (local()).
+final class CompressionEstimator {
+    private static final int MSD = 0x8000;
+    private static final int SSD = 0x4000;
+    private static final int TOO = 0x3FFF;
+    private static final int ALPHABET = Character.MAX_VALUE + 1;
+
+    private static final ThreadLocal<CompressionEstimator> LOCAL =
+            ThreadLocal.withInitial(CompressionEstimator::new);
+
+    private final int[] counts = new int[ALPHABET];
+    private final int[] slotOfChar = new int[ALPHABET];
+    private final char[] touched = new char[ALPHABET];
+    private long[] ordered = new long[64];
+    private int[] weights = new int[64];
+    private int[] cumulative = new int[65];
+    private int distinct;
+
+    public static CompressionEstimator local() {
+        return LOCAL.get();
+    }
+
+    public int huffmanBits(CharSequence text) {
+        countAndSort(text);
+        try {
+            for (int i = 0; i < distinct; i++) {
+                weights[i] = (int) (ordered[i] >>> 16);
+            }
+            return (int) HuffmanCodec.codeLengths(weights, distinct);
+        } finally {
+            clear();
+        }
+    }
+
+    public int arithmeticBytes(CharSequence text) {
+        countAndSort(text);
+        try {
+            return (int) ((arithmeticBits(text) + 7) / 8);
+        } finally {
+            clear();
+        }
+    }
+
+    // Ambos tamanos con un solo conteo: [bits de Huffman, bytes aritmeticos]
+    public void estimate(CharSequence text, int[] result) {
+        countAndSort(text);
+        try {
+            result[1] = (int) ((arithmeticBits(text) + 7) / 8);
+            for (int i = 0; i < distinct; i++) {
+                weights[i] = (int) (ordered[i] >>> 16);
+            }
+            result[0] = (int) HuffmanCodec.codeLengths(weights, distinct);
+        } finally {
+            clear();
+        }
+    }
+
+    // Deja en ordered[0..distinct) los pares (frecuencia, caracter) en orden
+    // ascendente, el mismo orden de intervalos que usa ArithmeticCompressionInt
+    private void countAndSort(CharSequence text) {
+        distinct = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (counts[c]++ == 0) {
+                touched[distinct++] = c;
+            }
+        }
+        if (ordered.length < distinct) {
+            int capacity = Math.max(distinct, ordered.length * 2);
+            ordered = new long[capacity];
+            weights = new int[capacity];
+            cumulative = new int[capacity + 1];
+        }
+        for (int i = 0; i < distinct; i++) {
+            char c = touched[i];
+            ordered[i] = ((long) counts[c] << 16) | c;
+        }
+        Arrays.sort(ordered, 0, distinct);
+    }
+
+    private void clear() {
+        for (int i = 0; i < distinct; i++) {
+            counts[touched[i]] = 0;
+        }
+        distinct = 0;
+    }
+
+    // Recorre el mismo algoritmo que ArithmeticCompressionInt.compress contando bits
+    private long arithmeticBits(CharSequence text) {
+        cumulative[0] = 0;
+        for (int i = 0; i < distinct; i++) {
+            slotOfChar[(char) (ordered[i] & 0xFFFF)] = i;
+            cumulative[i + 1] = cumulative[i] + (int) (ordered[i] >>> 16);
+        }
+        int scale = text.length();
+
+        long bits = 0;
+        long underflowBits = 0;
+        int low = 0;
+        int high = 0xFFFF;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            int slot = slotOfChar[text.charAt(i)];
+            long range = (long) (high - low) + 1;
+            high = (int) (low + (range * cumulative[slot + 1]) / scale - 1);
+            low = (int) (low + (range * cumulative[slot]) / scale);
+
+            while (true) {
+                if ((high & MSD) == (low & MSD)) {
+                    bits += 1 + underflowBits;
+                    underflowBits = 0;
+                } else if ((low & SSD) != 0 && (high & SSD) == 0) {
+                    underflowBits++;
+                    low &= TOO;
+                    high |= SSD;
+                } else {
+                    break;
+                }
+                low = (low << 1) & 0xFFFF;
+                high = ((high << 1) | 1) & 0xFFFF;
+            }
+        }
+        return bits + underflowBits + 2;
+    }
+}
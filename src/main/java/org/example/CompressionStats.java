@@ -0,0 +1,138 @@
+package org.example;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Cache LRU de las estadisticas de compresion por titulo, para que el reporte de
+// busqueda no vuelva a construir el arbol de Huffman ni a correr el compresor
+// aritmetico cada vez que se busca el mismo libro. Se puede usar desde varios
+// hilos: la cache se divide en segmentos por hash, cada uno con su propio candado
+// y su propio LRU, y el calculo de una entrada se hace fuera del candado (depende
+// solo del titulo, asi que dos hilos que la calculen a la vez obtienen lo mismo).
+class CompressionStats {
+    static final int DEFAULT_CAPACITY = 10_000;
+    static final int SEGMENTS = 16;
+
+    static final class Entry {
+        final int namesize;
+        final int namesizeHuffman;
+        final int namesizeArithmetic;
+
+        Entry(int namesize, int namesizeHuffman, int namesizeArithmetic) {
+            this.namesize = namesize;
+            this.namesizeHuffman = namesizeHuffman;
+            this.namesizeArithmetic = namesizeArithmetic;
+        }
+
+        public int equal() {
+            return Main.Equal(namesize, namesizeHuffman, namesizeArithmetic);
+        }
+
+        public int decompress() {
+            return Main.Decompress(namesize, namesizeHuffman, namesizeArithmetic);
+        }
+
+        public int huffman() {
+            return Main.Huffman(namesize, namesizeHuffman, namesizeArithmetic);
+        }
+
+        public int arithmetic() {
+            return Main.Arithmetic(namesize, namesizeHuffman, namesizeArithmetic);
+        }
+
+        public int either() {
+            return Main.Either(namesizeHuffman, namesizeArithmetic);
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        long hits;
+        long misses;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private final Segment[] segments;
+
+    public CompressionStats() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CompressionStats(int capacity) {
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS));
+        }
+    }
+
+    private Segment segmentFor(String title) {
+        int h = title.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    public Entry get(String title) {
+        Segment segment = segmentFor(title);
+        synchronized (segment) {
+            Entry entry = segment.get(title);
+            if (entry != null) {
+                segment.hits++;
+                return entry;
+            }
+            segment.misses++;
+        }
+        int[] sizes = new int[2];
+        CompressionEstimator.local().estimate(title, sizes);
+        Entry entry = new Entry(Main.namesize(title), sizes[0], sizes[1]);
+        synchronized (segment) {
+            segment.put(title, entry);
+        }
+        return entry;
+    }
+
+    public void invalidate(String title) {
+        Segment segment = segmentFor(title);
+        synchronized (segment) {
+            segment.remove(title);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long hits() {
+        long hits = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+            }
+        }
+        return hits;
+    }
+
+    public long misses() {
+        long misses = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                misses += segment.misses;
+            }
+        }
+        return misses;
+    }
+}
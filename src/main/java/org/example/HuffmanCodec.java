@@ -0,0 +1,383 @@
+package org.example;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Codificador Huffman canonico sobre bytes con longitud de codigo limitada.
+// Los codigos se guardan como arreglos int (codigo / longitud por simbolo) y la
+// decodificacion usa una tabla de 2^maxLength entradas: cada consulta mira
+// maxLength bits y devuelve el simbolo y cuantos bits consumir.
+//
+// Cabecera: [primer simbolo][ultimo simbolo][longitudes de 4 bits para ese rango]
+// Formato de compress(): cabecera + varint(bytes originales) + bits.
+final class HuffmanCodec {
+    static final int SYMBOLS = 256;
+    static final int MAX_CODE_LENGTH = 12;
+
+    final int[] codes;
+    final int[] lengths;
+    final int maxLength;
+    private final int[] decodeTable;
+
+    private HuffmanCodec(int[] lengths) {
+        this.lengths = lengths;
+        this.codes = new int[SYMBOLS];
+
+        int[] lengthCount = new int[MAX_CODE_LENGTH + 1];
+        int longest = 0;
+        for (int length : lengths) {
+            if (length < 0 || length > MAX_CODE_LENGTH) {
+                throw new IllegalArgumentException("Longitud de codigo invalida: " + length);
+            }
+            if (length > 0) {
+                lengthCount[length]++;
+                longest = Math.max(longest, length);
+            }
+        }
+        this.maxLength = longest;
+
+        // Codigos canonicos: mismo orden (longitud, simbolo) que DEFLATE
+        int[] nextCode = new int[MAX_CODE_LENGTH + 2];
+        int code = 0;
+        for (int bits = 1; bits <= MAX_CODE_LENGTH; bits++) {
+            code = (code + lengthCount[bits - 1]) << 1;
+            nextCode[bits] = code;
+        }
+        for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+            if (lengths[symbol] > 0) {
+                codes[symbol] = nextCode[lengths[symbol]]++;
+            }
+        }
+
+        this.decodeTable = new int[1 << longest];
+        for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+            int length = lengths[symbol];
+            if (length > 0) {
+                int shift = longest - length;
+                int start = codes[symbol] << shift;
+                Arrays.fill(decodeTable, start, start + (1 << shift), (length << 8) | symbol);
+            }
+        }
+    }
+
+    public static HuffmanCodec fromLengths(int[] lengths) {
+        if (lengths.length != SYMBOLS) {
+            throw new IllegalArgumentException("Se esperaban " + SYMBOLS + " longitudes");
+        }
+        return new HuffmanCodec(lengths.clone());
+    }
+
+    public static HuffmanCodec fromFrequencies(long[] frequency) {
+        int count = 0;
+        int[] symbols = new int[SYMBOLS];
+        for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+            if (frequency[symbol] > 0) {
+                symbols[count++] = symbol;
+            }
+        }
+
+        int[] lengths = new int[SYMBOLS];
+        if (count == 1) {
+            lengths[symbols[0]] = 1;
+        } else if (count > 1) {
+            // Ordenados por frecuencia ascendente (desempate por simbolo)
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = (Math.min(frequency[symbols[i]], Integer.MAX_VALUE) << 8) | symbols[i];
+            }
+            Arrays.sort(order);
+
+            int[] work = new int[count];
+            long scaled = 0;
+            for (int i = 0; i < count; i++) {
+                work[i] = (int) (order[i] >>> 8);
+                scaled += work[i];
+            }
+            // Evita desbordar los pesos int del calculo en sitio
+            if (scaled >= Integer.MAX_VALUE / 2) {
+                for (int i = 0; i < count; i++) {
+                    work[i] = Math.max(1, work[i] >>> 8);
+                }
+            }
+            codeLengths(work, count);
+            limitLengths(work, count, MAX_CODE_LENGTH);
+            for (int i = 0; i < count; i++) {
+                lengths[(int) (order[i] & 0xFF)] = work[i];
+            }
+        }
+        return new HuffmanCodec(lengths);
+    }
+
+    public static HuffmanCodec train(byte[] data, int off, int len) {
+        long[] frequency = new long[SYMBOLS];
+        for (int i = off; i < off + len; i++) {
+            frequency[data[i] & 0xFF]++;
+        }
+        return fromFrequencies(frequency);
+    }
+
+    // Calculo en sitio de Moffat y Katajainen: recibe pesos ordenados de menor a
+    // mayor y deja en su lugar la longitud de codigo de cada uno. Devuelve el costo
+    // total (suma de frecuencia * longitud) sin reservar memoria.
+    static long codeLengths(int[] a, int n) {
+        if (n == 0) {
+            return 0;
+        }
+        if (n == 1) {
+            a[0] = 0;
+            return 0;
+        }
+
+        long cost = 0;
+        a[0] += a[1];
+        cost += a[0];
+        int root = 0;
+        int leaf = 2;
+        for (int next = 1; next < n - 1; next++) {
+            if (leaf >= n || a[root] < a[leaf]) {
+                a[next] = a[root];
+                a[root++] = next;
+            } else {
+                a[next] = a[leaf++];
+            }
+
+            if (leaf >= n || (root < next && a[root] < a[leaf])) {
+                a[next] += a[root];
+                a[root++] = next;
+            } else {
+                a[next] += a[leaf++];
+            }
+            cost += a[next];
+        }
+
+        a[n - 2] = 0;
+        for (int next = n - 3; next >= 0; next--) {
+            a[next] = a[a[next]] + 1;
+        }
+
+        int available = 1;
+        int used = 0;
+        int depth = 0;
+        int root2 = n - 2;
+        int next = n - 1;
+        while (available > 0) {
+            while (root2 >= 0 && a[root2] == depth) {
+                used++;
+                root2--;
+            }
+            while (available > used) {
+                a[next--] = depth;
+                available--;
+            }
+            available = 2 * used;
+            depth++;
+            used = 0;
+        }
+        return cost;
+    }
+
+    // Recorta a maxLength y reparte de nuevo para cumplir la desigualdad de Kraft;
+    // a[] sigue en orden de frecuencia ascendente (longitudes de mayor a menor).
+    static void limitLengths(int[] a, int n, int maxLength) {
+        if (n == 0 || a[0] <= maxLength) {
+            return;
+        }
+        int[] count = new int[maxLength + 1];
+        for (int i = 0; i < n; i++) {
+            count[Math.min(a[i], maxLength)]++;
+        }
+        long total = 0;
+        for (int bits = maxLength; bits > 0; bits--) {
+            total += (long) count[bits] << (maxLength - bits);
+        }
+        while (total > (1L << maxLength)) {
+            count[maxLength]--;
+            for (int bits = maxLength - 1; bits > 0; bits--) {
+                if (count[bits] != 0) {
+                    count[bits]--;
+                    count[bits + 1] += 2;
+                    break;
+                }
+            }
+            total--;
+        }
+        int i = 0;
+        for (int bits = maxLength; bits > 0; bits--) {
+            for (int k = 0; k < count[bits]; k++) {
+                a[i++] = bits;
+            }
+        }
+    }
+
+    public int headerSize() {
+        int first = firstSymbol();
+        int last = lastSymbol();
+        return 2 + (last < first ? 0 : (last - first + 2) / 2);
+    }
+
+    public void writeHeader(ByteBuffer out) {
+        int first = firstSymbol();
+        int last = lastSymbol();
+        if (last < first) {
+            out.put((byte) 1).put((byte) 0);
+            return;
+        }
+        out.put((byte) first).put((byte) last);
+        for (int symbol = first; symbol <= last; symbol += 2) {
+            int high = lengths[symbol];
+            int low = symbol + 1 <= last ? lengths[symbol + 1] : 0;
+            out.put((byte) ((high << 4) | low));
+        }
+    }
+
+    public static HuffmanCodec readHeader(ByteBuffer in) {
+        int first = in.get() & 0xFF;
+        int last = in.get() & 0xFF;
+        int[] lengths = new int[SYMBOLS];
+        for (int symbol = first; symbol <= last; symbol += 2) {
+            int packed = in.get() & 0xFF;
+            lengths[symbol] = packed >>> 4;
+            if (symbol + 1 <= last) {
+                lengths[symbol + 1] = packed & 0x0F;
+            }
+        }
+        return new HuffmanCodec(lengths);
+    }
+
+    private int firstSymbol() {
+        for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+            if (lengths[symbol] > 0) {
+                return symbol;
+            }
+        }
+        return 1;
+    }
+
+    private int lastSymbol() {
+        for (int symbol = SYMBOLS - 1; symbol >= 0; symbol--) {
+            if (lengths[symbol] > 0) {
+                return symbol;
+            }
+        }
+        return 0;
+    }
+
+    public boolean canEncode(byte[] src, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            if (lengths[src[i] & 0xFF] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long encodedBits(byte[] src, int off, int len) {
+        long bits = 0;
+        for (int i = off; i < off + len; i++) {
+            bits += lengths[src[i] & 0xFF];
+        }
+        return bits;
+    }
+
+    public static int maxEncodedSize(int len) {
+        return (int) (((long) len * MAX_CODE_LENGTH + 7) / 8);
+    }
+
+    // Escribe los bits MSB primero; el ultimo byte se rellena con ceros
+    public void encode(byte[] src, int off, int len, ByteBuffer out) {
+        boolean bigEndian = out.order() == ByteOrder.BIG_ENDIAN;
+        long acc = 0;
+        int accBits = 0;
+        for (int i = off; i < off + len; i++) {
+            int symbol = src[i] & 0xFF;
+            int length = lengths[symbol];
+            if (length == 0) {
+                throw new IllegalArgumentException("Simbolo sin codigo: " + symbol);
+            }
+            acc = (acc << length) | codes[symbol];
+            accBits += length;
+            if (accBits >= 32) {
+                accBits -= 32;
+                int word = (int) (acc >>> accBits);
+                out.putInt(bigEndian ? word : Integer.reverseBytes(word));
+            }
+        }
+        while (accBits >= 8) {
+            accBits -= 8;
+            out.put((byte) (acc >>> accBits));
+        }
+        if (accBits > 0) {
+            out.put((byte) (acc << (8 - accBits)));
+        }
+    }
+
+    public void decode(ByteBuffer in, byte[] dst, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        if (maxLength == 0) {
+            throw new IllegalStateException("Tabla de Huffman vacia");
+        }
+        boolean bigEndian = in.order() == ByteOrder.BIG_ENDIAN;
+        int start = in.position();
+        long consumedBits = 0;
+        long window = 0;
+        int windowBits = 0;
+        int tableShift = 64 - maxLength;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (windowBits < maxLength) {
+                if (in.remaining() >= 8) {
+                    // Lee 8 bytes de una vez; los bits del byte parcial se vuelven a
+                    // leer en la siguiente recarga en la misma posicion
+                    long word = in.getLong(in.position());
+                    window |= (bigEndian ? word : Long.reverseBytes(word)) >>> windowBits;
+                    int bytes = (63 - windowBits) >>> 3;
+                    in.position(in.position() + bytes);
+                    windowBits += bytes << 3;
+                } else {
+                    while (windowBits <= 56) {
+                        if (in.hasRemaining()) {
+                            window |= (long) (in.get() & 0xFF) << (56 - windowBits);
+                        }
+                        windowBits += 8;
+                    }
+                }
+            }
+            int entry = decodeTable[(int) (window >>> tableShift)];
+            int length = entry >>> 8;
+            dst[i] = (byte) entry;
+            window <<= length;
+            windowBits -= length;
+            consumedBits += length;
+        }
+        // Deja el buffer justo despues del ultimo byte usado
+        in.position(start + (int) ((consumedBits + 7) / 8));
+    }
+
+    public static byte[] compress(byte[] data) {
+        HuffmanCodec codec = train(data, 0, data.length);
+        ByteBuffer out = ByteBuffer.allocate(codec.headerSize() + 5 + (int) ((codec.encodedBits(data, 0, data.length) + 7) / 8));
+        codec.writeHeader(out);
+        Varint.putInt(out, data.length);
+        codec.encode(data, 0, data.length, out);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    public static byte[] decompress(byte[] packed) {
+        ByteBuffer in = ByteBuffer.wrap(packed);
+        HuffmanCodec codec = readHeader(in);
+        byte[] data = new byte[Varint.getInt(in)];
+        codec.decode(in, data, 0, data.length);
+        return data;
+    }
+
+    public static byte[] compress(String text) {
+        return compress(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decompressString(byte[] packed) {
+        return new String(decompress(packed), StandardCharsets.UTF_8);
+    }
+}
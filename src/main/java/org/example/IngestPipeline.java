@@ -0,0 +1,186 @@
+package org.example;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+// Carga por etapas: un hilo lee bloques grandes de lineas completas del archivo
+// mapeado, varios hilos los convierten en Operation y el hilo que llama aplica los
+// bloques al arbol en el orden del archivo. Las etapas se conectan con colas
+// acotadas y un semaforo limita los bloques leidos y todavia sin aplicar, asi que
+// si el arbol va mas lento que el disco la lectura se detiene.
+final class IngestPipeline {
+    static final int BATCH_BYTES = 1 << 20;
+    static final int BATCHES_PER_WORKER = 4;
+
+    static final class Batch {
+        final long seq;
+        final ByteBuffer data;
+        List<Operation> operations;
+        int lines;
+        Throwable failure;
+
+        Batch(long seq, ByteBuffer data) {
+            this.seq = seq;
+            this.data = data;
+        }
+    }
+
+    // Marca de fin que el lector manda una vez por cada hilo que parsea
+    private static final Batch END = new Batch(-1, null);
+
+    private final OperationFile input;
+    private final int workers;
+    private final ArrayBlockingQueue<Batch> raw;
+    private final ArrayBlockingQueue<Batch> parsed;
+    private final Semaphore inFlight;
+    private final int window;
+    private volatile IOException readFailure;
+
+    private IngestPipeline(OperationFile input, int workers) {
+        this.input = input;
+        this.workers = workers;
+        this.window = workers * BATCHES_PER_WORKER;
+        this.raw = new ArrayBlockingQueue<>(window);
+        this.parsed = new ArrayBlockingQueue<>(window);
+        this.inFlight = new Semaphore(window);
+    }
+
+    // Carga todo el archivo con "workers" hilos de parseo
+    public static void run(OperationFile input, OperationApplier applier, int workers) throws IOException {
+        new IngestPipeline(input, workers).run(applier);
+    }
+
+    private void run(OperationApplier applier) throws IOException {
+        List<Thread> threads = new ArrayList<>();
+        threads.add(start("ingest-reader", this::read));
+        for (int i = 0; i < workers; i++) {
+            threads.add(start("ingest-parser-" + i, this::parse));
+        }
+
+        try {
+            apply(applier);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Carga interrumpida");
+        } finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+        if (readFailure != null) {
+            throw readFailure;
+        }
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void read() {
+        try {
+            long seq = 0;
+            while (true) {
+                inFlight.acquire();
+                ByteBuffer data = input.nextChunk(BATCH_BYTES);
+                if (data == null) {
+                    break;
+                }
+                raw.put(new Batch(seq++, data));
+            }
+        } catch (IOException e) {
+            readFailure = e;
+        } catch (InterruptedException e) {
+            return;
+        }
+        try {
+            for (int i = 0; i < workers; i++) {
+                raw.put(END);
+            }
+        } catch (InterruptedException e) {
+            // El hilo que aplica ya se fue
+        }
+    }
+
+    private void parse() {
+        OperationParser parser = new OperationParser();
+        OperationLine scratch = new OperationLine();
+        try {
+            while (true) {
+                Batch batch = raw.take();
+                if (batch != END) {
+                    try {
+                        parseBatch(batch, parser, scratch);
+                    } catch (Throwable t) {
+                        batch.failure = t;
+                    }
+                }
+                parsed.put(batch);
+                if (batch == END) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Se cancelo la carga
+        }
+    }
+
+    private static void parseBatch(Batch batch, OperationParser parser, OperationLine scratch) {
+        ByteBuffer data = batch.data;
+        List<Operation> operations = new ArrayList<>();
+        int limit = data.limit();
+        int start = 0;
+        int lines = 0;
+        while (start < limit) {
+            int newline = OperationFile.indexOfNewline(data, start, limit);
+            int next = newline < 0 ? limit : newline + 1;
+            int end = newline < 0 ? limit : newline;
+            if (end > start && data.get(end - 1) == '\r') {
+                end--;
+            }
+            lines++;
+            operations.add(Operation.parse(parser, scratch, data, start, end, lines));
+            start = next;
+        }
+        batch.operations = operations;
+        batch.lines = lines;
+    }
+
+    // Los bloques llegan en cualquier orden y se guardan en un anillo del tamano de
+    // la ventana (nunca hay mas bloques en vuelo que eso) hasta que les toca
+    private void apply(OperationApplier applier) throws InterruptedException {
+        Batch[] pending = new Batch[window];
+        long next = 0;
+        long linesBefore = 0;
+        int finished = 0;
+        while (finished < workers) {
+            Batch batch = parsed.take();
+            if (batch == END) {
+                finished++;
+                continue;
+            }
+            pending[(int) (batch.seq % window)] = batch;
+
+            Batch ready;
+            while ((ready = pending[(int) (next % window)]) != null && ready.seq == next) {
+                pending[(int) (next % window)] = null;
+                if (ready.failure != null) {
+                    throw new IllegalStateException("Fallo el parseo de un bloque de la carga", ready.failure);
+                }
+                for (Operation operation : ready.operations) {
+                    applier.apply(operation, linesBefore + operation.line);
+                }
+                linesBefore += ready.lines;
+                next++;
+                inFlight.release();
+            }
+        }
+        applier.flush();
+    }
+}
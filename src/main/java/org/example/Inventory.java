@@ -0,0 +1,32 @@
+package org.example;
+import java.util.List;
+import java.util.Map;
+
+// Lo que la carga (OperationApplier) y el reporte de busquedas (SearchReport)
+// necesitan del inventario. Lo implementan el arbol en el heap (BTree) y los
+// registros fuera del heap (OffHeapInventory). La busqueda de titulos solo la
+// tiene el arbol, con enableTitleIndex; los demas la rechazan con
+// UnsupportedOperationException.
+interface Inventory {
+    void insert(Book book);
+
+    void insertAll(List<Book> run);
+
+    boolean updateBook(String isbn, Map<String, Object> updateData);
+
+    void removeBook(String isbn);
+
+    Book searchByName(String name);
+
+    Book findBookByIsbn(String isbn);
+
+    int size();
+
+    InventoryMetrics metrics();
+
+    CompressionStats compressionStats();
+
+    List<Book> searchTitlesByPrefix(String prefix, int limit);
+
+    List<Book> searchTitlesFuzzy(String query, int maxDistance, int limit);
+}
@@ -0,0 +1,320 @@
+package org.example;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+// Metricas de un inventario: cantidad y latencia de cada tipo de operacion, errores,
+// forma del arbol (altura, nodos, llenado, splits/merges/prestamos), memoria de la
+// arena fuera del heap, versiones publicadas y snapshots abiertos, y tasas de
+// compresion de los nombres servidos. Los contadores son LongAdder y cada hilo
+// registra latencias en sus propios histogramas, asi medir no agrega contencion
+// entre escritores; snapshot() suma todo (los valores de otros hilos pueden venir
+// un poco atrasados). Se publica por JMX y, si se pide, en un archivo que recibe
+// una linea JSON por intervalo.
+final class InventoryMetrics implements DynamicMBean {
+    static final int INSERT = 0;
+    static final int PATCH = 1;
+    static final int DELETE = 2;
+    static final int SEARCH = 3;
+    // Una racha de carga masiva (insertAll) cuenta como una operacion
+    static final int BULK = 4;
+    private static final String[] OPERATIONS = {"insert", "patch", "delete", "search", "bulkLoad"};
+
+    private final Inventory inventory;
+    private final int leafCapacity;
+    private final List<LatencyHistogram[]> recorders = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<LatencyHistogram[]> recorder = ThreadLocal.withInitial(this::newRecorder);
+
+    final LongAdder bulkInserted = new LongAdder();
+    final LongAdder rejectedInserts = new LongAdder();
+    final LongAdder patchMisses = new LongAdder();
+    final LongAdder deleteMisses = new LongAdder();
+    final LongAdder searchMisses = new LongAdder();
+    final LongAdder parseErrors = new LongAdder();
+    final LongAdder applyErrors = new LongAdder();
+
+    final LongAdder splits = new LongAdder();
+    final LongAdder merges = new LongAdder();
+    final LongAdder borrows = new LongAdder();
+    // Forma del arbol: se ajusta en cada split/merge/cambio de raiz y se recuenta
+    // despues de cada construccion masiva
+    final LongAdder height = new LongAdder();
+    final LongAdder leaves = new LongAdder();
+    final LongAdder innerNodes = new LongAdder();
+
+    private final LongAdder namesServed = new LongAdder();
+    private final LongAdder rawBits = new LongAdder();
+    private final LongAdder huffmanBits = new LongAdder();
+    private final LongAdder arithmeticBits = new LongAdder();
+    private volatile double nameModelRatio = 1;
+    // Solo con OffHeapInventory
+    private volatile long offHeapBytes;
+    private volatile long offHeapLiveBytes;
+    private final LongAdder compactions = new LongAdder();
+    // Solo con VersionedInventory
+    private volatile long version;
+    private final LongAdder openSnapshots = new LongAdder();
+
+    private ScheduledExecutorService dumper;
+    private Path dumpFile;
+
+    // Inventarios sin hojas (fuera del heap, versiones): leafFill queda en 0
+    InventoryMetrics(Inventory inventory) {
+        this(inventory, 0);
+    }
+
+    // leafCapacity = maximo de llaves por hoja, para calcular leafFill
+    InventoryMetrics(Inventory inventory, int leafCapacity) {
+        this.inventory = inventory;
+        this.leafCapacity = leafCapacity;
+    }
+
+    private LatencyHistogram[] newRecorder() {
+        LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        recorders.add(histograms);
+        return histograms;
+    }
+
+    public void record(int operation, long startNanos) {
+        recorder.get()[operation].record(System.nanoTime() - startNanos);
+    }
+
+    public void split(boolean leaf) {
+        splits.increment();
+        (leaf ? leaves : innerNodes).increment();
+    }
+
+    public void merge(boolean leaf) {
+        merges.increment();
+        (leaf ? leaves : innerNodes).decrement();
+    }
+
+    public void rootSplit(boolean leaf) {
+        split(leaf);
+        innerNodes.increment();
+        height.increment();
+    }
+
+    public void rootCollapse() {
+        innerNodes.decrement();
+        height.decrement();
+    }
+
+    public void shape(long treeHeight, long leafCount, long innerCount) {
+        height.add(treeHeight - height.sum());
+        leaves.add(leafCount - leaves.sum());
+        innerNodes.add(innerCount - innerNodes.sum());
+    }
+
+    // Tamanos en bits de un nombre servido por el reporte de busqueda
+    public void compression(int raw, int huffman, int arithmetic) {
+        namesServed.increment();
+        rawBits.add(raw);
+        huffmanBits.add(huffman);
+        arithmeticBits.add(arithmetic);
+    }
+
+    // Bytes reservados por la arena y los que ocupan los registros vivos
+    public void offHeap(long reservedBytes, long liveBytes) {
+        offHeapBytes = reservedBytes;
+        offHeapLiveBytes = liveBytes;
+    }
+
+    public void compaction() {
+        compactions.increment();
+    }
+
+    public void version(long number) {
+        version = number;
+    }
+
+    public void snapshotOpened() {
+        openSnapshots.increment();
+    }
+
+    public void snapshotClosed() {
+        openSnapshots.decrement();
+    }
+
+    public void nameModel(long rawBytes, long packedBytes) {
+        nameModelRatio = rawBytes == 0 ? 1 : (double) packedBytes / rawBytes;
+    }
+
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            LatencyHistogram total = new LatencyHistogram();
+            for (LatencyHistogram[] histograms : recorders) {
+                total.add(histograms[op]);
+            }
+            String name = OPERATIONS[op];
+            values.put(name + "Count", total.count());
+            values.put(name + "MeanMicros", total.mean() / 1000);
+            values.put(name + "P50Micros", total.percentile(0.50) / 1000.0);
+            values.put(name + "P99Micros", total.percentile(0.99) / 1000.0);
+            values.put(name + "P999Micros", total.percentile(0.999) / 1000.0);
+            values.put(name + "MaxMicros", total.max() / 1000.0);
+        }
+        values.put("bulkInserted", bulkInserted.sum());
+        values.put("rejectedInserts", rejectedInserts.sum());
+        values.put("patchMisses", patchMisses.sum());
+        values.put("deleteMisses", deleteMisses.sum());
+        values.put("searchMisses", searchMisses.sum());
+        values.put("parseErrors", parseErrors.sum());
+        values.put("applyErrors", applyErrors.sum());
+
+        long books = inventory.size();
+        long leafCount = leaves.sum();
+        values.put("books", books);
+        values.put("treeHeight", height.sum());
+        values.put("leafNodes", leafCount);
+        values.put("innerNodes", innerNodes.sum());
+        values.put("leafFill", leafCount == 0 || leafCapacity == 0 ? 0.0 : (double) books / (leafCount * leafCapacity));
+        values.put("splits", splits.sum());
+        values.put("merges", merges.sum());
+        values.put("borrows", borrows.sum());
+        values.put("offHeapBytes", offHeapBytes);
+        values.put("offHeapLiveBytes", offHeapLiveBytes);
+        values.put("compactions", compactions.sum());
+        values.put("version", version);
+        values.put("openSnapshots", openSnapshots.sum());
+
+        long raw = rawBits.sum();
+        values.put("namesServed", namesServed.sum());
+        values.put("huffmanRatio", raw == 0 ? 0.0 : (double) huffmanBits.sum() / raw);
+        values.put("arithmeticRatio", raw == 0 ? 0.0 : (double) arithmeticBits.sum() / raw);
+        values.put("nameModelRatio", nameModelRatio);
+        CompressionStats stats = inventory.compressionStats();
+        values.put("statsCacheHits", stats.hits());
+        values.put("statsCacheMisses", stats.misses());
+        return values;
+    }
+
+    // Registra el MBean; el nombre queda como org.example:type=Inventory,name=<name>
+    public void registerJmx(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(this, new ObjectName("org.example:type=Inventory,name=" + ObjectName.quote(name)));
+        } catch (JMException e) {
+            System.err.println("No se pudieron publicar las metricas por JMX: " + e.getMessage());
+        }
+    }
+
+    // Agrega una linea JSON con el snapshot al archivo cada "seconds" segundos y una
+    // ultima al cerrar (stopDump)
+    public synchronized void startDump(Path file, long seconds) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(file), seconds, seconds, TimeUnit.SECONDS);
+        dumpFile = file;
+    }
+
+    public synchronized void stopDump() {
+        if (dumper == null) {
+            return;
+        }
+        dumper.shutdownNow();
+        try {
+            dumper.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dumper = null;
+        dump(dumpFile);
+    }
+
+    private void dump(Path file) {
+        StringBuilder line = new StringBuilder("{\"time\":\"").append(Instant.now()).append('"');
+        for (Map.Entry<String, Number> entry : snapshot().entrySet()) {
+            line.append(",\"").append(entry.getKey()).append("\":").append(entry.getValue());
+        }
+        line.append('}');
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(line.toString());
+            writer.newLine();
+        } catch (IOException e) {
+            System.err.println("No se pudieron escribir las metricas en " + file + ": " + e.getMessage());
+        }
+    }
+
+    // DynamicMBean: cada valor del snapshot es un atributo de solo lectura
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Number value = snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Number> values = snapshot();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Number value = values.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Las metricas son de solo lectura: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (Map.Entry<String, Number> entry : snapshot().entrySet()) {
+            attributes.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                    entry.getKey(), true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "Metricas del inventario",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+}
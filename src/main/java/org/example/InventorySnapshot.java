@@ -0,0 +1,137 @@
+package org.example;
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Una version congelada de un VersionedInventory: las raices de los dos arboles
+// persistentes en el momento del commit. Leerla no toma cerrojos y no ve nada de lo
+// que el escritor haga despues. Tomarla solo copia las dos referencias; close la
+// suelta, y cuando ninguna la referencia el GC recupera los nodos que ya no estan
+// en la version actual. Es de solo lectura: insert, PATCH y DELETE fallan.
+final class InventorySnapshot implements Inventory, Closeable {
+    private final VersionedInventory owner;
+    private final long version;
+    private final int size;
+    private VersionedTree.Node byIsbn;
+    private VersionedTree.Node byName;
+    private final boolean pinned;
+    private boolean closed;
+
+    InventorySnapshot(VersionedInventory owner, long version, int size,
+                      VersionedTree.Node byIsbn, VersionedTree.Node byName, boolean pinned) {
+        this.owner = owner;
+        this.version = version;
+        this.size = size;
+        this.byIsbn = byIsbn;
+        this.byName = byName;
+        this.pinned = pinned;
+    }
+
+    VersionedTree.Node byIsbn() {
+        return byIsbn;
+    }
+
+    VersionedTree.Node byName() {
+        return byName;
+    }
+
+    // Numero de commit de esta version
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public Book searchByName(String name) {
+        long start = System.nanoTime();
+        Book book = VersionedTree.get(byName, VersionedInventory.nameKey(name), name);
+        if (book == null) {
+            owner.metrics.searchMisses.increment();
+        }
+        owner.metrics.record(InventoryMetrics.SEARCH, start);
+        return book;
+    }
+
+    @Override
+    public Book findBookByIsbn(String isbn) {
+        return VersionedTree.get(byIsbn, Book.isbnKey(isbn), isbn);
+    }
+
+    // true si el indice por nombre de esta version apunta a este libro (un PATCH puede repetir nombres)
+    public boolean nameIndexed(Book book) {
+        String name = book.name();
+        return VersionedTree.get(byName, VersionedInventory.nameKey(name), name) == book;
+    }
+
+    // Recorre los libros en orden de ISBN
+    public void forEach(Consumer<Book> action) {
+        VersionedTree.forEach(byIsbn, action);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Las versiones no tienen indice de titulos
+    @Override
+    public List<Book> searchTitlesByPrefix(String prefix, int limit) {
+        throw noTitleIndex();
+    }
+
+    @Override
+    public List<Book> searchTitlesFuzzy(String query, int maxDistance, int limit) {
+        throw noTitleIndex();
+    }
+
+    private static UnsupportedOperationException noTitleIndex() {
+        return new UnsupportedOperationException("El inventario versionado no tiene indice de titulos");
+    }
+
+    @Override
+    public InventoryMetrics metrics() {
+        return owner.metrics;
+    }
+
+    @Override
+    public CompressionStats compressionStats() {
+        return owner.compressionStats;
+    }
+
+    @Override
+    public void insert(Book book) {
+        throw readOnly();
+    }
+
+    @Override
+    public void insertAll(List<Book> run) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean updateBook(String isbn, Map<String, Object> updateData) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeBook(String isbn) {
+        throw readOnly();
+    }
+
+    private UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("La version " + version + " del inventario es de solo lectura");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        byIsbn = null;
+        byName = null;
+        if (pinned) {
+            owner.release();
+        }
+    }
+}
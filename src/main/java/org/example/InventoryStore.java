@@ -0,0 +1,130 @@
+package org.example;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Durabilidad del arbol en un directorio: snapshot.bin (ultimo snapshot) y los
+// segmentos de la bitacora (operaciones posteriores). Al abrir se carga el
+// snapshot y solo se vuelve a aplicar la cola de la bitacora. Cada checkpointEvery
+// operaciones el hilo de checkpoints toma un snapshot: detiene a los escritores
+// solo para copiar los libros y cerrar el segmento, escribe el snapshot sin
+// frenarlos y despues borra los segmentos que quedaron adentro.
+final class InventoryStore implements Closeable {
+    static final String SNAPSHOT = "snapshot.bin";
+    static final long DEFAULT_CHECKPOINT_EVERY = 100_000;
+    static final long DEFAULT_SYNC_INTERVAL_MILLIS = 50;
+
+    private final Path directory;
+    private final BTree tree;
+    private final OperationJournal journal;
+    private final boolean recovered;
+
+    private InventoryStore(Path directory, BTree tree, OperationJournal journal, boolean recovered) {
+        this.directory = directory;
+        this.tree = tree;
+        this.journal = journal;
+        this.recovered = recovered;
+    }
+
+    public static InventoryStore open(Path directory, BTree tree) throws IOException {
+        return open(directory, tree, DEFAULT_CHECKPOINT_EVERY);
+    }
+
+    public static InventoryStore open(Path directory, BTree tree, long checkpointEvery) throws IOException {
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT);
+        long snapshotSeq = 0;
+        boolean recovered = false;
+        if (Files.exists(snapshot)) {
+            snapshotSeq = SnapshotFile.read(snapshot, tree);
+            recovered = true;
+        }
+
+        TailReplayer replayer = new TailReplayer(tree);
+        OperationJournal journal = OperationJournal.open(directory, snapshotSeq, replayer);
+        replayer.flush();
+        recovered |= replayer.applied > 0;
+
+        InventoryStore store = new InventoryStore(directory, tree, journal, recovered);
+        journal.setCheckpointHook(checkpointEvery, store::checkpoint);
+        journal.startFlusher(DEFAULT_SYNC_INTERVAL_MILLIS);
+        tree.journal = journal;
+        return store;
+    }
+
+    // true si habia un snapshot o una bitacora con operaciones
+    public boolean recovered() {
+        return recovered;
+    }
+
+    public OperationJournal journal() {
+        return journal;
+    }
+
+    // No se llama desde dentro de una escritura del arbol (pauseWriters la esperaria)
+    public synchronized void checkpoint() {
+        SnapshotFile.Image image;
+        long seq;
+        journal.pauseWriters();
+        try {
+            image = SnapshotFile.capture(tree);
+            seq = journal.rotate();
+        } finally {
+            journal.resumeWriters();
+        }
+        try {
+            SnapshotFile.write(directory.resolve(SNAPSHOT), image, seq);
+        } catch (IOException e) {
+            throw new StorageException("No se pudo escribir el snapshot", e);
+        }
+        journal.dropThrough(seq);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (tree.journal == journal) {
+            tree.journal = null;
+        }
+        journal.close();
+    }
+
+    // Aplica la cola de la bitacora; las rachas de INSERT se cargan juntas como en
+    // ReaderCSV en modo bulk
+    private static final class TailReplayer implements OperationJournal.Replayer {
+        private final BTree tree;
+        private final List<Book> pending = new ArrayList<>();
+        private long applied;
+
+        TailReplayer(BTree tree) {
+            this.tree = tree;
+        }
+
+        public void insert(Book book) {
+            pending.add(book);
+            applied++;
+        }
+
+        public void patch(String isbn, Map<String, Object> updateData) {
+            flush();
+            tree.updateBook(isbn, updateData);
+            applied++;
+        }
+
+        public void delete(String isbn) {
+            flush();
+            tree.removeBook(isbn);
+            applied++;
+        }
+
+        void flush() {
+            if (!pending.isEmpty()) {
+                tree.insertAll(pending);
+                pending.clear();
+            }
+        }
+    }
+}
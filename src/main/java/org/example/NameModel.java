@@ -0,0 +1,183 @@
+package org.example;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Modelo de compresion compartido por todo el inventario para el campo "name".
+// Se entrena una sola vez con los nombres cargados en el arbol (un codigo Huffman
+// sobre bytes UTF-8 y una tabla de frecuencias para el compresor aritmetico) y cada
+// nombre se guarda con el codificador que lo deje mas pequeno:
+//   [RAW][bytes UTF-8]
+//   [HUFFMAN][varint bytes UTF-8][bits]
+//   [ARITHMETIC][varint caracteres][bits]
+final class NameModel {
+    static final byte RAW = 0;
+    static final byte HUFFMAN = 1;
+    static final byte ARITHMETIC = 2;
+
+    // El compresor aritmetico de 16 bits necesita escala <= 2^14 para no perder simbolos
+    static final int MAX_SCALE = (1 << 14) - 1;
+
+    // Modelo vacio: todos los nombres se guardan en UTF-8
+    static final NameModel RAW_ONLY = new NameModel(null, null, 0);
+
+    private final HuffmanCodec huffman;
+    private final ArithmeticCompressionInt arithmetic;
+    private final int arithmeticTableSize;
+
+    private NameModel(HuffmanCodec huffman, ArithmeticCompressionInt arithmetic, int arithmeticTableSize) {
+        this.huffman = huffman;
+        this.arithmetic = arithmetic;
+        this.arithmeticTableSize = arithmeticTableSize;
+    }
+
+    public static NameModel train(Iterable<String> names) {
+        long[] byteFrequency = new long[HuffmanCodec.SYMBOLS];
+        long[] charFrequency = new long[Character.MAX_VALUE + 1];
+        boolean empty = true;
+        for (String name : names) {
+            for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+                byteFrequency[b & 0xFF]++;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                charFrequency[name.charAt(i)]++;
+            }
+            empty = false;
+        }
+        if (empty) {
+            return RAW_ONLY;
+        }
+
+        HuffmanCodec huffman = HuffmanCodec.fromFrequencies(byteFrequency);
+        return new NameModel(huffman, buildArithmetic(charFrequency), arithmeticTableSize(charFrequency));
+    }
+
+    // Escala las frecuencias para que sumen a lo mas MAX_SCALE; si hay mas caracteres
+    // distintos que eso, los menos frecuentes quedan fuera del modelo
+    private static ArithmeticCompressionInt buildArithmetic(long[] frequency) {
+        int distinct = 0;
+        long total = 0;
+        for (long f : frequency) {
+            if (f > 0) {
+                distinct++;
+                total += f;
+            }
+        }
+        long[] ordered = new long[distinct];
+        int n = 0;
+        for (int c = 0; c < frequency.length; c++) {
+            if (frequency[c] > 0) {
+                ordered[n++] = (frequency[c] << 16) | c;
+            }
+        }
+        Arrays.sort(ordered);
+        int skip = Math.max(0, distinct - MAX_SCALE / 2);
+
+        long budget = MAX_SCALE;
+        int[] scaled = new int[distinct];
+        while (true) {
+            long sum = 0;
+            for (int i = skip; i < distinct; i++) {
+                long f = ordered[i] >>> 16;
+                scaled[i] = (int) Math.max(1, total <= MAX_SCALE ? f : f * budget / total);
+                sum += scaled[i];
+            }
+            if (sum <= MAX_SCALE) {
+                break;
+            }
+            budget -= (sum - MAX_SCALE);
+        }
+
+        // Mismo orden que calculateProbabilities: frecuencia ascendente, luego caracter
+        long[] byScaled = new long[distinct - skip];
+        for (int i = skip; i < distinct; i++) {
+            byScaled[i - skip] = ((long) scaled[i] << 16) | (ordered[i] & 0xFFFF);
+        }
+        Arrays.sort(byScaled);
+        char[] symbols = new char[byScaled.length];
+        int[] cumulative = new int[byScaled.length + 1];
+        for (int i = 0; i < byScaled.length; i++) {
+            symbols[i] = (char) (byScaled[i] & 0xFFFF);
+            cumulative[i + 1] = cumulative[i] + (int) (byScaled[i] >>> 16);
+        }
+        return new ArithmeticCompressionInt(symbols, cumulative);
+    }
+
+    private static int arithmeticTableSize(long[] frequency) {
+        int size = 0;
+        for (long f : frequency) {
+            if (f > 0) {
+                size += 2 + Varint.sizeOf(Math.min(f, MAX_SCALE));
+            }
+        }
+        return size;
+    }
+
+    // Bytes que ocupa el modelo en si (cabecera de Huffman + tabla aritmetica)
+    public int serializedSize() {
+        return huffman == null ? 0 : huffman.headerSize() + arithmeticTableSize;
+    }
+
+    public PackedName pack(String name) {
+        byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+        byte[] best = new byte[utf8.length + 1];
+        best[0] = RAW;
+        System.arraycopy(utf8, 0, best, 1, utf8.length);
+        if (huffman == null) {
+            return new PackedName(best, name.hashCode());
+        }
+
+        if (huffman.canEncode(utf8, 0, utf8.length)) {
+            int payload = (int) ((huffman.encodedBits(utf8, 0, utf8.length) + 7) / 8);
+            int size = 1 + Varint.sizeOf(utf8.length) + payload;
+            if (size < best.length) {
+                ByteBuffer out = ByteBuffer.allocate(size);
+                out.put(HUFFMAN);
+                Varint.putInt(out, utf8.length);
+                huffman.encode(utf8, 0, utf8.length, out);
+                best = out.array();
+            }
+        }
+
+        if (arithmetic.canEncode(name)) {
+            BitOutput bits = new BitOutput(name.length() + 8);
+            arithmetic.compress(name, bits);
+            int payload = (int) ((bits.bitLength() + 7) / 8);
+            int size = 1 + Varint.sizeOf(name.length()) + payload;
+            if (size < best.length) {
+                ByteBuffer out = ByteBuffer.allocate(size);
+                out.put(ARITHMETIC);
+                Varint.putInt(out, name.length());
+                bits.writeTo(out);
+                best = out.array();
+            }
+        }
+        return new PackedName(best, name.hashCode());
+    }
+
+    // Llave para buscar el nombre en un indice de este modelo sin codificarlo
+    public PackedName probe(String name) {
+        return new PackedName.Probe(name, this);
+    }
+
+    public String unpack(PackedName packed) {
+        byte[] bytes = packed.bytes;
+        switch (bytes[0]) {
+            case RAW:
+                return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+            case HUFFMAN: {
+                ByteBuffer in = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+                byte[] utf8 = new byte[Varint.getInt(in)];
+                huffman.decode(in, utf8, 0, utf8.length);
+                return new String(utf8, StandardCharsets.UTF_8);
+            }
+            case ARITHMETIC: {
+                ByteBuffer in = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+                int chars = Varint.getInt(in);
+                return arithmetic.decompress(new BitInput(in), chars);
+            }
+            default:
+                throw new IllegalArgumentException("Codificador de nombre desconocido: " + bytes[0]);
+        }
+    }
+}
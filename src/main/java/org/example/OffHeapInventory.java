@@ -0,0 +1,217 @@
+package org.example;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Inventario con los libros fuera del heap: los registros viven en una BookArena
+// y los indices por ISBN y por nombre (OffsetIndex) solo guardan direcciones, asi
+// que el heap no crece con el catalogo y el GC no tiene que recorrerlo. Los Book
+// se arman solo al devolverlos (busquedas) y al aplicar un PATCH.
+//
+// Los indices siguen las mismas reglas que BTree: un INSERT con ISBN o nombre
+// repetido se rechaza, un PATCH deja el nombre nuevo apuntando al libro y un
+// DELETE quita la entrada de su nombre. Un PATCH escribe el registro completo en
+// otro hueco y libera el viejo. Cuando los huecos libres pasan de la mitad de la
+// memoria reservada, los registros vivos se copian a una arena nueva y la vieja se
+// libera (compact). Igual que el BTree no concurrente, admite un escritor o varios
+// lectores, no los dos a la vez.
+final class OffHeapInventory implements Inventory, Closeable {
+    // No vale la pena compactar mientras la arena tenga menos de estos bytes
+    private static final long COMPACT_MIN_BYTES = 4L * BookArena.SLAB_BYTES;
+
+    private BookArena records = new BookArena();
+    private final OffsetIndex byIsbn = new OffsetIndex(records, false);
+    private final OffsetIndex byName = new OffsetIndex(records, true);
+    final InventoryMetrics metrics = new InventoryMetrics(this);
+    final CompressionStats compressionStats = new CompressionStats();
+
+    @Override
+    public void insert(Book book) {
+        long start = System.nanoTime();
+        if (!register(book)) {
+            metrics.rejectedInserts.increment();
+        }
+        publish();
+        metrics.record(InventoryMetrics.INSERT, start);
+    }
+
+    // No hay arbol que armar de una vez, asi que la racha se registra libro por libro
+    @Override
+    public void insertAll(List<Book> run) {
+        long start = System.nanoTime();
+        int accepted = 0;
+        for (Book book : run) {
+            if (register(book)) {
+                accepted++;
+            }
+        }
+        metrics.bulkInserted.add(accepted);
+        metrics.rejectedInserts.add(run.size() - accepted);
+        publish();
+        metrics.record(InventoryMetrics.BULK, start);
+    }
+
+    private boolean register(Book book) {
+        byte[] isbn = BookArena.utf8(book.isbn());
+        if (byIsbn.get(isbn, BookArena.hash(isbn)) != BookArena.NONE) {
+            return false;
+        }
+        byte[] name = BookArena.utf8(book.name());
+        if (byName.get(name, BookArena.hash(name)) != BookArena.NONE) {
+            return false;
+        }
+        long address = records.add(book);
+        byIsbn.put(address, isbn);
+        byName.put(address, name);
+        return true;
+    }
+
+    @Override
+    public boolean updateBook(String isbn, Map<String, Object> updateData) {
+        long start = System.nanoTime();
+        try {
+            boolean updated = update(isbn, updateData);
+            if (!updated) {
+                metrics.patchMisses.increment();
+            }
+            return updated;
+        } finally {
+            metrics.record(InventoryMetrics.PATCH, start);
+        }
+    }
+
+    private boolean update(String isbn, Map<String, Object> updateData) {
+        byte[] isbnBytes = BookArena.utf8(isbn);
+        long address = byIsbn.get(isbnBytes, BookArena.hash(isbnBytes));
+        if (address == BookArena.NONE) {
+            return false;
+        }
+
+        Book originalBook = records.read(address);
+        Book updatedBook = originalBook.withUpdates(updateData);
+        byte[] oldName = BookArena.utf8(originalBook.name());
+        byte[] newName = BookArena.utf8(updatedBook.name());
+        if (!Arrays.equals(oldName, newName)) {
+            byName.remove(oldName, BookArena.hash(oldName));
+            compressionStats.invalidate(originalBook.name());
+        }
+
+        long moved = records.add(updatedBook);
+        byName.put(moved, newName);
+        byIsbn.put(moved, isbnBytes);
+        records.free(address);
+        compactIfSparse();
+        publish();
+        return true;
+    }
+
+    @Override
+    public void removeBook(String isbn) {
+        long start = System.nanoTime();
+        byte[] isbnBytes = BookArena.utf8(isbn);
+        long address = byIsbn.remove(isbnBytes, BookArena.hash(isbnBytes));
+        if (address == BookArena.NONE) {
+            metrics.deleteMisses.increment();
+        } else {
+            String name = records.read(address).name();
+            byte[] nameBytes = BookArena.utf8(name);
+            byName.remove(nameBytes, BookArena.hash(nameBytes));
+            compressionStats.invalidate(name);
+            records.free(address);
+            compactIfSparse();
+            publish();
+        }
+        metrics.record(InventoryMetrics.DELETE, start);
+    }
+
+    @Override
+    public Book searchByName(String name) {
+        long start = System.nanoTime();
+        byte[] key = BookArena.utf8(name);
+        long address = byName.get(key, BookArena.hash(key));
+        Book book = address == BookArena.NONE ? null : records.read(address);
+        if (book == null) {
+            metrics.searchMisses.increment();
+        }
+        metrics.record(InventoryMetrics.SEARCH, start);
+        return book;
+    }
+
+    @Override
+    public Book findBookByIsbn(String isbn) {
+        byte[] key = BookArena.utf8(isbn);
+        long address = byIsbn.get(key, BookArena.hash(key));
+        return address == BookArena.NONE ? null : records.read(address);
+    }
+
+    @Override
+    public int size() {
+        return byIsbn.size();
+    }
+
+    // Sin indice de titulos: Main no deja combinar --title-search con --off-heap
+    @Override
+    public List<Book> searchTitlesByPrefix(String prefix, int limit) {
+        throw noTitleIndex();
+    }
+
+    @Override
+    public List<Book> searchTitlesFuzzy(String query, int maxDistance, int limit) {
+        throw noTitleIndex();
+    }
+
+    private static UnsupportedOperationException noTitleIndex() {
+        return new UnsupportedOperationException("El inventario fuera del heap no tiene indice de titulos");
+    }
+
+    @Override
+    public InventoryMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public CompressionStats compressionStats() {
+        return compressionStats;
+    }
+
+    public long reservedBytes() {
+        return records.reservedBytes();
+    }
+
+    public long liveBytes() {
+        return records.liveBytes();
+    }
+
+    private void compactIfSparse() {
+        long reserved = records.reservedBytes();
+        if (reserved >= COMPACT_MIN_BYTES && records.liveBytes() < reserved / 2) {
+            compact();
+        }
+    }
+
+    // Copia los registros vivos (todos tienen entrada por ISBN) a una arena nueva,
+    // traduce las direcciones de los dos indices y libera la arena vieja
+    public void compact() {
+        BookArena old = records;
+        BookArena target = new BookArena();
+        byIsbn.forEach(address -> old.moveTo(target, address));
+        byIsbn.remap(target, old::forwarded);
+        byName.remap(target, old::forwarded);
+        records = target;
+        old.close();
+        metrics.compaction();
+        publish();
+    }
+
+    private void publish() {
+        metrics.offHeap(records.reservedBytes(), records.liveBytes());
+    }
+
+    @Override
+    public void close() {
+        byIsbn.close();
+        byName.close();
+        records.close();
+    }
+}
@@ -0,0 +1,166 @@
+package org.example;
+import java.io.Closeable;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.function.LongConsumer;
+import java.util.function.LongUnaryOperator;
+
+// Tabla hash abierta (sondeo lineal) de direcciones de BookArena, tambien fuera del
+// heap. No guarda las llaves: el ISBN o el nombre de cada entrada se leen del
+// registro al que apunta, asi que cada entrada ocupa 8 bytes. Al borrar se corren
+// hacia atras las entradas que siguen (sin lapidas).
+final class OffsetIndex implements Closeable {
+    private static final long EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private BookArena records;
+    private final boolean byName;
+    private Arena arena;
+    private MemorySegment table;
+    private int mask;
+    private int size;
+
+    OffsetIndex(BookArena records, boolean byName) {
+        this.records = records;
+        this.byName = byName;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        arena = Arena.ofShared();
+        table = arena.allocate((long) capacity * Long.BYTES, Long.BYTES);
+        table.fill((byte) 0xFF);
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Direccion del registro con esa llave (UTF-8) o BookArena.NONE
+    public long get(byte[] key, int hash) {
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long address = slot(i);
+            if (address == EMPTY) {
+                return BookArena.NONE;
+            }
+            if (hashOf(address) == hash && matches(address, key)) {
+                return address;
+            }
+        }
+    }
+
+    // Pone el registro bajo su propia llave; devuelve la direccion que reemplazo o BookArena.NONE
+    public long put(long address, byte[] key) {
+        if ((size + 1) * 4L > (mask + 1) * 3L) {
+            resize();
+        }
+        int hash = hashOf(address);
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long current = slot(i);
+            if (current == EMPTY) {
+                setSlot(i, address);
+                size++;
+                return BookArena.NONE;
+            }
+            if (hashOf(current) == hash && matches(current, key)) {
+                setSlot(i, address);
+                return current;
+            }
+        }
+    }
+
+    // Quita la entrada con esa llave; devuelve su direccion o BookArena.NONE
+    public long remove(byte[] key, int hash) {
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long address = slot(i);
+            if (address == EMPTY) {
+                return BookArena.NONE;
+            }
+            if (hashOf(address) == hash && matches(address, key)) {
+                shiftBack(i);
+                size--;
+                return address;
+            }
+        }
+    }
+
+    // Cierra el hueco en "hole" moviendo las entradas siguientes que no quedarian
+    // alcanzables desde su posicion inicial
+    private void shiftBack(int hole) {
+        for (int i = (hole + 1) & mask; ; i = (i + 1) & mask) {
+            long address = slot(i);
+            if (address == EMPTY) {
+                setSlot(hole, EMPTY);
+                return;
+            }
+            int home = hashOf(address) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                setSlot(hole, address);
+                hole = i;
+            }
+        }
+    }
+
+    // Pasa cada direccion a la arena nueva; las posiciones no cambian porque el hash
+    // depende solo de la llave
+    public void remap(BookArena target, LongUnaryOperator move) {
+        for (int i = 0; i <= mask; i++) {
+            long address = slot(i);
+            if (address != EMPTY) {
+                setSlot(i, move.applyAsLong(address));
+            }
+        }
+        records = target;
+    }
+
+    // Recorre las direcciones en el orden de la tabla
+    public void forEach(LongConsumer action) {
+        for (int i = 0; i <= mask; i++) {
+            long address = slot(i);
+            if (address != EMPTY) {
+                action.accept(address);
+            }
+        }
+    }
+
+    private void resize() {
+        Arena oldArena = arena;
+        MemorySegment old = table;
+        int oldCapacity = mask + 1;
+        allocate(oldCapacity * 2);
+        for (int j = 0; j < oldCapacity; j++) {
+            long address = old.getAtIndex(ValueLayout.JAVA_LONG, j);
+            if (address != EMPTY) {
+                int i = hashOf(address) & mask;
+                while (slot(i) != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                setSlot(i, address);
+            }
+        }
+        oldArena.close();
+    }
+
+    private long slot(int i) {
+        return table.getAtIndex(ValueLayout.JAVA_LONG, i);
+    }
+
+    private void setSlot(int i, long address) {
+        table.setAtIndex(ValueLayout.JAVA_LONG, i, address);
+    }
+
+    private int hashOf(long address) {
+        return byName ? records.nameHash(address) : records.isbnHash(address);
+    }
+
+    private boolean matches(long address, byte[] key) {
+        return byName ? records.nameEquals(address, key) : records.isbnEquals(address, key);
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
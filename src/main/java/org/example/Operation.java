@@ -0,0 +1,58 @@
+package org.example;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+// Operacion de carga ya interpretada (libro armado, ISBN y campos del PATCH), lista
+// para aplicarse al arbol. Se arma en los hilos que parsean y la aplica un solo
+// hilo (OperationApplier).
+final class Operation {
+    // Linea que no se pudo interpretar; no corta la racha de INSERT
+    static final byte INVALID = -1;
+
+    final byte kind;
+    // Numero de linea dentro de su bloque (o del archivo, en la carga secuencial)
+    final long line;
+    final Book book;
+    final String isbn;
+    final Map<String, Object> updates;
+    // Nombre de la operacion cuando no es INSERT, PATCH ni DELETE
+    final String name;
+    final RuntimeException error;
+
+    private Operation(byte kind, long line, Book book, String isbn, Map<String, Object> updates,
+                      String name, RuntimeException error) {
+        this.kind = kind;
+        this.line = line;
+        this.book = book;
+        this.isbn = isbn;
+        this.updates = updates;
+        this.name = name;
+        this.error = error;
+    }
+
+    // Interpreta la linea data[start, end); los errores quedan en la operacion
+    static Operation parse(OperationParser parser, OperationLine scratch, ByteBuffer data, int start, int end, long line) {
+        try {
+            parser.parse(data, start, end, scratch);
+        } catch (RuntimeException e) {
+            return new Operation(INVALID, line, null, null, null, null, e);
+        }
+
+        byte kind = scratch.kind;
+        try {
+            switch (kind) {
+                case OperationLine.INSERT:
+                    return new Operation(kind, line, scratch.toBook(), null, null, null, null);
+                case OperationLine.PATCH:
+                    return new Operation(kind, line, null, scratch.isbn(), scratch.updates(), null, null);
+                case OperationLine.DELETE:
+                    return new Operation(kind, line, null, scratch.isbn(), null, null, null);
+                default:
+                    return new Operation(kind, line, null, null, null, scratch.operationName(), null);
+            }
+        } catch (RuntimeException e) {
+            // Un INSERT invalido se descarta sin mas; PATCH y DELETE igual cortan la racha
+            return new Operation(kind == OperationLine.INSERT ? INVALID : kind, line, null, null, null, null, e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.example;
+import java.util.ArrayList;
+import java.util.List;
+
+// Aplica operaciones al arbol en el orden del archivo. En modo bulk las rachas de
+// INSERT se acumulan y se cargan juntas con BTree.insertAll; cualquier otra
+// operacion vacia la racha antes de aplicarse. Los errores se reportan con el
+// numero de linea del archivo.
+final class OperationApplier {
+    private final Inventory tree;
+    private final boolean bulk;
+    private final OperationFile input;
+    private final List<Book> pending = new ArrayList<>();
+
+    OperationApplier(Inventory tree, boolean bulk, OperationFile input) {
+        this.tree = tree;
+        this.bulk = bulk;
+        this.input = input;
+    }
+
+    public void apply(Operation operation, long lineNumber) {
+        if (operation.kind == Operation.INVALID) {
+            tree.metrics().parseErrors.increment();
+            input.report(lineNumber, operation.error);
+            return;
+        }
+
+        if (operation.kind != OperationLine.INSERT && !pending.isEmpty()) {
+            flush();
+        }
+        if (operation.error != null) {
+            tree.metrics().parseErrors.increment();
+            input.report(lineNumber, operation.error);
+            return;
+        }
+
+        try {
+            switch (operation.kind) {
+                case OperationLine.INSERT:
+                    if (bulk) {
+                        pending.add(operation.book);
+                    } else {
+                        tree.insert(operation.book);
+                    }
+                    break;
+                case OperationLine.PATCH:
+                    tree.updateBook(operation.isbn, operation.updates);
+                    break;
+                case OperationLine.DELETE:
+                    tree.removeBook(operation.isbn);
+                    break;
+                default:
+                    tree.metrics().parseErrors.increment();
+                    input.report(lineNumber, "Operación desconocida: " + operation.name);
+            }
+        } catch (RuntimeException e) {
+            tree.metrics().applyErrors.increment();
+            input.report(lineNumber, e);
+        }
+    }
+
+    public void flush() {
+        if (!pending.isEmpty()) {
+            tree.insertAll(pending);
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.example;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Lee un archivo de operaciones por ventanas mapeadas en memoria. Entrega lineas
+// (o bloques de lineas completas) como posiciones dentro del buffer mapeado, sin
+// copiar bytes ni armar Strings; la linea que cruza el final de una ventana hace
+// que la siguiente ventana empiece en ella.
+final class OperationFile implements Closeable {
+    static final int WINDOW_BYTES = 64 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private ByteBuffer window;
+    private long windowStart;
+    private int pos;
+    private int lineStart;
+    private int lineEnd;
+    private long lineNumber;
+    private long errors;
+
+    private OperationFile(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+        map(0, WINDOW_BYTES);
+    }
+
+    public static OperationFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new OperationFile(path, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void map(long start, long length) throws IOException {
+        length = Math.min(Math.min(length, size - start), Integer.MAX_VALUE);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        windowStart = start;
+        pos = 0;
+    }
+
+    private boolean lastWindow() {
+        return windowStart + window.limit() >= size;
+    }
+
+    // La siguiente ventana empieza en pos; si el resto no cabia en la ventana
+    // entera (pos == 0), la nueva es del doble
+    private void advanceWindow() throws IOException {
+        long length = pos == 0 ? (long) window.limit() * 2 : WINDOW_BYTES;
+        if (pos == 0 && window.limit() == Integer.MAX_VALUE) {
+            throw new IOException("Linea demasiado larga en " + path + " cerca del byte " + windowStart);
+        }
+        map(windowStart + pos, length);
+    }
+
+    // Avanza a la siguiente linea (sin el salto de linea ni el '\r' final); false al
+    // terminar el archivo
+    public boolean nextLine() throws IOException {
+        while (true) {
+            int limit = window.limit();
+            int newline = indexOfNewline(window, pos, limit);
+            if (newline >= 0) {
+                setLine(pos, newline);
+                pos = newline + 1;
+                return true;
+            }
+            if (lastWindow()) {
+                if (pos == limit) {
+                    return false;
+                }
+                setLine(pos, limit);
+                pos = limit;
+                return true;
+            }
+            advanceWindow();
+        }
+    }
+
+    private void setLine(int start, int end) {
+        lineStart = start;
+        lineEnd = end > start && window.get(end - 1) == '\r' ? end - 1 : end;
+        lineNumber++;
+    }
+
+    public ByteBuffer buffer() {
+        return window;
+    }
+
+    public int lineStart() {
+        return lineStart;
+    }
+
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    // Bloque de lineas completas de al menos targetBytes (menos al final del
+    // archivo), como vista del buffer mapeado; null al terminar. No mueve
+    // lineNumber: quien recorre el bloque cuenta sus lineas.
+    public ByteBuffer nextChunk(int targetBytes) throws IOException {
+        while (true) {
+            int limit = window.limit();
+            if (pos == limit && lastWindow()) {
+                return null;
+            }
+            int from = (int) Math.min((long) pos + targetBytes, limit) - 1;
+            int newline = indexOfNewline(window, Math.max(from, pos), limit);
+            if (newline < 0 && lastWindow()) {
+                newline = limit - 1;
+            }
+            if (newline >= 0) {
+                ByteBuffer chunk = window.slice(pos, newline + 1 - pos);
+                pos = newline + 1;
+                return chunk;
+            }
+            advanceWindow();
+        }
+    }
+
+    static int indexOfNewline(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Reporta un error en la linea actual
+    public void report(String message) {
+        report(lineNumber, message);
+    }
+
+    public void report(long line, String message) {
+        errors++;
+        System.err.println(path + ":" + line + ": " + message);
+    }
+
+    public void report(long line, RuntimeException e) {
+        report(line, e instanceof OperationFormatException ? e.getMessage() : e.toString());
+    }
+
+    public long errors() {
+        return errors;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,10 @@
+package org.example;
+
+// Linea de operaciones mal formada; el mensaje dice que fallo y en que columna
+class OperationFormatException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public OperationFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,505 @@
+package org.example;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+// Bitacora binaria de las operaciones aplicadas al arbol (solo se agrega al final).
+// Registro: [largo int][secuencia long][operacion byte][datos][crc32 int]
+//   INSERT: registro BookCodec
+//   PATCH:  isbn, varint(campos), pares (campo, valor)
+//   DELETE: isbn
+// Los registros se acumulan en memoria y se escriben con un solo fsync por grupo
+// (group commit): cuando se llena el lote, en sync(), o cada syncIntervalMillis.
+//
+// La bitacora es una serie de segmentos journal-<secuencia>.log en un directorio,
+// donde la secuencia es la del ultimo registro anterior al segmento. rotate()
+// cierra el segmento actual con los escritores detenidos y dropThrough() borra
+// los segmentos que ya estan en un snapshot; asi lo que llega mientras se escribe
+// el snapshot queda en el segmento nuevo. Los escritores del arbol toman
+// enterWriter/exitWriter alrededor de cada cambio y su registro, y el checkpoint
+// corre en su propio hilo, nunca dentro de una escritura. Asi un snapshot largo
+// no demora los fsync periodicos del flusher.
+final class OperationJournal implements Closeable {
+    static final byte INSERT = 1;
+    static final byte PATCH = 2;
+    static final byte DELETE = 3;
+
+    static final int DEFAULT_BATCH_BYTES = 256 << 10;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int READ_BUFFER = 1 << 20;
+
+    interface Replayer {
+        void insert(Book book);
+
+        void patch(String isbn, Map<String, Object> updateData);
+
+        void delete(String isbn);
+    }
+
+    // Un segmento cerrado y la secuencia de su ultimo registro
+    private static final class Segment {
+        final Path file;
+        final long lastSeq;
+
+        Segment(Path file, long lastSeq) {
+            this.file = file;
+            this.lastSeq = lastSeq;
+        }
+    }
+
+    private final Path directory;
+    private final int batchBytes;
+    private final Object syncLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final ReentrantReadWriteLock writers = new ReentrantReadWriteLock();
+    private final List<Segment> closed;
+    private FileChannel channel;
+    private Path segment;
+    private ByteBuffer pending;
+    private long lastSeq;
+    private volatile long durableSeq;
+    private long appendedSinceCheckpoint;
+    private long checkpointEvery;
+    private Runnable checkpointHook;
+    private boolean checkpointQueued;
+    private ScheduledExecutorService flusher;
+    private ExecutorService checkpointer;
+
+    private OperationJournal(Path directory, List<Segment> closed, Path segment, FileChannel channel,
+                             int batchBytes, long lastSeq) {
+        this.directory = directory;
+        this.closed = closed;
+        this.segment = segment;
+        this.channel = channel;
+        this.batchBytes = batchBytes;
+        this.pending = ByteBuffer.allocate(batchBytes * 2);
+        this.lastSeq = lastSeq;
+        this.durableSeq = lastSeq;
+    }
+
+    // Abre la bitacora del directorio y entrega al replayer las operaciones con
+    // secuencia mayor a afterSeq. Un registro incompleto o danado corta su segmento
+    // ahi y descarta los siguientes; los segmentos que ya estan en el snapshot
+    // (hasta afterSeq) se borran. Se sigue escribiendo en el ultimo segmento.
+    public static OperationJournal open(Path directory, long afterSeq, Replayer replayer) throws IOException {
+        List<Path> files = segments(directory);
+        List<Segment> closed = new ArrayList<>();
+        long lastSeq = afterSeq;
+        boolean torn = false;
+        for (Path file : files) {
+            if (torn) {
+                Files.delete(file);
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long[] seq = {lastSeq};
+                long validEnd = replaySegment(channel, afterSeq, seq, replayer);
+                torn = validEnd < channel.size();
+                if (torn) {
+                    channel.truncate(validEnd);
+                    channel.force(true);
+                }
+                closed.add(new Segment(file, seq[0]));
+                lastSeq = seq[0];
+            }
+        }
+
+        Path segment;
+        Segment last = closed.isEmpty() ? null : closed.get(closed.size() - 1);
+        if (last != null) {
+            closed.remove(closed.size() - 1);
+            segment = last.file;
+        } else {
+            segment = segmentFile(directory, lastSeq);
+        }
+        for (int i = closed.size() - 1; i >= 0; i--) {
+            if (closed.get(i).lastSeq <= afterSeq) {
+                Files.delete(closed.get(i).file);
+                closed.remove(i);
+            }
+        }
+        FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new OperationJournal(directory, closed, segment, channel, DEFAULT_BATCH_BYTES, lastSeq);
+    }
+
+    // Los segmentos en orden de secuencia
+    private static List<Path> segments(Path directory) throws IOException {
+        TreeMap<Long, Path> bySeq = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    bySeq.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    // No es un segmento
+                }
+            }
+        }
+        return new ArrayList<>(bySeq.values());
+    }
+
+    private static Path segmentFile(Path directory, long afterSeq) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, afterSeq, SEGMENT_SUFFIX));
+    }
+
+    // Lee el segmento de a READ_BUFFER bytes (crece si un registro no cabe) y
+    // devuelve donde termina el ultimo registro valido; seq[0] queda en la mayor
+    // secuencia vista
+    private static long replaySegment(FileChannel channel, long afterSeq, long[] seq, Replayer replayer) throws IOException {
+        long size = channel.size();
+        ByteBuffer window = ByteBuffer.allocate(READ_BUFFER).flip();
+        long windowStart = 0;
+        long validEnd = 0;
+        CRC32 check = new CRC32();
+        while (true) {
+            if (window.remaining() < 4) {
+                windowStart += window.position();
+                window = fill(channel, window, windowStart, 4);
+            }
+            if (window.remaining() < 4) {
+                break;
+            }
+            int start = window.position();
+            int length = window.getInt(start);
+            if (length < 9 || length > size - windowStart - start - 8) {
+                break;
+            }
+            if (window.remaining() < length + 8) {
+                windowStart += start;
+                window = fill(channel, window, windowStart, length + 8);
+                start = 0;
+            }
+            ByteBuffer body = window.slice(start + 4, length);
+            check.reset();
+            check.update(body.duplicate());
+            if ((int) check.getValue() != window.getInt(start + 4 + length)) {
+                break;
+            }
+            long recordSeq = body.getLong();
+            if (recordSeq > afterSeq) {
+                replay(body, replayer);
+            }
+            seq[0] = Math.max(seq[0], recordSeq);
+            window.position(start + length + 8);
+            validEnd = windowStart + window.position();
+        }
+        return validEnd;
+    }
+
+    // Descarta lo ya leido y lee desde position hasta tener al menos needed bytes
+    // (o llegar al final)
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer window, long position, int needed) throws IOException {
+        window.compact();
+        if (window.capacity() < needed) {
+            window.flip();
+            window = ByteBuffer.allocate(needed).put(window);
+        }
+        long at = position + window.position();
+        while (window.hasRemaining()) {
+            int read = channel.read(window, at);
+            if (read < 0) {
+                break;
+            }
+            at += read;
+        }
+        return window.flip();
+    }
+
+    private static void replay(ByteBuffer body, Replayer replayer) {
+        byte op = body.get();
+        switch (op) {
+            case INSERT:
+                replayer.insert(BookCodec.read(body));
+                break;
+            case PATCH: {
+                String isbn = BookCodec.readString(body);
+                int fields = Varint.getInt(body);
+                Map<String, Object> updateData = new LinkedHashMap<>();
+                for (int i = 0; i < fields; i++) {
+                    String key = BookCodec.readString(body);
+                    updateData.put(key, BookCodec.readString(body));
+                }
+                replayer.patch(isbn, updateData);
+                break;
+            }
+            case DELETE:
+                replayer.delete(BookCodec.readString(body));
+                break;
+            default:
+                throw new StorageException("Operacion desconocida en la bitacora: " + op);
+        }
+    }
+
+    public void logInsert(Book book) {
+        synchronized (this) {
+            int start = begin(INSERT, BookCodec.size(book));
+            BookCodec.write(pending, book);
+            end(start);
+        }
+        afterAppend();
+    }
+
+    public void logPatch(String isbn, Map<String, Object> updateData) {
+        synchronized (this) {
+            int size = BookCodec.stringSize(isbn) + 5;
+            for (Map.Entry<String, Object> entry : updateData.entrySet()) {
+                size += BookCodec.stringSize(entry.getKey()) + BookCodec.stringSize(valueText(entry.getValue()));
+            }
+            int start = begin(PATCH, size);
+            BookCodec.writeString(pending, isbn);
+            Varint.putInt(pending, updateData.size());
+            for (Map.Entry<String, Object> entry : updateData.entrySet()) {
+                BookCodec.writeString(pending, entry.getKey());
+                BookCodec.writeString(pending, valueText(entry.getValue()));
+            }
+            end(start);
+        }
+        afterAppend();
+    }
+
+    public void logDelete(String isbn) {
+        synchronized (this) {
+            int start = begin(DELETE, BookCodec.stringSize(isbn));
+            BookCodec.writeString(pending, isbn);
+            end(start);
+        }
+        afterAppend();
+    }
+
+    private static String valueText(Object value) {
+        return value == null || value == org.json.JSONObject.NULL ? null : value.toString();
+    }
+
+    private int begin(byte op, int payload) {
+        int needed = 4 + 8 + 1 + payload + 4;
+        if (pending.remaining() < needed) {
+            pending = grow(pending, needed);
+        }
+        int start = pending.position();
+        pending.putInt(0);
+        pending.putLong(++lastSeq);
+        pending.put(op);
+        return start;
+    }
+
+    private void end(int start) {
+        int length = pending.position() - start - 4;
+        pending.putInt(start, length);
+        crc.reset();
+        crc.update(pending.slice(start + 4, length));
+        pending.putInt((int) crc.getValue());
+        appendedSinceCheckpoint++;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    // El checkpoint no corre aca: quien escribe tiene tomado su lado de "writers"
+    // (y quizas la hoja), asi que solo se encarga al hilo de checkpoints
+    private void afterAppend() {
+        boolean full;
+        boolean checkpoint = false;
+        synchronized (this) {
+            full = pending.position() >= batchBytes;
+            if (checkpointHook != null && checkpointer != null && checkpointEvery > 0
+                    && appendedSinceCheckpoint >= checkpointEvery && !checkpointQueued) {
+                checkpointQueued = true;
+                checkpoint = true;
+            }
+        }
+        if (full) {
+            sync();
+        }
+        if (checkpoint) {
+            checkpointer.execute(this::runCheckpoint);
+        }
+    }
+
+    private void runCheckpoint() {
+        try {
+            checkpointHook.run();
+        } finally {
+            synchronized (this) {
+                checkpointQueued = false;
+            }
+        }
+    }
+
+    // Un cambio del arbol y su registro; varios escritores pueden estar adentro a la vez
+    public void enterWriter() {
+        writers.readLock().lock();
+    }
+
+    public void exitWriter() {
+        writers.readLock().unlock();
+    }
+
+    // Espera a que salgan los escritores y no deja entrar a otros hasta resumeWriters
+    public void pauseWriters() {
+        writers.writeLock().lock();
+    }
+
+    public void resumeWriters() {
+        writers.writeLock().unlock();
+    }
+
+    public synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    public long durableSeq() {
+        return durableSeq;
+    }
+
+    // Escribe y fuerza a disco todo lo pendiente. Quien llega mientras otro hilo
+    // hace el fsync espera y encuentra su registro ya durable.
+    public void sync() {
+        commit(lastSeq());
+    }
+
+    public void commit(long seq) {
+        synchronized (syncLock) {
+            if (durableSeq >= seq) {
+                return;
+            }
+            ByteBuffer batch;
+            long upTo;
+            synchronized (this) {
+                batch = pending;
+                upTo = lastSeq;
+                pending = ByteBuffer.allocate(Math.max(batchBytes * 2, batch.capacity() / 2));
+            }
+            batch.flip();
+            try {
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                throw new StorageException("No se pudo escribir la bitacora", e);
+            }
+            durableSeq = upTo;
+        }
+    }
+
+    // Limita la perdida ante una caida a syncIntervalMillis aunque el lote no se llene.
+    // Los checkpoints van a otro hilo: mientras se escribe un snapshot el flusher
+    // sigue haciendo fsync cada syncIntervalMillis.
+    public void startFlusher(long syncIntervalMillis) {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "journal-flusher"));
+        flusher.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        checkpointer = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "journal-checkpoint"));
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // El hook corre en el hilo de checkpoints, asi que hace falta startFlusher
+    public synchronized void setCheckpointHook(long everyOperations, Runnable hook) {
+        this.checkpointEvery = everyOperations;
+        this.checkpointHook = hook;
+    }
+
+    // Segmento donde se esta escribiendo
+    public synchronized Path segment() {
+        return segment;
+    }
+
+    // Cierra el segmento actual (ya durable) y empieza otro; devuelve la secuencia
+    // del ultimo registro del segmento cerrado. Se llama con pauseWriters tomado,
+    // asi la secuencia corresponde exactamente al estado del arbol.
+    public long rotate() {
+        synchronized (syncLock) {
+            sync();
+            synchronized (this) {
+                if (segmentFile(directory, lastSeq).equals(segment)) {
+                    // Nada se escribio desde que empezo el segmento
+                    appendedSinceCheckpoint = 0;
+                    return lastSeq;
+                }
+                try {
+                    channel.close();
+                    Path next = segmentFile(directory, lastSeq);
+                    channel = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    channel.position(channel.size());
+                    closed.add(new Segment(segment, lastSeq));
+                    segment = next;
+                } catch (IOException e) {
+                    throw new StorageException("No se pudo empezar un segmento de la bitacora", e);
+                }
+                appendedSinceCheckpoint = 0;
+                return lastSeq;
+            }
+        }
+    }
+
+    // Borra los segmentos cerrados cuyos registros llegan a lo sumo hasta seq
+    public void dropThrough(long seq) {
+        List<Segment> drop = new ArrayList<>();
+        synchronized (this) {
+            for (int i = closed.size() - 1; i >= 0; i--) {
+                if (closed.get(i).lastSeq <= seq) {
+                    drop.add(closed.remove(i));
+                }
+            }
+        }
+        for (Segment old : drop) {
+            try {
+                Files.deleteIfExists(old.file);
+            } catch (IOException e) {
+                throw new StorageException("No se pudo borrar el segmento " + old.file, e);
+            }
+        }
+    }
+
+    // Espera el checkpoint que este en curso antes de cerrar
+    @Override
+    public void close() throws IOException {
+        try {
+            if (checkpointer != null) {
+                checkpointer.shutdown();
+                checkpointer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            if (flusher != null) {
+                flusher.shutdown();
+                flusher.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            sync();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Se interrumpio el cierre de la bitacora");
+        } finally {
+            synchronized (syncLock) {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.example;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Campos conocidos de una linea OP;{json} ya extraidos por OperationParser. Se
+// reutiliza entre lineas; solo PATCH arma un mapa, que es lo que recibe
+// BTree.updateBook.
+final class OperationLine {
+    static final byte UNKNOWN = 0;
+    static final byte INSERT = 1;
+    static final byte PATCH = 2;
+    static final byte DELETE = 3;
+    static final byte SEARCH = 4;
+    // Busquedas de titulos por prefijo y aproximadas (TitleIndex), en el archivo de busquedas
+    static final byte PREFIX = 5;
+    static final byte FUZZY = 6;
+    static final String[] OPERATIONS = {"", "INSERT", "PATCH", "DELETE", "SEARCH", "PREFIX", "FUZZY"};
+
+    static final int ISBN = 0;
+    static final int NAME = 1;
+    static final int AUTHOR = 2;
+    static final int CATEGORY = 3;
+    static final int PRICE = 4;
+    static final int QUANTITY = 5;
+    static final String[] FIELDS = {"isbn", "name", "author", "category", "price", "quantity"};
+
+    byte kind;
+    // Texto de la operacion; solo se arma cuando no es una conocida
+    String operation;
+    final String[] values = new String[FIELDS.length];
+    // Un bit por campo presente, por campo cuyo valor es una cadena JSON y por
+    // campo cuyo valor es un objeto o arreglo (no se decodifica; solo es error si
+    // la operacion usa ese campo)
+    int present;
+    int strings;
+    int nested;
+
+    void clear() {
+        kind = UNKNOWN;
+        operation = null;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+        present = 0;
+        strings = 0;
+        nested = 0;
+    }
+
+    public String operationName() {
+        return operation != null ? operation : OPERATIONS[kind];
+    }
+
+    public boolean has(int field) {
+        return (present & (1 << field)) != 0;
+    }
+
+    // Texto del campo como lo daria JSONObject.optString; null si falta o es null
+    public String value(int field) {
+        if ((nested & (1 << field)) != 0) {
+            throw new OperationFormatException("El campo " + FIELDS[field] + " no puede ser un objeto ni un arreglo");
+        }
+        return values[field];
+    }
+
+    // Igual que JSONObject.getString: el campo tiene que existir y ser una cadena
+    public String requireString(int field) {
+        if ((strings & (1 << field)) == 0) {
+            throw new OperationFormatException(has(field)
+                    ? "El campo " + FIELDS[field] + " no es una cadena"
+                    : "Falta el campo " + FIELDS[field]);
+        }
+        return values[field];
+    }
+
+    public String isbn() {
+        return requireString(ISBN);
+    }
+
+    public Book toBook() {
+        return Book.parse(
+                requireString(ISBN),
+                requireString(NAME),
+                value(AUTHOR),
+                value(CATEGORY),
+                value(PRICE),
+                value(QUANTITY));
+    }
+
+    // Campos del PATCH (sin el ISBN) en el orden de FIELDS; null si venia null
+    public Map<String, Object> updates() {
+        Map<String, Object> updateData = new LinkedHashMap<>();
+        for (int field = NAME; field < FIELDS.length; field++) {
+            if (has(field)) {
+                updateData.put(FIELDS[field], value(field));
+            }
+        }
+        return updateData;
+    }
+}
@@ -0,0 +1,414 @@
+package org.example;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Lee una linea OP;{json} directamente de sus bytes UTF-8, sin armar la linea como
+// String ni un JSONObject: del objeto solo se decodifican los valores de los
+// campos conocidos y el resto se salta. Acepta lo mismo que org.json (comillas
+// simples, valores sin comillas, ';' entre pares) y da los mismos textos que
+// JSONObject.optString; igual que JSONObject ignora lo que sigue a la '}' final.
+final class OperationParser {
+    private static final byte[][] FIELD_BYTES = utf8(OperationLine.FIELDS);
+    private static final byte[][] OPERATION_BYTES = utf8(OperationLine.OPERATIONS);
+    // Caracteres que terminan un valor sin comillas (los mismos que JSONTokener)
+    private static final String DELIMITERS = ",:]}/\\\"[{;=#";
+
+    private ByteBuffer in;
+    private int lineStart;
+    private int pos;
+    private int end;
+    private byte[] scratch = new byte[256];
+    private boolean lastWasString;
+
+    private static byte[][] utf8(String[] words) {
+        byte[][] bytes = new byte[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            bytes[i] = words[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    // Llena out con la linea in[start, end); lanza OperationFormatException si la
+    // linea no tiene el formato OP;{json}
+    public void parse(ByteBuffer in, int start, int end, OperationLine out) {
+        out.clear();
+        this.in = in;
+        this.lineStart = start;
+        this.pos = start;
+        this.end = end;
+
+        int semicolon = start;
+        while (semicolon < end && in.get(semicolon) != ';') {
+            semicolon++;
+        }
+        if (semicolon == end) {
+            throw new OperationFormatException("Formato incorrecto: falta ';'");
+        }
+
+        int opStart = start;
+        int opEnd = semicolon;
+        while (opStart < opEnd && (in.get(opStart) & 0xFF) <= ' ') {
+            opStart++;
+        }
+        while (opEnd > opStart && (in.get(opEnd - 1) & 0xFF) <= ' ') {
+            opEnd--;
+        }
+        out.kind = OperationLine.UNKNOWN;
+        for (byte kind = OperationLine.INSERT; kind < OPERATION_BYTES.length; kind++) {
+            if (regionEquals(opStart, opEnd, OPERATION_BYTES[kind])) {
+                out.kind = kind;
+                break;
+            }
+        }
+        if (out.kind == OperationLine.UNKNOWN) {
+            out.operation = decode(opStart, opEnd);
+        }
+
+        pos = semicolon + 1;
+        parseObject(out);
+    }
+
+    private void parseObject(OperationLine out) {
+        if (nextClean() != '{') {
+            throw error("Se esperaba '{'");
+        }
+        while (true) {
+            int c = nextClean();
+            if (c == '}') {
+                return;
+            }
+            if (c < 0) {
+                throw error("Falta '}'");
+            }
+            if (c == '{' || c == '[') {
+                throw error("La llave no puede ser un objeto ni un arreglo");
+            }
+            pos--;
+            int field = readKey();
+
+            if (nextClean() != ':') {
+                throw error("Se esperaba ':' despues de la llave");
+            }
+            if (field >= 0 && out.has(field)) {
+                throw error("Campo repetido: " + OperationLine.FIELDS[field]);
+            }
+            readValue(field, out);
+
+            c = nextClean();
+            if (c == ',' || c == ';') {
+                if (nextClean() == '}') {
+                    return;
+                }
+                pos--;
+            } else if (c == '}') {
+                return;
+            } else {
+                throw error("Se esperaba ',' o '}'");
+            }
+        }
+    }
+
+    // Posicion del campo conocido en FIELDS o -1
+    private int readKey() {
+        int c = in.get(pos);
+        if (c == '"' || c == '\'') {
+            pos++;
+            int start = pos;
+            if (scanString((byte) c)) {
+                return fieldIndex(start, pos - 1);
+            }
+            pos = start;
+            return fieldIndex(readString((byte) c));
+        }
+        int start = pos;
+        int tokenEnd = scanToken();
+        return fieldIndex(start, tokenEnd);
+    }
+
+    private void readValue(int field, OperationLine out) {
+        int c = nextClean();
+        if (c == '"' || c == '\'') {
+            if (field < 0) {
+                skipString((byte) c);
+            } else {
+                int start = pos;
+                out.values[field] = scanString((byte) c) ? decode(start, pos - 1) : readStringFrom(start, (byte) c);
+                out.strings |= 1 << field;
+                out.present |= 1 << field;
+            }
+            return;
+        }
+        if (c == '{' || c == '[') {
+            skipNested();
+            if (field >= 0) {
+                out.nested |= 1 << field;
+                out.present |= 1 << field;
+            }
+            return;
+        }
+        if (c < 0) {
+            throw error("Falta el valor");
+        }
+
+        pos--;
+        int start = pos;
+        int tokenEnd = scanToken();
+        if (field >= 0) {
+            out.values[field] = scalar(decode(start, tokenEnd));
+            if (lastWasString) {
+                out.strings |= 1 << field;
+            }
+            out.present |= 1 << field;
+        }
+    }
+
+    // Valor sin comillas hasta un delimitador o caracter de control; devuelve el fin
+    // del texto sin los espacios finales (pos queda en el delimitador)
+    private int scanToken() {
+        int start = pos;
+        while (pos < end) {
+            int b = in.get(pos) & 0xFF;
+            if (b < ' ' || (b < 0x80 && DELIMITERS.indexOf(b) >= 0)) {
+                break;
+            }
+            pos++;
+        }
+        int tokenEnd = pos;
+        while (tokenEnd > start && in.get(tokenEnd - 1) == ' ') {
+            tokenEnd--;
+        }
+        if (tokenEnd == start) {
+            throw error("Falta el valor");
+        }
+        return tokenEnd;
+    }
+
+    // Mismo resultado que JSONObject.stringToValue(texto).toString(), null para null
+    private String scalar(String text) {
+        lastWasString = false;
+        if (text.equalsIgnoreCase("true")) {
+            return "true";
+        }
+        if (text.equalsIgnoreCase("false")) {
+            return "false";
+        }
+        if (text.equalsIgnoreCase("null")) {
+            return null;
+        }
+        char initial = text.charAt(0);
+        if ((initial >= '0' && initial <= '9') || initial == '-') {
+            String number = numberText(text);
+            if (number != null) {
+                return number;
+            }
+        }
+        lastWasString = true;
+        return text;
+    }
+
+    private static String numberText(String val) {
+        char initial = val.charAt(0);
+        if (val.indexOf('.') > -1 || val.indexOf('e') > -1 || val.indexOf('E') > -1 || "-0".equals(val)) {
+            try {
+                BigDecimal decimal = new BigDecimal(val);
+                if (initial == '-' && BigDecimal.ZERO.compareTo(decimal) == 0) {
+                    return "-0.0";
+                }
+                return decimal.toString();
+            } catch (NumberFormatException retryAsDouble) {
+                try {
+                    Double value = Double.valueOf(val);
+                    return value.isNaN() || value.isInfinite() ? null : value.toString();
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        if (initial == '0' && val.length() > 1) {
+            char at1 = val.charAt(1);
+            if (at1 >= '0' && at1 <= '9') {
+                return null;
+            }
+        } else if (initial == '-' && val.length() > 2) {
+            char at1 = val.charAt(1);
+            char at2 = val.charAt(2);
+            if (at1 == '0' && at2 >= '0' && at2 <= '9') {
+                return null;
+            }
+        }
+        try {
+            return new BigInteger(val).toString();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Avanza hasta la comilla que cierra; true si no hubo escapes (pos queda
+    // despues de la comilla). Con escapes pos queda en la primera barra.
+    private boolean scanString(byte quote) {
+        while (pos < end) {
+            byte b = in.get(pos);
+            if (b == quote) {
+                pos++;
+                return true;
+            }
+            if (b == '\\') {
+                return false;
+            }
+            if (b == '\r' || b == '\n' || b == 0) {
+                break;
+            }
+            pos++;
+        }
+        throw error("Cadena sin terminar");
+    }
+
+    // Salta una cadena que no se usa, revisando igual sus escapes
+    private void skipString(byte quote) {
+        while (!scanString(quote)) {
+            pos++;
+            int c = pos < end ? in.get(pos++) : -1;
+            if (c == 'u') {
+                for (int i = 0; i < 4; i++) {
+                    if (pos >= end || Character.digit(in.get(pos++), 16) < 0) {
+                        throw error("Escape invalido");
+                    }
+                }
+            } else if ("btnfr\"'\\/".indexOf(c) < 0 || c < 0) {
+                throw error("Escape invalido");
+            }
+        }
+    }
+
+    private String readString(byte quote) {
+        return readStringFrom(pos, quote);
+    }
+
+    // Camino lento para cadenas con escapes, igual que JSONTokener.nextString
+    private String readStringFrom(int start, byte quote) {
+        StringBuilder text = new StringBuilder();
+        pos = start;
+        while (true) {
+            int runStart = pos;
+            boolean closed = scanString(quote);
+            text.append(decode(runStart, closed ? pos - 1 : pos));
+            if (closed) {
+                return text.toString();
+            }
+            pos++;
+            if (pos >= end) {
+                throw error("Cadena sin terminar");
+            }
+            char c = (char) in.get(pos++);
+            switch (c) {
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 'u':
+                    if (pos + 4 > end) {
+                        throw error("Escape invalido");
+                    }
+                    try {
+                        text.append((char) Integer.parseInt(decode(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Escape invalido");
+                    }
+                    pos += 4;
+                    break;
+                case '"':
+                case '\'':
+                case '\\':
+                case '/':
+                    text.append(c);
+                    break;
+                default:
+                    throw error("Escape invalido");
+            }
+        }
+    }
+
+    // Salta un objeto o arreglo anidado de un campo que no se usa
+    private void skipNested() {
+        int depth = 1;
+        while (depth > 0) {
+            if (pos >= end) {
+                throw error("Objeto sin terminar");
+            }
+            byte b = in.get(pos++);
+            if (b == '"' || b == '\'') {
+                skipString(b);
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            }
+        }
+    }
+
+    private int nextClean() {
+        while (pos < end) {
+            int b = in.get(pos++) & 0xFF;
+            if (b > ' ') {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    private int fieldIndex(int start, int stop) {
+        for (int i = 0; i < FIELD_BYTES.length; i++) {
+            if (regionEquals(start, stop, FIELD_BYTES[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int fieldIndex(String key) {
+        for (int i = 0; i < OperationLine.FIELDS.length; i++) {
+            if (OperationLine.FIELDS[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean regionEquals(int start, int stop, byte[] expected) {
+        if (stop - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (in.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(int start, int stop) {
+        int length = stop - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        in.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private OperationFormatException error(String message) {
+        return new OperationFormatException(message + " (columna " + (pos - lineStart) + ")");
+    }
+}
@@ -0,0 +1,77 @@
+package org.example;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Tareas independientes (comprimir o descomprimir un bloque) que corren en un
+// ForkJoinPool pero cuyos resultados se consumen en el orden en que se mandaron,
+// como los bloques de SearchReport.runParallel. Como mucho hay "window" tareas sin
+// consumir, asi que la memoria no depende del tamano del archivo. Con un hilo las
+// tareas corren en el hilo que llama, sin pool.
+final class OrderedTasks<T> implements Closeable {
+    private final ForkJoinPool pool;
+    private final int window;
+    private final ArrayDeque<Future<T>> inFlight = new ArrayDeque<>();
+
+    OrderedTasks(int threads, int window) {
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        this.window = Math.max(1, window);
+    }
+
+    // Manda la tarea; si la ventana quedo llena devuelve el resultado mas viejo, si no null
+    public T submit(Callable<T> task) throws IOException {
+        if (pool != null) {
+            inFlight.add(pool.submit(task));
+        } else {
+            inFlight.add(CompletableFuture.completedFuture(call(task)));
+        }
+        return inFlight.size() >= window ? next() : null;
+    }
+
+    // El resultado mas viejo que falta consumir, o null si no queda ninguno
+    public T next() throws IOException {
+        Future<T> future = inFlight.poll();
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Tarea de bloque interrumpida");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // ForkJoinPool envuelve las excepciones verificadas en RuntimeException (hasta dos veces)
+            while (cause != null && cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException("Fallo un bloque", cause);
+        }
+    }
+
+    private static <T> T call(Callable<T> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Fallo un bloque", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
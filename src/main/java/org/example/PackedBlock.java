@@ -0,0 +1,68 @@
+package org.example;
+
+// Un bloque de bytes comprimido por separado, para las columnas del catalogo y los
+// bloques de BlockCompressedFile. codec dice como esta guardado: en crudo, con
+// HuffmanCodec.compress o con el codificador de rango de orden 1. Con BEST se
+// prueban los dos y se queda el que ocupe menos (o crudo si ninguno achica).
+final class PackedBlock {
+    static final byte RAW = 0;
+    static final byte HUFFMAN = 1;
+    static final byte RANGE = 2;
+    static final byte BEST = -1;
+    // Con menos bytes la cabecera de Huffman no se paga
+    static final int MIN_COMPRESS = 64;
+
+    final byte codec;
+    final byte[] data;
+
+    private PackedBlock(byte codec, byte[] data) {
+        this.codec = codec;
+        this.data = data;
+    }
+
+    public static PackedBlock pack(byte[] raw, byte codec) {
+        PackedBlock best = new PackedBlock(RAW, raw);
+        if (raw.length < MIN_COMPRESS || codec == RAW) {
+            return best;
+        }
+        if (codec == HUFFMAN || codec == BEST) {
+            best = smaller(best, HUFFMAN, HuffmanCodec.compress(raw));
+        }
+        if (codec == RANGE || codec == BEST) {
+            best = smaller(best, RANGE, RangeOutputStream.compress(raw, 1));
+        }
+        return best;
+    }
+
+    private static PackedBlock smaller(PackedBlock best, byte codec, byte[] data) {
+        return data.length < best.data.length ? new PackedBlock(codec, data) : best;
+    }
+
+    public static byte[] unpack(byte codec, byte[] data) {
+        switch (codec) {
+            case RAW:
+                return data;
+            case HUFFMAN:
+                return HuffmanCodec.decompress(data);
+            case RANGE:
+                return RangeInputStream.decompress(data);
+            default:
+                throw new IllegalArgumentException("Codificador de bloque desconocido: " + codec);
+        }
+    }
+
+    public static byte codecNamed(String name) {
+        switch (name) {
+            case "raw":
+                return RAW;
+            case "huffman":
+                return HUFFMAN;
+            case "range":
+                return RANGE;
+            case "best":
+                return BEST;
+            default:
+                throw new IllegalArgumentException("Codificador desconocido: " + name);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example;
+import java.util.Arrays;
+
+// Nombre de un libro ya codificado por un NameModel. Es la forma en que el nombre
+// vive en el Book y tambien la llave del indice por nombre, asi los dos comparten
+// el mismo arreglo. El primer byte indica el codificador usado. El hash es el
+// String.hashCode del nombre sin codificar, para que una busqueda pueda armar su
+// llave (Probe) sin comprimir el nombre: solo se descomprime el candidato con el
+// mismo hash para compararlo.
+class PackedName {
+    final byte[] bytes;
+    private final int hash;
+
+    PackedName(byte[] bytes, int hash) {
+        this.bytes = bytes;
+        this.hash = hash;
+    }
+
+    public int codec() {
+        return bytes[0];
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    // Todos los nombres de un indice usan el mismo modelo y pack siempre elige el
+    // mismo codificador, asi que dos nombres son iguales si sus bytes lo son
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PackedName)) {
+            return false;
+        }
+        PackedName that = (PackedName) other;
+        if (hash != that.hash) {
+            return false;
+        }
+        if (that instanceof Probe) {
+            return ((Probe) that).matches(this);
+        }
+        return Arrays.equals(bytes, that.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    // Llave de busqueda: el nombre sin codificar y el modelo del indice. Solo sirve
+    // para get/containsKey; nunca se guarda en un indice.
+    static final class Probe extends PackedName {
+        private final String name;
+        private final NameModel model;
+
+        Probe(String name, NameModel model) {
+            super(null, name.hashCode());
+            this.name = name;
+            this.model = model;
+        }
+
+        boolean matches(PackedName packed) {
+            return name.equals(model.unpack(packed));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof PackedName) || hashCode() != other.hashCode()) {
+                return false;
+            }
+            if (other instanceof Probe) {
+                return name.equals(((Probe) other).name);
+            }
+            return matches((PackedName) other);
+        }
+    }
+}
@@ -0,0 +1,853 @@
+package org.example;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Arbol B+ persistente en un archivo de paginas de tamano fijo mapeado con
+// FileChannel.map. Guarda dos arboles: los libros por ISBN (registro BookCodec) y
+// nombre -> ISBN para el indice por nombre. Los nombres se comparan igual que los
+// ISBN; solo hace falta que sea un orden total. Las paginas que se usan se
+// decodifican y quedan en cache: las limpias en una LRU de cachePages paginas y las
+// modificadas aparte hasta el flush, que se hace al cerrar y cuando hay mas de
+// cachePages sucias. Al abrir solo se lee la cabecera, asi que la memoria la acota
+// la cache y no el tamano del inventario.
+//
+// Cada operacion es un lote; begin/end juntan varias en uno. Mientras haya un lote
+// abierto no sale ninguna pagina de la cache (la operacion tiene referencias a las
+// que esta cambiando) ni se hace flush, asi un flush nunca ve un cambio a medias.
+// Los metodos publicos son synchronized.
+//
+// Al borrar, una pagina con menos de MIN_BYTES se une con una vecina del mismo
+// padre si entran juntas en una pagina; si no entran, un nodo interno que quedo sin
+// llaves toma una de la vecina. Las paginas que sobran van a una lista libre que
+// allocate vuelve a usar, asi el archivo no crece con los DELETE.
+//
+// flush escribe primero las paginas sucias y la cabecera en <archivo>.wal con un
+// crc32 y lo fuerza a disco; recien despues las copia al archivo (la cabecera al
+// final), lo fuerza y vacia el .wal. Antes de eso ninguna pagina llega al archivo.
+// Al abrir, un .wal completo se vuelve a aplicar y uno cortado se descarta. Despues
+// de una caida el archivo queda como al terminar el ultimo flush: se pierde lo que
+// cambio despues, pero nunca queda a medias.
+//
+// Pagina 0 (cabecera): magic, version, tamano de pagina, paginas usadas, primera
+// pagina libre, paginas libres y la raiz y cantidad de llaves de cada arbol.
+// Paginas: [tipo][cantidad u16][siguiente hoja | hijo izquierdo | siguiente libre][celdas]
+//   hoja:    varint(largo llave) llave varint(largo valor) valor
+//   interno: varint(largo llave) llave hijo derecho (int)
+// .wal: [magic][paginas][crc32] y por pagina [numero int][PAGE_SIZE bytes]
+final class PagedBTree implements Closeable {
+    static final int PAGE_SIZE = 4096;
+    static final int DEFAULT_CACHE_PAGES = 1024;
+    static final int WAL_MAGIC = 0x424B5057;
+
+    private static final int MAGIC = 0x424B5054;
+    private static final int VERSION = 1;
+    private static final int CHUNK_SIZE = 16 << 20;
+    private static final int PAGES_PER_CHUNK = CHUNK_SIZE / PAGE_SIZE;
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final byte FREE = 3;
+    private static final int NODE_HEADER = 7;
+    private static final int NO_PAGE = 0;
+    // Por debajo de esto una pagina intenta unirse con una vecina
+    private static final int MIN_BYTES = PAGE_SIZE / 4;
+    private static final int MAX_HEIGHT = 64;
+    private static final int BY_ISBN = 0;
+    private static final int BY_NAME = 1;
+    private static final int WAL_HEADER = 12;
+    private static final int FRAME = 4 + PAGE_SIZE;
+
+    private final FileChannel channel;
+    private final FileChannel wal;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final int cachePages;
+    // Paginas limpias en orden LRU; las sucias quedan aparte hasta el flush
+    private final LinkedHashMap<Integer, Page> clean;
+    private final Map<Integer, Page> dirty = new HashMap<>();
+    private int batches;
+    private final int[] roots = new int[2];
+    private final long[] counts = new long[2];
+    private int pageCount;
+    private int freeHead;
+    private int freeCount;
+    // Camino de la ultima bajada: paginas internas y el hijo tomado en cada una
+    private final int[] pathPages = new int[MAX_HEIGHT];
+    private final int[] pathSlots = new int[MAX_HEIGHT];
+    private int depth;
+
+    static final class Page {
+        final int id;
+        final boolean leaf;
+        final boolean free;
+        boolean dirty;
+        int count;
+        int next;
+        String[] keys = new String[16];
+        long[] numKeys = new long[16];
+        byte[][] values;
+        int[] children;
+        int bytes = NODE_HEADER;
+
+        Page(int id, byte type) {
+            this.id = id;
+            this.leaf = type == LEAF;
+            this.free = type == FREE;
+            if (leaf) {
+                values = new byte[16][];
+            } else {
+                children = new int[17];
+            }
+        }
+
+        int compareAt(int i, long numKey, String key) {
+            return Book.compareIsbn(numKeys[i], keys[i], numKey, key);
+        }
+
+        int findKey(long numKey, String key) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareAt(mid, numKey, key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        int childIndex(long numKey, String key) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareAt(mid, numKey, key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        int cellSize(int i) {
+            return leaf ? leafCell(keys[i], values[i].length) : internalCell(keys[i]);
+        }
+
+        void ensureCapacity(int capacity) {
+            if (keys.length < capacity) {
+                int size = Math.max(capacity, keys.length * 2);
+                keys = Arrays.copyOf(keys, size);
+                numKeys = Arrays.copyOf(numKeys, size);
+                if (leaf) {
+                    values = Arrays.copyOf(values, size);
+                } else {
+                    children = Arrays.copyOf(children, size + 1);
+                }
+            }
+        }
+
+        // Inserta la llave en i; en internos "child" queda a la derecha de la llave
+        void insertAt(int i, String key, byte[] value, int child) {
+            ensureCapacity(count + 1);
+            System.arraycopy(keys, i, keys, i + 1, count - i);
+            System.arraycopy(numKeys, i, numKeys, i + 1, count - i);
+            keys[i] = key;
+            numKeys[i] = Book.isbnKey(key);
+            if (leaf) {
+                System.arraycopy(values, i, values, i + 1, count - i);
+                values[i] = value;
+            } else {
+                System.arraycopy(children, i + 1, children, i + 2, count - i);
+                children[i + 1] = child;
+            }
+            count++;
+            bytes += cellSize(i);
+        }
+
+        // En internos tambien quita el hijo a la derecha de la llave
+        void removeAt(int i) {
+            bytes -= cellSize(i);
+            System.arraycopy(keys, i + 1, keys, i, count - i - 1);
+            System.arraycopy(numKeys, i + 1, numKeys, i, count - i - 1);
+            if (leaf) {
+                System.arraycopy(values, i + 1, values, i, count - i - 1);
+                values[count - 1] = null;
+            } else {
+                System.arraycopy(children, i + 2, children, i + 1, count - i - 1);
+            }
+            keys[count - 1] = null;
+            count--;
+        }
+
+        void replaceValue(int i, byte[] value) {
+            bytes -= cellSize(i);
+            values[i] = value;
+            bytes += cellSize(i);
+        }
+
+        void replaceKey(int i, String key) {
+            bytes -= cellSize(i);
+            keys[i] = key;
+            numKeys[i] = Book.isbnKey(key);
+            bytes += cellSize(i);
+        }
+    }
+
+    private PagedBTree(FileChannel channel, FileChannel wal, int cachePages) {
+        this.channel = channel;
+        this.wal = wal;
+        this.cachePages = cachePages;
+        this.clean = new LinkedHashMap<>(cachePages, 0.75f, true);
+    }
+
+    public static PagedBTree open(Path file) throws IOException {
+        return open(file, DEFAULT_CACHE_PAGES);
+    }
+
+    public static PagedBTree open(Path file, int cachePages) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel wal = null;
+        try {
+            wal = FileChannel.open(walFile(file),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            PagedBTree tree = new PagedBTree(channel, wal, cachePages);
+            tree.recover();
+            if (channel.size() == 0) {
+                tree.pageCount = 1;
+                tree.ensureMapped(1);
+                tree.flush();
+            } else {
+                tree.readHeader();
+            }
+            return tree;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (wal != null) {
+                wal.close();
+            }
+            throw e;
+        }
+    }
+
+    static Path walFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".wal");
+    }
+
+    // Un .wal completo es un flush que pudo no llegar entero al archivo y se vuelve
+    // a aplicar (copiar las mismas paginas dos veces no cambia nada). Uno cortado
+    // es un flush que no termino: el archivo todavia esta como en el anterior.
+    private void recover() throws IOException {
+        long size = wal.size();
+        if (size >= WAL_HEADER && size <= Integer.MAX_VALUE) {
+            ByteBuffer log = ByteBuffer.allocate((int) size);
+            while (log.hasRemaining() && wal.read(log, log.position()) >= 0) {
+                // sigue leyendo
+            }
+            int frames = log.getInt(4);
+            if (log.getInt(0) == WAL_MAGIC && frames > 0 && size == WAL_HEADER + (long) frames * FRAME
+                    && log.getInt(8) == crc(log, WAL_HEADER, (int) size)) {
+                apply(log, frames);
+            }
+        }
+        wal.truncate(0);
+    }
+
+    private static int crc(ByteBuffer log, int from, int to) {
+        CRC32 crc = new CRC32();
+        crc.update(log.array(), from, to - from);
+        return (int) crc.getValue();
+    }
+
+    // Copia las paginas del .wal al archivo en el orden en que estan (la cabecera es
+    // la ultima) y lo fuerza a disco
+    private void apply(ByteBuffer log, int frames) {
+        for (int f = 0; f < frames; f++) {
+            int at = WAL_HEADER + f * FRAME;
+            int pageId = log.getInt(at);
+            ensureMapped(pageId + 1);
+            slice(pageId).put(log.slice(at + 4, PAGE_SIZE));
+        }
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    private void readHeader() throws IOException {
+        ensureMapped((int) Math.min(channel.size() / PAGE_SIZE, Integer.MAX_VALUE));
+        ByteBuffer header = slice(0);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("No es un archivo de inventario paginado");
+        }
+        int version = header.getInt();
+        int pageSize = header.getInt();
+        if (version != VERSION || pageSize != PAGE_SIZE) {
+            throw new IOException("Version o tamano de pagina no soportado: " + version + "/" + pageSize);
+        }
+        pageCount = header.getInt();
+        freeHead = header.getInt();
+        freeCount = header.getInt();
+        for (int tree = BY_ISBN; tree <= BY_NAME; tree++) {
+            roots[tree] = header.getInt();
+            counts[tree] = header.getLong();
+        }
+        ensureMapped(pageCount);
+    }
+
+    private void writeHeader(ByteBuffer out) {
+        out.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE)
+                .putInt(pageCount).putInt(freeHead).putInt(freeCount);
+        for (int tree = BY_ISBN; tree <= BY_NAME; tree++) {
+            out.putInt(roots[tree]).putLong(counts[tree]);
+        }
+    }
+
+    // Mapea trozos de 16 MB hasta cubrir "pages" paginas, creciendo el archivo
+    private void ensureMapped(int pages) {
+        try {
+            while ((long) chunks.size() * PAGES_PER_CHUNK < pages) {
+                long start = (long) chunks.size() * CHUNK_SIZE;
+                chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, start, CHUNK_SIZE));
+            }
+        } catch (IOException e) {
+            throw new StorageException("No se pudo mapear el archivo", e);
+        }
+    }
+
+    private ByteBuffer slice(int pageId) {
+        MappedByteBuffer chunk = chunks.get(pageId / PAGES_PER_CHUNK);
+        int offset = (pageId % PAGES_PER_CHUNK) * PAGE_SIZE;
+        return chunk.slice(offset, PAGE_SIZE);
+    }
+
+    private Page page(int pageId) {
+        Page page = dirty.get(pageId);
+        if (page == null) {
+            page = clean.get(pageId);
+            if (page == null) {
+                page = readPage(pageId);
+                clean.put(pageId, page);
+            }
+        }
+        return page;
+    }
+
+    // La pagina queda fuera de la LRU hasta el proximo flush
+    private void modified(Page page) {
+        if (!page.dirty) {
+            page.dirty = true;
+            clean.remove(page.id);
+            dirty.put(page.id, page);
+        }
+    }
+
+    private Page readPage(int pageId) {
+        ByteBuffer in = slice(pageId);
+        Page page = new Page(pageId, in.get());
+        int n = in.getChar();
+        int link = in.getInt();
+        if (page.free) {
+            page.next = link;
+            return page;
+        }
+        page.ensureCapacity(n);
+        if (page.leaf) {
+            page.next = link;
+        } else {
+            page.children[0] = link;
+        }
+        for (int i = 0; i < n; i++) {
+            byte[] key = new byte[Varint.getInt(in)];
+            in.get(key);
+            page.keys[i] = new String(key, StandardCharsets.UTF_8);
+            page.numKeys[i] = Book.isbnKey(page.keys[i]);
+            if (page.leaf) {
+                page.values[i] = new byte[Varint.getInt(in)];
+                in.get(page.values[i]);
+            } else {
+                page.children[i + 1] = in.getInt();
+            }
+        }
+        page.count = n;
+        page.bytes = in.position();
+        return page;
+    }
+
+    private static void writePage(Page page, ByteBuffer out) {
+        out.put(page.free ? FREE : page.leaf ? LEAF : INTERNAL);
+        out.putChar((char) page.count);
+        out.putInt(page.leaf || page.free ? page.next : page.children[0]);
+        for (int i = 0; i < page.count; i++) {
+            byte[] key = page.keys[i].getBytes(StandardCharsets.UTF_8);
+            Varint.putInt(out, key.length);
+            out.put(key);
+            if (page.leaf) {
+                Varint.putInt(out, page.values[i].length);
+                out.put(page.values[i]);
+            } else {
+                out.putInt(page.children[i + 1]);
+            }
+        }
+    }
+
+    // Toma la primera pagina de la lista libre o agrega una al final
+    private Page allocate(boolean leaf) {
+        int pageId;
+        if (freeHead != NO_PAGE) {
+            pageId = freeHead;
+            freeHead = page(pageId).next;
+            freeCount--;
+            dirty.remove(pageId);
+            clean.remove(pageId);
+        } else {
+            pageId = pageCount++;
+            ensureMapped(pageCount);
+        }
+        Page page = new Page(pageId, leaf ? LEAF : INTERNAL);
+        modified(page);
+        return page;
+    }
+
+    private void release(Page page) {
+        Page free = new Page(page.id, FREE);
+        free.next = freeHead;
+        freeHead = page.id;
+        freeCount++;
+        dirty.remove(page.id);
+        clean.remove(page.id);
+        modified(free);
+    }
+
+    private static int leafCell(String key, int valueBytes) {
+        int keyBytes = key.getBytes(StandardCharsets.UTF_8).length;
+        return Varint.sizeOf(keyBytes) + keyBytes + Varint.sizeOf(valueBytes) + valueBytes;
+    }
+
+    private static int internalCell(String key) {
+        int keyBytes = key.getBytes(StandardCharsets.UTF_8).length;
+        return Varint.sizeOf(keyBytes) + keyBytes + 4;
+    }
+
+    // Una hoja tiene que poder partirse en dos y un nodo interno tener al menos
+    // tres llaves
+    private static boolean fits(String key, int valueBytes) {
+        return NODE_HEADER + 2 * leafCell(key, valueBytes) <= PAGE_SIZE
+                && NODE_HEADER + 3 * internalCell(key) <= PAGE_SIZE;
+    }
+
+    // true si el libro y su entrada en el indice por nombre entran en una pagina
+    public static boolean fits(Book book) {
+        return fits(book.isbn(), BookCodec.size(book))
+                && fits(book.name(), book.isbn().getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    public synchronized long count() {
+        return counts[BY_ISBN];
+    }
+
+    public synchronized long names() {
+        return counts[BY_NAME];
+    }
+
+    public synchronized int pageCount() {
+        return pageCount;
+    }
+
+    public synchronized int freePages() {
+        return freeCount;
+    }
+
+    // Paginas en memoria, limpias y sucias
+    public synchronized int cachedPages() {
+        return clean.size() + dirty.size();
+    }
+
+    // Un lote termina con el ultimo end: si hay demasiadas paginas sucias se hace
+    // flush y despues se sacan las limpias menos usadas que sobran
+    public synchronized void begin() {
+        batches++;
+    }
+
+    public synchronized void end() {
+        if (--batches > 0) {
+            return;
+        }
+        if (dirty.size() > cachePages) {
+            flush();
+        }
+        trim();
+    }
+
+    private void trim() {
+        Iterator<Page> eldest = clean.values().iterator();
+        while (clean.size() > cachePages && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    // Baja hasta la hoja donde esta (o iria) la llave, guardando el camino
+    private Page leaf(int tree, long numKey, String key) {
+        depth = 0;
+        Page page = page(roots[tree]);
+        while (!page.leaf) {
+            int slot = page.childIndex(numKey, key);
+            pathPages[depth] = page.id;
+            pathSlots[depth++] = slot;
+            page = page(page.children[slot]);
+        }
+        return page;
+    }
+
+    private byte[] get(int tree, String key) {
+        if (roots[tree] == NO_PAGE) {
+            return null;
+        }
+        long numKey = Book.isbnKey(key);
+        Page page = leaf(tree, numKey, key);
+        int i = page.findKey(numKey, key);
+        return i < page.count && page.compareAt(i, numKey, key) == 0 ? page.values[i] : null;
+    }
+
+    // Inserta o reemplaza; true si la llave es nueva
+    private boolean put(int tree, String key, byte[] value) {
+        if (!fits(key, value.length)) {
+            throw new IllegalArgumentException("Registro demasiado grande para una pagina: " + key);
+        }
+        if (roots[tree] == NO_PAGE) {
+            Page root = allocate(true);
+            root.insertAt(0, key, value, 0);
+            roots[tree] = root.id;
+            counts[tree]++;
+            return true;
+        }
+
+        long numKey = Book.isbnKey(key);
+        Page page = leaf(tree, numKey, key);
+        modified(page);
+        int i = page.findKey(numKey, key);
+        boolean added = !(i < page.count && page.compareAt(i, numKey, key) == 0);
+        if (added) {
+            page.insertAt(i, key, value, 0);
+            counts[tree]++;
+        } else {
+            page.replaceValue(i, value);
+        }
+        if (page.bytes > PAGE_SIZE) {
+            splitUpwards(tree, page);
+        } else {
+            rebalance(tree, page);
+        }
+        return added;
+    }
+
+    // Divide por bytes la pagina que se paso de tamano y sube el separador
+    private void splitUpwards(int tree, Page page) {
+        while (page.bytes > PAGE_SIZE) {
+            Page right = allocate(page.leaf);
+            int half = page.bytes / 2;
+            int size = NODE_HEADER;
+            int mid = 0;
+            while (mid < page.count - 1 && size + page.cellSize(mid) <= half) {
+                size += page.cellSize(mid);
+                mid++;
+            }
+            mid = Math.max(mid, 1);
+
+            String separator = page.keys[mid];
+            if (page.leaf) {
+                for (int i = mid; i < page.count; i++) {
+                    right.insertAt(i - mid, page.keys[i], page.values[i], 0);
+                }
+                right.next = page.next;
+                page.next = right.id;
+            } else {
+                right.children[0] = page.children[mid + 1];
+                for (int i = mid + 1; i < page.count; i++) {
+                    right.insertAt(i - mid - 1, page.keys[i], null, page.children[i + 1]);
+                }
+            }
+            // En internos esto tambien quita la llave del medio, que sube al padre
+            while (page.count > mid) {
+                page.removeAt(page.count - 1);
+            }
+
+            Page parent;
+            if (depth == 0) {
+                parent = allocate(false);
+                parent.children[0] = page.id;
+                roots[tree] = parent.id;
+            } else {
+                parent = page(pathPages[--depth]);
+                modified(parent);
+            }
+            long numKey = Book.isbnKey(separator);
+            parent.insertAt(parent.childIndex(numKey, separator), separator, null, right.id);
+            page = parent;
+        }
+    }
+
+    private byte[] delete(int tree, String key) {
+        if (roots[tree] == NO_PAGE) {
+            return null;
+        }
+        long numKey = Book.isbnKey(key);
+        Page page = leaf(tree, numKey, key);
+        int i = page.findKey(numKey, key);
+        if (i == page.count || page.compareAt(i, numKey, key) != 0) {
+            return null;
+        }
+        byte[] value = page.values[i];
+        modified(page);
+        page.removeAt(i);
+        counts[tree]--;
+        rebalance(tree, page);
+        return value;
+    }
+
+    // Despues de achicar una pagina (del camino de la ultima bajada): si quedo con
+    // menos de MIN_BYTES se une con una vecina y se sigue con el padre. La raiz
+    // interna sin llaves se reemplaza por su unico hijo y la hoja raiz vacia deja el
+    // arbol vacio, asi todas las hojas siguen a la misma altura.
+    private void rebalance(int tree, Page page) {
+        while (true) {
+            if (depth == 0) {
+                if (page.count == 0) {
+                    roots[tree] = page.leaf ? NO_PAGE : page.children[0];
+                    release(page);
+                }
+                return;
+            }
+            if (page.bytes >= MIN_BYTES && (page.leaf || page.count > 0)) {
+                return;
+            }
+            Page parent = page(pathPages[--depth]);
+            int slot = pathSlots[depth];
+            if (parent.count == 0) {
+                // Sin vecinas; el padre se arregla cuando lo toque a el
+                return;
+            }
+            int separator = slot > 0 ? slot - 1 : 0;
+            Page left = slot > 0 ? page(parent.children[slot - 1]) : page;
+            Page right = slot > 0 ? page : page(parent.children[1]);
+            int joined = left.bytes + right.bytes - NODE_HEADER
+                    + (left.leaf ? 0 : internalCell(parent.keys[separator]));
+            if (joined <= PAGE_SIZE) {
+                merge(left, right, parent, separator);
+                page = parent;
+            } else {
+                if (!page.leaf && page.count == 0) {
+                    borrow(page, slot == 0 ? right : left, parent, separator, slot == 0);
+                }
+                return;
+            }
+        }
+    }
+
+    // Pasa todo lo de right (vecina derecha en el mismo padre) a left y libera right
+    private void merge(Page left, Page right, Page parent, int separator) {
+        modified(left);
+        modified(parent);
+        if (left.leaf) {
+            for (int i = 0; i < right.count; i++) {
+                left.insertAt(left.count, right.keys[i], right.values[i], 0);
+            }
+            left.next = right.next;
+        } else {
+            left.insertAt(left.count, parent.keys[separator], null, right.children[0]);
+            for (int i = 0; i < right.count; i++) {
+                left.insertAt(left.count, right.keys[i], null, right.children[i + 1]);
+            }
+        }
+        parent.removeAt(separator);
+        release(right);
+    }
+
+    // Un nodo interno sin llaves toma el separador del padre y el hijo del borde de
+    // la vecina, y la llave del borde de la vecina sube al padre (si entra)
+    private void borrow(Page page, Page sibling, Page parent, int separator, boolean fromRight) {
+        String up = fromRight ? sibling.keys[0] : sibling.keys[sibling.count - 1];
+        if (sibling.count < 2
+                || parent.bytes - parent.cellSize(separator) + internalCell(up) > PAGE_SIZE) {
+            return;
+        }
+        modified(page);
+        modified(sibling);
+        modified(parent);
+        if (fromRight) {
+            page.insertAt(0, parent.keys[separator], null, sibling.children[0]);
+            sibling.children[0] = sibling.children[1];
+            sibling.removeAt(0);
+        } else {
+            page.insertAt(0, parent.keys[separator], null, page.children[0]);
+            page.children[0] = sibling.children[sibling.count];
+            sibling.removeAt(sibling.count - 1);
+        }
+        parent.replaceKey(separator, up);
+    }
+
+    public synchronized boolean contains(String isbn) {
+        begin();
+        try {
+            return get(BY_ISBN, isbn) != null;
+        } finally {
+            end();
+        }
+    }
+
+    public synchronized Book find(String isbn) {
+        begin();
+        try {
+            byte[] value = get(BY_ISBN, isbn);
+            return value == null ? null : BookCodec.decode(value);
+        } finally {
+            end();
+        }
+    }
+
+    // Inserta o reemplaza el libro con ese ISBN; true si no estaba. Un libro que no
+    // entra en una pagina se rechaza sin cambiar nada.
+    public synchronized boolean put(Book book) {
+        begin();
+        try {
+            return put(BY_ISBN, book.isbn(), BookCodec.encode(book));
+        } finally {
+            end();
+        }
+    }
+
+    public synchronized boolean remove(String isbn) {
+        begin();
+        try {
+            return delete(BY_ISBN, isbn) != null;
+        } finally {
+            end();
+        }
+    }
+
+    // ISBN del libro al que apunta el nombre, o null
+    public synchronized String findName(String name) {
+        begin();
+        try {
+            byte[] isbn = get(BY_NAME, name);
+            return isbn == null ? null : new String(isbn, StandardCharsets.UTF_8);
+        } finally {
+            end();
+        }
+    }
+
+    public synchronized void putName(String name, String isbn) {
+        begin();
+        try {
+            put(BY_NAME, name, isbn.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            end();
+        }
+    }
+
+    public synchronized boolean removeName(String name) {
+        begin();
+        try {
+            return delete(BY_NAME, name) != null;
+        } finally {
+            end();
+        }
+    }
+
+    // Recorre las hojas enlazadas en orden de ISBN. No abre un lote: solo lee, asi
+    // que las paginas ya recorridas pueden salir de la cache.
+    public synchronized void forEach(Consumer<Book> action) {
+        if (roots[BY_ISBN] == NO_PAGE) {
+            return;
+        }
+        Page page = page(roots[BY_ISBN]);
+        while (!page.leaf) {
+            page = page(page.children[0]);
+        }
+        while (true) {
+            for (int i = 0; i < page.count; i++) {
+                action.accept(BookCodec.decode(page.values[i]));
+            }
+            if (page.next == NO_PAGE) {
+                return;
+            }
+            page = page(page.next);
+            if (batches == 0) {
+                trim();
+            }
+        }
+    }
+
+    // Escribe las paginas sucias y la cabecera primero en el .wal y despues en el
+    // archivo (ver el comentario de la clase)
+    public synchronized void flush() {
+        List<Page> pages = new ArrayList<>(dirty.values());
+        ByteBuffer log = ByteBuffer.allocate(WAL_HEADER + (pages.size() + 1) * FRAME);
+        log.position(WAL_HEADER);
+        for (Page page : pages) {
+            int at = log.position();
+            log.putInt(page.id);
+            writePage(page, log);
+            log.position(at + FRAME);
+        }
+        log.putInt(0);
+        writeHeader(log);
+        log.position(log.capacity());
+        log.putInt(0, WAL_MAGIC).putInt(4, pages.size() + 1).putInt(8, crc(log, WAL_HEADER, log.capacity()));
+        log.flip();
+        try {
+            wal.truncate(0);
+            long at = 0;
+            while (log.hasRemaining()) {
+                at += wal.write(log, at);
+            }
+            wal.force(false);
+        } catch (IOException e) {
+            throw new StorageException("No se pudo escribir el .wal del inventario", e);
+        }
+
+        apply(log, pages.size() + 1);
+        try {
+            wal.truncate(0);
+        } catch (IOException e) {
+            throw new StorageException("No se pudo vaciar el .wal del inventario", e);
+        }
+        for (Page page : pages) {
+            page.dirty = false;
+            clean.put(page.id, page);
+        }
+        dirty.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            chunks.clear();
+            clean.clear();
+            dirty.clear();
+            try {
+                channel.close();
+            } finally {
+                wal.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.example;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Inventario de --store servido directo del archivo paginado (PagedBTree): los
+// libros y el indice por nombre viven en el archivo y en memoria solo queda la
+// cache de paginas, asi que el inventario puede ser mas grande que el heap. Los
+// Book se arman al devolverlos y al aplicar un PATCH.
+//
+// Los indices siguen las mismas reglas que BTree: un INSERT con ISBN o nombre
+// repetido se rechaza, un PATCH deja el nombre nuevo apuntando al libro y un
+// DELETE quita la entrada de su nombre. Cada operacion es un lote del archivo, asi
+// que un flush nunca ve solo uno de los dos arboles cambiado. Un libro que no entra
+// en una pagina se rechaza antes de tocar nada. Los metodos son synchronized: un
+// escritor o un lector a la vez.
+final class PagedInventory implements Inventory, Closeable {
+    private final PagedBTree store;
+    final InventoryMetrics metrics = new InventoryMetrics(this);
+    final CompressionStats compressionStats = new CompressionStats();
+
+    private PagedInventory(PagedBTree store) {
+        this.store = store;
+    }
+
+    public static PagedInventory open(Path file) throws IOException {
+        return new PagedInventory(PagedBTree.open(file));
+    }
+
+    public static PagedInventory open(Path file, int cachePages) throws IOException {
+        return new PagedInventory(PagedBTree.open(file, cachePages));
+    }
+
+    @Override
+    public synchronized void insert(Book book) {
+        long start = System.nanoTime();
+        if (!PagedBTree.fits(book)) {
+            throw tooLarge(book.isbn());
+        }
+        store.begin();
+        try {
+            if (!register(book)) {
+                metrics.rejectedInserts.increment();
+            }
+        } finally {
+            store.end();
+        }
+        metrics.record(InventoryMetrics.INSERT, start);
+    }
+
+    // Cada libro es su propio lote, asi la racha no junta mas paginas sucias que la
+    // cache. En una racha no hay linea que reportar: un libro que no entra en una
+    // pagina cuenta como INSERT rechazado.
+    @Override
+    public synchronized void insertAll(List<Book> run) {
+        long start = System.nanoTime();
+        int accepted = 0;
+        for (Book book : run) {
+            store.begin();
+            try {
+                if (PagedBTree.fits(book) && register(book)) {
+                    accepted++;
+                }
+            } finally {
+                store.end();
+            }
+        }
+        metrics.bulkInserted.add(accepted);
+        metrics.rejectedInserts.add(run.size() - accepted);
+        metrics.record(InventoryMetrics.BULK, start);
+    }
+
+    private boolean register(Book book) {
+        if (store.contains(book.isbn()) || store.findName(book.name()) != null) {
+            return false;
+        }
+        store.put(book);
+        store.putName(book.name(), book.isbn());
+        return true;
+    }
+
+    @Override
+    public synchronized boolean updateBook(String isbn, Map<String, Object> updateData) {
+        long start = System.nanoTime();
+        store.begin();
+        try {
+            Book originalBook = store.find(isbn);
+            if (originalBook == null) {
+                metrics.patchMisses.increment();
+                return false;
+            }
+            Book updatedBook = originalBook.withUpdates(updateData);
+            if (!PagedBTree.fits(updatedBook)) {
+                throw tooLarge(isbn);
+            }
+            if (!originalBook.name().equals(updatedBook.name())) {
+                store.removeName(originalBook.name());
+                compressionStats.invalidate(originalBook.name());
+            }
+            store.putName(updatedBook.name(), isbn);
+            store.put(updatedBook);
+            return true;
+        } finally {
+            store.end();
+            metrics.record(InventoryMetrics.PATCH, start);
+        }
+    }
+
+    @Override
+    public synchronized void removeBook(String isbn) {
+        long start = System.nanoTime();
+        store.begin();
+        try {
+            Book book = store.find(isbn);
+            if (book == null) {
+                metrics.deleteMisses.increment();
+            } else {
+                store.remove(isbn);
+                store.removeName(book.name());
+                compressionStats.invalidate(book.name());
+            }
+        } finally {
+            store.end();
+        }
+        metrics.record(InventoryMetrics.DELETE, start);
+    }
+
+    private static IllegalArgumentException tooLarge(String isbn) {
+        return new IllegalArgumentException("Registro demasiado grande para una pagina: " + isbn);
+    }
+
+    @Override
+    public synchronized Book searchByName(String name) {
+        long start = System.nanoTime();
+        String isbn = store.findName(name);
+        Book book = isbn == null ? null : store.find(isbn);
+        if (book == null) {
+            metrics.searchMisses.increment();
+        }
+        metrics.record(InventoryMetrics.SEARCH, start);
+        return book;
+    }
+
+    @Override
+    public synchronized Book findBookByIsbn(String isbn) {
+        return store.find(isbn);
+    }
+
+    @Override
+    public int size() {
+        return (int) store.count();
+    }
+
+    // Sin indice de titulos: Main no deja combinar --title-search con --store
+    @Override
+    public List<Book> searchTitlesByPrefix(String prefix, int limit) {
+        throw noTitleIndex();
+    }
+
+    @Override
+    public List<Book> searchTitlesFuzzy(String query, int maxDistance, int limit) {
+        throw noTitleIndex();
+    }
+
+    private static UnsupportedOperationException noTitleIndex() {
+        return new UnsupportedOperationException("El inventario en disco no tiene indice de titulos");
+    }
+
+    @Override
+    public InventoryMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public CompressionStats compressionStats() {
+        return compressionStats;
+    }
+
+    // Recorre los libros en orden de ISBN
+    public void forEach(Consumer<Book> action) {
+        store.forEach(action);
+    }
+
+    public PagedBTree store() {
+        return store;
+    }
+
+    // Escribe las paginas sucias y cierra el archivo
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+}
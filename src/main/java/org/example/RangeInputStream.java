@@ -0,0 +1,135 @@
+package org.example;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Descompresor de RangeOutputStream: repite las mismas decisiones binarias con el
+// mismo modelo adaptativo, asi que tampoco guarda mas que las probabilidades.
+final class RangeInputStream extends FilterInputStream {
+    private final int order;
+    private final short[] probabilities;
+    private short more = RangeOutputStream.ONE / 2;
+    private int context;
+
+    private int range = -1;
+    private int code;
+    private boolean finished;
+
+    RangeInputStream(InputStream in) throws IOException {
+        super(in);
+        order = in.read();
+        if (order != 0 && order != 1) {
+            throw new IOException("Flujo de rango invalido (orden " + order + ")");
+        }
+        probabilities = RangeOutputStream.newProbabilities(order);
+        for (int i = 0; i < 5; i++) {
+            code = (code << 8) | next();
+        }
+    }
+
+    public static byte[] decompress(byte[] packed) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(packed.length * 2);
+        try (RangeInputStream in = new RangeInputStream(new ByteArrayInputStream(packed))) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer, 0, buffer.length)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Datos comprimidos invalidos", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (finished) {
+            return -1;
+        }
+        int bit = decodeBit(more);
+        more = update(more, bit);
+        if (bit == 0) {
+            finished = true;
+            return -1;
+        }
+        int base = context << 8;
+        int node = 1;
+        while (node < 256) {
+            bit = decodeBit(probabilities[base + node]);
+            probabilities[base + node] = update(probabilities[base + node], bit);
+            node = (node << 1) | bit;
+        }
+        int b = node & 0xFF;
+        if (order == 1) {
+            context = b;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        for (int i = 0; i < len; i++) {
+            int value = read();
+            if (value < 0) {
+                return i == 0 && len > 0 ? -1 : i;
+            }
+            b[off + i] = (byte) value;
+        }
+        return len;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && read() >= 0) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private int decodeBit(short probability) throws IOException {
+        int bound = (range >>> RangeOutputStream.PROBABILITY_BITS) * probability;
+        int bit;
+        if (Integer.compareUnsigned(code, bound) < 0) {
+            range = bound;
+            bit = 0;
+        } else {
+            code -= bound;
+            range -= bound;
+            bit = 1;
+        }
+        while (Integer.compareUnsigned(range, RangeOutputStream.TOP) < 0) {
+            range <<= 8;
+            code = (code << 8) | next();
+        }
+        return bit;
+    }
+
+    private static short update(short probability, int bit) {
+        if (bit == 0) {
+            return (short) (probability + ((RangeOutputStream.ONE - probability) >>> RangeOutputStream.MOVE_BITS));
+        }
+        return (short) (probability - (probability >>> RangeOutputStream.MOVE_BITS));
+    }
+
+    private int next() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Flujo de rango truncado");
+        }
+        return b;
+    }
+}
@@ -0,0 +1,157 @@
+package org.example;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// Compresor aritmetico adaptativo de una sola pasada (codificador de rango como el
+// de LZMA): rango de 32 bits, low de 64 bits con propagacion del acarreo y cada
+// byte codificado como 8 decisiones binarias con probabilidades de 11 bits que se
+// ajustan con cada bit. No necesita conocer el texto antes ni guardarlo, asi que
+// sirve para archivos de cualquier tamano. Con orden 1 el contexto de cada byte es
+// el byte anterior (64K probabilidades).
+//
+// Formato: [orden][bits]. Antes de cada byte va una decision "hay otro byte" y al
+// cerrar se codifica un "no hay mas".
+final class RangeOutputStream extends FilterOutputStream {
+    static final int PROBABILITY_BITS = 11;
+    static final int ONE = 1 << PROBABILITY_BITS;
+    // Velocidad de adaptacion: cada bit mueve la probabilidad 1/32 de lo que falta
+    static final int MOVE_BITS = 5;
+    static final int TOP = 1 << 24;
+
+    private final int order;
+    private final short[] probabilities;
+    private short more = ONE / 2;
+    private int context;
+
+    private long low;
+    private int range = -1;
+    private int cache;
+    private long cacheSize = 1;
+    private boolean closed;
+    // Los bytes de salida se juntan aqui y se pasan al flujo de abajo por bloques
+    private final byte[] buffer = new byte[8192];
+    private int buffered;
+
+    RangeOutputStream(OutputStream out, int order) throws IOException {
+        super(out);
+        if (order != 0 && order != 1) {
+            throw new IllegalArgumentException("Orden de contexto no soportado: " + order);
+        }
+        this.order = order;
+        this.probabilities = newProbabilities(order);
+        out.write(order);
+    }
+
+    static short[] newProbabilities(int order) {
+        short[] probabilities = new short[order == 0 ? 256 : 256 * 256];
+        Arrays.fill(probabilities, (short) (ONE / 2));
+        return probabilities;
+    }
+
+    public static byte[] compress(byte[] data, int order) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2 + 16);
+        try (RangeOutputStream out = new RangeOutputStream(bytes, order)) {
+            out.write(data, 0, data.length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed) {
+            throw new IOException("El flujo de rango ya termino");
+        }
+        more = encodeBit(more, 1);
+        int base = context << 8;
+        int node = 1;
+        for (int i = 7; i >= 0; i--) {
+            int bit = (b >>> i) & 1;
+            probabilities[base + node] = encodeBit(probabilities[base + node], bit);
+            node = (node << 1) | bit;
+        }
+        if (order == 1) {
+            context = b & 0xFF;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            write(b[i]);
+        }
+    }
+
+    private short encodeBit(short probability, int bit) throws IOException {
+        int bound = (range >>> PROBABILITY_BITS) * probability;
+        if (bit == 0) {
+            range = bound;
+            probability = (short) (probability + ((ONE - probability) >>> MOVE_BITS));
+        } else {
+            low += bound & 0xFFFFFFFFL;
+            range -= bound;
+            probability = (short) (probability - (probability >>> MOVE_BITS));
+        }
+        while (Integer.compareUnsigned(range, TOP) < 0) {
+            range <<= 8;
+            shiftLow();
+        }
+        return probability;
+    }
+
+    // Saca el byte alto de low; los 0xFF pendientes esperan por si llega un acarreo
+    private void shiftLow() throws IOException {
+        if (low < 0xFF000000L || low > 0xFFFFFFFFL) {
+            int carry = (int) (low >>> 32);
+            int pending = cache;
+            do {
+                if (buffered == buffer.length) {
+                    drain();
+                }
+                buffer[buffered++] = (byte) (pending + carry);
+                pending = 0xFF;
+            } while (--cacheSize != 0);
+            cache = (int) (low >>> 24) & 0xFF;
+        }
+        cacheSize++;
+        low = (low & 0x00FFFFFFL) << 8;
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, buffered);
+        buffered = 0;
+    }
+
+    // Pasa abajo los bytes ya decididos; los que pueden cambiar por un acarreo esperan
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    // Termina el flujo (sin cerrar el de abajo)
+    public void finish() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        more = encodeBit(more, 0);
+        for (int i = 0; i < 5; i++) {
+            shiftLow();
+        }
+        flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+}
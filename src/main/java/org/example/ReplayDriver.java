@@ -0,0 +1,169 @@
+package org.example;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+// Reproduce un archivo de operaciones contra un BTree, una por una, y mide cada
+// operacion (sin contar el parseo de la linea) en un histograma por tipo. Las
+// primeras warmup lineas se aplican sin medir para que el JIT y el arbol se
+// acomoden. Al final imprime throughput y p50/p99/p999 por tipo de operacion. Con
+// --titles (o --titles=distancia) el arbol lleva el indice de titulos y las lineas
+// PREFIX y FUZZY lo usan; sin eso esas lineas cuentan como errores.
+//
+//   java -cp ... org.example.ReplayDriver carga.csv --warmup=1000000 [--concurrent] [--titles]
+final class ReplayDriver {
+    private static final String[] NAMES = {"INSERT", "PATCH", "DELETE", "SEARCH", "PREFIX", "FUZZY"};
+
+    private final BTree tree;
+    // Distancia de edicion de FUZZY; -1 sin indice de titulos
+    private int titleDistance = -1;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[NAMES.length + 1];
+    private long errors;
+    private long found;
+    private long elapsedNanos;
+
+    ReplayDriver(BTree tree) {
+        this.tree = tree;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void enableTitles(int maxDistance) {
+        tree.enableTitleIndex();
+        titleDistance = maxDistance;
+    }
+
+    public void replay(Path file, long warmup) throws IOException {
+        OperationParser parser = new OperationParser();
+        OperationLine scratch = new OperationLine();
+        long start = 0;
+        try (OperationFile input = OperationFile.open(file)) {
+            while (input.nextLine()) {
+                if (input.lineNumber() == warmup + 1) {
+                    start = System.nanoTime();
+                }
+                Operation operation = Operation.parse(parser, scratch, input.buffer(),
+                        input.lineStart(), input.lineEnd(), input.lineNumber());
+                String name = null;
+                boolean titleQuery = operation.kind == OperationLine.PREFIX || operation.kind == OperationLine.FUZZY;
+                if (titleQuery && titleDistance < 0) {
+                    errors++;
+                    continue;
+                }
+                if (operation.kind == OperationLine.SEARCH || titleQuery) {
+                    try {
+                        name = scratch.requireString(OperationLine.NAME);
+                    } catch (RuntimeException e) {
+                        errors++;
+                        continue;
+                    }
+                } else if (operation.error != null || operation.kind == OperationLine.UNKNOWN) {
+                    errors++;
+                    continue;
+                }
+
+                long begin = System.nanoTime();
+                apply(operation, name);
+                long nanos = System.nanoTime() - begin;
+                if (input.lineNumber() > warmup) {
+                    histograms[operation.kind - 1].record(nanos);
+                }
+            }
+        }
+        elapsedNanos = start == 0 ? 0 : System.nanoTime() - start;
+        for (int i = 0; i < NAMES.length; i++) {
+            histograms[NAMES.length].add(histograms[i]);
+        }
+    }
+
+    private void apply(Operation operation, String name) {
+        switch (operation.kind) {
+            case OperationLine.INSERT:
+                tree.insert(operation.book);
+                break;
+            case OperationLine.PATCH:
+                tree.updateBook(operation.isbn, operation.updates);
+                break;
+            case OperationLine.DELETE:
+                tree.removeBook(operation.isbn);
+                break;
+            case OperationLine.PREFIX:
+                if (!tree.searchTitlesByPrefix(name, SearchReport.TITLE_RESULTS).isEmpty()) {
+                    found++;
+                }
+                break;
+            case OperationLine.FUZZY:
+                if (!tree.searchTitlesFuzzy(name, titleDistance, SearchReport.TITLE_RESULTS).isEmpty()) {
+                    found++;
+                }
+                break;
+            default:
+                if (tree.searchByName(name) != null) {
+                    found++;
+                }
+        }
+    }
+
+    public void report(PrintStream out) {
+        LatencyHistogram total = histograms[NAMES.length];
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%d operaciones medidas en %.2f s: %.0f ops/s (con parseo)%n",
+                total.count(), seconds, seconds == 0 ? 0 : total.count() / seconds);
+        out.printf("%-8s %12s %14s %10s %10s %10s %10s %10s%n",
+                "op", "cantidad", "ops/s (arbol)", "media us", "p50 us", "p99 us", "p999 us", "max us");
+        for (int i = 0; i <= NAMES.length; i++) {
+            LatencyHistogram histogram = histograms[i];
+            if (histogram.count() == 0) {
+                continue;
+            }
+            out.printf("%-8s %12d %14.0f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    i < NAMES.length ? NAMES[i] : "TOTAL",
+                    histogram.count(),
+                    histogram.count() / (histogram.totalNanos() / 1e9),
+                    histogram.mean() / 1000,
+                    histogram.percentile(0.50) / 1000.0,
+                    histogram.percentile(0.99) / 1000.0,
+                    histogram.percentile(0.999) / 1000.0,
+                    histogram.max() / 1000.0);
+        }
+        out.println("Busquedas encontradas: " + found + ", lineas con errores: " + errors
+                + ", libros al final: " + tree.size());
+    }
+
+    public static void main(String[] args) {
+        Path file = null;
+        long warmup = 0;
+        boolean concurrent = false;
+        int titleDistance = -1;
+        for (String arg : args) {
+            if (arg.startsWith("--warmup=")) {
+                warmup = Long.parseLong(arg.substring("--warmup=".length()));
+            } else if (arg.equals("--concurrent")) {
+                concurrent = true;
+            } else if (arg.equals("--titles")) {
+                titleDistance = 2;
+            } else if (arg.startsWith("--titles=")) {
+                titleDistance = Integer.parseInt(arg.substring("--titles=".length()));
+            } else {
+                file = Path.of(arg);
+            }
+        }
+        if (file == null) {
+            System.err.println("Uso: ReplayDriver <archivo> [--warmup=N] [--concurrent] [--titles[=distancia]]");
+            return;
+        }
+
+        ReplayDriver driver = new ReplayDriver(concurrent ? BTree.concurrent() : new BTree());
+        if (titleDistance >= 0) {
+            driver.enableTitles(titleDistance);
+        }
+        try {
+            driver.replay(file, warmup);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        driver.report(System.out);
+    }
+}
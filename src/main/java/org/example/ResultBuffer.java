@@ -0,0 +1,215 @@
+package org.example;
+import java.util.Arrays;
+
+// Lineas del reporte ya codificadas en UTF-8 sobre un byte[] que se reutiliza entre
+// bloques. Los textos se escriben escapados como strings JSON (comillas, barras y
+// caracteres de control) y los numeros sin pasar por String, asi una linea de
+// resultado no crea objetos aparte del nombre descomprimido.
+final class ResultBuffer {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = "null".getBytes();
+
+    private byte[] bytes;
+    private int length;
+
+    ResultBuffer() {
+        this(64 << 10);
+    }
+
+    ResultBuffer(int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    // Mismo formato que generaba el String.format de Exit; name es el nombre ya
+    // descomprimido del libro
+    public void appendResult(Book book, String name, CompressionStats.Entry stats) {
+        appendAscii("{\"isbn\":\"");
+        appendJson(book.isbn());
+        appendAscii("\",\"name\":\"");
+        appendJson(name);
+        appendAscii("\",\"author\":\"");
+        appendJson(book.author());
+        appendAscii("\",\"price\":\"");
+        if (book.priceRaw() != null) {
+            appendJson(book.priceRaw());
+        } else {
+            appendPrice(book.priceCents());
+        }
+        appendAscii("\",\"quantity\":\"");
+        if (book.quantityRaw() != null) {
+            appendJson(book.quantityRaw());
+        } else if (book.quantity() == Book.NO_QUANTITY) {
+            appendBytes(NULL);
+        } else {
+            appendLong(book.quantity());
+        }
+        appendAscii("\", \"namesize\":\"");
+        appendLong(stats.namesize);
+        appendAscii("\", \"namesizeHuffman\":\"");
+        appendLong(stats.namesizeHuffman);
+        appendAscii("\", \"namesizearithmetic\":\"");
+        appendLong(stats.namesizeArithmetic);
+        appendAscii("\"}");
+        newLine();
+    }
+
+    // "Equal: 3" y similares
+    public void appendTotal(String label, long value) {
+        appendAscii(label);
+        appendAscii(": ");
+        appendLong(value);
+        newLine();
+    }
+
+    public void newLine() {
+        appendBytes(LINE_SEPARATOR);
+    }
+
+    // Solo para textos fijos del formato, que son ASCII
+    private void appendAscii(String text) {
+        int n = text.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            bytes[length++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void appendBytes(byte[] data) {
+        ensure(data.length);
+        System.arraycopy(data, 0, bytes, length, data.length);
+        length += data.length;
+    }
+
+    // Contenido de un string JSON; null se escribe como hacia String.format
+    void appendJson(String text) {
+        if (text == null) {
+            appendBytes(NULL);
+            return;
+        }
+        int n = text.length();
+        // Peor caso: 6 bytes por caracter de control (escape unicode)
+        ensure(n * 6);
+        byte[] out = bytes;
+        int pos = length;
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    out[pos++] = (byte) c;
+                } else {
+                    pos = escape(out, pos, c);
+                }
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | c >> 6);
+                out[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, text.charAt(++i));
+                out[pos++] = (byte) (0xF0 | code >> 18);
+                out[pos++] = (byte) (0x80 | code >> 12 & 0x3F);
+                out[pos++] = (byte) (0x80 | code >> 6 & 0x3F);
+                out[pos++] = (byte) (0x80 | code & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // Surrogate sin pareja: igual que String.getBytes(UTF_8)
+                out[pos++] = '?';
+            } else {
+                out[pos++] = (byte) (0xE0 | c >> 12);
+                out[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                out[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        length = pos;
+    }
+
+    private static int escape(byte[] out, int pos, char c) {
+        out[pos++] = '\\';
+        switch (c) {
+            case '"':
+            case '\\':
+                out[pos++] = (byte) c;
+                break;
+            case '\n':
+                out[pos++] = 'n';
+                break;
+            case '\r':
+                out[pos++] = 'r';
+                break;
+            case '\t':
+                out[pos++] = 't';
+                break;
+            case '\b':
+                out[pos++] = 'b';
+                break;
+            case '\f':
+                out[pos++] = 'f';
+                break;
+            default:
+                out[pos++] = 'u';
+                out[pos++] = '0';
+                out[pos++] = '0';
+                out[pos++] = HEX[c >> 4];
+                out[pos++] = HEX[c & 0xF];
+        }
+        return pos;
+    }
+
+    // Igual que Book.formatPrice pero sin armar el String
+    private void appendPrice(long cents) {
+        if (cents == Book.NO_PRICE) {
+            appendBytes(NULL);
+            return;
+        }
+        if (cents < 0) {
+            ensure(1);
+            bytes[length++] = '-';
+        }
+        long abs = Math.abs(cents);
+        appendLong(abs / 100);
+        ensure(3);
+        long fraction = abs % 100;
+        bytes[length++] = '.';
+        bytes[length++] = (byte) ('0' + fraction / 10);
+        bytes[length++] = (byte) ('0' + fraction % 10);
+    }
+
+    void appendLong(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                appendAscii(Long.toString(value));
+                return;
+            }
+            ensure(1);
+            bytes[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        ensure(digits);
+        length += digits;
+        int pos = length;
+        do {
+            bytes[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public void clear() {
+        length = 0;
+    }
+}
@@ -0,0 +1,103 @@
+package org.example;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+// Salida del reporte: junta los ResultBuffer en un bloque de 1 MiB y lo escribe de
+// una vez en el canal. Comprimido, el bloque pasa por gzip o por el codificador de
+// rango (RangeOutputStream, orden 1) antes del canal. Como el archivo se abre para
+// agregar, cada corrida queda como un flujo comprimido aparte: zcat lee todos los
+// miembros gzip y RangeInputStream se detiene justo al final de cada flujo.
+final class ResultWriter implements Closeable {
+    static final int BLOCK_BYTES = 1 << 20;
+    static final int PLAIN = 0;
+    static final int GZIP = 1;
+    static final int RANGE = 2;
+
+    private final WritableByteChannel channel;
+    private final OutputStream compressor;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+
+    ResultWriter(WritableByteChannel channel, int compression) throws IOException {
+        this.channel = channel;
+        switch (compression) {
+            case PLAIN:
+                compressor = null;
+                break;
+            case GZIP:
+                compressor = new GZIPOutputStream(Channels.newOutputStream(channel), BLOCK_BYTES);
+                break;
+            case RANGE:
+                compressor = new RangeOutputStream(Channels.newOutputStream(channel), 1);
+                break;
+            default:
+                throw new IllegalArgumentException("Compresion desconocida: " + compression);
+        }
+    }
+
+    // Extension del archivo de salida para cada modo
+    public static String suffix(int compression) {
+        return compression == GZIP ? ".gz" : compression == RANGE ? ".rc" : "";
+    }
+
+    // Agrega al final del archivo (lo crea si no existe), como el FileWriter que usaba Exit
+    public static ResultWriter append(Path file, int compression) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            return new ResultWriter(channel, compression);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void write(ResultBuffer buffer) throws IOException {
+        int length = buffer.length();
+        if (length > block.remaining()) {
+            flush();
+        }
+        if (length >= BLOCK_BYTES) {
+            drain(ByteBuffer.wrap(buffer.array(), 0, length));
+        } else {
+            block.put(buffer.array(), 0, length);
+        }
+    }
+
+    public void flush() throws IOException {
+        block.flip();
+        drain(block);
+        block.clear();
+    }
+
+    private void drain(ByteBuffer data) throws IOException {
+        if (compressor != null) {
+            compressor.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+            return;
+        }
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if (compressor != null) {
+                // Termina el flujo comprimido y cierra el canal
+                compressor.close();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.example;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Reporte de busquedas de output.txt. Cada linea SEARCH se resuelve por separado
+// (busqueda + estadisticas de compresion) dentro de un bloque de lineas leido del
+// archivo mapeado; en modo paralelo los bloques se calculan en un ForkJoinPool y se
+// escriben en el orden de entrada, con los errores reportados tambien en ese orden.
+// Las lineas se escriben directo en UTF-8 sobre el ResultBuffer del bloque, que se
+// recicla despues de pasarlo al ResultWriter. Con titleSearch las lineas PREFIX y
+// FUZZY van al indice de titulos y cada una escribe hasta TITLE_RESULTS libros;
+// sin eso se buscan por nombre como cualquier otra linea.
+final class SearchReport {
+    static final int CHUNK_BYTES = 128 << 10;
+    static final int TITLE_RESULTS = 10;
+    // Bloques en vuelo por hilo: limita la memoria sin dejar hilos sin trabajo
+    static final int CHUNKS_PER_THREAD = 4;
+
+    static final class Chunk {
+        final ByteBuffer data;
+        final ResultBuffer output;
+        // Errores y la linea (dentro del bloque) en que ocurrieron; parseErrors
+        // cuenta los de lineas mal formadas, el resto fallo al buscar
+        final List<Integer> errorLines = new ArrayList<>();
+        final List<RuntimeException> errors = new ArrayList<>();
+        int parseErrors;
+        int lines;
+        int equal;
+        int decompress;
+        int huffman;
+        int arithmetic;
+        int either;
+
+        Chunk(ByteBuffer data, ResultBuffer output) {
+            this.data = data;
+            this.output = output;
+        }
+    }
+
+    private final Inventory tree;
+    private final ResultWriter writer;
+    // Buffers de salida libres; solo los toca el hilo que llama a run/runParallel
+    private final ArrayDeque<ResultBuffer> spare = new ArrayDeque<>();
+    private OperationFile input;
+    // Distancia de edicion de las lineas FUZZY; -1 sin busqueda de titulos
+    private int titleDistance = -1;
+    private long linesWritten;
+    private int equal;
+    private int decompress;
+    private int huffman;
+    private int arithmetic;
+    private int either;
+
+    SearchReport(Inventory tree, ResultWriter writer) {
+        this.tree = tree;
+        this.writer = writer;
+    }
+
+    public void titleSearch(int maxDistance) {
+        titleDistance = maxDistance;
+    }
+
+    public void run(OperationFile input) throws IOException {
+        this.input = input;
+        ByteBuffer data;
+        while ((data = input.nextChunk(CHUNK_BYTES)) != null) {
+            write(search(new Chunk(data, outputBuffer())));
+        }
+    }
+
+    public void runParallel(OperationFile input, int threads) throws IOException {
+        this.input = input;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        try {
+            ByteBuffer data;
+            while ((data = input.nextChunk(CHUNK_BYTES)) != null) {
+                Chunk chunk = new Chunk(data, outputBuffer());
+                inFlight.add(pool.submit(() -> search(chunk)));
+                if (inFlight.size() >= threads * CHUNKS_PER_THREAD) {
+                    write(await(inFlight.poll()));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                write(await(inFlight.poll()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private ResultBuffer outputBuffer() {
+        ResultBuffer buffer = spare.poll();
+        return buffer != null ? buffer : new ResultBuffer();
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reporte de busqueda interrumpido");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Fallo un bloque del reporte de busqueda", e.getCause());
+        }
+    }
+
+    // Solo lee el arbol y la cache de estadisticas, asi que corre en cualquier hilo
+    Chunk search(Chunk chunk) {
+        OperationParser parser = new OperationParser();
+        OperationLine operation = new OperationLine();
+        ByteBuffer data = chunk.data;
+        int limit = data.limit();
+        int start = 0;
+        while (start < limit) {
+            int newline = OperationFile.indexOfNewline(data, start, limit);
+            int next = newline < 0 ? limit : newline + 1;
+            int end = newline < 0 ? limit : newline;
+            if (end > start && data.get(end - 1) == '\r') {
+                end--;
+            }
+            chunk.lines++;
+
+            try {
+                parser.parse(data, start, end, operation);
+                String name = operation.requireString(OperationLine.NAME);
+
+                if (titleDistance >= 0 && operation.kind == OperationLine.PREFIX) {
+                    for (Book book : tree.searchTitlesByPrefix(name, TITLE_RESULTS)) {
+                        append(chunk, book);
+                    }
+                } else if (titleDistance >= 0 && operation.kind == OperationLine.FUZZY) {
+                    for (Book book : tree.searchTitlesFuzzy(name, titleDistance, TITLE_RESULTS)) {
+                        append(chunk, book);
+                    }
+                } else {
+                    Book foundBook = tree.searchByName(name);
+                    if (foundBook != null) {
+                        append(chunk, foundBook);
+                    }
+                }
+
+            } catch (OperationFormatException e) {
+                chunk.parseErrors++;
+                chunk.errorLines.add(chunk.lines);
+                chunk.errors.add(e);
+            } catch (RuntimeException e) {
+                chunk.errorLines.add(chunk.lines);
+                chunk.errors.add(e);
+            }
+            start = next;
+        }
+        return chunk;
+    }
+
+    private void append(Chunk chunk, Book book) {
+        String title = book.name();
+        CompressionStats.Entry stats = tree.compressionStats().get(title);
+        tree.metrics().compression(stats.namesize, stats.namesizeHuffman, stats.namesizeArithmetic);
+        chunk.equal += stats.equal();
+        chunk.decompress += stats.decompress();
+        chunk.huffman += stats.huffman();
+        chunk.arithmetic += stats.arithmetic();
+        chunk.either += stats.either();
+        chunk.output.appendResult(book, title, stats);
+    }
+
+    private void write(Chunk chunk) throws IOException {
+        for (int i = 0; i < chunk.errors.size(); i++) {
+            input.report(linesWritten + chunk.errorLines.get(i), chunk.errors.get(i));
+        }
+        tree.metrics().parseErrors.add(chunk.parseErrors);
+        tree.metrics().applyErrors.add(chunk.errors.size() - chunk.parseErrors);
+        linesWritten += chunk.lines;
+        writer.write(chunk.output);
+        chunk.output.clear();
+        spare.push(chunk.output);
+        equal += chunk.equal;
+        decompress += chunk.decompress;
+        huffman += chunk.huffman;
+        arithmetic += chunk.arithmetic;
+        either += chunk.either;
+    }
+
+    public void writeTotals() throws IOException {
+        ResultBuffer totals = outputBuffer();
+        totals.appendTotal("Equal", equal);
+        totals.appendTotal("Decompress", decompress);
+        totals.appendTotal("Huffman", huffman);
+        totals.appendTotal("Arithmetic", arithmetic);
+        totals.appendTotal("Either", either);
+        writer.write(totals);
+        totals.clear();
+        spare.push(totals);
+    }
+}
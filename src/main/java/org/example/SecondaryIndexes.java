@@ -0,0 +1,111 @@
+package org.example;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Indices secundarios del inventario: autor y categoria como multimapas y precio y
+// cantidad en mapas ordenados para consultas por rango. Cada grupo guarda sus
+// libros ordenados por ISBN. El BTree los actualiza en el mismo paso que sus
+// indices principales; tienen su propio candado para el modo concurrente y las
+// consultas devuelven copias.
+final class SecondaryIndexes {
+    private final Map<String, TreeSet<Book>> byAuthor = new HashMap<>();
+    private final Map<String, TreeSet<Book>> byCategory = new HashMap<>();
+    private final TreeMap<Long, TreeSet<Book>> byPrice = new TreeMap<>();
+    private final TreeMap<Integer, TreeSet<Book>> byQuantity = new TreeMap<>();
+
+    public synchronized void add(Book book) {
+        put(byAuthor, book.author(), book);
+        put(byCategory, book.category(), book);
+        if (book.priceCents() != Book.NO_PRICE) {
+            put(byPrice, book.priceCents(), book);
+        }
+        if (book.quantity() != Book.NO_QUANTITY) {
+            put(byQuantity, book.quantity(), book);
+        }
+    }
+
+    public synchronized void remove(Book book) {
+        take(byAuthor, book.author(), book);
+        take(byCategory, book.category(), book);
+        take(byPrice, book.priceCents(), book);
+        take(byQuantity, book.quantity(), book);
+    }
+
+    // Un PATCH cambia el libro de grupo solo en los campos que toco
+    public synchronized void replace(Book old, Book updated) {
+        remove(old);
+        add(updated);
+    }
+
+    public synchronized void clear() {
+        byAuthor.clear();
+        byCategory.clear();
+        byPrice.clear();
+        byQuantity.clear();
+    }
+
+    private static <K> void put(Map<K, TreeSet<Book>> index, K key, Book book) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new TreeSet<>()).add(book);
+        }
+    }
+
+    private static <K> void take(Map<K, TreeSet<Book>> index, K key, Book book) {
+        if (key == null) {
+            return;
+        }
+        TreeSet<Book> books = index.get(key);
+        if (books != null && books.remove(book) && books.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    public synchronized List<Book> byAuthor(String author) {
+        return copy(byAuthor.get(author));
+    }
+
+    public synchronized List<Book> byCategory(String category) {
+        return copy(byCategory.get(category));
+    }
+
+    public synchronized int countByAuthor(String author) {
+        TreeSet<Book> books = byAuthor.get(author);
+        return books == null ? 0 : books.size();
+    }
+
+    public synchronized int countByCategory(String category) {
+        TreeSet<Book> books = byCategory.get(category);
+        return books == null ? 0 : books.size();
+    }
+
+    // Ambos extremos incluidos; ordenado por precio y luego ISBN
+    public synchronized List<Book> priceRange(long fromCents, long toCents) {
+        return range(byPrice, fromCents, toCents);
+    }
+
+    public synchronized List<Book> quantityRange(int from, int to) {
+        return range(byQuantity, from, to);
+    }
+
+    private static <K extends Comparable<K>> List<Book> range(TreeMap<K, TreeSet<Book>> index, K from, K to) {
+        if (from.compareTo(to) > 0) {
+            return Collections.emptyList();
+        }
+        List<Book> result = new ArrayList<>();
+        NavigableMap<K, TreeSet<Book>> groups = index.subMap(from, true, to, true);
+        for (TreeSet<Book> books : groups.values()) {
+            result.addAll(books);
+        }
+        return result;
+    }
+
+    private static List<Book> copy(TreeSet<Book> books) {
+        return books == null ? Collections.emptyList() : new ArrayList<>(books);
+    }
+}
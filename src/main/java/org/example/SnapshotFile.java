@@ -0,0 +1,189 @@
+package org.example;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Snapshot compacto del arbol: [magic][version][secuencia de bitacora][libros]
+// seguido de los registros BookCodec en orden de ISBN y un crc32 de todo. Cada
+// registro lleva antes un byte que dice si el indice por nombre apunta a el (un
+// PATCH puede dejar dos libros con el mismo nombre); con eso BTree.restore arma
+// el arbol de abajo hacia arriba y los dos indices tal como estaban. El
+// checkpoint toma la imagen (capture) con los escritores detenidos y la escribe
+// despues, sin frenarlos; la lectura va de a BUFFER_SIZE bytes, no mapea el archivo.
+final class SnapshotFile {
+    private static final int MAGIC = 0x424B534E;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // Libros en orden de ISBN y si el indice por nombre apunta a cada uno
+    static final class Image {
+        final Book[] books;
+        final boolean[] nameIndexed;
+
+        Image(Book[] books, boolean[] nameIndexed) {
+            this.books = books;
+            this.nameIndexed = nameIndexed;
+        }
+    }
+
+    private SnapshotFile() {
+    }
+
+    // Solo copia referencias (los Book son inmutables); el arbol no debe cambiar mientras tanto
+    public static Image capture(BTree tree) {
+        Book[] books = new Book[tree.size()];
+        boolean[] nameIndexed = new boolean[books.length];
+        int n = 0;
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                Book book = leaf.books[i];
+                books[n] = book;
+                nameIndexed[n] = tree.bookIndexByName.get(book.packedName()) == book;
+                n++;
+            }
+        }
+        return new Image(books, nameIndexed);
+    }
+
+    public static void write(Path file, BTree tree, long journalSeq) throws IOException {
+        write(file, capture(tree), journalSeq);
+    }
+
+    // Se escribe en un temporal y se renombra, asi nunca queda un snapshot a medias
+    public static void write(Path file, Image image, long journalSeq) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(journalSeq).putLong(image.books.length);
+            for (int i = 0; i < image.books.length; i++) {
+                Book book = image.books[i];
+                int size = 1 + BookCodec.size(book);
+                if (buffer.remaining() < size) {
+                    drain(channel, buffer, crc);
+                    if (buffer.remaining() < size) {
+                        buffer = ByteBuffer.allocate(size);
+                    }
+                }
+                buffer.put((byte) (image.nameIndexed[i] ? 1 : 0));
+                BookCodec.write(buffer, book);
+            }
+            drain(channel, buffer, crc);
+            buffer.putInt((int) crc.getValue()).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Carga el snapshot en el arbol (vacio) y devuelve su secuencia de bitacora. El
+    // crc se acumula a medida que se leen los bloques y se revisa antes de tocar el arbol.
+    public static long read(Path file, BTree tree) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Reader in = new Reader(channel);
+            ByteBuffer data = in.window;
+            if (in.size < 28 || !in.ensure(24) || data.getInt() != MAGIC) {
+                throw new IOException("Snapshot invalido: " + file);
+            }
+            int version = data.getInt();
+            if (version != VERSION) {
+                throw new IOException("Version de snapshot no soportada: " + version);
+            }
+            long journalSeq = data.getLong();
+            long count = data.getLong();
+            if (count < 0 || count > in.size) {
+                throw new IOException("Snapshot danado: " + file);
+            }
+            Book[] books = new Book[(int) count];
+            boolean[] nameIndexed = new boolean[books.length];
+            for (int i = 0; i < books.length; i++) {
+                while (true) {
+                    data = in.window;
+                    int start = data.position();
+                    try {
+                        nameIndexed[i] = data.get() != 0;
+                        books[i] = BookCodec.read(data);
+                        break;
+                    } catch (BufferUnderflowException e) {
+                        // El registro sigue en el proximo bloque
+                        data.position(start);
+                        if (!in.more()) {
+                            throw new IOException("Snapshot danado: " + file);
+                        }
+                    } catch (RuntimeException e) {
+                        throw new IOException("Snapshot danado: " + file, e);
+                    }
+                }
+            }
+            if (!in.ensure(4) || in.window.remaining() != 4 || (int) in.crc.getValue() != in.window.getInt()) {
+                throw new IOException("Snapshot danado: " + file);
+            }
+            tree.restore(books, nameIndexed);
+            return journalSeq;
+        }
+    }
+
+    // Ventana sobre el archivo; el crc cubre todo lo leido salvo los 4 bytes finales
+    private static final class Reader {
+        final FileChannel channel;
+        final long size;
+        final CRC32 crc = new CRC32();
+        ByteBuffer window = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        long loaded;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        boolean ensure(int bytes) throws IOException {
+            while (window.remaining() < bytes) {
+                if (!more()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Agrega al menos un byte a la ventana (la agranda si ya esta llena); false al final
+        boolean more() throws IOException {
+            if (loaded == size) {
+                return false;
+            }
+            window.compact();
+            if (!window.hasRemaining()) {
+                window.flip();
+                window = ByteBuffer.allocate(window.capacity() * 2).put(window);
+            }
+            int from = window.position();
+            int read = channel.read(window, loaded);
+            if (read <= 0) {
+                window.flip();
+                return false;
+            }
+            long covered = Math.max(0, Math.min(read, size - 4 - loaded));
+            crc.update(window.slice(from, (int) covered));
+            loaded += read;
+            window.flip();
+            return true;
+        }
+    }
+}
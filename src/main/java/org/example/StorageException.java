@@ -0,0 +1,14 @@
+package org.example;
+
+// Error de E/S en los archivos del inventario (paginas, bitacora, snapshots).
+class StorageException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public StorageException(String message) {
+        super(message);
+    }
+
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
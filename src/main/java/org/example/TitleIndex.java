@@ -0,0 +1,352 @@
+package org.example;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Indice de titulos para busqueda por prefijo y aproximada. Los titulos se
+// normalizan (minusculas, sin acentos y con la puntuacion reducida a un espacio);
+// el mapa ordenado de titulos normalizados resuelve los prefijos y un indice de
+// trigramas da los candidatos para la distancia de edicion acotada. Las listas
+// de trigramas se separan por largo del titulo, asi una consulta solo recorre los
+// largos a distancia <= maxDistance del suyo; ademas hay una lista con todos los
+// titulos de cada largo para las consultas cortas, donde los trigramas no alcanzan
+// a filtrar. Cada titulo normalizado tiene un id y las listas guardan ids en
+// arreglos de int; al borrar solo se marca el id y las listas se reconstruyen
+// cuando los muertos superan a los vivos.
+final class TitleIndex {
+    static final int GRAM = 3;
+    // Los titulos mas largos comparten la ultima lista de cada trigrama
+    static final int MAX_BUCKET = 255;
+    private static final int MIN_COMPACT = 1024;
+
+    static final class Title {
+        final String key;
+        final List<String> isbns = new ArrayList<>(1);
+        int id;
+
+        Title(String key) {
+            this.key = key;
+        }
+    }
+
+    static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private static final Postings EMPTY = new Postings();
+
+    private final TreeMap<String, Title> titles = new TreeMap<>();
+    private final Map<Long, Postings> grams = new HashMap<>();
+    private final Postings[] byLength = new Postings[MAX_BUCKET + 1];
+    private Title[] byId = new Title[1024];
+    private int nextId;
+    private int dead;
+    // Marca de la consulta que ya vio cada id y en cuantas listas; evita un mapa
+    // por consulta
+    private int[] seen = new int[1024];
+    private int[] hits = new int[1024];
+    private int[] found = new int[1024];
+    private int stamp;
+    private int[] prevRow = new int[64];
+    private int[] row = new int[64];
+
+    static String normalize(String title) {
+        String text = title;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                text = Normalizer.normalize(text, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        StringBuilder key = new StringBuilder(text.length());
+        boolean gap = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (gap && key.length() > 0) {
+                    key.append(' ');
+                }
+                gap = false;
+                key.append(Character.toLowerCase(c));
+            } else {
+                gap = true;
+            }
+        }
+        return key.toString();
+    }
+
+    // Trigramas distintos del titulo con un espacio de relleno a cada lado
+    static long[] grams(String key) {
+        int count = key.length();
+        long[] result = new long[count];
+        for (int i = 0; i < count; i++) {
+            char a = i == 0 ? ' ' : key.charAt(i - 1);
+            char b = key.charAt(i);
+            char c = i + 1 == count ? ' ' : key.charAt(i + 1);
+            result[i] = ((long) a << 32) | ((long) b << 16) | c;
+        }
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    public synchronized void add(String title, String isbn) {
+        String key = normalize(title);
+        Title entry = titles.get(key);
+        if (entry == null) {
+            entry = new Title(key);
+            titles.put(key, entry);
+            register(entry);
+        }
+        entry.isbns.add(isbn);
+    }
+
+    public synchronized void remove(String title, String isbn) {
+        String key = normalize(title);
+        Title entry = titles.get(key);
+        if (entry == null || !entry.isbns.remove(isbn) || !entry.isbns.isEmpty()) {
+            return;
+        }
+        titles.remove(key);
+        byId[entry.id] = null;
+        dead++;
+        if (dead > MIN_COMPACT && dead > titles.size()) {
+            compact();
+        }
+    }
+
+    public synchronized void rename(String oldTitle, String newTitle, String isbn) {
+        remove(oldTitle, isbn);
+        add(newTitle, isbn);
+    }
+
+    public synchronized int size() {
+        return titles.size();
+    }
+
+    private void register(Title entry) {
+        if (nextId == byId.length) {
+            byId = Arrays.copyOf(byId, nextId * 2);
+            seen = Arrays.copyOf(seen, nextId * 2);
+            hits = Arrays.copyOf(hits, nextId * 2);
+        }
+        entry.id = nextId++;
+        byId[entry.id] = entry;
+        int length = entry.key.length();
+        int bucket = Math.min(length, MAX_BUCKET);
+        if (byLength[bucket] == null) {
+            byLength[bucket] = new Postings();
+        }
+        byLength[bucket].add(entry.id);
+        for (long gram : grams(entry.key)) {
+            grams.computeIfAbsent(bucket(gram, length), g -> new Postings()).add(entry.id);
+        }
+    }
+
+    // Trigrama (48 bits) y largo del titulo en una sola llave
+    private static long bucket(long gram, int length) {
+        return gram << 8 | Math.min(length, MAX_BUCKET);
+    }
+
+    // Renumera los titulos vivos y rehace las listas de trigramas
+    private void compact() {
+        grams.clear();
+        Arrays.fill(byLength, null);
+        byId = new Title[Math.max(1024, titles.size() * 2)];
+        seen = new int[byId.length];
+        hits = new int[byId.length];
+        stamp = 0;
+        nextId = 0;
+        dead = 0;
+        for (Title entry : titles.values()) {
+            register(entry);
+        }
+    }
+
+    // ISBN de los titulos que empiezan con el prefijo, en orden de titulo
+    public synchronized List<String> prefix(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        String key = normalize(prefix);
+        SortedMap<String, Title> range = key.isEmpty() ? titles : titles.subMap(key, key + Character.MAX_VALUE);
+        for (Title entry : range.values()) {
+            for (String isbn : entry.isbns) {
+                result.add(isbn);
+                if (result.size() == limit) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // ISBN de los titulos a distancia de edicion <= maxDistance, los mas cercanos
+    // primero. Cada edicion toca a lo sumo GRAM trigramas, asi que un titulo valido
+    // comparte al menos need de los n trigramas de la consulta y por lo tanto
+    // aparece en alguna de las n - need + 1 listas mas cortas. Esas listas se
+    // recorren contando apariciones; cada candidato se busca despues en las demas
+    // (ordenadas por id) hasta que falte en mas de n - need, y solo los que quedan
+    // pasan a la distancia de edicion. Si need no es positivo (consultas de a lo
+    // sumo GRAM * maxDistance trigramas, o vacias) un titulo valido puede no
+    // compartir ninguno, asi que se revisan todos los titulos de cada largo.
+    public synchronized List<String> fuzzy(String query, int maxDistance, int limit) {
+        String key = normalize(query);
+        if (limit <= 0 || maxDistance < 0) {
+            return Collections.emptyList();
+        }
+        long[] queryGrams = grams(key);
+        List<Title> matches = new ArrayList<>();
+        List<Integer> distances = new ArrayList<>();
+        int from = Math.min(Math.max(0, key.length() - maxDistance), MAX_BUCKET);
+        int to = Math.min(key.length() + maxDistance, MAX_BUCKET);
+        for (int length = from; length <= to; length++) {
+            search(key, queryGrams, length, maxDistance, matches, distances);
+        }
+
+        Integer[] order = new Integer[matches.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byDistance = Integer.compare(distances.get(a), distances.get(b));
+            return byDistance != 0 ? byDistance : matches.get(a).key.compareTo(matches.get(b).key);
+        });
+        List<String> result = new ArrayList<>();
+        for (int i : order) {
+            for (String isbn : matches.get(i).isbns) {
+                result.add(isbn);
+                if (result.size() == limit) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Candidatos de un largo de titulo
+    private void search(String key, long[] queryGrams, int length, int maxDistance,
+                        List<Title> matches, List<Integer> distances) {
+        Postings[] lists = new Postings[queryGrams.length];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = grams.getOrDefault(bucket(queryGrams[i], length), EMPTY);
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int need = lists.length - GRAM * maxDistance;
+        int probe = lists.length - need + 1;
+        if (need <= 0) {
+            Postings all = byLength[length];
+            lists = new Postings[]{all == null ? EMPTY : all};
+            probe = 1;
+        }
+
+        if (++stamp == 0) {
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+        int candidates = 0;
+        for (int i = 0; i < probe; i++) {
+            Postings list = lists[i];
+            for (int j = 0; j < list.size; j++) {
+                int id = list.ids[j];
+                if (seen[id] != stamp) {
+                    seen[id] = stamp;
+                    hits[id] = 0;
+                    if (candidates == found.length) {
+                        found = Arrays.copyOf(found, candidates * 2);
+                    }
+                    found[candidates++] = id;
+                }
+                hits[id]++;
+            }
+        }
+
+        for (int c = 0; c < candidates; c++) {
+            int id = found[c];
+            Title entry = byId[id];
+            if (entry == null || Math.abs(entry.key.length() - key.length()) > maxDistance
+                    || (need > 0 && !shares(id, lists, probe, probe - hits[id], lists.length - need))) {
+                continue;
+            }
+            int distance = distance(key, entry.key, maxDistance);
+            if (distance <= maxDistance) {
+                matches.add(entry);
+                distances.add(distance);
+            }
+        }
+    }
+
+    // Si al id, que ya falto en misses listas, le faltan a lo sumo allowedMisses
+    // contando las listas desde from
+    private static boolean shares(int id, Postings[] lists, int from, int misses, int allowedMisses) {
+        if (misses > allowedMisses) {
+            return false;
+        }
+        for (int i = from; i < lists.length; i++) {
+            Postings list = lists[i];
+            if (Arrays.binarySearch(list.ids, 0, list.size, id) < 0 && ++misses > allowedMisses) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Levenshtein por filas; devuelve max + 1 apenas la fila entera lo supera
+    private int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        if (prevRow.length <= m) {
+            prevRow = new int[m + 1];
+            row = new int[m + 1];
+        }
+        int[] prev = prevRow;
+        int[] cur = row;
+        for (int j = 0; j <= m; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            char c = a.charAt(i - 1);
+            cur[0] = i;
+            int best = i;
+            for (int j = 1; j <= m; j++) {
+                int cost = c == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                cur[j] = value;
+                best = Math.min(best, value);
+            }
+            if (best > max) {
+                return max + 1;
+            }
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+        return Math.min(prev[m], max + 1);
+    }
+}
@@ -0,0 +1,59 @@
+package org.example;
+import java.nio.ByteBuffer;
+
+// Enteros de longitud variable (7 bits por byte, LEB128) para cabeceras y columnas.
+final class Varint {
+    private Varint() {
+    }
+
+    public static void putInt(ByteBuffer out, int value) {
+        putLong(out, value & 0xFFFFFFFFL);
+    }
+
+    public static void putLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static int getInt(ByteBuffer in) {
+        return (int) getLong(in);
+    }
+
+    public static long getLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalArgumentException("Varint demasiado largo");
+            }
+        }
+    }
+
+    // ZigZag para que los deltas negativos tambien ocupen pocos bytes
+    public static void putSignedLong(ByteBuffer out, long value) {
+        putLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    public static long getSignedLong(ByteBuffer in) {
+        long raw = getLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public static int sizeOf(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
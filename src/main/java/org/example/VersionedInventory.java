@@ -0,0 +1,201 @@
+package org.example;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Inventario con versiones (MVCC): los indices por ISBN y por nombre son arboles
+// persistentes (VersionedTree). Cada escritura arma las raices nuevas copiando solo
+// el camino que cambia y las publica de una vez en "current"; una racha de
+// insertAll se publica como un solo commit. Los escritores se turnan con un
+// cerrojo, pero los lectores no lo toman: leen la version publicada o una
+// InventorySnapshot, y un reporte o una exportacion largos siguen viendo su version
+// mientras la carga sigue publicando otras. Las versiones viejas las recupera el
+// GC cuando ya nadie las referencia.
+//
+// Los indices siguen las mismas reglas que BTree: un INSERT con ISBN o nombre
+// repetido se rechaza, un PATCH deja el nombre nuevo apuntando al libro y un
+// DELETE quita la entrada de su nombre. Los Book son inmutables, asi que un PATCH
+// nunca cambia un libro que otra version este leyendo.
+final class VersionedInventory implements Inventory {
+    final InventoryMetrics metrics = new InventoryMetrics(this);
+    final CompressionStats compressionStats = new CompressionStats();
+    private final ReentrantLock writer = new ReentrantLock();
+    private volatile InventorySnapshot current = new InventorySnapshot(this, 0, 0, null, null, false);
+
+    // Estado del escritor entre commits; solo se toca con "writer" tomado
+    private VersionedTree.Node byIsbn;
+    private VersionedTree.Node byName;
+    private int size;
+
+    static long nameKey(String name) {
+        return name.hashCode();
+    }
+
+    // Congela la version publicada; hay que cerrarla al terminar de leer
+    public InventorySnapshot snapshot() {
+        InventorySnapshot version = current;
+        metrics.snapshotOpened();
+        return new InventorySnapshot(this, version.version(), version.size(),
+                version.byIsbn(), version.byName(), true);
+    }
+
+    void release() {
+        metrics.snapshotClosed();
+    }
+
+    public long version() {
+        return current.version();
+    }
+
+    private void commit() {
+        long version = current.version() + 1;
+        current = new InventorySnapshot(this, version, size, byIsbn, byName, false);
+        metrics.version(version);
+    }
+
+    @Override
+    public void insert(Book book) {
+        long start = System.nanoTime();
+        writer.lock();
+        try {
+            if (register(book)) {
+                commit();
+            } else {
+                metrics.rejectedInserts.increment();
+            }
+        } finally {
+            writer.unlock();
+        }
+        metrics.record(InventoryMetrics.INSERT, start);
+    }
+
+    @Override
+    public void insertAll(List<Book> run) {
+        long start = System.nanoTime();
+        int accepted = 0;
+        writer.lock();
+        try {
+            for (Book book : run) {
+                if (register(book)) {
+                    accepted++;
+                }
+            }
+            if (accepted > 0) {
+                commit();
+            }
+        } finally {
+            writer.unlock();
+        }
+        metrics.bulkInserted.add(accepted);
+        metrics.rejectedInserts.add(run.size() - accepted);
+        metrics.record(InventoryMetrics.BULK, start);
+    }
+
+    private boolean register(Book book) {
+        String isbn = book.isbn();
+        String name = book.name();
+        if (VersionedTree.get(byIsbn, book.isbnKey(), isbn) != null
+                || VersionedTree.get(byName, nameKey(name), name) != null) {
+            return false;
+        }
+        byIsbn = VersionedTree.put(byIsbn, book.isbnKey(), isbn, book, null);
+        byName = VersionedTree.put(byName, nameKey(name), name, book, null);
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean updateBook(String isbn, Map<String, Object> updateData) {
+        long start = System.nanoTime();
+        writer.lock();
+        try {
+            boolean updated = update(isbn, updateData);
+            if (updated) {
+                commit();
+            } else {
+                metrics.patchMisses.increment();
+            }
+            return updated;
+        } finally {
+            writer.unlock();
+            metrics.record(InventoryMetrics.PATCH, start);
+        }
+    }
+
+    private boolean update(String isbn, Map<String, Object> updateData) {
+        long key = Book.isbnKey(isbn);
+        Book originalBook = VersionedTree.get(byIsbn, key, isbn);
+        if (originalBook == null) {
+            return false;
+        }
+        Book updatedBook = originalBook.withUpdates(updateData);
+        String oldName = originalBook.name();
+        String newName = updatedBook.name();
+        if (!oldName.equals(newName)) {
+            byName = VersionedTree.remove(byName, nameKey(oldName), oldName, null);
+            compressionStats.invalidate(oldName);
+        }
+        byName = VersionedTree.put(byName, nameKey(newName), newName, updatedBook, null);
+        byIsbn = VersionedTree.put(byIsbn, key, isbn, updatedBook, null);
+        return true;
+    }
+
+    @Override
+    public void removeBook(String isbn) {
+        long start = System.nanoTime();
+        writer.lock();
+        try {
+            Book[] removed = new Book[1];
+            byIsbn = VersionedTree.remove(byIsbn, Book.isbnKey(isbn), isbn, removed);
+            if (removed[0] == null) {
+                metrics.deleteMisses.increment();
+            } else {
+                String name = removed[0].name();
+                byName = VersionedTree.remove(byName, nameKey(name), name, null);
+                compressionStats.invalidate(name);
+                size--;
+                commit();
+            }
+        } finally {
+            writer.unlock();
+        }
+        metrics.record(InventoryMetrics.DELETE, start);
+    }
+
+    // Las lecturas directas van contra la ultima version publicada
+    @Override
+    public Book searchByName(String name) {
+        return current.searchByName(name);
+    }
+
+    @Override
+    public Book findBookByIsbn(String isbn) {
+        return current.findBookByIsbn(isbn);
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    // La version publicada las rechaza: Main no deja combinar --title-search con --mvcc
+    @Override
+    public List<Book> searchTitlesByPrefix(String prefix, int limit) {
+        return current.searchTitlesByPrefix(prefix, limit);
+    }
+
+    @Override
+    public List<Book> searchTitlesFuzzy(String query, int maxDistance, int limit) {
+        return current.searchTitlesFuzzy(query, maxDistance, limit);
+    }
+
+    @Override
+    public InventoryMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public CompressionStats compressionStats() {
+        return compressionStats;
+    }
+}
@@ -0,0 +1,340 @@
+package org.example;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Arbol B+ persistente: los nodos no cambian nunca. put y remove copian solo el
+// camino de la raiz a la hoja y devuelven una raiz nueva; el resto de los nodos se
+// comparte con la version anterior. Asi una raiz vieja sigue siendo una version
+// completa y consistente que se lee sin cerrojos, y cuando nadie la referencia el
+// GC recupera los nodos que solo ella usaba.
+//
+// La llave es (numero, cadena): para el indice por ISBN es (Book.isbnKey, isbn), que
+// ordena igual que Book.compareIsbn; para el indice por nombre es (hash, nombre).
+// Los nodos internos guardan n hijos y n - 1 separadores (la primera llave del hijo
+// i + 1). Al borrar, un nodo que queda con menos de ORDER / 4 entradas se junta con
+// un vecino si caben en uno; un nodo vacio se quita.
+final class VersionedTree {
+    static final int ORDER = 64;
+    private static final int MIN_FILL = ORDER / 4;
+
+    static final class Node {
+        final long[] keys;
+        final String[] strings;
+        // Hojas: libros; internos: hijos (y keys/strings son los separadores)
+        final Book[] books;
+        final Node[] children;
+
+        private Node(long[] keys, String[] strings, Book[] books, Node[] children) {
+            this.keys = keys;
+            this.strings = strings;
+            this.books = books;
+            this.children = children;
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+
+        int entries() {
+            return isLeaf() ? books.length : children.length;
+        }
+    }
+
+    // Resultado de un cambio en un subarbol: el nodo nuevo (null si quedo vacio) o,
+    // si se partio, las dos mitades y la primera llave de la derecha
+    private static final class Change {
+        Node left;
+        Node right;
+        long key;
+        String string;
+        boolean found;
+    }
+
+    private VersionedTree() {
+    }
+
+    static int compare(long key1, String string1, long key2, String string2) {
+        int cmp = Long.compare(key1, key2);
+        return cmp != 0 ? cmp : string1.compareTo(string2);
+    }
+
+    public static Book get(Node root, long key, String string) {
+        Node node = root;
+        if (node == null) {
+            return null;
+        }
+        while (!node.isLeaf()) {
+            node = node.children[childIndex(node, key, string)];
+        }
+        int i = search(node, key, string);
+        return i >= 0 ? node.books[i] : null;
+    }
+
+    // Posicion de la llave en la hoja, o -(posicion de insercion) - 1
+    private static int search(Node leaf, long key, String string) {
+        int low = 0;
+        int high = leaf.keys.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(leaf.keys[mid], leaf.strings[mid], key, string);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // Cantidad de separadores <= llave, que es el hijo donde esta
+    private static int childIndex(Node inner, long key, String string) {
+        int low = 0;
+        int high = inner.keys.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(inner.keys[mid], inner.strings[mid], key, string) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    // Agrega o reemplaza; "replaced" (si no es null) queda en true cuando la llave ya estaba
+    public static Node put(Node root, long key, String string, Book book, boolean[] replaced) {
+        if (root == null) {
+            return new Node(new long[]{key}, new String[]{string}, new Book[]{book}, null);
+        }
+        Change change = new Change();
+        put(root, key, string, book, change);
+        if (replaced != null) {
+            replaced[0] = change.found;
+        }
+        if (change.right == null) {
+            return change.left;
+        }
+        // La raiz se partio: una raiz nueva con las dos mitades
+        return new Node(new long[]{change.key}, new String[]{change.string}, null,
+                new Node[]{change.left, change.right});
+    }
+
+    private static void put(Node node, long key, String string, Book book, Change change) {
+        if (node.isLeaf()) {
+            int i = search(node, key, string);
+            if (i >= 0) {
+                Book[] books = node.books.clone();
+                books[i] = book;
+                change.left = new Node(node.keys, node.strings, books, null);
+                change.found = true;
+                return;
+            }
+            i = -(i + 1);
+            int n = node.keys.length;
+            long[] keys = new long[n + 1];
+            String[] strings = new String[n + 1];
+            Book[] books = new Book[n + 1];
+            System.arraycopy(node.keys, 0, keys, 0, i);
+            System.arraycopy(node.strings, 0, strings, 0, i);
+            System.arraycopy(node.books, 0, books, 0, i);
+            keys[i] = key;
+            strings[i] = string;
+            books[i] = book;
+            System.arraycopy(node.keys, i, keys, i + 1, n - i);
+            System.arraycopy(node.strings, i, strings, i + 1, n - i);
+            System.arraycopy(node.books, i, books, i + 1, n - i);
+            if (n + 1 <= ORDER) {
+                change.left = new Node(keys, strings, books, null);
+                return;
+            }
+            splitLeaf(keys, strings, books, change);
+            return;
+        }
+
+        int i = childIndex(node, key, string);
+        put(node.children[i], key, string, book, change);
+        if (change.right == null) {
+            Node[] children = node.children.clone();
+            children[i] = change.left;
+            change.left = new Node(node.keys, node.strings, null, children);
+            return;
+        }
+
+        // El hijo se partio: su mitad derecha entra en i + 1 y su primera llave en el separador i
+        int n = node.children.length;
+        Node[] children = new Node[n + 1];
+        long[] keys = new long[n];
+        String[] strings = new String[n];
+        System.arraycopy(node.children, 0, children, 0, i);
+        children[i] = change.left;
+        children[i + 1] = change.right;
+        System.arraycopy(node.children, i + 1, children, i + 2, n - i - 1);
+        System.arraycopy(node.keys, 0, keys, 0, i);
+        System.arraycopy(node.strings, 0, strings, 0, i);
+        keys[i] = change.key;
+        strings[i] = change.string;
+        System.arraycopy(node.keys, i, keys, i + 1, n - 1 - i);
+        System.arraycopy(node.strings, i, strings, i + 1, n - 1 - i);
+        if (n + 1 <= ORDER) {
+            change.left = new Node(keys, strings, null, children);
+            change.right = null;
+            return;
+        }
+        splitInner(keys, strings, children, change);
+    }
+
+    private static void splitLeaf(long[] keys, String[] strings, Book[] books, Change change) {
+        int half = keys.length / 2;
+        int n = keys.length;
+        change.left = new Node(Arrays.copyOf(keys, half), Arrays.copyOf(strings, half),
+                Arrays.copyOf(books, half), null);
+        change.right = new Node(Arrays.copyOfRange(keys, half, n), Arrays.copyOfRange(strings, half, n),
+                Arrays.copyOfRange(books, half, n), null);
+        change.key = keys[half];
+        change.string = strings[half];
+    }
+
+    // n hijos y n - 1 separadores: el separador del medio sube al padre
+    private static void splitInner(long[] keys, String[] strings, Node[] children, Change change) {
+        int half = children.length / 2;
+        int n = children.length;
+        change.left = new Node(Arrays.copyOf(keys, half - 1), Arrays.copyOf(strings, half - 1),
+                null, Arrays.copyOf(children, half));
+        change.right = new Node(Arrays.copyOfRange(keys, half, n - 1), Arrays.copyOfRange(strings, half, n - 1),
+                null, Arrays.copyOfRange(children, half, n));
+        change.key = keys[half - 1];
+        change.string = strings[half - 1];
+    }
+
+    // Quita la llave; "removed" (si no es null) queda con el libro quitado o null
+    public static Node remove(Node root, long key, String string, Book[] removed) {
+        if (root == null) {
+            return null;
+        }
+        Change change = new Change();
+        Book book = remove(root, key, string, change);
+        if (removed != null) {
+            removed[0] = book;
+        }
+        if (!change.found) {
+            return root;
+        }
+        Node node = change.left;
+        // Una raiz interna con un solo hijo se reemplaza por el hijo
+        while (node != null && !node.isLeaf() && node.children.length == 1) {
+            node = node.children[0];
+        }
+        return node;
+    }
+
+    private static Book remove(Node node, long key, String string, Change change) {
+        if (node.isLeaf()) {
+            int i = search(node, key, string);
+            if (i < 0) {
+                return null;
+            }
+            change.found = true;
+            Book book = node.books[i];
+            int n = node.keys.length;
+            change.left = n == 1 ? null
+                    : new Node(without(node.keys, i), without(node.strings, i), without(node.books, i), null);
+            return book;
+        }
+
+        int i = childIndex(node, key, string);
+        Book book = remove(node.children[i], key, string, change);
+        if (!change.found) {
+            return null;
+        }
+        Node child = change.left;
+        Node[] children = node.children.clone();
+        long[] keys = node.keys;
+        String[] strings = node.strings;
+        if (child == null) {
+            // El hijo quedo vacio: se quita con uno de sus separadores
+            if (children.length == 1) {
+                change.left = null;
+                return book;
+            }
+            int separator = i == 0 ? 0 : i - 1;
+            change.left = new Node(without(keys, separator), without(strings, separator), null, without(children, i));
+            return book;
+        }
+        children[i] = child;
+        if (child.entries() < MIN_FILL && children.length > 1) {
+            int left = i == 0 ? 0 : i - 1;
+            Node merged = merge(children[left], children[left + 1], keys[left], strings[left]);
+            if (merged != null) {
+                children[left] = merged;
+                change.left = new Node(without(keys, left), without(strings, left), null, without(children, left + 1));
+                return book;
+            }
+        }
+        change.left = new Node(keys, strings, null, children);
+        return book;
+    }
+
+    // Junta dos vecinos si caben en un nodo; null si no caben
+    private static Node merge(Node left, Node right, long key, String string) {
+        if (left.entries() + right.entries() > ORDER) {
+            return null;
+        }
+        if (left.isLeaf()) {
+            return new Node(concat(left.keys, right.keys), concat(left.strings, right.strings),
+                    concat(left.books, right.books), null);
+        }
+        // El separador del padre queda entre los separadores de los dos
+        long[] keys = new long[left.keys.length + 1 + right.keys.length];
+        String[] strings = new String[keys.length];
+        System.arraycopy(left.keys, 0, keys, 0, left.keys.length);
+        System.arraycopy(left.strings, 0, strings, 0, left.keys.length);
+        keys[left.keys.length] = key;
+        strings[left.keys.length] = string;
+        System.arraycopy(right.keys, 0, keys, left.keys.length + 1, right.keys.length);
+        System.arraycopy(right.strings, 0, strings, left.keys.length + 1, right.keys.length);
+        return new Node(keys, strings, null, concat(left.children, right.children));
+    }
+
+    // Recorre los libros en orden de llave
+    public static void forEach(Node node, Consumer<Book> action) {
+        if (node == null) {
+            return;
+        }
+        if (node.isLeaf()) {
+            for (Book book : node.books) {
+                action.accept(book);
+            }
+            return;
+        }
+        for (Node child : node.children) {
+            forEach(child, action);
+        }
+    }
+
+    private static long[] without(long[] array, int i) {
+        long[] result = new long[array.length - 1];
+        System.arraycopy(array, 0, result, 0, i);
+        System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+        return result;
+    }
+
+    private static <T> T[] without(T[] array, int i) {
+        T[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+        return result;
+    }
+
+    private static long[] concat(long[] left, long[] right) {
+        long[] result = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, result, left.length, right.length);
+        return result;
+    }
+
+    private static <T> T[] concat(T[] left, T[] right) {
+        T[] result = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, result, left.length, right.length);
+        return result;
+    }
+}
@@ -0,0 +1,271 @@
+package org.example;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Genera archivos de operaciones con el formato de lab01_books.csv / lab01_search.csv
+// (OP;{json}) para pruebas de carga. Primero escribe un catalogo de INSERT y luego
+// la mezcla pedida de INSERT/PATCH/DELETE/SEARCH. PATCH y SEARCH eligen libros con
+// popularidad Zipf (los mas viejos son los mas pedidos) y DELETE elige al azar.
+// Los titulos se derivan del id del libro y de cuantas veces se renombro, asi no
+// hay que guardarlos para generar las busquedas; el id al final los hace unicos.
+// PREFIX busca las primeras letras de un titulo y FUZZY un titulo con una letra
+// cambiada (para ReplayDriver --titles); por defecto no van en la mezcla.
+//
+//   java -cp ... org.example.WorkloadGenerator --out=carga.csv --ops=10000000
+//        --catalog=1000000 --mix=insert:10,patch:15,delete:5,search:70 --zipf=0.99
+final class WorkloadGenerator {
+    static final long FIRST_ISBN = 9_780_000_000_000L;
+    // Ids de libros que nunca se insertan, para las busquedas que no encuentran nada
+    private static final long MISSING_IDS = 1L << 40;
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "a", "in", "night", "house", "war", "love", "secret",
+            "garden", "river", "shadow", "king", "queen", "last", "first", "city", "stars", "silent",
+            "winter", "summer", "dragon", "empire", "memory", "storm", "glass", "fire", "ocean", "lost",
+            "dark", "light", "daughter", "son", "world", "history", "time", "road", "book", "life",
+            "death", "blood", "bone", "iron", "gold", "silver", "forest", "mountain", "sea", "sky",
+            "heart", "soul", "dream", "song", "tale", "journey", "island", "kingdom", "crown", "sword",
+            "soledad", "cien", "anos", "principito", "quijote", "mancha", "sombra", "viento", "ciudad", "perros",
+            "amor", "tiempos", "colera", "casa", "espiritus", "noche", "mar", "tierra", "fuego", "agua"
+    };
+    private static final String[] CATEGORIES = {
+            "Ficcion", "Fantasia", "Ciencia Ficcion", "Misterio", "Romance", "Historia", "Biografia",
+            "Clasicos", "Poesia", "Infantil", "Juvenil", "Terror", "Ensayo", "Viajes", "Cocina"
+    };
+
+    // Mezcla en porcentajes relativos
+    int insert = 10;
+    int patch = 15;
+    int delete = 5;
+    int search = 70;
+    int prefix = 0;
+    int fuzzy = 0;
+    long operations = 1_000_000;
+    int catalog = 100_000;
+    double zipf = 0.99;
+    // Palabras por titulo: normal con esta media y desviacion, al menos una
+    double titleWords = 4;
+    double titleWordsDeviation = 2;
+    double missRate = 0.05;
+    int authors = 50_000;
+    long seed = 1;
+
+    private SplittableRandom random;
+    private ZipfSampler popularity;
+    private ZipfSampler wordPopularity;
+    private int[] live = new int[1024];
+    private int liveCount;
+    private int[] renames = new int[1024];
+    private int nextId;
+
+    public long generate(Path out) throws IOException {
+        int total = insert + patch + delete + search + prefix + fuzzy;
+        if (insert < 0 || patch < 0 || delete < 0 || search < 0 || prefix < 0 || fuzzy < 0 || total == 0) {
+            throw new IllegalArgumentException("La mezcla de operaciones no es valida");
+        }
+        random = new SplittableRandom(seed);
+        popularity = new ZipfSampler(zipf);
+        wordPopularity = new ZipfSampler(1.0);
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder(256);
+            for (int i = 0; i < catalog; i++) {
+                writeLine(writer, insertLine(line));
+                written++;
+            }
+            for (long i = 0; i < operations; i++) {
+                int pick = random.nextInt(total);
+                if (pick < insert || liveCount == 0) {
+                    insertLine(line);
+                } else if (pick < insert + patch) {
+                    patchLine(line);
+                } else if (pick < insert + patch + delete) {
+                    deleteLine(line);
+                } else if (pick < insert + patch + delete + search) {
+                    searchLine(line);
+                } else if (pick < insert + patch + delete + search + prefix) {
+                    prefixLine(line);
+                } else {
+                    fuzzyLine(line);
+                }
+                writeLine(writer, line);
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private static void writeLine(BufferedWriter writer, StringBuilder line) throws IOException {
+        writer.append(line);
+        writer.newLine();
+    }
+
+    private StringBuilder insertLine(StringBuilder line) {
+        int id = nextId++;
+        if (id == renames.length) {
+            renames = Arrays.copyOf(renames, id * 2);
+        }
+        if (liveCount == live.length) {
+            live = Arrays.copyOf(live, liveCount * 2);
+        }
+        live[liveCount++] = id;
+
+        line.setLength(0);
+        line.append("INSERT;{\"isbn\":\"").append(FIRST_ISBN + id)
+                .append("\",\"name\":\"");
+        appendTitle(line, id, 0);
+        line.append("\",\"author\":\"Author ").append(popularity.sample(random, authors))
+                .append("\",\"category\":\"").append(CATEGORIES[random.nextInt(CATEGORIES.length)])
+                .append("\",\"price\":\"");
+        appendPrice(line);
+        line.append("\",\"quantity\":\"").append(random.nextInt(501)).append("\"}");
+        return line;
+    }
+
+    private void patchLine(StringBuilder line) {
+        int id = live[popularity.sample(random, liveCount) - 1];
+        line.setLength(0);
+        line.append("PATCH;{\"isbn\":\"").append(FIRST_ISBN + id).append("\",");
+        int field = random.nextInt(100);
+        if (field < 60) {
+            line.append("\"price\":\"");
+            appendPrice(line);
+        } else if (field < 95) {
+            line.append("\"quantity\":\"").append(random.nextInt(501));
+        } else {
+            renames[id]++;
+            line.append("\"name\":\"");
+            appendTitle(line, id, renames[id]);
+        }
+        line.append("\"}");
+    }
+
+    // Borra un libro al azar; el ultimo de la lista toma su lugar
+    private void deleteLine(StringBuilder line) {
+        int slot = random.nextInt(liveCount);
+        int id = live[slot];
+        live[slot] = live[--liveCount];
+        line.setLength(0);
+        line.append("DELETE;{\"isbn\":\"").append(FIRST_ISBN + id).append("\"}");
+    }
+
+    private void searchLine(StringBuilder line) {
+        line.setLength(0);
+        line.append("SEARCH; {\"name\":\"");
+        if (random.nextDouble() < missRate) {
+            appendTitle(line, MISSING_IDS + random.nextInt(Integer.MAX_VALUE), 0);
+        } else {
+            int id = live[popularity.sample(random, liveCount) - 1];
+            appendTitle(line, id, renames[id]);
+        }
+        line.append("\"}");
+    }
+
+    // Las primeras letras de un titulo popular
+    private void prefixLine(StringBuilder line) {
+        int id = live[popularity.sample(random, liveCount) - 1];
+        line.setLength(0);
+        line.append("PREFIX; {\"name\":\"");
+        int start = line.length();
+        appendTitle(line, id, renames[id]);
+        line.setLength(Math.min(line.length(), start + 3 + random.nextInt(10)));
+        line.append("\"}");
+    }
+
+    // Un titulo popular con una letra cambiada
+    private void fuzzyLine(StringBuilder line) {
+        int id = live[popularity.sample(random, liveCount) - 1];
+        line.setLength(0);
+        line.append("FUZZY; {\"name\":\"");
+        int start = line.length();
+        appendTitle(line, id, renames[id]);
+        line.setCharAt(start + random.nextInt(line.length() - start), (char) ('a' + random.nextInt(26)));
+        line.append("\"}");
+    }
+
+    private void appendTitle(StringBuilder line, long id, int version) {
+        SplittableRandom words = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + id * 31 + version);
+        int count = (int) Math.max(1, Math.round(titleWords + words.nextGaussian() * titleWordsDeviation));
+        for (int i = 0; i < count; i++) {
+            String word = WORDS[wordPopularity.sample(words, WORDS.length) - 1];
+            line.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length()).append(' ');
+        }
+        line.append(Long.toString(id, 36).toUpperCase());
+    }
+
+    private void appendPrice(StringBuilder line) {
+        line.append(Book.formatPrice(500 + random.nextInt(11_500)));
+    }
+
+    public static void main(String[] args) {
+        WorkloadGenerator generator = new WorkloadGenerator();
+        Path out = Path.of("workload.csv");
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--out=")) {
+                out = Path.of(value);
+            } else if (arg.startsWith("--ops=")) {
+                generator.operations = Long.parseLong(value);
+            } else if (arg.startsWith("--catalog=")) {
+                generator.catalog = Integer.parseInt(value);
+            } else if (arg.startsWith("--mix=")) {
+                generator.mix(value);
+            } else if (arg.startsWith("--zipf=")) {
+                generator.zipf = Double.parseDouble(value);
+            } else if (arg.startsWith("--title-words=")) {
+                generator.titleWords = Double.parseDouble(value);
+            } else if (arg.startsWith("--title-words-sd=")) {
+                generator.titleWordsDeviation = Double.parseDouble(value);
+            } else if (arg.startsWith("--miss=")) {
+                generator.missRate = Double.parseDouble(value);
+            } else if (arg.startsWith("--seed=")) {
+                generator.seed = Long.parseLong(value);
+            } else {
+                System.err.println("Opcion desconocida: " + arg);
+                return;
+            }
+        }
+        try {
+            long lines = generator.generate(out);
+            System.out.println(lines + " operaciones en " + out);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // "insert:10,patch:15,delete:5,search:70" (tambien prefix y fuzzy)
+    void mix(String spec) {
+        insert = patch = delete = search = prefix = fuzzy = 0;
+        for (String part : spec.split(",")) {
+            String[] pair = part.split(":");
+            int weight = Integer.parseInt(pair[1].trim());
+            switch (pair[0].trim().toLowerCase()) {
+                case "insert":
+                    insert = weight;
+                    break;
+                case "patch":
+                    patch = weight;
+                    break;
+                case "delete":
+                    delete = weight;
+                    break;
+                case "search":
+                    search = weight;
+                    break;
+                case "prefix":
+                    prefix = weight;
+                    break;
+                case "fuzzy":
+                    fuzzy = weight;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Operacion desconocida en la mezcla: " + pair[0]);
+            }
+        }
+    }
+}
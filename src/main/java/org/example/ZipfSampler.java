@@ -0,0 +1,67 @@
+package org.example;
+import java.util.SplittableRandom;
+
+// Rangos 1..n con probabilidad proporcional a 1 / k^exponent, por rechazo-inversion
+// (Hormann y Derflinger): tiempo constante por muestra y sin tablas, asi n puede
+// cambiar en cada llamada. Con exponente 0 es uniforme.
+final class ZipfSampler {
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double s;
+
+    ZipfSampler(double exponent) {
+        if (exponent < 0 || Double.isNaN(exponent)) {
+            throw new IllegalArgumentException("El exponente Zipf no puede ser negativo: " + exponent);
+        }
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    public int sample(SplittableRandom random, int n) {
+        if (n <= 1 || exponent == 0) {
+            return n <= 1 ? 1 : 1 + random.nextInt(n);
+        }
+        double hIntegralN = hIntegral(n + 0.5);
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > n) {
+                k = n;
+            }
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    // Integral de h, con el caso exponente = 1 (logaritmo) cubierto por helper2
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - exponent);
+        if (t < -1) {
+            t = -1;
+        }
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x y (e^x - 1) / x, estables cerca de 0
+    private static double helper1(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    private static double helper2(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
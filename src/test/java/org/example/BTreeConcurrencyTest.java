@@ -0,0 +1,295 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+// Varios escritores y lectores sobre un arbol concurrente. Cada escritor tiene sus
+// propios ISBN (i % STRIDE == escritor) y nombres, asi que su modelo secuencial
+// sigue valiendo y al final el arbol tiene que ser la union de los modelos. Los
+// ISBN con i % STRIDE == WRITERS son fijos: se cargan antes y nadie los toca, y los
+// lectores los tienen que ver siempre, en orden y con su nombre, mientras los
+// escritores parten y unen hojas a su alrededor.
+class BTreeConcurrencyTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 3;
+    private static final int STRIDE = WRITERS + 1;
+    private static final int KEYS = 4_000;
+
+    // Lo que espera un escritor de sus propios ISBN, con las reglas del indice por nombre
+    private static final class Model {
+        final TreeMap<String, Book> byIsbn = new TreeMap<>(
+                (a, b) -> Book.compareIsbn(Book.isbnKey(a), a, Book.isbnKey(b), b));
+        final Map<String, String> byName = new HashMap<>();
+
+        void accept(Book book) {
+            if (!byIsbn.containsKey(book.isbn()) && !byName.containsKey(book.name())) {
+                byIsbn.put(book.isbn(), book);
+                byName.put(book.name(), book.isbn());
+            }
+        }
+
+        boolean update(String isbn, Map<String, Object> update) {
+            Book old = byIsbn.get(isbn);
+            if (old == null) {
+                return false;
+            }
+            Book updated = old.withUpdates(update);
+            byIsbn.put(isbn, updated);
+            if (!old.name().equals(updated.name())) {
+                byName.remove(old.name());
+            }
+            byName.put(updated.name(), isbn);
+            return true;
+        }
+
+        void remove(String isbn) {
+            Book old = byIsbn.remove(isbn);
+            if (old != null) {
+                byName.remove(old.name());
+            }
+        }
+    }
+
+    private static String fixedIsbn(int i) {
+        return Integer.toString(i * STRIDE + WRITERS);
+    }
+
+    private static String fixedName(int i) {
+        return "Fijo " + i;
+    }
+
+    private static Book book(Random random, String isbn, String name) {
+        return new Book(isbn, name, "Author " + random.nextInt(50), "Cat" + random.nextInt(5),
+                random.nextInt(100_000), random.nextInt(1000));
+    }
+
+    private static void write(BTree tree, Model model, int writer, long seed, int operations) {
+        Random random = new Random(seed);
+        List<Book> pending = new ArrayList<>();
+        for (int op = 0; op < operations; op++) {
+            String isbn = Integer.toString(random.nextInt(KEYS) * STRIDE + writer);
+            String name = "W" + writer + " " + random.nextInt(KEYS);
+            int kind = random.nextInt(20);
+            if (kind < 7) {
+                Book book = book(random, isbn, name);
+                tree.insert(book);
+                model.accept(book);
+            } else if (kind < 9) {
+                pending.add(book(random, isbn, name));
+                if (pending.size() == 1 + random.nextInt(100)) {
+                    tree.insertAll(pending);
+                    for (Book book : pending) {
+                        model.accept(book);
+                    }
+                    pending.clear();
+                }
+            } else if (kind < 14) {
+                Map<String, Object> update = new HashMap<>();
+                if (random.nextBoolean()) {
+                    update.put("name", name);
+                }
+                update.put("price", random.nextInt(9999) + ".5");
+                assertEquals(model.update(isbn, update), tree.updateBook(isbn, update), isbn);
+            } else {
+                tree.removeBook(isbn);
+                model.remove(isbn);
+            }
+        }
+    }
+
+    // Un rango tiene que salir ordenado, dentro de los extremos y con todos los
+    // libros fijos que caen en el
+    private static void readRange(BTree tree, Random random) {
+        int from = random.nextInt(KEYS * STRIDE);
+        int to = from + random.nextInt(STRIDE * 200);
+        String fromIsbn = Integer.toString(from);
+        String toIsbn = Integer.toString(to);
+        List<Book> books = tree.rangeByIsbn(fromIsbn, toIsbn);
+        List<String> fixed = new ArrayList<>();
+        Book previous = null;
+        for (Book book : books) {
+            assertTrue(book.compareIsbn(Book.isbnKey(fromIsbn), fromIsbn) >= 0, book.isbn());
+            assertTrue(book.compareIsbn(Book.isbnKey(toIsbn), toIsbn) <= 0, book.isbn());
+            if (previous != null) {
+                assertTrue(previous.compareIsbn(book.isbnKey(), book.isbn()) < 0, previous.isbn() + " " + book.isbn());
+            }
+            if (Integer.parseInt(book.isbn()) % STRIDE == WRITERS) {
+                fixed.add(book.isbn());
+            }
+            previous = book;
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = (from + STRIDE - 1 - WRITERS) / STRIDE; i * STRIDE + WRITERS <= to && i < KEYS; i++) {
+            expected.add(fixedIsbn(i));
+        }
+        assertEquals(expected, fixed, fromIsbn + ".." + toIsbn);
+    }
+
+    private static void readNames(BTree tree, Random random) {
+        int i = random.nextInt(KEYS);
+        Book fixed = tree.searchByName(fixedName(i));
+        assertNotNull(fixed, fixedName(i));
+        assertEquals(fixedIsbn(i), fixed.isbn());
+        assertNotNull(tree.findBookByIsbn(fixedIsbn(i)));
+        // El indice solo apunta a libros con ese nombre
+        String name = "W" + random.nextInt(WRITERS) + " " + random.nextInt(KEYS);
+        Book found = tree.searchByName(name);
+        if (found != null) {
+            assertEquals(name, found.name());
+        }
+    }
+
+    private static void run(int order, long seed) throws InterruptedException {
+        BTree tree = new BTree(order, true);
+        Random random = new Random(seed);
+        Model fixed = new Model();
+        for (int i = 0; i < KEYS; i++) {
+            Book book = book(random, fixedIsbn(i), fixedName(i));
+            tree.insert(book);
+            fixed.accept(book);
+        }
+
+        Model[] models = new Model[WRITERS];
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < WRITERS; t++) {
+            int writer = t;
+            models[t] = new Model();
+            writers.add(new Thread(() -> {
+                try {
+                    write(tree, models[writer], writer, seed * 31 + writer, 30_000);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < READERS; t++) {
+            Random reader = new Random(seed * 17 + t);
+            readers.add(new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        readRange(tree, reader);
+                        readNames(tree, reader);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread thread : readers) {
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        done.set(true);
+        for (Thread thread : readers) {
+            thread.join();
+        }
+        assertNull(failures.peek(), () -> failures.peek().toString());
+
+        Model all = new Model();
+        all.byIsbn.putAll(fixed.byIsbn);
+        all.byName.putAll(fixed.byName);
+        for (Model model : models) {
+            all.byIsbn.putAll(model.byIsbn);
+            all.byName.putAll(model.byName);
+        }
+        check(tree, all);
+    }
+
+    // Hojas enlazadas en orden y iguales al modelo, todas a la misma profundidad,
+    // nodos que no son la raiz con al menos minKeys llaves, e indices de acuerdo
+    private static void check(BTree tree, Model model) {
+        List<String> expected = new ArrayList<>();
+        for (Book book : model.byIsbn.values()) {
+            expected.add(book.toJson().toString());
+        }
+        List<String> chain = new ArrayList<>();
+        Book previous = null;
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                Book book = leaf.books[i];
+                if (previous != null) {
+                    assertTrue(previous.compareIsbn(book.isbnKey(), book.isbn()) < 0, previous.isbn() + " " + book.isbn());
+                }
+                chain.add(book.toJson().toString());
+                previous = book;
+            }
+        }
+        assertEquals(expected, chain);
+
+        List<BTreeNode> leaves = new ArrayList<>();
+        depth(tree.root, tree.root, tree.minKeys(), 0, new int[]{-1}, leaves);
+        assertEquals(leaves.get(0), tree.firstLeaf());
+        for (int i = 1; i < leaves.size(); i++) {
+            assertSame(leaves.get(i), leaves.get(i - 1).next);
+        }
+        assertNull(leaves.get(leaves.size() - 1).next);
+
+        assertEquals(model.byIsbn.size(), tree.size());
+        for (Book book : model.byIsbn.values()) {
+            assertEquals(book.toJson().toString(), tree.findBookByIsbn(book.isbn()).toJson().toString());
+        }
+        for (Map.Entry<String, String> entry : model.byName.entrySet()) {
+            Book found = tree.searchByName(entry.getKey());
+            assertNotNull(found, entry.getKey());
+            assertSame(tree.findBookByIsbn(entry.getValue()), found, entry.getKey());
+        }
+    }
+
+    private static void depth(BTreeNode node, BTreeNode root, int minKeys, int level, int[] leafLevel,
+            List<BTreeNode> leaves) {
+        if (node != root) {
+            assertTrue(node.size >= minKeys, "nodo con " + node.size + " llaves");
+        }
+        if (node.isLeaf) {
+            if (leafLevel[0] < 0) {
+                leafLevel[0] = level;
+            }
+            assertEquals(leafLevel[0], level);
+            leaves.add(node);
+            return;
+        }
+        for (int i = 0; i <= node.size; i++) {
+            depth(node.children[i], root, minKeys, level + 1, leafLevel, leaves);
+        }
+    }
+
+    @Test
+    void orderFour() throws InterruptedException {
+        run(4, 1);
+    }
+
+    @Test
+    void orderFive() throws InterruptedException {
+        run(5, 2);
+    }
+
+    @Test
+    void orderSixteen() throws InterruptedException {
+        run(16, 3);
+    }
+
+    @Test
+    void orderOneTwentyEight() throws InterruptedException {
+        run(128, 4);
+    }
+}
@@ -0,0 +1,176 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+// Compara el arbol con un modelo de mapas: ISBN -> libro en orden de ISBN y
+// nombre -> ISBN con las reglas del indice por nombre (INSERT con ISBN o nombre
+// repetido se rechaza, PATCH deja el nombre nuevo apuntando al libro y DELETE
+// quita la entrada de su nombre). Los ISBN mezclan numeros, ceros a la izquierda
+// y texto, que el arbol ordena de forma distinta.
+class BTreeModelTest {
+    private final TreeMap<String, Book> byIsbn = new TreeMap<>(
+            (a, b) -> Book.compareIsbn(Book.isbnKey(a), a, Book.isbnKey(b), b));
+    private final Map<String, String> byName = new HashMap<>();
+
+    private static String isbn(Random random, int keys) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return "X-" + random.nextInt(keys);
+            case 1:
+                return "0" + random.nextInt(keys);
+            default:
+                return Integer.toString(random.nextInt(keys));
+        }
+    }
+
+    // Con acentos, para que el modelo de nombres no sea solo ASCII
+    private static String name(Random random, int names) {
+        return (random.nextInt(10) == 0 ? "Árbol " : "Name ") + random.nextInt(names);
+    }
+
+    private static Book book(Random random, String isbn, String name) {
+        return new Book(isbn, name, "Author " + random.nextInt(50), "Cat" + random.nextInt(5),
+                random.nextInt(100_000), random.nextInt(1000));
+    }
+
+    private static List<String> contents(BTree tree) {
+        List<String> books = new ArrayList<>();
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                books.add(leaf.books[i].toJson().toString());
+            }
+        }
+        return books;
+    }
+
+    private void insert(BTree tree, Book book) {
+        tree.insert(book);
+        accept(book);
+    }
+
+    private void accept(Book book) {
+        if (!byIsbn.containsKey(book.isbn()) && !byName.containsKey(book.name())) {
+            byIsbn.put(book.isbn(), book);
+            byName.put(book.name(), book.isbn());
+        }
+    }
+
+    private void update(BTree tree, String isbn, Map<String, Object> update) {
+        Book old = byIsbn.get(isbn);
+        assertEquals(old != null, tree.updateBook(isbn, update), isbn);
+        if (old != null) {
+            Book updated = old.withUpdates(update);
+            byIsbn.put(isbn, updated);
+            if (!old.name().equals(updated.name())) {
+                byName.remove(old.name());
+            }
+            byName.put(updated.name(), isbn);
+        }
+    }
+
+    private void remove(BTree tree, String isbn) {
+        tree.removeBook(isbn);
+        Book old = byIsbn.remove(isbn);
+        if (old != null) {
+            byName.remove(old.name());
+        }
+    }
+
+    private void check(BTree tree, Random random, int keys) {
+        assertEquals(byIsbn.size(), tree.size());
+        List<String> expected = new ArrayList<>();
+        for (Book book : byIsbn.values()) {
+            expected.add(book.toJson().toString());
+        }
+        assertEquals(expected, contents(tree));
+        for (int i = 0; i < 200; i++) {
+            String isbn = isbn(random, keys);
+            Book book = tree.findBookByIsbn(isbn);
+            assertEquals(byIsbn.containsKey(isbn), book != null, isbn);
+            String name = name(random, keys);
+            String expectedIsbn = byName.get(name);
+            Book found = tree.searchByName(name);
+            if (expectedIsbn == null) {
+                assertNull(found, name);
+            } else {
+                assertSame(tree.findBookByIsbn(expectedIsbn), found, name);
+            }
+        }
+    }
+
+    private void run(BTree tree, long seed, int keys, int operations) {
+        Random random = new Random(seed);
+        List<Book> pending = new ArrayList<>();
+        for (int op = 0; op < operations; op++) {
+            String isbn = isbn(random, keys);
+            int kind = random.nextInt(20);
+            if (kind < 7) {
+                insert(tree, book(random, isbn, name(random, keys)));
+            } else if (kind < 9) {
+                pending.add(book(random, isbn, name(random, keys)));
+                if (pending.size() == 1 + random.nextInt(200)) {
+                    tree.insertAll(pending);
+                    for (Book book : pending) {
+                        accept(book);
+                    }
+                    pending.clear();
+                }
+            } else if (kind < 14) {
+                Map<String, Object> update = new HashMap<>();
+                if (random.nextBoolean()) {
+                    update.put("name", name(random, keys));
+                }
+                if (random.nextBoolean()) {
+                    update.put("price", random.nextInt(9999) + ".5");
+                }
+                if (random.nextInt(4) == 0) {
+                    update.put("quantity", Integer.toString(random.nextInt(100)));
+                }
+                update(tree, isbn, update);
+            } else {
+                remove(tree, isbn);
+            }
+            if (op == operations / 2) {
+                tree.trainNameModel();
+            }
+            if (op % (operations / 10) == 0) {
+                check(tree, random, keys);
+            }
+        }
+        check(tree, random, keys);
+    }
+
+    @Test
+    void smallOrderMatchesModel() {
+        run(new BTree(4), 1, 500, 40_000);
+    }
+
+    @Test
+    void defaultOrderMatchesModel() {
+        run(new BTree(), 2, 20_000, 60_000);
+    }
+
+    @Test
+    void bulkLoadMatchesModel() {
+        Random random = new Random(4);
+        BTree tree = new BTree(8);
+        List<Book> run = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            run.add(book(random, isbn(random, 50_000), name(random, 50_000)));
+        }
+        tree.insertAll(run);
+        for (Book book : run) {
+            accept(book);
+        }
+        check(tree, random, 50_000);
+    }
+}
@@ -0,0 +1,78 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BlockCompressedFileTest {
+    @TempDir
+    Path dir;
+
+    private static byte[] text(Random random, int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : 'a' + random.nextInt(6));
+        }
+        return data;
+    }
+
+    @Test
+    void packedBlocksRoundTripWithEveryCodec() {
+        Random random = new Random(4);
+        for (String name : new String[]{"best", "raw", "huffman", "range"}) {
+            byte codec = PackedBlock.codecNamed(name);
+            for (int size : new int[]{0, 1, 100, 70_000}) {
+                byte[] raw = text(random, size);
+                PackedBlock block = PackedBlock.pack(raw, codec);
+                assertArrayEquals(raw, PackedBlock.unpack(block.codec, block.data), name + " " + size);
+            }
+        }
+    }
+
+    @Test
+    void roundTripsAndReadsRanges() throws IOException {
+        Random random = new Random(5);
+        Path in = dir.resolve("in");
+        Path packed = dir.resolve("in.bcf");
+        Path back = dir.resolve("back");
+        for (int size : new int[]{0, 1, 4096, 4097, 100_000}) {
+            for (int blockSize : new int[]{64, 4096, 1 << 20}) {
+                for (int threads : new int[]{1, 3}) {
+                    byte[] data = text(random, size);
+                    Files.write(in, data);
+                    long bytes = BlockCompressedFile.compress(in, packed, PackedBlock.codecNamed("best"), blockSize, threads);
+                    assertEquals(Files.size(packed), bytes);
+                    BlockCompressedFile.decompress(packed, back, threads);
+                    assertArrayEquals(data, Files.readAllBytes(back));
+                    try (BlockCompressedFile file = BlockCompressedFile.open(packed)) {
+                        assertEquals(size, file.size());
+                        for (int k = 0; k < 10 && size > 0; k++) {
+                            int position = random.nextInt(size);
+                            int length = random.nextInt(Math.min(size - position, 5000) + 1);
+                            assertArrayEquals(Arrays.copyOfRange(data, position, position + length), file.read(position, length));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void detectsCorruptBlocks() throws IOException {
+        Path in = dir.resolve("in");
+        Path packed = dir.resolve("in.bcf");
+        Files.write(in, text(new Random(6), 50_000));
+        BlockCompressedFile.compress(in, packed, PackedBlock.codecNamed("best"), 4096, 2);
+        byte[] raw = Files.readAllBytes(packed);
+        raw[30] ^= 1;
+        Files.write(packed, raw);
+        assertThrows(IOException.class, () -> BlockCompressedFile.decompress(packed, dir.resolve("back"), 2));
+    }
+}
@@ -0,0 +1,65 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class BookCodecTest {
+    private static final String[] TEXTS = {"", "Ñandú \"x\"", "😀 emoji", "tab\there", "a\u0000b", "Árbol (Serie, #1)", "x".repeat(300)};
+    private static final String[] PRICES = {"12.5", "gratis", "", "1e2", "-0.01", "99999999999999999999", null};
+    private static final String[] QUANTITIES = {"007", "", "-3", "2147483648", "muchos", null};
+
+    private static String text(Random random) {
+        return random.nextInt(4) == 0 ? null : TEXTS[random.nextInt(TEXTS.length)] + random.nextInt(1000);
+    }
+
+    // Campos nulos, textos raros y precios o cantidades que solo se conservan como texto
+    private static Book book(Random random) {
+        String isbn = random.nextBoolean() ? Long.toString(random.nextLong() >>> 1) : "0" + random.nextInt();
+        String name = TEXTS[random.nextInt(TEXTS.length)];
+        if (random.nextBoolean()) {
+            return Book.parse(isbn, name, text(random), text(random),
+                    PRICES[random.nextInt(PRICES.length)], QUANTITIES[random.nextInt(QUANTITIES.length)]);
+        }
+        long price = random.nextInt(5) == 0 ? Book.NO_PRICE : random.nextLong() >> random.nextInt(64);
+        int quantity = random.nextInt(5) == 0 ? Book.NO_QUANTITY : random.nextInt();
+        return new Book(isbn, name, text(random), text(random), price, quantity);
+    }
+
+    private static void assertSameBook(Book expected, Book actual) {
+        assertEquals(expected.isbn(), actual.isbn());
+        assertEquals(expected.isbnKey(), actual.isbnKey());
+        assertEquals(expected.name(), actual.name());
+        assertEquals(expected.author(), actual.author());
+        assertEquals(expected.category(), actual.category());
+        assertEquals(expected.priceCents(), actual.priceCents());
+        assertEquals(expected.quantity(), actual.quantity());
+        assertEquals(expected.priceRaw(), actual.priceRaw());
+        assertEquals(expected.quantityRaw(), actual.quantityRaw());
+    }
+
+    @Test
+    void roundTripsFieldsAndOriginalText() {
+        Random random = new Random(8);
+        for (int i = 0; i < 2000; i++) {
+            Book book = book(random);
+            byte[] encoded = BookCodec.encode(book);
+            assertEquals(BookCodec.size(book), encoded.length);
+            assertSameBook(book, BookCodec.decode(encoded));
+        }
+    }
+
+    @Test
+    void readsBackToBackRecords() {
+        Book first = Book.parse("0012", "Cien Años", null, "Clasicos", "20", "010");
+        Book second = new Book("13", "", "Autor", null, Book.NO_PRICE, Book.NO_QUANTITY);
+        ByteBuffer buffer = ByteBuffer.allocate(BookCodec.size(first) + BookCodec.size(second));
+        BookCodec.write(buffer, first);
+        BookCodec.write(buffer, second);
+        buffer.flip();
+        assertSameBook(first, BookCodec.read(buffer));
+        assertSameBook(second, BookCodec.read(buffer));
+        assertEquals(0, buffer.remaining());
+    }
+}
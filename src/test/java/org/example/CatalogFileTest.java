@@ -0,0 +1,162 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CatalogFileTest {
+    @TempDir
+    Path dir;
+
+    // Cada columna tiene nulos, textos que no son ASCII y precios o cantidades que
+    // solo se guardan como texto; los ISBN mezclan numeros y texto
+    private static Book book(Random random, String isbn, String name) {
+        String author = random.nextInt(7) == 0 ? null : "Autor " + random.nextInt(50) + (random.nextInt(9) == 0 ? " ñ😀" : "");
+        String category = random.nextInt(7) == 0 ? null : "Cat" + random.nextInt(5);
+        switch (random.nextInt(8)) {
+            case 0:
+                return Book.parse(isbn, name, author, category, "12.5", "007");
+            case 1:
+                return Book.parse(isbn, name, author, category, "gratis", "");
+            default:
+                long price = random.nextInt(6) == 0 ? Book.NO_PRICE : random.nextInt(100_000) - 500;
+                int quantity = random.nextInt(6) == 0 ? Book.NO_QUANTITY : random.nextInt(1000) - 3;
+                return new Book(isbn, name, author, category, price, quantity);
+        }
+    }
+
+    private static String name(Random random) {
+        return (random.nextInt(20) == 0 ? "Ñandú \"x\" " : "Name ") + random.nextInt(5000);
+    }
+
+    // Incluye PATCH de nombre, asi hay libros que no quedan en el indice por nombre
+    private static BTree inventory(int count) {
+        Random random = new Random(3);
+        BTree tree = new BTree();
+        for (int i = 0; i < count; i++) {
+            int key = random.nextInt(1 << 30);
+            String isbn = random.nextInt(10) == 0 ? "X-" + key : Integer.toString(key);
+            tree.insert(book(random, isbn, name(random)));
+            if (random.nextInt(5) == 0) {
+                Map<String, Object> update = new HashMap<>();
+                update.put("name", name(random));
+                tree.updateBook(isbn, update);
+            }
+        }
+        return tree;
+    }
+
+    private static List<Book> books(BTree tree) {
+        List<Book> books = new ArrayList<>();
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            books.addAll(Arrays.asList(leaf.books).subList(0, leaf.size));
+        }
+        return books;
+    }
+
+    private static void assertSameBook(Book expected, Book actual) {
+        assertEquals(expected.toJson().toString(), actual.toJson().toString());
+        assertEquals(expected.priceCents(), actual.priceCents());
+        assertEquals(expected.quantity(), actual.quantity());
+    }
+
+    private static void assertSameInventory(BTree expected, BTree actual) {
+        List<Book> books = books(expected);
+        List<Book> back = books(actual);
+        assertEquals(books.size(), back.size());
+        for (int i = 0; i < books.size(); i++) {
+            assertSameBook(books.get(i), back.get(i));
+        }
+        for (Book book : books) {
+            boolean indexed = expected.searchByName(book.name()) == book;
+            Book found = actual.searchByName(book.name());
+            assertEquals(indexed, found != null && found.isbn().equals(book.isbn()), book.isbn());
+        }
+    }
+
+    @Test
+    void roundTripsInventory() throws IOException {
+        BTree tree = inventory(20_000);
+        Path file = dir.resolve("catalogo.bkc");
+        long bytes = CatalogFile.write(file, tree);
+        assertEquals(Files.size(file), bytes);
+        BTree back = new BTree();
+        CatalogFile.read(file, back);
+        assertSameInventory(tree, back);
+    }
+
+    @Test
+    void threadsWriteTheSameBytes() throws IOException {
+        BTree tree = inventory(15_000);
+        Path one = dir.resolve("uno.bkc");
+        Path four = dir.resolve("cuatro.bkc");
+        CatalogFile.write(one, tree, 1);
+        CatalogFile.write(four, tree, 4);
+        assertEquals(-1, Files.mismatch(one, four));
+        BTree back = new BTree();
+        CatalogFile.read(four, back, 4);
+        assertSameInventory(tree, back);
+    }
+
+    // Los bordes de cada bloque y una muestra del resto; los ISBN que faltan caen
+    // dentro del rango de algun bloque
+    @Test
+    void findsSingleBooks() throws IOException {
+        BTree tree = inventory(10_000);
+        Path file = dir.resolve("catalogo.bkc");
+        CatalogFile.write(file, tree);
+        List<Book> books = books(tree);
+        try (CatalogFile catalog = CatalogFile.open(file)) {
+            for (int i = 0; i < books.size(); i++) {
+                int inBlock = i % CatalogFile.BLOCK_BOOKS;
+                if (inBlock == 0 || inBlock == CatalogFile.BLOCK_BOOKS - 1 || i == books.size() - 1 || i % 97 == 0) {
+                    Book book = books.get(i);
+                    Book found = catalog.findByIsbn(book.isbn());
+                    assertNotNull(found, book.isbn());
+                    assertSameBook(book, found);
+                }
+            }
+            for (int i = 0; i + 1 < books.size(); i += 131) {
+                String isbn = books.get(i).isbn();
+                if (!isbn.startsWith("X-")) {
+                    String missing = Long.toString(Long.parseLong(isbn) + 1);
+                    if (!missing.equals(books.get(i + 1).isbn())) {
+                        assertNull(catalog.findByIsbn(missing), missing);
+                    }
+                }
+            }
+            assertNull(catalog.findByIsbn("Q1"));
+        }
+    }
+
+    @Test
+    void roundTripsEmptyInventory() throws IOException {
+        Path file = dir.resolve("vacio.bkc");
+        CatalogFile.write(file, new BTree());
+        BTree back = new BTree();
+        CatalogFile.read(file, back);
+        assertEquals(0, back.size());
+    }
+
+    @Test
+    void detectsCorruption() throws IOException {
+        Path file = dir.resolve("catalogo.bkc");
+        CatalogFile.write(file, inventory(5000));
+        byte[] raw = Files.readAllBytes(file);
+        raw[100] ^= 1;
+        Files.write(file, raw);
+        assertThrows(IOException.class, () -> CatalogFile.read(file, new BTree()));
+    }
+}
@@ -0,0 +1,184 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// La cache no pasa de su capacidad y saca primero lo usado hace mas tiempo dentro
+// de cada segmento; los valores son los mismos que calcular de nuevo. Cada
+// inventario invalida el titulo viejo en un PATCH que cambia el nombre y el titulo
+// del libro borrado en un DELETE, pero no en un PATCH que deja el nombre.
+class CompressionStatsTest {
+    @TempDir
+    Path dir;
+
+    // Mismo reparto que CompressionStats.segmentFor
+    private static int segment(String title) {
+        int h = title.hashCode();
+        return (h ^ (h >>> 16)) & (CompressionStats.SEGMENTS - 1);
+    }
+
+    // Titulos distintos que caen todos en el segmento 0
+    private static List<String> sameSegment(int count) {
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; titles.size() < count; i++) {
+            if (segment("Titulo " + i) == 0) {
+                titles.add("Titulo " + i);
+            }
+        }
+        return titles;
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedInSegment() {
+        // Dos entradas por segmento
+        CompressionStats stats = new CompressionStats(2 * CompressionStats.SEGMENTS);
+        List<String> titles = sameSegment(3);
+        CompressionStats.Entry first = stats.get(titles.get(0));
+        stats.get(titles.get(1));
+        assertSame(first, stats.get(titles.get(0)));
+        assertEquals(1, stats.hits());
+        // El tercero saca al segundo, que es el usado hace mas tiempo
+        stats.get(titles.get(2));
+        assertEquals(2, stats.size());
+        assertSame(first, stats.get(titles.get(0)));
+        long misses = stats.misses();
+        stats.get(titles.get(1));
+        assertEquals(misses + 1, stats.misses());
+        // y ahora el que salio es el tercero
+        stats.get(titles.get(0));
+        stats.get(titles.get(2));
+        assertEquals(misses + 2, stats.misses());
+    }
+
+    @Test
+    void staysWithinCapacity() {
+        for (int capacity : new int[]{1, 16, 100, 1_000}) {
+            CompressionStats stats = new CompressionStats(capacity);
+            // Cada segmento guarda su parte redondeada hacia arriba
+            int bound = CompressionStats.SEGMENTS * Math.max(1, (capacity + CompressionStats.SEGMENTS - 1)
+                    / CompressionStats.SEGMENTS);
+            for (int i = 0; i < 20_000; i++) {
+                stats.get("Libro " + i);
+                assertTrue(stats.size() <= bound, capacity + ": " + stats.size());
+            }
+            assertEquals(20_000, stats.misses());
+            assertEquals(0, stats.hits());
+            assertTrue(stats.size() >= Math.min(capacity, bound / 2));
+        }
+    }
+
+    @Test
+    void entriesMatchFreshComputation() {
+        CompressionStats stats = new CompressionStats(8);
+        String[] titles = {"", "a", "El nombre de la rosa", "Árbol ñandú 😀", "x".repeat(5_000)};
+        for (int round = 0; round < 3; round++) {
+            for (String title : titles) {
+                CompressionStats.Entry entry = stats.get(title);
+                assertEquals(Main.namesize(title), entry.namesize, title);
+                assertEquals(Main.namesizehuffman(title), entry.namesizeHuffman, title);
+                assertEquals(Main.namesizearithmetic(title), entry.namesizeArithmetic, title);
+            }
+        }
+    }
+
+    // Varios hilos leyendo los mismos titulos obtienen los mismos valores y la
+    // cache no pasa de su capacidad
+    @Test
+    void sharedAcrossThreads() throws InterruptedException {
+        CompressionStats stats = new CompressionStats(64);
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            expected.put("Libro " + i, Main.namesizehuffman("Libro " + i));
+        }
+        List<Throwable> failures = new ArrayList<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t * 37;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    String title = "Libro " + (i * 7 + offset) % 500;
+                    if (stats.get(title).namesizeHuffman != expected.get(title)) {
+                        synchronized (failures) {
+                            failures.add(new AssertionError(title));
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), failures);
+        assertEquals(80_000, stats.hits() + stats.misses());
+        assertTrue(stats.size() <= 64);
+    }
+
+    private static void checkInvalidation(Inventory inventory) {
+        CompressionStats stats = inventory.compressionStats();
+        inventory.insert(new Book("1", "Viejo", "Autor", null, 100, 1));
+        inventory.insert(new Book("2", "Borrado", "Autor", null, 100, 1));
+        stats.get("Viejo");
+        stats.get("Borrado");
+        assertEquals(2, stats.size());
+
+        // Un PATCH sin nombre no toca la cache
+        Map<String, Object> quantity = new HashMap<>();
+        quantity.put("quantity", "5");
+        assertTrue(inventory.updateBook("1", quantity));
+        assertEquals(2, stats.size());
+
+        Map<String, Object> rename = new HashMap<>();
+        rename.put("name", "Nuevo");
+        assertTrue(inventory.updateBook("1", rename));
+        assertEquals(1, stats.size());
+        long misses = stats.misses();
+        stats.get("Nuevo");
+        stats.get("Borrado");
+        assertEquals(misses + 1, stats.misses());
+
+        // Un DELETE de un ISBN que no esta no invalida nada
+        inventory.removeBook("3");
+        assertEquals(2, stats.size());
+        inventory.removeBook("2");
+        assertEquals(1, stats.size());
+        assertNull(inventory.searchByName("Borrado"));
+        stats.get("Borrado");
+        assertEquals(misses + 2, stats.misses());
+    }
+
+    @Test
+    void treeInvalidatesRenamedAndDeletedTitles() {
+        checkInvalidation(new BTree());
+        checkInvalidation(BTree.concurrent());
+    }
+
+    @Test
+    void versionedInventoryInvalidatesRenamedAndDeletedTitles() {
+        checkInvalidation(new VersionedInventory());
+    }
+
+    @Test
+    void offHeapInventoryInvalidatesRenamedAndDeletedTitles() {
+        try (OffHeapInventory inventory = new OffHeapInventory()) {
+            checkInvalidation(inventory);
+        }
+    }
+
+    @Test
+    void pagedInventoryInvalidatesRenamedAndDeletedTitles() throws IOException {
+        try (PagedInventory inventory = PagedInventory.open(dir.resolve("cache.db"))) {
+            checkInvalidation(inventory);
+        }
+    }
+}
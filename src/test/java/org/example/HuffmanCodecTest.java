@@ -0,0 +1,68 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class HuffmanCodecTest {
+    @Test
+    void roundTripsRandomData() {
+        Random random = new Random(1);
+        for (int t = 0; t < 500; t++) {
+            byte[] data = new byte[random.nextInt(t < 250 ? 50 : 5000)];
+            int alphabet = 1 + random.nextInt(256);
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) Math.min(255, (int) (Math.abs(random.nextGaussian()) * alphabet / 3));
+            }
+            assertArrayEquals(data, HuffmanCodec.decompress(HuffmanCodec.compress(data)), "caso " + t);
+        }
+    }
+
+    @Test
+    void roundTripsSkewedData() {
+        Random random = new Random(2);
+        byte[] data = new byte[20_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (random.nextInt(30) < 29 ? 'a' : random.nextInt(256));
+        }
+        assertArrayEquals(data, HuffmanCodec.decompress(HuffmanCodec.compress(data)));
+    }
+
+    @Test
+    void roundTripsStrings() {
+        for (String text : new String[]{"", "a", "Bared to You (Crossfire, #1) áé", "😀 ñ"}) {
+            assertEquals(text, HuffmanCodec.decompressString(HuffmanCodec.compress(text)));
+        }
+    }
+
+    // Frecuencias de Fibonacci piden codigos mas largos que el limite
+    @Test
+    void limitsCodeLengthsAndKeepsHeader() {
+        long[] frequency = new long[256];
+        long a = 1;
+        long b = 1;
+        for (int i = 0; i < 40; i++) {
+            frequency[i] = a;
+            long next = a + b;
+            a = b;
+            b = next;
+        }
+        HuffmanCodec codec = HuffmanCodec.fromFrequencies(frequency);
+        long kraft = 0;
+        for (int length : codec.lengths) {
+            assertTrue(length <= HuffmanCodec.MAX_CODE_LENGTH, "largo " + length);
+            if (length > 0) {
+                kraft += 1L << (HuffmanCodec.MAX_CODE_LENGTH - length);
+            }
+        }
+        assertTrue(kraft <= 1L << HuffmanCodec.MAX_CODE_LENGTH);
+
+        ByteBuffer header = ByteBuffer.allocate(codec.headerSize());
+        codec.writeHeader(header);
+        header.flip();
+        assertArrayEquals(codec.codes, HuffmanCodec.readHeader(header).codes);
+    }
+}
@@ -0,0 +1,186 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Carga con IngestPipeline un archivo de varios BATCH_BYTES con lineas malas
+// entre las buenas. El arbol tiene que quedar igual que aplicando solo las lineas
+// buenas en orden, y los errores tienen que salir en el orden del archivo con su
+// numero de linea, igual que en la carga secuencial, con cualquier cantidad de
+// hilos.
+class IngestPipelineTest {
+    @TempDir
+    Path dir;
+
+    // Lineas del archivo; expected recibe las buenas y badLines los numeros de las malas
+    private static List<String> workload(Random random, BTree expected, List<Long> badLines) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 60_000; i++) {
+            String isbn = Integer.toString(random.nextInt(5_000));
+            String name = "Name " + random.nextInt(8_000);
+            int kind = random.nextInt(40);
+            if (kind < 4) {
+                badLines.add((long) lines.size() + 1);
+                switch (kind) {
+                    case 0:
+                        lines.add("INSERT;{\"isbn\":\"" + isbn + "\",\"name\":\"" + name);
+                        break;
+                    case 1:
+                        lines.add("UPSERT;{\"isbn\":\"" + isbn + "\"}");
+                        break;
+                    case 2:
+                        lines.add("PATCH;{\"isbn\":\"" + isbn + "\",\"price\":[1]}");
+                        break;
+                    default:
+                        lines.add("");
+                }
+            } else if (kind < 24) {
+                String price = random.nextInt(999) + ".25";
+                String quantity = Integer.toString(random.nextInt(100));
+                lines.add("INSERT;{\"isbn\":\"" + isbn + "\",\"name\":\"" + name + "\",\"author\":\"Autor\",\"price\":\""
+                        + price + "\",\"quantity\":\"" + quantity + "\"}");
+                expected.insert(Book.parse(isbn, name, "Autor", null, price, quantity));
+            } else if (kind < 34) {
+                Map<String, Object> update = new HashMap<>();
+                update.put("quantity", Integer.toString(random.nextInt(100)));
+                if (random.nextBoolean()) {
+                    update.put("name", name);
+                    lines.add("PATCH;{\"isbn\":\"" + isbn + "\",\"name\":\"" + name + "\",\"quantity\":\"" + update.get("quantity") + "\"}");
+                } else {
+                    lines.add("PATCH;{\"isbn\":\"" + isbn + "\",\"quantity\":\"" + update.get("quantity") + "\"}");
+                }
+                expected.updateBook(isbn, update);
+            } else {
+                lines.add("DELETE;{\"isbn\":\"" + isbn + "\"}" + (random.nextBoolean() ? "\r" : ""));
+                expected.removeBook(isbn);
+            }
+        }
+        return lines;
+    }
+
+    // Libros en orden de ISBN y si el indice por nombre apunta a cada uno
+    private static String contents(BTree tree) {
+        StringBuilder out = new StringBuilder();
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                Book book = leaf.books[i];
+                out.append(book.toJson()).append(tree.searchByName(book.name()) == book ? " 1\n" : " 0\n");
+            }
+        }
+        return out.toString();
+    }
+
+    private static String load(Path file, Inventory tree, boolean bulk, int threads) {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream stderr = System.err;
+        System.setErr(new PrintStream(errors, true, StandardCharsets.UTF_8));
+        try {
+            Main.ReaderCSV(file.toString(), tree, bulk, threads);
+        } finally {
+            System.setErr(stderr);
+        }
+        return errors.toString(StandardCharsets.UTF_8);
+    }
+
+    // Numeros de linea de los errores reportados, en el orden en que salieron
+    private static List<Long> reportedLines(Path file, String errors) {
+        List<Long> lines = new ArrayList<>();
+        String prefix = file + ":";
+        for (String line : errors.split("\n")) {
+            if (line.startsWith(prefix)) {
+                lines.add(Long.parseLong(line.substring(prefix.length(), line.indexOf(':', prefix.length()))));
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void skipsBadLinesAndReportsThemInOrder() throws IOException {
+        BTree expected = new BTree();
+        List<Long> badLines = new ArrayList<>();
+        Path file = dir.resolve("carga.csv");
+        Files.writeString(file, String.join("\n", workload(new Random(8), expected, badLines)) + "\n");
+        assertTrue(Files.size(file) > 3 * IngestPipeline.BATCH_BYTES);
+
+        BTree sequential = new BTree();
+        String sequentialErrors = load(file, sequential, true, 1);
+        assertEquals(contents(expected), contents(sequential));
+        assertEquals(badLines, reportedLines(file, sequentialErrors));
+        assertTrue(sequentialErrors.endsWith(badLines.size() + " lineas con errores en " + file + "\n"));
+
+        for (int threads : new int[]{2, 4, 8}) {
+            for (boolean bulk : new boolean[]{false, true}) {
+                BTree tree = new BTree();
+                String errors = load(file, tree, bulk, threads);
+                assertEquals(contents(expected), contents(tree), threads + " hilos");
+                assertEquals(sequentialErrors, errors, threads + " hilos");
+                assertEquals(badLines.size(), tree.metrics().parseErrors.sum());
+                assertEquals(0, tree.metrics().applyErrors.sum());
+            }
+        }
+    }
+
+    // Una excepcion al aplicar (aca un PATCH que deja el libro mas grande que una
+    // pagina de --store) se reporta en su linea y la carga sigue
+    @Test
+    void reportsApplyErrorsInOrder() throws IOException {
+        Random random = new Random(9);
+        List<String> lines = new ArrayList<>();
+        List<Long> failing = new ArrayList<>();
+        String huge = "x".repeat(PagedBTree.PAGE_SIZE);
+        for (int i = 0; i < 30_000; i++) {
+            String isbn = Integer.toString(random.nextInt(2_000));
+            if (random.nextInt(50) == 0) {
+                lines.add("PATCH;{\"isbn\":\"" + i % 100 + "\",\"name\":\"" + huge + "\"}");
+                failing.add((long) lines.size());
+            } else if (random.nextBoolean()) {
+                lines.add("INSERT;{\"isbn\":\"" + isbn + "\",\"name\":\"Name " + random.nextInt(4_000)
+                        + "\",\"price\":\"1.50\",\"quantity\":\"2\"}");
+            } else {
+                lines.add("PATCH;{\"isbn\":\"" + isbn + "\",\"quantity\":\"" + random.nextInt(9) + "\"}");
+            }
+        }
+        // Los libros 0..99 existen antes del primer PATCH grande
+        for (int i = 0; i < 100; i++) {
+            lines.add(i, "INSERT;{\"isbn\":\"" + i + "\",\"name\":\"Base " + i + "\",\"price\":\"1.00\",\"quantity\":\"1\"}");
+        }
+        List<Long> expectedLines = new ArrayList<>();
+        for (long line : failing) {
+            expectedLines.add(line + 100);
+        }
+        Path file = dir.resolve("aplicar.csv");
+        Files.writeString(file, String.join("\n", lines));
+
+        String sequentialErrors;
+        List<String> sequentialBooks = new ArrayList<>();
+        try (PagedInventory inventory = PagedInventory.open(dir.resolve("secuencial.db"))) {
+            sequentialErrors = load(file, inventory, true, 1);
+            inventory.forEach(book -> sequentialBooks.add(book.toJson().toString()));
+            assertEquals(expectedLines.size(), inventory.metrics().applyErrors.sum());
+        }
+        assertEquals(expectedLines, reportedLines(file, sequentialErrors));
+        assertTrue(sequentialErrors.contains("Registro demasiado grande para una pagina"));
+
+        try (PagedInventory inventory = PagedInventory.open(dir.resolve("paralelo.db"))) {
+            assertEquals(sequentialErrors, load(file, inventory, true, 4));
+            List<String> books = new ArrayList<>();
+            inventory.forEach(book -> books.add(book.toJson().toString()));
+            assertEquals(sequentialBooks, books);
+            assertEquals(expectedLines.size(), inventory.metrics().applyErrors.sum());
+            assertEquals(0, inventory.metrics().parseErrors.sum());
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import javax.management.Attribute;
+import javax.management.AttributeNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Contadores del inventario contra lo que se le hizo al arbol, forma del arbol
+// contra un recorrido, percentiles del histograma contra los valores ordenados, y
+// el MBean registrado y leido por el servidor JMX de la plataforma.
+class InventoryMetricsTest {
+    @TempDir
+    Path dir;
+
+    private static Book book(String isbn, String name) {
+        return new Book(isbn, name, "Autor", "Cat", 100, 1);
+    }
+
+    @Test
+    void countsOperationsAndMisses() {
+        BTree tree = new BTree(4);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(book(Integer.toString(i), "Name " + i));
+        }
+        tree.insert(book("5", "Otro"));
+        tree.insert(book("500", "Name 7"));
+        List<Book> run = new ArrayList<>();
+        for (int i = 100; i < 150; i++) {
+            run.add(book(Integer.toString(i), "Name " + i));
+        }
+        run.add(book("3", "Repetido"));
+        tree.insertAll(run);
+        Map<String, Object> update = new HashMap<>();
+        update.put("quantity", "4");
+        for (int i = 0; i < 10; i++) {
+            tree.updateBook(Integer.toString(i * 20), update);
+        }
+        for (int i = 0; i < 30; i++) {
+            tree.removeBook(Integer.toString(i * 7));
+        }
+        for (int i = 0; i < 40; i++) {
+            tree.searchByName("Name " + i);
+        }
+
+        Map<String, Number> values = tree.metrics().snapshot();
+        assertEquals(102L, values.get("insertCount"));
+        assertEquals(1L, values.get("bulkLoadCount"));
+        assertEquals(50L, values.get("bulkInserted"));
+        assertEquals(3L, values.get("rejectedInserts"));
+        assertEquals(10L, values.get("patchCount"));
+        assertEquals(2L, values.get("patchMisses"));
+        assertEquals(30L, values.get("deleteCount"));
+        assertEquals(8L, values.get("deleteMisses"));
+        assertEquals(40L, values.get("searchCount"));
+        // 0, 7, 14, ..., 35 se borraron
+        assertEquals(6L, values.get("searchMisses"));
+        assertEquals((long) tree.size(), values.get("books"));
+        assertEquals(0L, values.get("parseErrors"));
+    }
+
+    // Altura, hojas y nodos internos siguen al arbol a traves de splits, merges,
+    // cambios de raiz y cargas masivas
+    @Test
+    void tracksTreeShape() {
+        BTree tree = new BTree(4);
+        Random random = new Random(3);
+        for (int round = 0; round < 6; round++) {
+            for (int i = 0; i < 3_000; i++) {
+                String isbn = Integer.toString(random.nextInt(5_000));
+                if (random.nextInt(3) == 0) {
+                    tree.removeBook(isbn);
+                } else {
+                    tree.insert(book(isbn, "Name " + isbn));
+                }
+            }
+            if (round == 3) {
+                List<Book> run = new ArrayList<>();
+                for (int i = 0; i < 20_000; i++) {
+                    run.add(book("b" + i, "Bulk " + i));
+                }
+                tree.insertAll(run);
+            }
+            checkShape(tree);
+        }
+        for (int i = 0; i < 5_000; i++) {
+            tree.removeBook(Integer.toString(i));
+        }
+        for (int i = 0; i < 20_000; i++) {
+            tree.removeBook("b" + i);
+        }
+        checkShape(tree);
+        Map<String, Number> values = tree.metrics().snapshot();
+        assertTrue(values.get("splits").longValue() > 0);
+        assertTrue(values.get("merges").longValue() > 0);
+        assertEquals(0L, values.get("treeHeight"));
+    }
+
+    private static void checkShape(BTree tree) {
+        long[] counts = new long[2];
+        long height = tree.root == null ? 0 : walk(tree.root, counts);
+        Map<String, Number> values = tree.metrics().snapshot();
+        assertEquals(height, values.get("treeHeight"));
+        assertEquals(counts[0], values.get("leafNodes"));
+        assertEquals(counts[1], values.get("innerNodes"));
+        double fill = counts[0] == 0 ? 0 : (double) tree.size() / (counts[0] * 4);
+        assertEquals(fill, values.get("leafFill").doubleValue(), 1e-9);
+    }
+
+    // Cuenta hojas y nodos internos; devuelve la cantidad de niveles
+    private static long walk(BTreeNode node, long[] counts) {
+        if (node.isLeaf) {
+            counts[0]++;
+            return 1;
+        }
+        counts[1]++;
+        long height = 0;
+        for (int i = 0; i <= node.size; i++) {
+            height = walk(node.children[i], counts);
+        }
+        return height + 1;
+    }
+
+    // Varios hilos registran en sus propios histogramas y snapshot suma todos
+    @Test
+    void sumsLatenciesFromEveryThread() throws InterruptedException {
+        BTree tree = BTree.concurrent();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int base = t * 10_000;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    tree.insert(book(Integer.toString(base + i), "Name " + (base + i)));
+                    tree.searchByName("Name " + (base + i));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Map<String, Number> values = tree.metrics().snapshot();
+        assertEquals(8_000L, values.get("insertCount"));
+        assertEquals(8_000L, values.get("searchCount"));
+        assertEquals(0L, values.get("searchMisses"));
+        double p50 = values.get("insertP50Micros").doubleValue();
+        double p99 = values.get("insertP99Micros").doubleValue();
+        double max = values.get("insertMaxMicros").doubleValue();
+        assertTrue(p50 > 0 && p50 <= p99 && p99 <= values.get("insertP999Micros").doubleValue()
+                && values.get("insertP999Micros").doubleValue() <= max, values.toString());
+    }
+
+    @Test
+    void histogramPercentilesStayWithinBucketError() {
+        Random random = new Random(5);
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        long[] values = new long[100_000];
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            // Entre 0 y unos 10^12 ns, repartidos en escala logaritmica
+            values[i] = (long) Math.pow(2, random.nextDouble() * 40) - 1;
+            sum += values[i];
+            histogram.record(values[i]);
+            (i % 3 == 0 ? first : second).record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.count());
+        assertEquals(values[values.length - 1], histogram.max());
+        assertEquals((double) sum / values.length, histogram.mean(), 1e-6);
+        first.add(second);
+        for (double p : new double[]{0.001, 0.1, 0.5, 0.9, 0.99, 0.999, 1}) {
+            long exact = values[(int) Math.ceil(p * values.length) - 1];
+            long reported = histogram.percentile(p);
+            assertTrue(reported >= exact && reported <= exact + exact / 64, p + ": " + reported + " vs " + exact);
+            assertEquals(reported, first.percentile(p), "despues de add");
+        }
+    }
+
+    @Test
+    void histogramBucketsAreExactBelow64AndContiguous() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 64; value++) {
+            assertEquals(value, LatencyHistogram.index(value));
+            assertEquals(value, LatencyHistogram.highest((int) value));
+            histogram.record(value);
+        }
+        assertEquals(31, histogram.percentile(0.5));
+        assertEquals(63, histogram.percentile(1));
+        // Cada cubeta termina justo antes de donde empieza la siguiente
+        int last = LatencyHistogram.index(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highest(last));
+        for (int i = 0; i < last; i++) {
+            long highest = LatencyHistogram.highest(i);
+            assertEquals(i, LatencyHistogram.index(highest));
+            assertEquals(i + 1, LatencyHistogram.index(highest + 1));
+        }
+        LatencyHistogram empty = new LatencyHistogram();
+        assertEquals(0, empty.percentile(0.99));
+        assertEquals(0, empty.mean());
+        // Una latencia negativa (reloj que retrocede) cuenta como 0
+        histogram.record(-5);
+        assertEquals(65, histogram.count());
+        assertEquals(0, histogram.percentile(2.0 / 65));
+    }
+
+    @Test
+    void publishesSnapshotThroughJmx() throws JMException {
+        BTree tree = new BTree();
+        for (int i = 0; i < 20; i++) {
+            tree.insert(book(Integer.toString(i), "Name " + i));
+        }
+        tree.searchByName("Nadie");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.example:type=Inventory,name=" + ObjectName.quote("prueba"));
+        tree.metrics().registerJmx("prueba");
+        try {
+            assertTrue(server.isRegistered(name));
+            assertEquals(20L, server.getAttribute(name, "insertCount"));
+            assertEquals(20L, server.getAttribute(name, "books"));
+            assertEquals(1L, server.getAttribute(name, "searchMisses"));
+            assertEquals(2, server.getAttributes(name, new String[]{"insertCount", "books", "noExiste"}).size());
+            assertThrows(AttributeNotFoundException.class, () -> server.getAttribute(name, "noExiste"));
+            assertThrows(AttributeNotFoundException.class,
+                    () -> server.setAttribute(name, new Attribute("insertCount", 0L)));
+
+            Set<String> attributes = new HashSet<>();
+            for (MBeanAttributeInfo info : server.getMBeanInfo(name).getAttributes()) {
+                assertTrue(info.isReadable() && !info.isWritable(), info.getName());
+                attributes.add(info.getName());
+            }
+            assertEquals(tree.metrics().snapshot().keySet(), attributes);
+
+            // Los valores se leen en cada consulta
+            tree.insert(book("20", "Name 20"));
+            assertEquals(21L, server.getAttribute(name, "insertCount"));
+
+            // Un segundo registro con el mismo nombre no corta el programa
+            new BTree().metrics().registerJmx("prueba");
+            assertEquals(21L, server.getAttribute(name, "books"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    // stopDump agrega una ultima linea JSON con el snapshot
+    @Test
+    void dumpsSnapshotLines() throws IOException {
+        BTree tree = new BTree();
+        tree.insert(book("1", "Uno"));
+        Path file = dir.resolve("metricas.jsonl");
+        tree.metrics().startDump(file, 3600);
+        tree.insert(book("2", "Dos"));
+        tree.metrics().stopDump();
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        JSONObject line = new JSONObject(lines.get(0));
+        assertTrue(line.has("time"));
+        assertEquals(2, line.getLong("insertCount"));
+        assertEquals(tree.metrics().snapshot().size() + 1, line.length());
+    }
+}
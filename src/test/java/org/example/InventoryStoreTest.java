@@ -0,0 +1,182 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InventoryStoreTest {
+    @TempDir
+    Path dir;
+
+    // Los PATCH de nombre dejan libros fuera del indice por nombre, y el precio
+    // "gratis" solo se conserva como texto
+    private static void mutate(BTree tree, Random random, int operations) {
+        for (int op = 0; op < operations; op++) {
+            String isbn = Integer.toString(random.nextInt(3000));
+            int kind = random.nextInt(10);
+            if (kind < 5) {
+                String price = random.nextInt(8) == 0 ? "gratis" : random.nextInt(999) + ".5";
+                tree.insert(Book.parse(isbn, "Name " + random.nextInt(5000), random.nextBoolean() ? null : "Author",
+                        "Cat" + random.nextInt(5), price, Integer.toString(random.nextInt(100))));
+            } else if (kind < 8) {
+                Map<String, Object> update = new HashMap<>();
+                update.put("price", random.nextInt(999) + ".50");
+                if (random.nextBoolean()) {
+                    update.put("name", "Name " + random.nextInt(5000));
+                }
+                tree.updateBook(isbn, update);
+            } else {
+                tree.removeBook(isbn);
+            }
+        }
+    }
+
+    private static String contents(BTree tree) {
+        StringBuilder out = new StringBuilder();
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                out.append(leaf.books[i].toJson()).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    // 1 si el indice por nombre apunta al libro, en orden de ISBN
+    private static String nameIndex(BTree tree) {
+        StringBuilder out = new StringBuilder();
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                Book book = leaf.books[i];
+                out.append(tree.searchByName(book.name()) == book ? '1' : '0');
+            }
+        }
+        return out.toString();
+    }
+
+    @Test
+    void snapshotRoundTripsBooksAndNameIndex() throws IOException {
+        BTree tree = new BTree();
+        mutate(tree, new Random(1), 10_000);
+        Path file = dir.resolve(InventoryStore.SNAPSHOT);
+        SnapshotFile.write(file, tree, 42);
+        BTree back = new BTree();
+        assertEquals(42, SnapshotFile.read(file, back));
+        assertEquals(contents(tree), contents(back));
+        assertEquals(nameIndex(tree), nameIndex(back));
+    }
+
+    @Test
+    void recoversFromSnapshotAndJournal() throws IOException {
+        BTree tree = new BTree(8);
+        InventoryStore store = InventoryStore.open(dir, tree, 5000);
+        assertFalse(store.recovered());
+        Random random = new Random(2);
+        mutate(tree, random, 12_000);
+        List<Book> run = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            run.add(new Book("b" + i, "bulk" + i, null, "c", 5, 5));
+        }
+        tree.insertAll(run);
+        mutate(tree, random, 11_000);
+        String expected = contents(tree);
+        String expectedIndex = nameIndex(tree);
+        store.close();
+
+        BTree back = new BTree();
+        try (InventoryStore reopened = InventoryStore.open(dir, back)) {
+            assertTrue(reopened.recovered());
+            assertEquals(expected, contents(back));
+            assertEquals(expectedIndex, nameIndex(back));
+        }
+    }
+
+    // Los checkpoints corren mientras varios hilos escriben; lo que se escribe
+    // durante el snapshot queda en el segmento nuevo y se recupera
+    @Test
+    void checkpointsWhileWritersRun() throws Exception {
+        BTree tree = BTree.concurrent();
+        InventoryStore store = InventoryStore.open(dir, tree, 2000);
+        Thread[] writers = new Thread[3];
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < writers.length; t++) {
+            Random random = new Random(10 + t);
+            writers[t] = new Thread(() -> {
+                try {
+                    mutate(tree, random, 20_000);
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            });
+            writers[t].start();
+        }
+        for (int i = 0; i < 5; i++) {
+            store.checkpoint();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertNull(failure[0]);
+        String expected = contents(tree);
+        store.close();
+
+        BTree back = new BTree();
+        try (InventoryStore reopened = InventoryStore.open(dir, back)) {
+            assertTrue(reopened.recovered());
+            assertEquals(expected, contents(back));
+        }
+    }
+
+    // Registros mas grandes que el bloque de lectura
+    @Test
+    void readsRecordsLargerThanTheReadBuffer() throws IOException {
+        BTree tree = new BTree();
+        InventoryStore store = InventoryStore.open(dir, tree);
+        tree.insert(new Book("1", "x".repeat(3 << 20), null, null, 1, 1));
+        store.checkpoint();
+        tree.insert(new Book("2", "y".repeat(3 << 20), null, null, 1, 1));
+        tree.insert(new Book("3", "z", null, null, 1, 1));
+        String expected = contents(tree);
+        store.close();
+
+        BTree back = new BTree();
+        try (InventoryStore reopened = InventoryStore.open(dir, back)) {
+            assertTrue(reopened.recovered());
+            assertEquals(expected, contents(back));
+        }
+    }
+
+    // Un registro a medio escribir al final de la bitacora se descarta
+    @Test
+    void ignoresTornJournalTail() throws IOException {
+        BTree tree = new BTree();
+        InventoryStore store = InventoryStore.open(dir, tree);
+        mutate(tree, new Random(3), 2000);
+        tree.insert(new Book("zz1", "extra", null, null, 1, 1));
+        Path segment = store.journal().segment();
+        store.close();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 50, 1, 2, 3}));
+        }
+
+        BTree back = new BTree();
+        try (InventoryStore reopened = InventoryStore.open(dir, back)) {
+            assertTrue(reopened.recovered());
+            assertNotNull(back.findBookByIsbn("zz1"));
+            assertEquals(contents(tree), contents(back));
+        }
+    }
+}
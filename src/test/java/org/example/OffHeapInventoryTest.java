@@ -0,0 +1,268 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// OffHeapInventory contra un BTree con las mismas operaciones, con registros lo
+// bastante grandes para pasar varias veces el minimo de compactacion; despues de
+// cada ronda se revisan todas las busquedas por ISBN y por nombre. BookArena y
+// OffsetIndex se prueban aparte: reuso de huecos por clase, moveTo/forwarded y
+// remap de los indices a la arena nueva.
+class OffHeapInventoryTest {
+    private static final long COMPACT_MIN_BYTES = 4L * BookArena.SLAB_BYTES;
+    private static final int KEYS = 12_000;
+    // Autores compartidos: los registros ocupan KB fuera del heap, pero en el heap
+    // hay un solo String por tamano
+    private static final String[] AUTHORS = new String[6];
+
+    static {
+        for (int i = 0; i < AUTHORS.length; i++) {
+            AUTHORS[i] = "a".repeat(3000 << (i % 3)) + i;
+        }
+    }
+
+    private static Book book(Random random, String isbn) {
+        String price = random.nextInt(10) == 0 ? "gratis" : random.nextInt(5000) + ".25";
+        return Book.parse(isbn, "Name " + random.nextInt(KEYS * 2), AUTHORS[random.nextInt(AUTHORS.length)],
+                random.nextBoolean() ? null : "Cat", price, Integer.toString(random.nextInt(100)));
+    }
+
+    // Los huecos libres nunca pasan de la mitad de una arena que vale la pena compactar
+    private static void checkSparse(OffHeapInventory inventory) {
+        long reserved = inventory.reservedBytes();
+        assertTrue(reserved < COMPACT_MIN_BYTES || inventory.liveBytes() >= reserved / 2,
+                inventory.liveBytes() + " de " + reserved);
+    }
+
+    private static void round(OffHeapInventory inventory, BTree tree, Random random, int inserts, int others) {
+        for (int i = 0; i < inserts; i++) {
+            Book book = book(random, Integer.toString(random.nextInt(KEYS)));
+            inventory.insert(book);
+            tree.insert(book);
+        }
+        for (int i = 0; i < others; i++) {
+            String isbn = Integer.toString(random.nextInt(KEYS));
+            if (random.nextInt(3) == 0) {
+                Map<String, Object> update = new HashMap<>();
+                update.put("author", AUTHORS[random.nextInt(AUTHORS.length)]);
+                if (random.nextBoolean()) {
+                    update.put("name", "Name " + random.nextInt(KEYS * 2));
+                }
+                if (random.nextBoolean()) {
+                    update.put("price", random.nextInt(100) + ".50");
+                }
+                assertEquals(tree.updateBook(isbn, update), inventory.updateBook(isbn, update), isbn);
+            } else {
+                inventory.removeBook(isbn);
+                tree.removeBook(isbn);
+            }
+            checkSparse(inventory);
+        }
+    }
+
+    private static void check(OffHeapInventory inventory, BTree tree) {
+        assertEquals(tree.size(), inventory.size());
+        for (int i = 0; i < KEYS; i++) {
+            String isbn = Integer.toString(i);
+            Book expected = tree.findBookByIsbn(isbn);
+            Book found = inventory.findBookByIsbn(isbn);
+            assertEquals(expected == null ? null : expected.toJson().toString(),
+                    found == null ? null : found.toJson().toString(), isbn);
+        }
+        for (int i = 0; i < KEYS * 2; i++) {
+            String name = "Name " + i;
+            Book expected = tree.searchByName(name);
+            Book found = inventory.searchByName(name);
+            assertEquals(expected == null ? null : expected.isbn(), found == null ? null : found.isbn(), name);
+        }
+    }
+
+    @Test
+    void matchesTreeThroughCompactions() {
+        Random random = new Random(7);
+        BTree tree = new BTree();
+        try (OffHeapInventory inventory = new OffHeapInventory()) {
+            for (int r = 0; r < 4; r++) {
+                round(inventory, tree, random, 12_000, 12_000);
+                check(inventory, tree);
+            }
+            long compactions = inventory.metrics().snapshot().get("compactions").longValue();
+            assertTrue(compactions >= 3, "compactaciones: " + compactions);
+
+            // compact() a mano deja los mismos bytes vivos en una arena que no es mas grande
+            long live = inventory.liveBytes();
+            long reserved = inventory.reservedBytes();
+            inventory.compact();
+            assertEquals(live, inventory.liveBytes());
+            assertTrue(inventory.reservedBytes() <= reserved);
+            assertEquals(compactions + 1, inventory.metrics().snapshot().get("compactions").longValue());
+            check(inventory, tree);
+            round(inventory, tree, random, 2_000, 2_000);
+            check(inventory, tree);
+        }
+    }
+
+    // Un PATCH escribe el registro en otro hueco y libera el viejo: ir y volver
+    // entre dos tamanos reusa siempre los mismos dos huecos
+    @Test
+    void patchRelocatesIntoFreedSlots() {
+        try (OffHeapInventory inventory = new OffHeapInventory()) {
+            inventory.insert(new Book("1", "Uno", "corto", null, 100, 1));
+            long live = inventory.liveBytes();
+            Map<String, Object> longer = new HashMap<>();
+            longer.put("author", "x".repeat(3000));
+            longer.put("name", "Uno largo");
+            Map<String, Object> shorter = new HashMap<>();
+            shorter.put("author", "corto");
+            shorter.put("name", "Uno");
+            for (int i = 0; i < 10_000; i++) {
+                inventory.updateBook("1", longer);
+                assertTrue(inventory.liveBytes() > live);
+                inventory.updateBook("1", shorter);
+                assertEquals(live, inventory.liveBytes());
+            }
+            assertEquals(BookArena.SLAB_BYTES, inventory.reservedBytes());
+            assertEquals("corto", inventory.findBookByIsbn("1").author());
+            assertEquals("1", inventory.searchByName("Uno").isbn());
+            assertNull(inventory.searchByName("Uno largo"));
+            assertEquals(1, inventory.size());
+        }
+    }
+
+    @Test
+    void arenaReusesFreedSlotsBySizeClass() {
+        try (BookArena arena = new BookArena()) {
+            Book small = new Book("1", "chico", null, null, 1, 1);
+            Book sameSize = new Book("2", "otro!", null, null, 2, 2);
+            Book large = new Book("3", "y".repeat(5000), null, null, 3, 3);
+            long first = arena.add(small);
+            long second = arena.add(small);
+            long big = arena.add(large);
+            long live = arena.liveBytes();
+
+            // Los huecos libres de una clase se reusan del ultimo al primero
+            arena.free(first);
+            arena.free(second);
+            assertEquals(second, arena.add(sameSize));
+            assertEquals(first, arena.add(sameSize));
+            assertEquals(live, arena.liveBytes());
+            assertEquals("otro!", arena.read(first).name());
+
+            // Otra clase no toma esos huecos
+            arena.free(big);
+            long other = arena.add(small);
+            assertNotEquals(big, other);
+            assertEquals(big, arena.add(large));
+
+            long reserved = arena.reservedBytes();
+            for (int i = 0; i < 100_000; i++) {
+                long address = arena.add(i % 2 == 0 ? small : large);
+                arena.free(address);
+            }
+            assertEquals(reserved, arena.reservedBytes());
+
+            // Un registro mas grande que un slab tiene el suyo
+            long huge = arena.add(new Book("4", "z".repeat(BookArena.SLAB_BYTES), null, null, 1, 1));
+            assertEquals(BookArena.SLAB_BYTES, arena.read(huge).name().length());
+            assertTrue(arena.reservedBytes() > reserved + BookArena.SLAB_BYTES);
+        }
+    }
+
+    // moveTo deja la direccion nueva en el hueco viejo; mover dos veces da la misma
+    @Test
+    void moveToLeavesForwardingAddresses() {
+        Random random = new Random(8);
+        BookArena old = new BookArena();
+        List<Long> addresses = new ArrayList<>();
+        List<String> books = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            Book book = book(random, Integer.toString(i));
+            addresses.add(old.add(book));
+            books.add(book.toJson().toString());
+        }
+        for (int i = 0; i < 5_000; i += 2) {
+            old.free(addresses.get(i));
+        }
+        try (BookArena target = new BookArena()) {
+            for (int i = 1; i < 5_000; i += 2) {
+                long address = addresses.get(i);
+                assertEquals(address, old.forwarded(address));
+                long moved = old.moveTo(target, address);
+                assertEquals(moved, old.forwarded(address));
+                assertEquals(moved, old.moveTo(target, address));
+            }
+            assertEquals(old.liveBytes(), target.liveBytes());
+            assertTrue(target.reservedBytes() <= old.reservedBytes());
+            List<Long> moved = new ArrayList<>();
+            for (int i = 1; i < 5_000; i += 2) {
+                moved.add(old.forwarded(addresses.get(i)));
+            }
+            old.close();
+            for (int i = 1, j = 0; i < 5_000; i += 2, j++) {
+                assertEquals(books.get(i), target.read(moved.get(j)).toJson().toString());
+            }
+        }
+    }
+
+    // Altas y bajas al azar (con corrimiento hacia atras y varios resize) contra un
+    // HashMap, y despues remap a otra arena
+    @Test
+    void indexMatchesMapAndRemaps() {
+        Random random = new Random(9);
+        BookArena old = new BookArena();
+        Map<String, Long> model = new HashMap<>();
+        try (OffsetIndex index = new OffsetIndex(old, false)) {
+            for (int i = 0; i < 60_000; i++) {
+                String isbn = Integer.toString(random.nextInt(20_000));
+                byte[] key = BookArena.utf8(isbn);
+                if (random.nextInt(3) == 0) {
+                    Long address = model.remove(isbn);
+                    assertEquals(address == null ? BookArena.NONE : address, index.remove(key, BookArena.hash(key)));
+                    if (address != null) {
+                        old.free(address);
+                    }
+                } else if (!model.containsKey(isbn)) {
+                    long address = old.add(new Book(isbn, "n" + isbn, null, null, 1, 1));
+                    assertEquals(BookArena.NONE, index.put(address, key));
+                    model.put(isbn, address);
+                }
+            }
+            assertEquals(model.size(), index.size());
+            for (int i = 0; i < 20_000; i++) {
+                byte[] key = BookArena.utf8(Integer.toString(i));
+                Long address = model.get(Integer.toString(i));
+                assertEquals(address == null ? BookArena.NONE : address, index.get(key, BookArena.hash(key)));
+            }
+
+            try (BookArena target = new BookArena()) {
+                index.forEach(address -> old.moveTo(target, address));
+                index.remap(target, old::forwarded);
+                Map<String, Long> forwarded = new HashMap<>();
+                for (Map.Entry<String, Long> entry : model.entrySet()) {
+                    forwarded.put(entry.getKey(), old.forwarded(entry.getValue()));
+                }
+                old.close();
+                for (int i = 0; i < 20_000; i++) {
+                    String isbn = Integer.toString(i);
+                    byte[] key = BookArena.utf8(isbn);
+                    long address = index.get(key, BookArena.hash(key));
+                    if (forwarded.containsKey(isbn)) {
+                        assertEquals((long) forwarded.get(isbn), address);
+                        assertEquals("n" + isbn, target.read(address).name());
+                    } else {
+                        assertEquals(BookArena.NONE, address);
+                    }
+                }
+                assertEquals(model.size(), index.size());
+            }
+        }
+    }
+}
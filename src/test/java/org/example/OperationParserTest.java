@@ -0,0 +1,252 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Cada rama de error de OperationParser y OperationLine con su mensaje y columna,
+// lineas al azar comparadas con org.json, y un archivo con lineas malas entre las
+// buenas: los errores salen con su numero de linea y la carga sigue con la
+// siguiente.
+class OperationParserTest {
+    @TempDir
+    Path dir;
+
+    // La linea va despues de otra en el mismo buffer, asi la columna se cuenta
+    // desde el inicio de la linea y no del buffer
+    private static OperationLine parse(OperationParser parser, String line) {
+        byte[] before = "INSERT;{\"isbn\":\"0\"}\n".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = (new String(before, StandardCharsets.UTF_8) + line).getBytes(StandardCharsets.UTF_8);
+        OperationLine out = new OperationLine();
+        parser.parse(ByteBuffer.wrap(bytes), before.length, bytes.length, out);
+        return out;
+    }
+
+    private static String error(String line) {
+        return assertThrows(OperationFormatException.class, () -> parse(new OperationParser(), line), line).getMessage();
+    }
+
+    @Test
+    void reportsEachSyntaxErrorWithItsColumn() {
+        assertEquals("Formato incorrecto: falta ';'", error("INSERT {\"isbn\":\"1\"}"));
+        assertEquals("Formato incorrecto: falta ';'", error(""));
+        assertEquals("Se esperaba '{' (columna 9)", error("INSERT; []"));
+        assertEquals("Falta '}' (columna 8)", error("INSERT;{"));
+        assertEquals("La llave no puede ser un objeto ni un arreglo (columna 9)", error("INSERT;{{"));
+        assertEquals("Se esperaba ':' despues de la llave (columna 16)", error("INSERT;{\"isbn\" \"1\"}"));
+        assertEquals("Campo repetido: isbn (columna 26)", error("INSERT;{\"isbn\":\"1\",\"isbn\":\"2\"}"));
+        assertEquals("Se esperaba ',' o '}' (columna 20)", error("INSERT;{\"isbn\":\"1\" \"name\":\"x\"}"));
+        assertEquals("Falta el valor (columna 15)", error("INSERT;{\"isbn\":}"));
+        assertEquals("Falta el valor (columna 15)", error("INSERT;{\"isbn\":"));
+        assertEquals("Cadena sin terminar (columna 17)", error("INSERT;{\"isbn\":\"1"));
+        assertEquals("Escape invalido (columna 18)", error("INSERT;{\"isbn\":\"\\x\"}"));
+        assertEquals("Escape invalido (columna 18)", error("INSERT;{\"isbn\":\"\\u12G4\"}"));
+        assertEquals("Escape invalido (columna 18)", error("INSERT;{\"otro\":\"\\q\"}"));
+        assertEquals("Objeto sin terminar (columna 23)", error("INSERT;{\"otro\":{\"a\":[1}"));
+    }
+
+    // Errores que aparecen recien al usar los campos de la operacion
+    @Test
+    void reportsMissingAndMistypedFields() {
+        OperationParser parser = new OperationParser();
+        OperationLine noIsbn = parse(parser, "INSERT;{\"name\":\"x\"}");
+        assertEquals("Falta el campo isbn",
+                assertThrows(OperationFormatException.class, noIsbn::toBook).getMessage());
+
+        OperationLine number = parse(parser, "DELETE;{\"isbn\":5}");
+        assertEquals("El campo isbn no es una cadena",
+                assertThrows(OperationFormatException.class, number::isbn).getMessage());
+
+        OperationLine nested = parse(parser, "PATCH;{\"isbn\":\"1\",\"price\":{\"a\":1}}");
+        assertEquals("El campo price no puede ser un objeto ni un arreglo",
+                assertThrows(OperationFormatException.class, nested::updates).getMessage());
+
+        OperationLine unknown = parse(parser, " SELECT ;{\"isbn\":\"1\"}");
+        assertEquals(OperationLine.UNKNOWN, unknown.kind);
+        assertEquals("SELECT", unknown.operationName());
+    }
+
+    // Despues de una linea mala el mismo parser lee bien la siguiente, sin restos
+    // de la anterior
+    @Test
+    void recoversAfterBadLine() {
+        OperationParser parser = new OperationParser();
+        String longName = "n".repeat(1000) + "\\u00e1";
+        for (int i = 0; i < 3; i++) {
+            String bad = "INSERT;{\"isbn\":\"9\",\"name\":\"" + longName + "\",\"price\":\"1";
+            assertThrows(OperationFormatException.class, () -> parse(parser, bad));
+            OperationLine line = parse(parser, "PATCH;{\"isbn\":\"" + i + "\",\"quantity\":3}");
+            assertEquals(OperationLine.PATCH, line.kind);
+            assertEquals(Integer.toString(i), line.isbn());
+            assertEquals("{quantity=3}", line.updates().toString());
+            assertTrue(!line.has(OperationLine.NAME) && !line.has(OperationLine.PRICE));
+        }
+    }
+
+    private static String token(Random random) {
+        switch (random.nextInt(12)) {
+            case 0:
+                return "\"a\\\"b\\\\c\\u00e9\\/\\n\"";
+            case 1:
+                return "'simple'";
+            case 2:
+                return Integer.toString(random.nextInt(2000) - 1000);
+            case 3:
+                return "12.50";
+            case 4:
+                return "-0";
+            case 5:
+                return "007";
+            case 6:
+                return "null";
+            case 7:
+                return "TRUE";
+            case 8:
+                return "{\"x\":[1,{\"y\":\"}\"}]}";
+            case 9:
+                return "sin comillas";
+            case 10:
+                return "\"Árbol 😀\"";
+            default:
+                return "\"" + random.nextInt(100) + "\"";
+        }
+    }
+
+    private static String line(Random random) {
+        StringBuilder json = new StringBuilder("{");
+        int pairs = random.nextInt(5);
+        // Una llave desconocida repetida la rechaza JSONObject pero el parser ni la
+        // guarda, asi que va una sola vez; las conocidas si se repiten
+        String unknown = "otro";
+        for (int i = 0; i < pairs; i++) {
+            String key = OperationLine.FIELDS[random.nextInt(OperationLine.FIELDS.length)];
+            if (unknown != null && random.nextInt(4) == 0) {
+                key = unknown;
+                unknown = null;
+            }
+            json.append(random.nextBoolean() ? "\"" + key + "\"" : key).append(random.nextInt(5) == 0 ? " : " : ":");
+            json.append(token(random));
+            if (i + 1 < pairs) {
+                json.append(random.nextInt(5) == 0 ? ";" : ",");
+            }
+        }
+        json.append('}');
+        // Algunas lineas se rompen sacando o agregando un caracter. Los objetos
+        // anidados el parser solo los salta contando llaves, asi que no se tocan.
+        if (random.nextInt(3) == 0 && json.indexOf("{\"x\"") < 0) {
+            int at = json.offsetByCodePoints(0, random.nextInt(json.codePointCount(0, json.length())));
+            if (random.nextBoolean()) {
+                json.delete(at, json.offsetByCodePoints(at, 1));
+            } else {
+                json.insert(at, "{}[]\",:\\'".charAt(random.nextInt(9)));
+            }
+        }
+        return json.toString();
+    }
+
+    // Acepta y rechaza las mismas lineas que JSONObject y da los mismos textos que optString
+    @Test
+    void agreesWithJsonObject() {
+        Random random = new Random(13);
+        OperationParser parser = new OperationParser();
+        int rejected = 0;
+        for (int i = 0; i < 20_000; i++) {
+            String json = line(random);
+            JSONObject expected;
+            try {
+                expected = new JSONObject(json);
+            } catch (JSONException e) {
+                expected = null;
+            }
+            OperationLine line;
+            try {
+                line = parse(parser, "PATCH;" + json);
+            } catch (OperationFormatException e) {
+                line = null;
+            }
+            if (expected == null) {
+                assertNull(line, json);
+                rejected++;
+                continue;
+            }
+            assertTrue(line != null, json);
+            for (int field = 0; field < OperationLine.FIELDS.length; field++) {
+                String name = OperationLine.FIELDS[field];
+                Object value = expected.opt(name);
+                assertEquals(value != null, line.has(field), json);
+                if (value != null && value != JSONObject.NULL && !(value instanceof JSONObject) && !(value instanceof JSONArray)) {
+                    assertEquals(expected.optString(name), line.value(field), json);
+                    assertEquals(value instanceof String, (line.strings & (1 << field)) != 0, json);
+                }
+            }
+        }
+        assertTrue(rejected > 1000, "rechazadas: " + rejected);
+    }
+
+    private static String load(Path file, BTree tree, boolean bulk) {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream stderr = System.err;
+        System.setErr(new PrintStream(errors, true, StandardCharsets.UTF_8));
+        try {
+            Main.ReaderCSV(file.toString(), tree, bulk, 1);
+        } finally {
+            System.setErr(stderr);
+        }
+        return errors.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void reportsLineNumbersAndKeepsLoading() throws IOException {
+        Path file = dir.resolve("carga.csv");
+        List<String> lines = new ArrayList<>();
+        lines.add("INSERT;{\"isbn\":\"1\",\"name\":\"Uno\",\"price\":\"10.00\",\"quantity\":\"1\"}");
+        lines.add("INSERT;{\"isbn\":\"2\",\"name\":\"Dos");
+        lines.add("INSERT;{\"isbn\":\"3\",\"name\":\"Tres\",\"price\":\"30.00\",\"quantity\":\"3\"}");
+        lines.add("");
+        lines.add("PATCH;{\"isbn\":\"1\",\"price\":\"11.00\"}");
+        lines.add("PATCH;{\"isbn\":\"1\",\"price\":{}}");
+        lines.add("DELETE;{\"isbn\":3}");
+        lines.add("SELECT;{\"isbn\":\"1\"}");
+        lines.add("INSERT;{\"isbn\":\"4\",\"name\":\"Cuatro\",\"price\":\"40.00\",\"quantity\":\"4\"}\r");
+        lines.add("DELETE;{\"isbn\":\"3\"}");
+        lines.add("INSERT;{\"isbn\":\"5\",\"name\":\"Cinco\",\"price\":\"50.00\",\"quantity\":\"5\"}");
+        Files.writeString(file, String.join("\n", lines));
+
+        for (boolean bulk : new boolean[]{false, true}) {
+            BTree tree = new BTree(4);
+            String errors = load(file, tree, bulk);
+            String[] reported = errors.split("\n");
+            assertEquals(6, reported.length, errors);
+            assertTrue(reported[0].startsWith(file + ":2: Cadena sin terminar"), reported[0]);
+            assertTrue(reported[1].startsWith(file + ":4: Formato incorrecto: falta ';'"), reported[1]);
+            assertEquals(file + ":6: El campo price no puede ser un objeto ni un arreglo", reported[2]);
+            assertEquals(file + ":7: El campo isbn no es una cadena", reported[3]);
+            assertEquals(file + ":8: Operación desconocida: SELECT", reported[4]);
+            assertEquals("5 lineas con errores en " + file, reported[5]);
+
+            assertEquals(5, tree.metrics().parseErrors.sum());
+            assertEquals(3, tree.size());
+            assertEquals(1100, tree.findBookByIsbn("1").priceCents());
+            assertNull(tree.findBookByIsbn("2"));
+            assertNull(tree.findBookByIsbn("3"));
+            assertEquals("Cuatro", tree.searchByName("Cuatro").name());
+            assertEquals("5", tree.searchByName("Cinco").isbn());
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Compara el arbol paginado con un TreeMap. La cache chica obliga a sacar paginas
+// limpias y a hacer flush seguido, y el archivo se reabre varias veces. Los DELETE
+// unen paginas y las que sobran se reusan. PagedInventory tiene que quedar igual
+// que un BTree con las mismas operaciones, con los nombres repetidos que dejan los
+// PATCH. Las caidas se simulan copiando el archivo antes del flush o armando el
+// .wal que deja un flush a medias.
+class PagedBTreeTest {
+    @TempDir
+    Path dir;
+
+    // Nombres de largo muy variable, asi las paginas se parten por bytes y no por cantidad
+    private static Book book(Random random, String isbn) {
+        String name = "name " + random.nextInt(1_000_000) + "x".repeat(random.nextInt(random.nextInt(50) == 0 ? 900 : 60));
+        String price = random.nextInt(10) == 0 ? "gratis" : random.nextInt(10_000) + ".5";
+        return Book.parse(isbn, name, "Author " + random.nextInt(100), null, price, Integer.toString(random.nextInt(500)));
+    }
+
+    private static TreeMap<String, Book> model() {
+        return new TreeMap<>((a, b) -> Book.compareIsbn(Book.isbnKey(a), a, Book.isbnKey(b), b));
+    }
+
+    private static String isbn(Random random) {
+        return random.nextInt(6) == 0 ? "x" + random.nextInt(10_000) : Integer.toString(random.nextInt(30_000));
+    }
+
+    private static void mutate(PagedBTree tree, TreeMap<String, Book> model, Random random, int operations) {
+        for (int op = 0; op < operations; op++) {
+            String isbn = isbn(random);
+            if (random.nextInt(3) > 0) {
+                Book book = book(random, isbn);
+                assertEquals(model.put(isbn, book) == null, tree.put(book), isbn);
+            } else {
+                assertEquals(model.remove(isbn) != null, tree.remove(isbn), isbn);
+            }
+        }
+    }
+
+    private static void check(PagedBTree tree, TreeMap<String, Book> model, Random random) {
+        List<String> expected = new ArrayList<>();
+        for (Book book : model.values()) {
+            expected.add(book.toJson().toString());
+        }
+        List<String> books = new ArrayList<>();
+        tree.forEach(book -> books.add(book.toJson().toString()));
+        assertEquals(expected, books);
+        assertEquals(model.size(), tree.count());
+        for (int i = 0; i < 500; i++) {
+            String isbn = isbn(random);
+            Book found = tree.find(isbn);
+            assertEquals(model.containsKey(isbn), found != null, isbn);
+        }
+    }
+
+    @Test
+    void matchesModelAcrossReopens() throws IOException {
+        Path file = dir.resolve("inventario.db");
+        Random random = new Random(9);
+        TreeMap<String, Book> model = model();
+        PagedBTree tree = PagedBTree.open(file, 8);
+        for (int round = 0; round < 5; round++) {
+            mutate(tree, model, random, 20_000);
+            // Hasta 8 limpias y 8 sucias
+            assertTrue(tree.cachedPages() <= 16, "paginas en cache: " + tree.cachedPages());
+            if (round % 2 == 0) {
+                tree.close();
+                tree = PagedBTree.open(file, 8);
+            }
+            check(tree, model, random);
+        }
+        tree.close();
+        try (PagedBTree reopened = PagedBTree.open(file)) {
+            check(reopened, model, random);
+        }
+    }
+
+    @Test
+    void namesMatchModel() throws IOException {
+        Path file = dir.resolve("nombres.db");
+        Map<String, String> model = new HashMap<>();
+        Random random = new Random(4);
+        for (int round = 0; round < 3; round++) {
+            try (PagedBTree tree = PagedBTree.open(file, 8)) {
+                for (int i = 0; i < 5_000; i++) {
+                    String name = (random.nextBoolean() ? "Árbol " : "") + random.nextInt(3_000);
+                    if (random.nextInt(3) == 0) {
+                        assertEquals(model.remove(name) != null, tree.removeName(name), name);
+                    } else {
+                        String isbn = Integer.toString(random.nextInt(1_000_000));
+                        tree.putName(name, isbn);
+                        model.put(name, isbn);
+                    }
+                }
+            }
+            try (PagedBTree tree = PagedBTree.open(file, 8)) {
+                assertEquals(model.size(), tree.names());
+                assertEquals(0, tree.count());
+                for (int i = 0; i < 3_000; i++) {
+                    assertEquals(model.get("Árbol " + i), tree.findName("Árbol " + i));
+                    assertEquals(model.get(Integer.toString(i)), tree.findName(Integer.toString(i)));
+                }
+            }
+        }
+    }
+
+    // Borrar todo deja todas las paginas en la lista libre y volver a cargar lo
+    // mismo no agranda el archivo
+    @Test
+    void reusesFreedPages() throws IOException {
+        Path file = dir.resolve("libres.db");
+        Random random = new Random(5);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            books.add(book(random, Integer.toString(random.nextInt(1_000_000))));
+        }
+        List<Book> order = new ArrayList<>(books);
+        int pages = 0;
+        for (int round = 0; round < 4; round++) {
+            try (PagedBTree tree = PagedBTree.open(file, 32)) {
+                for (Book book : books) {
+                    tree.put(book);
+                }
+                if (round == 0) {
+                    pages = tree.pageCount();
+                }
+                assertEquals(pages, tree.pageCount());
+                assertEquals(0, tree.freePages());
+                Collections.shuffle(order, random);
+                for (Book book : order) {
+                    tree.remove(book.isbn());
+                }
+                assertEquals(0, tree.count());
+                assertEquals(pages - 1, tree.freePages());
+            }
+        }
+    }
+
+    // Borrar la mitad al azar une hojas: el arbol usa bastante menos paginas que
+    // antes y sigue igual al modelo
+    @Test
+    void mergesPagesAfterDeletes() throws IOException {
+        Path file = dir.resolve("unir.db");
+        Random random = new Random(6);
+        TreeMap<String, Book> model = model();
+        try (PagedBTree tree = PagedBTree.open(file, 64)) {
+            for (int i = 0; i < 20_000; i++) {
+                Book book = book(random, Integer.toString(i));
+                model.put(book.isbn(), book);
+                tree.put(book);
+            }
+            int full = tree.pageCount() - tree.freePages();
+            for (int i = 0; i < 20_000; i++) {
+                if (random.nextInt(4) > 0) {
+                    String isbn = Integer.toString(i);
+                    model.remove(isbn);
+                    tree.remove(isbn);
+                }
+            }
+            int used = tree.pageCount() - tree.freePages();
+            assertTrue(used < full / 2, used + " de " + full);
+            check(tree, model, random);
+        }
+    }
+
+    // Un .wal completo se vuelve a aplicar; uno cortado se descarta y el archivo
+    // queda como en el flush anterior
+    @Test
+    void replaysCompleteWalAndDropsTornOne() throws IOException {
+        Path file = dir.resolve("wal.db");
+        Path wal = PagedBTree.walFile(file);
+        Random random = new Random(21);
+        TreeMap<String, Book> model = model();
+        try (PagedBTree tree = PagedBTree.open(file, 16)) {
+            mutate(tree, model, random, 3_000);
+        }
+        byte[] before = Files.readAllBytes(file);
+        TreeMap<String, Book> beforeModel = new TreeMap<>(model);
+        int pages;
+        try (PagedBTree tree = PagedBTree.open(file, 16)) {
+            mutate(tree, model, random, 3_000);
+            pages = tree.pageCount();
+        }
+        byte[] log = walOf(Files.readAllBytes(file), pages);
+
+        Files.write(file, before);
+        Files.write(wal, log);
+        try (PagedBTree tree = PagedBTree.open(file, 16)) {
+            check(tree, model, random);
+        }
+        assertEquals(0, Files.size(wal));
+
+        Files.write(file, before);
+        Files.write(wal, Arrays.copyOf(log, log.length - 100));
+        try (PagedBTree tree = PagedBTree.open(file, 16)) {
+            check(tree, beforeModel, random);
+        }
+    }
+
+    // Lo que deja un flush entre forzar el .wal y copiar las paginas: todas las
+    // paginas del archivo nuevo y la cabecera al final
+    private static byte[] walOf(byte[] file, int pages) {
+        int frame = 4 + PagedBTree.PAGE_SIZE;
+        ByteBuffer log = ByteBuffer.allocate(12 + pages * frame);
+        log.position(12);
+        for (int i = 1; i <= pages; i++) {
+            int page = i % pages;
+            log.putInt(page).put(file, page * PagedBTree.PAGE_SIZE, PagedBTree.PAGE_SIZE);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(log.array(), 12, log.capacity() - 12);
+        log.putInt(0, PagedBTree.WAL_MAGIC).putInt(4, pages).putInt(8, (int) crc.getValue());
+        return log.array();
+    }
+
+    // Antes del flush ninguna pagina llega al archivo: una copia tomada con cambios
+    // pendientes abre igual que despues del ultimo flush
+    @Test
+    void keepsLastFlushWhenProcessDies() throws IOException {
+        Path file = dir.resolve("vivo.db");
+        Random random = new Random(22);
+        TreeMap<String, Book> model = model();
+        try (PagedBTree tree = PagedBTree.open(file, 4096)) {
+            mutate(tree, model, random, 2_000);
+        }
+        TreeMap<String, Book> flushed = new TreeMap<>(model);
+        try (PagedBTree tree = PagedBTree.open(file, 4096)) {
+            mutate(tree, model, random, 2_000);
+            Path crashed = dir.resolve("caida.db");
+            Files.copy(file, crashed);
+            Files.copy(PagedBTree.walFile(file), PagedBTree.walFile(crashed));
+            try (PagedBTree back = PagedBTree.open(crashed)) {
+                check(back, flushed, random);
+            }
+        }
+    }
+
+    // Pocos nombres, asi los PATCH de nombre dejan libros fuera del indice por nombre
+    private static Book named(Random random, String isbn) {
+        return Book.parse(isbn, "Name " + random.nextInt(300), null, "Cat", random.nextInt(100) + ".5", "1");
+    }
+
+    private static void mutate(List<Inventory> inventories, Random random, int operations) {
+        for (int op = 0; op < operations; op++) {
+            String isbn = Integer.toString(random.nextInt(2_000));
+            int kind = random.nextInt(20);
+            if (kind == 0) {
+                List<Book> run = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    run.add(named(random, Integer.toString(random.nextInt(2_000))));
+                }
+                for (Inventory inventory : inventories) {
+                    inventory.insertAll(run);
+                }
+            } else if (kind < 9) {
+                Book book = named(random, isbn);
+                for (Inventory inventory : inventories) {
+                    inventory.insert(book);
+                }
+            } else if (kind < 16) {
+                Map<String, Object> update = new HashMap<>();
+                update.put("quantity", Integer.toString(random.nextInt(100)));
+                if (random.nextBoolean()) {
+                    update.put("name", "Name " + random.nextInt(300));
+                }
+                for (Inventory inventory : inventories) {
+                    inventory.updateBook(isbn, update);
+                }
+            } else {
+                for (Inventory inventory : inventories) {
+                    inventory.removeBook(isbn);
+                }
+            }
+        }
+    }
+
+    // Libros en orden de ISBN y si el indice por nombre apunta a cada uno
+    private static List<String> contents(Inventory inventory, List<Book> books) {
+        List<String> out = new ArrayList<>();
+        for (Book book : books) {
+            Book named = inventory.searchByName(book.name());
+            out.add(book.toJson() + " " + (named != null && named.isbn().equals(book.isbn())));
+        }
+        return out;
+    }
+
+    private static List<String> contents(BTree tree) {
+        List<Book> books = new ArrayList<>();
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            books.addAll(Arrays.asList(leaf.books).subList(0, leaf.size));
+        }
+        return contents(tree, books);
+    }
+
+    private static List<String> contents(PagedInventory inventory) {
+        List<Book> books = new ArrayList<>();
+        inventory.forEach(books::add);
+        return contents(inventory, books);
+    }
+
+    @Test
+    void inventoryMatchesTreeAcrossReopens() throws IOException {
+        Path file = dir.resolve("inventario-vivo.db");
+        Random random = new Random(11);
+        BTree tree = new BTree(4);
+        for (int round = 0; round < 4; round++) {
+            try (PagedInventory inventory = PagedInventory.open(file, 8)) {
+                assertEquals(contents(tree), contents(inventory));
+                mutate(List.of(tree, inventory), random, 5_000);
+                assertEquals(tree.size(), inventory.size());
+            }
+        }
+        try (PagedInventory inventory = PagedInventory.open(file)) {
+            assertEquals(contents(tree), contents(inventory));
+        }
+    }
+
+    // Un libro que no entra en una pagina se rechaza sin cambiar nada
+    @Test
+    void rejectsOversizedBooksBeforeChangingAnything() throws IOException {
+        try (PagedInventory inventory = PagedInventory.open(dir.resolve("grande.db"))) {
+            inventory.insert(new Book("1", "chico", null, null, 1, 1));
+            String huge = "x".repeat(PagedBTree.PAGE_SIZE);
+            assertThrows(IllegalArgumentException.class,
+                    () -> inventory.insert(new Book("2", huge, null, null, 1, 1)));
+            assertNull(inventory.findBookByIsbn("2"));
+            assertNull(inventory.searchByName(huge));
+
+            Map<String, Object> update = new HashMap<>();
+            update.put("name", huge);
+            assertThrows(IllegalArgumentException.class, () -> inventory.updateBook("1", update));
+            assertEquals("chico", inventory.findBookByIsbn("1").name());
+            assertEquals("1", inventory.searchByName("chico").isbn());
+            assertNull(inventory.searchByName(huge));
+
+            inventory.insertAll(List.of(new Book("3", huge, null, null, 1, 1), new Book("4", "otro", null, null, 1, 1)));
+            assertNull(inventory.findBookByIsbn("3"));
+            assertEquals(2, inventory.size());
+            assertEquals(2, inventory.store().names());
+        }
+    }
+}
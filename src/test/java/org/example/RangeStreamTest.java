@@ -0,0 +1,60 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class RangeStreamTest {
+    private static byte[] data(Random random, int kind, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            switch (kind) {
+                case 0:
+                    data[i] = (byte) random.nextInt(256);
+                    break;
+                case 1:
+                    data[i] = (byte) ('a' + random.nextInt(3));
+                    break;
+                case 2:
+                    data[i] = (byte) 0xFF;
+                    break;
+                default:
+                    data[i] = (byte) (i % 17 == 0 ? random.nextInt(256) : 'x');
+                    break;
+            }
+        }
+        return data;
+    }
+
+    @Test
+    void roundTripsBothOrders() throws IOException {
+        Random random = new Random(5);
+        for (int t = 0; t < 400; t++) {
+            byte[] data = data(random, t % 4, t < 10 ? t : random.nextInt(t % 7 == 0 ? 50_000 : 2000));
+            for (int order = 0; order <= 1; order++) {
+                assertArrayEquals(data, RangeInputStream.decompress(RangeOutputStream.compress(data, order)),
+                        "caso " + t + " orden " + order);
+            }
+        }
+    }
+
+    // Cada corrida del reporte es un flujo aparte: el lector no debe pasarse al siguiente
+    @Test
+    void readsConcatenatedStreams() throws IOException {
+        Random random = new Random(6);
+        byte[] first = data(random, 1, 3000);
+        byte[] second = data(random, 3, 100);
+        ByteArrayOutputStream both = new ByteArrayOutputStream();
+        both.write(RangeOutputStream.compress(first, 1));
+        both.write(RangeOutputStream.compress(second, 0));
+        InputStream in = new ByteArrayInputStream(both.toByteArray());
+        assertArrayEquals(first, new RangeInputStream(in).readAllBytes());
+        assertArrayEquals(second, new RangeInputStream(in).readAllBytes());
+        assertEquals(-1, in.read());
+    }
+}
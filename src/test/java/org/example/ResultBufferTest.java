@@ -0,0 +1,239 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Escapado de los textos (comillas, barras, caracteres de control, fuera del BMP y
+// surrogates sueltos) contra una version simple con String, crecimiento del buffer
+// justo en el borde, y ResultWriter con buffers que llenan el bloque exacto, lo
+// pasan por uno o son mas grandes que el bloque.
+class ResultBufferTest {
+    @TempDir
+    Path dir;
+
+    // Escapado de referencia: el de JSON, con \\u00XX para los controles sin letra
+    private static String escape(String text) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.toString();
+    }
+
+    private static byte[] json(ResultBuffer buffer, String text) {
+        buffer.clear();
+        buffer.appendJson(text);
+        return Arrays.copyOf(buffer.array(), buffer.length());
+    }
+
+    @Test
+    void escapesLikeJson() {
+        ResultBuffer buffer = new ResultBuffer(4);
+        StringBuilder controls = new StringBuilder();
+        for (char c = 0; c < 0x20; c++) {
+            controls.append(c);
+        }
+        String[] texts = {
+            "", "simple", "con \"comillas\" y \\barras\\", "\\\"", controls.toString(), "\u007f",
+            "Árbol ñandú", "€ 中文", "😀 fuera del BMP 𝄞", "C:\\ruta\\\"x\"\n",
+            // Surrogates sueltos: igual que String.getBytes(UTF_8), un '?' cada uno
+            "alto \ud83d solo", "bajo \ude00 solo", "al final \ud83d", "\ude00\ud83d",
+        };
+        for (String text : texts) {
+            assertArrayEquals(escape(text).getBytes(StandardCharsets.UTF_8), json(buffer, text), text);
+        }
+        assertArrayEquals("null".getBytes(StandardCharsets.UTF_8), json(buffer, null));
+
+        Random random = new Random(6);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                switch (random.nextInt(6)) {
+                    case 0:
+                        text.append((char) random.nextInt(0x80));
+                        break;
+                    case 1:
+                        text.append((char) (0x80 + random.nextInt(0x780)));
+                        break;
+                    case 2:
+                        text.append((char) random.nextInt(0x10000));
+                        break;
+                    case 3:
+                        text.appendCodePoint(0x10000 + random.nextInt(0x100000));
+                        break;
+                    default:
+                        text.append("\"\\/".charAt(random.nextInt(3)));
+                }
+            }
+            String value = text.toString();
+            assertArrayEquals(escape(value).getBytes(StandardCharsets.UTF_8), json(buffer, value), value);
+        }
+    }
+
+    // Una linea de resultado es JSON valido y devuelve los mismos textos
+    @Test
+    void resultLinesParseBack() {
+        ResultBuffer buffer = new ResultBuffer(16);
+        CompressionStats.Entry stats = new CompressionStats.Entry(12, 34, 5);
+        Book[] books = {
+            Book.parse("1", "Nombre \"raro\"\t\\ 😀", "Autor\nDos", null, "-3.05", "7"),
+            Book.parse("2", "Sin autor", null, null, "gratis", "muchos"),
+            new Book("3", "Sin precio", "A", "C", Book.NO_PRICE, Book.NO_QUANTITY),
+        };
+        String[][] expected = {
+            {"1", "Nombre \"raro\"\t\\ 😀", "Autor\nDos", "-3.05", "7"},
+            {"2", "Sin autor", "null", "gratis", "muchos"},
+            {"3", "Sin precio", "A", "null", "null"},
+        };
+        for (int i = 0; i < books.length; i++) {
+            buffer.clear();
+            buffer.appendResult(books[i], books[i].name(), stats);
+            String line = new String(buffer.array(), 0, buffer.length(), StandardCharsets.UTF_8);
+            assertEquals(System.lineSeparator(), line.substring(line.length() - System.lineSeparator().length()));
+            JSONObject parsed = new JSONObject(line);
+            assertEquals(expected[i][0], parsed.getString("isbn"));
+            assertEquals(expected[i][1], parsed.getString("name"));
+            assertEquals(expected[i][2], parsed.getString("author"));
+            assertEquals(expected[i][3], parsed.getString("price"));
+            assertEquals(expected[i][4], parsed.getString("quantity"));
+            assertEquals("12", parsed.getString("namesize"));
+            assertEquals("34", parsed.getString("namesizeHuffman"));
+            assertEquals("5", parsed.getString("namesizearithmetic"));
+        }
+    }
+
+    @Test
+    void writesLongsLikeLongToString() {
+        ResultBuffer buffer = new ResultBuffer(1);
+        long[] values = {0, 1, -1, 9, 10, -10, 99, 100, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1, 1_000_000_000_000L};
+        for (long value : values) {
+            buffer.clear();
+            buffer.appendLong(value);
+            assertEquals(Long.toString(value), new String(buffer.array(), 0, buffer.length(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    // Cada capacidad inicial y cada posicion de partida hace crecer el buffer en un
+    // lugar distinto del texto; el contenido tiene que quedar igual
+    @Test
+    void growsAtEveryBoundary() {
+        String text = "a\"😀\u0001é中" + "x".repeat(20);
+        byte[] escaped = escape(text).getBytes(StandardCharsets.UTF_8);
+        for (int capacity = 1; capacity <= 48; capacity++) {
+            for (int prefix = 0; prefix <= capacity; prefix++) {
+                ResultBuffer buffer = new ResultBuffer(capacity);
+                StringBuilder expected = new StringBuilder();
+                for (int i = 0; i < prefix; i++) {
+                    buffer.appendLong(i % 10);
+                    expected.append(i % 10);
+                }
+                buffer.appendJson(text);
+                buffer.appendTotal("Equal", 42);
+                byte[] out = Arrays.copyOf(buffer.array(), buffer.length());
+                ByteArrayOutputStream want = new ByteArrayOutputStream();
+                want.writeBytes(expected.toString().getBytes(StandardCharsets.US_ASCII));
+                want.writeBytes(escaped);
+                want.writeBytes(("Equal: 42" + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII));
+                assertArrayEquals(want.toByteArray(), out, capacity + "/" + prefix);
+            }
+        }
+    }
+
+    private static ResultBuffer filled(int length, int seed) {
+        ResultBuffer buffer = new ResultBuffer(16);
+        byte[] line = ("linea " + seed + " ").getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < length; i++) {
+            buffer.appendLong(line[i % line.length] % 10);
+        }
+        return buffer;
+    }
+
+    // Buffers que dejan el bloque de ResultWriter justo lleno, a un byte, que no
+    // entran en lo que queda, del tamano del bloque y mas grandes
+    @Test
+    void writerKeepsOrderAcrossFlushBoundary() throws IOException {
+        int block = ResultWriter.BLOCK_BYTES;
+        int[] lengths = {block - 10, 10, 1, block - 1, 2, block, block + 7, 3, block / 2, block / 2, 0, 5, 3 * block};
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < lengths.length; i++) {
+            ResultBuffer buffer = filled(lengths[i], i);
+            expected.write(buffer.array(), 0, buffer.length());
+        }
+        for (int compression : new int[]{ResultWriter.PLAIN, ResultWriter.GZIP, ResultWriter.RANGE}) {
+            Path file = dir.resolve("salida" + ResultWriter.suffix(compression));
+            // Dos corridas: el archivo se abre para agregar
+            for (int run = 0; run < 2; run++) {
+                try (ResultWriter writer = ResultWriter.append(file, compression)) {
+                    for (int i = 0; i < lengths.length; i++) {
+                        writer.write(filled(lengths[i], i));
+                    }
+                }
+            }
+            byte[] twice = new byte[expected.size() * 2];
+            System.arraycopy(expected.toByteArray(), 0, twice, 0, expected.size());
+            System.arraycopy(expected.toByteArray(), 0, twice, expected.size(), expected.size());
+            assertArrayEquals(twice, read(file, compression), "compresion " + compression);
+        }
+    }
+
+    private static byte[] read(Path file, int compression) throws IOException {
+        switch (compression) {
+            case ResultWriter.GZIP:
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                    return in.readAllBytes();
+                }
+            case ResultWriter.RANGE:
+                try (InputStream in = Files.newInputStream(file)) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    out.writeBytes(new RangeInputStream(in).readAllBytes());
+                    out.writeBytes(new RangeInputStream(in).readAllBytes());
+                    return out.toByteArray();
+                }
+            default:
+                return Files.readAllBytes(file);
+        }
+    }
+}
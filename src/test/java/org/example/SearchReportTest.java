@@ -0,0 +1,145 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// El reporte en paralelo (--parallel / --threads=N) tiene que dejar el mismo
+// output.txt, byte por byte, y los mismos errores por stderr con los mismos numeros
+// de linea que el secuencial. El archivo de busquedas ocupa varios bloques de
+// CHUNK_BYTES y mezcla nombres que estan y que no, lineas mal formadas, lineas
+// vacias, un \r\n y busquedas de titulos.
+class SearchReportTest {
+    @TempDir
+    Path dir;
+
+    private static String name(int i) {
+        return (i % 7 == 0 ? "Árbol \"" + i + "\" 😀" : "Libro " + i) + (i % 11 == 0 ? " (Saga, #" + i % 5 + ")" : "");
+    }
+
+    private static BTree inventory(boolean titles) {
+        Random random = new Random(3);
+        BTree tree = new BTree();
+        if (titles) {
+            tree.enableTitleIndex();
+        }
+        for (int i = 0; i < 20_000; i++) {
+            String price = random.nextInt(10) == 0 ? "gratis" : random.nextInt(10_000) + ".5";
+            tree.insert(Book.parse(Integer.toString(i), name(i), "Autor " + random.nextInt(300), null, price,
+                    Integer.toString(random.nextInt(100))));
+        }
+        return tree;
+    }
+
+    private Path searches(boolean titles) throws IOException {
+        Random random = new Random(4);
+        StringBuilder out = new StringBuilder();
+        for (int line = 0; line < 40_000; line++) {
+            String name = name(random.nextInt(25_000)).replace("\\", "\\\\").replace("\"", "\\\"");
+            switch (random.nextInt(40)) {
+                case 0:
+                    out.append("SEARCH; {\"name\":\"").append(name).append("\"\n");
+                    break;
+                case 1:
+                    out.append("SEARCH; {\"isbn\":\"1\"}\n");
+                    break;
+                case 2:
+                    out.append('\n');
+                    break;
+                case 3:
+                    out.append("SEARCH; {\"name\":\"").append(name).append("\"}\r\n");
+                    break;
+                case 4:
+                    out.append(titles ? "PREFIX" : "SEARCH").append("; {\"name\":\"libro ").append(random.nextInt(300)).append("\"}\n");
+                    break;
+                case 5:
+                    out.append(titles ? "FUZZY" : "SEARCH").append("; {\"name\":\"Lbro ").append(random.nextInt(3000)).append("\"}\n");
+                    break;
+                default:
+                    out.append("SEARCH; {\"name\":\"").append(name).append("\"}\n");
+            }
+        }
+        Path file = dir.resolve(titles ? "titulos.csv" : "busquedas.csv");
+        Files.writeString(file, out);
+        assertTrue(Files.size(file) > 4 * SearchReport.CHUNK_BYTES);
+        return file;
+    }
+
+    // Salida y stderr de una corrida; threads == 1 es el modo secuencial
+    private List<byte[]> report(BTree tree, Path searches, int threads, int compression, String name) throws IOException {
+        Path output = dir.resolve(name + ResultWriter.suffix(compression));
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream stderr = System.err;
+        System.setErr(new PrintStream(errors, true, StandardCharsets.UTF_8));
+        try (OperationFile input = OperationFile.open(searches);
+             ResultWriter writer = ResultWriter.append(output, compression)) {
+            SearchReport report = new SearchReport(tree, writer);
+            report.titleSearch(tree.titles != null ? 2 : -1);
+            if (threads > 1) {
+                report.runParallel(input, threads);
+            } else {
+                report.run(input);
+            }
+            report.writeTotals();
+        } finally {
+            System.setErr(stderr);
+        }
+        List<byte[]> result = new ArrayList<>();
+        result.add(Files.readAllBytes(output));
+        result.add(errors.toByteArray());
+        return result;
+    }
+
+    private void compare(boolean titles, int compression) throws IOException {
+        BTree tree = inventory(titles);
+        Path searches = searches(titles);
+        List<byte[]> sequential = report(tree, searches, 1, compression, "secuencial");
+        assertTrue(sequential.get(0).length > 0);
+        assertTrue(new String(sequential.get(1), StandardCharsets.UTF_8).contains(searches + ":"));
+        for (int threads : new int[]{2, 3, 8}) {
+            List<byte[]> parallel = report(tree, searches, threads, compression, "paralelo" + threads);
+            assertArrayEquals(sequential.get(0), parallel.get(0), "salida con " + threads + " hilos");
+            assertArrayEquals(sequential.get(1), parallel.get(1), "errores con " + threads + " hilos");
+        }
+    }
+
+    @Test
+    void parallelReportMatchesSequential() throws IOException {
+        compare(false, ResultWriter.PLAIN);
+    }
+
+    @Test
+    void parallelTitleSearchMatchesSequential() throws IOException {
+        compare(true, ResultWriter.PLAIN);
+    }
+
+    @Test
+    void parallelCompressedReportMatchesSequential() throws IOException {
+        compare(false, ResultWriter.GZIP);
+        compare(false, ResultWriter.RANGE);
+    }
+
+    // Los contadores de errores son los mismos en los dos modos
+    @Test
+    void parallelReportCountsSameErrors() throws IOException {
+        Path searches = searches(false);
+        BTree sequential = inventory(false);
+        report(sequential, searches, 1, ResultWriter.PLAIN, "secuencial");
+        BTree parallel = inventory(false);
+        report(parallel, searches, 4, ResultWriter.PLAIN, "paralelo");
+        assertTrue(sequential.metrics().parseErrors.sum() > 0);
+        assertEquals(sequential.metrics().parseErrors.sum(), parallel.metrics().parseErrors.sum());
+        assertEquals(sequential.metrics().applyErrors.sum(), parallel.metrics().applyErrors.sum());
+    }
+}
@@ -0,0 +1,198 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+
+// Los indices por autor, categoria, precio y cantidad contra un filtro por fuerza
+// bruta sobre las hojas del arbol, despues de INSERT, rachas de insertAll, PATCH
+// de los campos indexados (incluido dejarlos en null o con un precio que solo se
+// guarda como texto) y DELETE.
+class SecondaryIndexesTest {
+    private static final int KEYS = 3_000;
+
+    private static String author(Random random) {
+        return random.nextInt(8) == 0 ? null : "Autor " + random.nextInt(40);
+    }
+
+    private static String category(Random random) {
+        return random.nextInt(8) == 0 ? null : "Cat" + random.nextInt(6);
+    }
+
+    private static String price(Random random) {
+        return random.nextInt(10) == 0 ? "gratis" : random.nextInt(50) + "." + random.nextInt(10) + "0";
+    }
+
+    private static String quantity(Random random) {
+        return random.nextInt(10) == 0 ? null : Integer.toString(random.nextInt(60));
+    }
+
+    private static Book book(Random random) {
+        return Book.parse(Integer.toString(random.nextInt(KEYS)), "Name " + random.nextInt(KEYS * 2),
+                author(random), category(random), price(random), quantity(random));
+    }
+
+    private static void mutate(BTree tree, Random random, int operations) {
+        List<Book> pending = new ArrayList<>();
+        for (int op = 0; op < operations; op++) {
+            String isbn = Integer.toString(random.nextInt(KEYS));
+            int kind = random.nextInt(20);
+            if (kind < 6) {
+                tree.insert(book(random));
+            } else if (kind < 8) {
+                pending.add(book(random));
+                if (pending.size() == 1 + random.nextInt(100)) {
+                    tree.insertAll(pending);
+                    pending.clear();
+                }
+            } else if (kind < 15) {
+                Map<String, Object> update = new HashMap<>();
+                if (random.nextBoolean()) {
+                    update.put("author", author(random));
+                }
+                if (random.nextBoolean()) {
+                    update.put("category", category(random));
+                }
+                if (random.nextBoolean()) {
+                    update.put("price", price(random));
+                }
+                if (random.nextBoolean()) {
+                    update.put("quantity", quantity(random));
+                }
+                if (random.nextInt(4) == 0) {
+                    update.put("name", "Name " + random.nextInt(KEYS * 2));
+                }
+                tree.updateBook(isbn, update);
+            } else {
+                tree.removeBook(isbn);
+            }
+        }
+    }
+
+    private static List<Book> books(BTree tree) {
+        List<Book> books = new ArrayList<>();
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                books.add(leaf.books[i]);
+            }
+        }
+        return books;
+    }
+
+    // Los libros que cumplen la condicion en el orden dado, como texto
+    private static List<String> filter(List<Book> books, Predicate<Book> condition, Comparator<Book> order) {
+        List<Book> matching = new ArrayList<>();
+        for (Book book : books) {
+            if (condition.test(book)) {
+                matching.add(book);
+            }
+        }
+        matching.sort(order);
+        return text(matching);
+    }
+
+    private static List<String> text(List<Book> books) {
+        List<String> out = new ArrayList<>();
+        for (Book book : books) {
+            out.add(book.toJson().toString());
+        }
+        return out;
+    }
+
+    private static void check(BTree tree, Random random) {
+        List<Book> books = books(tree);
+        Comparator<Book> byIsbn = Comparator.naturalOrder();
+        for (int i = 0; i < 40; i++) {
+            String author = "Autor " + i;
+            assertEquals(filter(books, book -> author.equals(book.author()), byIsbn), text(tree.findByAuthor(author)), author);
+        }
+        for (int i = 0; i < 6; i++) {
+            String category = "Cat" + i;
+            assertEquals(filter(books, book -> category.equals(book.category()), byIsbn),
+                    text(tree.findByCategory(category)), category);
+        }
+        assertEquals(0, tree.findByAuthor("Nadie").size());
+
+        Comparator<Book> byPrice = Comparator.comparingLong(Book::priceCents).thenComparing(byIsbn);
+        Comparator<Book> byQuantity = Comparator.comparingInt(Book::quantity).thenComparing(byIsbn);
+        for (int i = 0; i < 30; i++) {
+            long from = random.nextInt(5_200) - 100;
+            long to = from + random.nextInt(random.nextBoolean() ? 200 : 6_000) - 20;
+            assertEquals(filter(books, book -> book.priceCents() != Book.NO_PRICE
+                            && book.priceCents() >= from && book.priceCents() <= to, byPrice),
+                    text(tree.rangeByPrice(from, to)), from + ".." + to);
+            int low = random.nextInt(70) - 5;
+            int high = low + random.nextInt(30) - 3;
+            assertEquals(filter(books, book -> book.quantity() != Book.NO_QUANTITY
+                            && book.quantity() >= low && book.quantity() <= high, byQuantity),
+                    text(tree.rangeByQuantity(low, high)), low + ".." + high);
+        }
+        // Cada libro esta una sola vez en cada indice
+        int withAuthor = 0;
+        for (Book book : books) {
+            if (book.author() != null && book.author().startsWith("Autor ")) {
+                withAuthor++;
+            }
+        }
+        int indexed = 0;
+        for (int i = 0; i < 40; i++) {
+            indexed += tree.findByAuthor("Autor " + i).size();
+        }
+        assertEquals(withAuthor, indexed);
+        // Hay libros con precio solo como texto, que no estan en el indice de precios
+        assertTrue(books.stream().anyMatch(book -> book.priceCents() == Book.NO_PRICE));
+    }
+
+    private static void run(BTree tree, long seed) {
+        Random random = new Random(seed);
+        for (int round = 0; round < 10; round++) {
+            mutate(tree, random, 5_000);
+            if (round == 5) {
+                tree.trainNameModel();
+            }
+            check(tree, random);
+        }
+    }
+
+    @Test
+    void smallOrderMatchesFilter() {
+        run(new BTree(4), 1);
+    }
+
+    @Test
+    void defaultOrderMatchesFilter() {
+        run(new BTree(), 2);
+    }
+
+    @Test
+    void concurrentTreeMatchesFilter() {
+        run(new BTree(5, true), 3);
+    }
+
+    // Vaciar el arbol deja los indices vacios
+    @Test
+    void deletingEverythingEmptiesIndexes() {
+        BTree tree = new BTree(4);
+        Random random = new Random(4);
+        mutate(tree, random, 5_000);
+        for (int i = 0; i < KEYS; i++) {
+            tree.removeBook(Integer.toString(i));
+        }
+        assertEquals(0, tree.size());
+        assertEquals(0, tree.rangeByPrice(Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertEquals(0, tree.rangeByQuantity(Integer.MIN_VALUE, Integer.MAX_VALUE).size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(0, tree.findByAuthor("Autor " + i).size());
+        }
+        for (int i = 0; i < 6; i++) {
+            assertEquals(0, tree.findByCategory("Cat" + i).size());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+// El indice de titulos contra una busqueda por fuerza bruta sobre los titulos
+// normalizados, incluidas las consultas demasiado cortas para filtrar por trigramas.
+class TitleIndexTest {
+    private static final String[] WORDS = {"Árbol", "arbol", "the", "Crossfire", "bared", "to", "you", "#1",
+            "(Series,", "love", "Niño", "night", "sea", "star", "war", "!!"};
+
+    private static String title(Random random) {
+        StringBuilder title = new StringBuilder();
+        int words = 1 + random.nextInt(4);
+        for (int i = 0; i < words; i++) {
+            title.append(i > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (random.nextInt(3) == 0) {
+            title.append(random.nextInt(50));
+        }
+        return title.toString();
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static Set<String> isbns(List<Book> books) {
+        Set<String> isbns = new HashSet<>();
+        for (Book book : books) {
+            isbns.add(book.isbn());
+        }
+        return isbns;
+    }
+
+    @Test
+    void matchesBruteForceWhileMutating() {
+        BTree tree = new BTree(5);
+        tree.enableTitleIndex();
+        Map<String, Book> live = new HashMap<>();
+        Random random = new Random(1);
+        for (int op = 0; op < 30_000; op++) {
+            String isbn = Integer.toString(1000 + random.nextInt(3000));
+            int kind = random.nextInt(10);
+            if (kind < 5) {
+                tree.insert(new Book(isbn, title(random), "a", "c", 1, 1));
+            } else if (kind < 8) {
+                Map<String, Object> update = new HashMap<>();
+                update.put("name", title(random));
+                tree.updateBook(isbn, update);
+            } else {
+                tree.removeBook(isbn);
+            }
+            Book book = tree.findBookByIsbn(isbn);
+            if (book == null) {
+                live.remove(isbn);
+            } else {
+                live.put(isbn, book);
+            }
+
+            if (op % 300 == 0) {
+                String query = title(random);
+                int distance = random.nextInt(4);
+                String key = TitleIndex.normalize(query);
+                Set<String> fuzzy = new HashSet<>();
+                for (Book each : live.values()) {
+                    if (levenshtein(key, TitleIndex.normalize(each.name())) <= distance) {
+                        fuzzy.add(each.isbn());
+                    }
+                }
+                assertEquals(fuzzy, isbns(tree.searchTitlesFuzzy(query, distance, Integer.MAX_VALUE)), query + " d=" + distance);
+
+                String prefix = query.substring(0, Math.min(query.length(), 1 + random.nextInt(6)));
+                String prefixKey = TitleIndex.normalize(prefix);
+                Set<String> prefixed = new HashSet<>();
+                for (Book each : live.values()) {
+                    if (TitleIndex.normalize(each.name()).startsWith(prefixKey)) {
+                        prefixed.add(each.isbn());
+                    }
+                }
+                assertEquals(prefixed, isbns(tree.searchTitlesByPrefix(prefix, Integer.MAX_VALUE)), prefix);
+            }
+        }
+    }
+
+    // Con pocos trigramas un titulo valido puede no compartir ninguno con la consulta
+    @Test
+    void findsShortQueriesWithoutSharedTrigrams() {
+        TitleIndex index = new TitleIndex();
+        index.add("abdc", "1");
+        index.add("xyz", "2");
+        assertEquals(List.of("1"), index.fuzzy("cbec", 2, 10));
+        assertEquals(List.of("1"), index.fuzzy("ABDC", 0, 10));
+        assertEquals(List.of("2", "1"), index.fuzzy("xy", 4, 10));
+    }
+
+    @Test
+    void findsTitlesThatNormalizeToNothing() {
+        TitleIndex index = new TitleIndex();
+        index.add("!!!", "1");
+        index.add("a", "2");
+        assertEquals(List.of("1"), index.fuzzy("...", 0, 10));
+        assertEquals(List.of("1", "2"), index.fuzzy("", 1, 10));
+        assertEquals(List.of("1", "2"), index.prefix("", 10));
+    }
+
+    @Test
+    void ordersByDistanceAndLimits() {
+        TitleIndex index = new TitleIndex();
+        index.add("Night Sea", "1");
+        index.add("Night Sky", "2");
+        index.add("Night Se", "3");
+        index.add("Nights Sea", "4");
+        assertEquals(List.of("1", "3", "4"), index.fuzzy("night sea", 1, 10));
+        assertEquals(List.of("1", "3"), index.fuzzy("night sea", 2, 2));
+        index.remove("Night Sea", "1");
+        assertEquals(List.of("3", "4", "2"), index.fuzzy("night sea", 2, 10));
+    }
+
+    // Las lineas PREFIX y FUZZY del archivo de busquedas escriben cada libro encontrado
+    @Test
+    void reportWritesTitleMatches() {
+        BTree tree = new BTree();
+        tree.insert(new Book("1", "Cien Años de Soledad", "Garcia Marquez", "Ficcion", 2000, 10));
+        tree.insert(new Book("2", "Cien Sonetos de Amor", "Neruda", "Poesia", 1500, 3));
+        tree.insert(new Book("3", "El Principito", "Saint-Exupery", "Ficcion", 1500, 5));
+        tree.enableTitleIndex();
+        String lines = "PREFIX; {\"name\":\"cien\"}\n"
+                + "FUZZY; {\"name\":\"El Principita\"}\n"
+                + "SEARCH; {\"name\":\"El Principito\"}\n";
+
+        SearchReport report = new SearchReport(tree, null);
+        report.titleSearch(1);
+        SearchReport.Chunk chunk = report.search(new SearchReport.Chunk(
+                ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8)), new ResultBuffer()));
+        assertEquals(0, chunk.errors.size());
+        List<String> isbns = new ArrayList<>();
+        for (String line : new String(chunk.output.array(), 0, chunk.output.length(), StandardCharsets.UTF_8).split("\n")) {
+            isbns.add(line.substring(line.indexOf("\"isbn\":\"") + 8, line.indexOf("\",")));
+        }
+        assertEquals(List.of("1", "2", "3", "3"), isbns);
+    }
+}
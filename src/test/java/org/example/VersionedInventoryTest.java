@@ -0,0 +1,124 @@
+package org.example;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// El inventario con versiones tiene que dar lo mismo que BTree con las mismas
+// operaciones, y cada snapshot tiene que seguir viendo su version.
+class VersionedInventoryTest {
+    private static String find(Inventory inventory, String isbn) {
+        Book book = inventory.findBookByIsbn(isbn);
+        return book == null ? "" : book.toJson().toString();
+    }
+
+    private static String search(Inventory inventory, String name) {
+        Book book = inventory.searchByName(name);
+        return book == null ? "" : book.toJson().toString();
+    }
+
+    private static List<String> contents(InventorySnapshot snapshot) {
+        List<String> books = new ArrayList<>();
+        snapshot.forEach(book -> books.add(book.toJson().toString()));
+        return books;
+    }
+
+    private static List<Book> books(BTree tree) {
+        List<Book> books = new ArrayList<>();
+        for (BTreeNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                books.add(leaf.books[i]);
+            }
+        }
+        return books;
+    }
+
+    private static List<String> contents(BTree tree) {
+        List<String> books = new ArrayList<>();
+        for (Book book : books(tree)) {
+            books.add(book.toJson().toString());
+        }
+        return books;
+    }
+
+    // Pocos ISBN y nombres, asi los INSERT chocan y los PATCH repiten nombres
+    private static void apply(Random random, int keys, BTree tree, VersionedInventory versioned) {
+        int key = random.nextInt(keys);
+        String isbn = random.nextInt(10) == 0 ? "X-" + key : Integer.toString(key);
+        String name = "Name " + random.nextInt(keys * 2);
+        int kind = random.nextInt(10);
+        if (kind < 4) {
+            Book book = Book.parse(isbn, name, random.nextBoolean() ? null : "Autor",
+                    "Cat" + random.nextInt(3), random.nextInt(8) == 0 ? "gratis" : random.nextInt(500) + ".25", "1");
+            if (random.nextInt(4) == 0) {
+                tree.insertAll(List.of(book));
+                versioned.insertAll(List.of(book));
+            } else {
+                tree.insert(book);
+                versioned.insert(book);
+            }
+        } else if (kind < 6) {
+            Map<String, Object> update = new HashMap<>();
+            if (random.nextBoolean()) {
+                update.put("name", name);
+            }
+            if (random.nextBoolean()) {
+                update.put("price", "1.5" + random.nextInt(9));
+            }
+            assertEquals(tree.updateBook(isbn, update), versioned.updateBook(isbn, update), isbn);
+        } else if (kind < 8) {
+            tree.removeBook(isbn);
+            versioned.removeBook(isbn);
+        } else {
+            assertEquals(search(tree, name), search(versioned, name), name);
+            assertEquals(find(tree, isbn), find(versioned, isbn), isbn);
+        }
+    }
+
+    @Test
+    void matchesBTreeAndKeepsSnapshots() {
+        for (int keys : new int[]{50, 3000}) {
+            Random random = new Random(keys);
+            BTree tree = new BTree();
+            VersionedInventory versioned = new VersionedInventory();
+            List<InventorySnapshot> snapshots = new ArrayList<>();
+            List<List<String>> expected = new ArrayList<>();
+            for (int step = 0; step < 60_000; step++) {
+                apply(random, keys, tree, versioned);
+                assertEquals(tree.size(), versioned.size());
+                if (step % 10_000 == 0) {
+                    snapshots.add(versioned.snapshot());
+                    expected.add(contents(tree));
+                }
+            }
+            for (int i = 0; i < snapshots.size(); i++) {
+                try (InventorySnapshot snapshot = snapshots.get(i)) {
+                    List<String> books = contents(snapshot);
+                    assertEquals(expected.get(i), books);
+                    assertEquals(books.size(), snapshot.size());
+                }
+            }
+            try (InventorySnapshot snapshot = versioned.snapshot()) {
+                assertEquals(contents(tree), contents(snapshot));
+                for (Book book : books(tree)) {
+                    assertEquals(tree.searchByName(book.name()) == book, snapshot.nameIndexed(snapshot.findBookByIsbn(book.isbn())));
+                }
+            }
+        }
+    }
+
+    @Test
+    void snapshotsAreReadOnly() {
+        VersionedInventory versioned = new VersionedInventory();
+        versioned.insert(new Book("1", "Uno", null, null, 100, 1));
+        try (InventorySnapshot snapshot = versioned.snapshot()) {
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.removeBook("1"));
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.insert(new Book("2", "Dos", null, null, 1, 1)));
+        }
+    }
+}